@@ -7,7 +7,6 @@ public class ApplicationSpecification implements SpecificationInterface {
   public int loadConcurrentIngests = 2;
   public int loadDriverWaitSeconds = 1;
   public long loadHistoryCopyChunkSize = 1000;
-  public long loadHistoryWaitSeconds = 2;
 
   ApplicationSpecification() {}
 
@@ -26,9 +25,6 @@ public class ApplicationSpecification implements SpecificationInterface {
     } else if (loadHistoryCopyChunkSize <= 0) {
       throw new IllegalArgumentException(
           "Application property loadHistoryCopyChunkSize must be >= 0");
-    } else if (loadHistoryWaitSeconds <= 0) {
-      throw new IllegalArgumentException(
-          "Application property loadHistoryWaitSeconds must be >= 0");
     }
   }
 }
@@ -211,9 +211,6 @@ public class LaunchLocalProcess extends DeploymentScript {
     envVars.put(
         "DATAREPO_LOADHISTORYCOPYCHUNKSIZE",
         String.valueOf(applicationSpecification.loadHistoryCopyChunkSize));
-    envVars.put(
-        "DATAREPO_LOADHISTORYWAITSECONDS",
-        String.valueOf(applicationSpecification.loadHistoryWaitSeconds));
 
     return envVars;
   }
@@ -270,9 +270,6 @@ public class ModularHelmChart extends DeploymentScript {
     envSubTree.put(
         "DATAREPO_LOADHISTORYCOPYCHUNKSIZE",
         String.valueOf(applicationSpecification.loadHistoryCopyChunkSize));
-    envSubTree.put(
-        "DATAREPO_LOADHISTORYWAITSECONDS",
-        String.valueOf(applicationSpecification.loadHistoryWaitSeconds));
 
     // write the modified tree out to disk
     objectMapper.writeValue(outputFile, inputTree);
@@ -54,12 +54,7 @@ public class ApplicationConfiguration {
     private int loadDriverWaitSeconds;
 
     /**
-     * Number of seconds to wait between loads of data into laod_history table
-     */
-    private int loadHistoryWaitSeconds;
-
-    /**
-     * Number of files for the bulk file load to load file metadata into staging table
+     * Number of load_file rows to read per page when copying the bulk file load history to BigQuery
      */
     private int loadHistoryCopyChunkSize;
 
@@ -102,6 +97,11 @@ public class ApplicationConfiguration {
      */
     private int firestoreSnapshotCacheSize;
 
+    /**
+     * Size of cache of existing directories to maintain during a bulk file load
+     */
+    private int firestoreLoadCacheSize;
+
     /**
      * Size of batches to operate on when validating file system directory entry ids
      */
@@ -112,6 +112,92 @@ public class ApplicationConfiguration {
      */
     private int firestoreQueryBatchSize;
 
+    /**
+     * Number of distinct file ids read from BigQuery at a time when validating the file references of an ingest
+     */
+    private int ingestRefIdPageSize;
+
+    /**
+     * Number of pages of file ids validated against firestore at once during an ingest
+     */
+    private int ingestRefIdValidateThreads;
+
+    /**
+     * Maximum number of snapshots held in the DRS lookup cache
+     */
+    private int drsCacheSnapshotSize;
+
+    /**
+     * Maximum number of snapshot files held in the DRS lookup cache
+     */
+    private int drsCacheFileSize;
+
+    /**
+     * Maximum number of buckets held in the DRS lookup cache
+     */
+    private int drsCacheBucketSize;
+
+    /**
+     * Seconds an entry stays in the DRS lookup cache. This bounds how long another pod can serve
+     * a snapshot after it has been locked or deleted.
+     */
+    private int drsCacheTtlSeconds;
+
+    /**
+     * Maximum number of object ids in one bulk DRS lookup
+     */
+    private int drsBulkMaxObjects;
+
+    /**
+     * Maximum number of authorization decisions held in the IAM decision cache
+     */
+    private int iamCacheSize;
+
+    /**
+     * Seconds an allowed authorization decision is cached. This bounds how long another pod can allow an
+     * action after the user's access was removed. Zero or less turns the cache off.
+     */
+    private int iamCacheTtlSeconds;
+
+    /**
+     * Seconds a denied authorization decision is cached. This bounds how long another pod can deny an
+     * action after the user was granted access. Zero or less turns off caching of denials.
+     */
+    private int iamCacheDeniedTtlSeconds;
+
+    /**
+     * Maximum number of datasets and of snapshots whose metadata is held in the in-process metadata caches
+     */
+    private int metadataCacheSize;
+
+    /**
+     * Maximum number of BigQuery jobs the server runs at once in each Google project
+     */
+    private int bigQueryMaxConcurrentJobs;
+
+    /**
+     * Maximum rate of BigQuery job submission in each Google project
+     */
+    private double bigQueryJobsPerSecond;
+
+    /**
+     * Minutes a BigQuery job may run before it is canceled
+     */
+    private int bigQueryJobTimeoutMinutes;
+
+    /**
+     * Cluster the raw tables of new datasets on the row id column. Snapshot views join the raw tables
+     * on row id, so clustering lets those joins skip blocks. Existing datasets are not changed.
+     */
+    private boolean bigQueryClusterRawTables;
+
+    /**
+     * Fraction of soft deleted rows in a dataset table at which a data delete compacts the table: the deleted
+     * rows are removed from the raw table and the soft delete table is emptied. Only tables of datasets without
+     * snapshots are compacted. A value above 1 turns compaction off.
+     */
+    private double softDeleteCompactionThreshold;
+
     public String getUserEmail() {
         return userEmail;
     }
@@ -192,14 +278,6 @@ public class ApplicationConfiguration {
         this.loadDriverWaitSeconds = loadDriverWaitSeconds;
     }
 
-    public int getLoadHistoryWaitSeconds() {
-        return loadHistoryWaitSeconds;
-    }
-
-    public void setLoadHistoryWaitSeconds(int loadQueryHistorySeconds) {
-        this.loadHistoryWaitSeconds = loadQueryHistorySeconds;
-    }
-
     public int getLoadHistoryCopyChunkSize() {
         return loadHistoryCopyChunkSize;
     }
@@ -264,6 +342,14 @@ public class ApplicationConfiguration {
         this.firestoreSnapshotCacheSize = firestoreSnapshotCacheSize;
     }
 
+    public int getFirestoreLoadCacheSize() {
+        return firestoreLoadCacheSize;
+    }
+
+    public void setFirestoreLoadCacheSize(int firestoreLoadCacheSize) {
+        this.firestoreLoadCacheSize = firestoreLoadCacheSize;
+    }
+
     public int getFirestoreValidateBatchSize() {
         return firestoreValidateBatchSize;
     }
@@ -272,6 +358,22 @@ public class ApplicationConfiguration {
         this.firestoreValidateBatchSize = firestoreValidateBatchSize;
     }
 
+    public int getIngestRefIdPageSize() {
+        return ingestRefIdPageSize;
+    }
+
+    public void setIngestRefIdPageSize(int ingestRefIdPageSize) {
+        this.ingestRefIdPageSize = ingestRefIdPageSize;
+    }
+
+    public int getIngestRefIdValidateThreads() {
+        return ingestRefIdValidateThreads;
+    }
+
+    public void setIngestRefIdValidateThreads(int ingestRefIdValidateThreads) {
+        this.ingestRefIdValidateThreads = ingestRefIdValidateThreads;
+    }
+
     public int getFirestoreQueryBatchSize() {
         return firestoreQueryBatchSize;
     }
@@ -280,6 +382,118 @@ public class ApplicationConfiguration {
         this.firestoreQueryBatchSize = firestoreQueryBatchSize;
     }
 
+    public int getDrsCacheSnapshotSize() {
+        return drsCacheSnapshotSize;
+    }
+
+    public void setDrsCacheSnapshotSize(int drsCacheSnapshotSize) {
+        this.drsCacheSnapshotSize = drsCacheSnapshotSize;
+    }
+
+    public int getDrsCacheFileSize() {
+        return drsCacheFileSize;
+    }
+
+    public void setDrsCacheFileSize(int drsCacheFileSize) {
+        this.drsCacheFileSize = drsCacheFileSize;
+    }
+
+    public int getDrsCacheBucketSize() {
+        return drsCacheBucketSize;
+    }
+
+    public void setDrsCacheBucketSize(int drsCacheBucketSize) {
+        this.drsCacheBucketSize = drsCacheBucketSize;
+    }
+
+    public int getDrsCacheTtlSeconds() {
+        return drsCacheTtlSeconds;
+    }
+
+    public void setDrsCacheTtlSeconds(int drsCacheTtlSeconds) {
+        this.drsCacheTtlSeconds = drsCacheTtlSeconds;
+    }
+
+    public int getDrsBulkMaxObjects() {
+        return drsBulkMaxObjects;
+    }
+
+    public void setDrsBulkMaxObjects(int drsBulkMaxObjects) {
+        this.drsBulkMaxObjects = drsBulkMaxObjects;
+    }
+
+    public int getIamCacheSize() {
+        return iamCacheSize;
+    }
+
+    public void setIamCacheSize(int iamCacheSize) {
+        this.iamCacheSize = iamCacheSize;
+    }
+
+    public int getIamCacheTtlSeconds() {
+        return iamCacheTtlSeconds;
+    }
+
+    public void setIamCacheTtlSeconds(int iamCacheTtlSeconds) {
+        this.iamCacheTtlSeconds = iamCacheTtlSeconds;
+    }
+
+    public int getIamCacheDeniedTtlSeconds() {
+        return iamCacheDeniedTtlSeconds;
+    }
+
+    public void setIamCacheDeniedTtlSeconds(int iamCacheDeniedTtlSeconds) {
+        this.iamCacheDeniedTtlSeconds = iamCacheDeniedTtlSeconds;
+    }
+
+    public int getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    public void setMetadataCacheSize(int metadataCacheSize) {
+        this.metadataCacheSize = metadataCacheSize;
+    }
+
+    public int getBigQueryMaxConcurrentJobs() {
+        return bigQueryMaxConcurrentJobs;
+    }
+
+    public void setBigQueryMaxConcurrentJobs(int bigQueryMaxConcurrentJobs) {
+        this.bigQueryMaxConcurrentJobs = bigQueryMaxConcurrentJobs;
+    }
+
+    public double getBigQueryJobsPerSecond() {
+        return bigQueryJobsPerSecond;
+    }
+
+    public void setBigQueryJobsPerSecond(double bigQueryJobsPerSecond) {
+        this.bigQueryJobsPerSecond = bigQueryJobsPerSecond;
+    }
+
+    public int getBigQueryJobTimeoutMinutes() {
+        return bigQueryJobTimeoutMinutes;
+    }
+
+    public void setBigQueryJobTimeoutMinutes(int bigQueryJobTimeoutMinutes) {
+        this.bigQueryJobTimeoutMinutes = bigQueryJobTimeoutMinutes;
+    }
+
+    public boolean isBigQueryClusterRawTables() {
+        return bigQueryClusterRawTables;
+    }
+
+    public void setBigQueryClusterRawTables(boolean bigQueryClusterRawTables) {
+        this.bigQueryClusterRawTables = bigQueryClusterRawTables;
+    }
+
+    public double getSoftDeleteCompactionThreshold() {
+        return softDeleteCompactionThreshold;
+    }
+
+    public void setSoftDeleteCompactionThreshold(double softDeleteCompactionThreshold) {
+        this.softDeleteCompactionThreshold = softDeleteCompactionThreshold;
+    }
+
     @Bean("jdbcTemplate")
     public NamedParameterJdbcTemplate getNamedParameterJdbcTemplate(DataRepoJdbcConfiguration jdbcConfiguration) {
         return new NamedParameterJdbcTemplate(jdbcConfiguration.getDataSource());
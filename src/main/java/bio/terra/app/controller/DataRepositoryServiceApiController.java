@@ -7,6 +7,8 @@ import bio.terra.common.exception.BadRequestException;
 import bio.terra.common.exception.NotFoundException;
 import bio.terra.common.exception.NotImplementedException;
 import bio.terra.model.DRSAccessURL;
+import bio.terra.model.DRSBulkObjectRequest;
+import bio.terra.model.DRSBulkObjectResult;
 import bio.terra.model.DRSError;
 import bio.terra.model.DRSObject;
 import bio.terra.model.DRSServiceInfo;
@@ -22,9 +24,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.util.List;
 import java.util.Optional;
 
 @Controller
@@ -110,6 +115,13 @@ public class DataRepositoryServiceApiController implements DataRepositoryService
         return new ResponseEntity<>(drsService.lookupObjectByDrsId(authUser, objectId, expand), HttpStatus.OK);
     }
 
+    @Override
+    public ResponseEntity<List<DRSBulkObjectResult>> getObjects(@Valid @RequestBody DRSBulkObjectRequest body) {
+        AuthenticatedUserRequest authUser = getAuthenticatedInfo();
+        return new ResponseEntity<>(
+            drsService.lookupObjectsByDrsIds(authUser, body.getBulkObjectIds()), HttpStatus.OK);
+    }
+
     @Override
     public ResponseEntity<DRSServiceInfo> getServiceInfo() {
         DRSServiceInfo info = new DRSServiceInfo()
@@ -6,6 +6,7 @@ import bio.terra.app.utils.ControllerUtils;
 import bio.terra.common.ValidationUtils;
 import bio.terra.controller.RepositoryApi;
 import bio.terra.model.AssetModel;
+import bio.terra.model.BulkIngestRequestModel;
 import bio.terra.model.BulkLoadArrayRequestModel;
 import bio.terra.model.BulkLoadRequestModel;
 import bio.terra.model.ConfigGroupModel;
@@ -189,6 +190,15 @@ public class RepositoryApiController implements RepositoryApi {
         return jobToResponse(jobService.retrieveJob(jobId, userReq));
     }
 
+    @Override
+    public ResponseEntity<JobModel> bulkIngestDataset(@PathVariable("id") String id,
+                                                      @Valid @RequestBody BulkIngestRequestModel bulkIngest) {
+        AuthenticatedUserRequest userReq = getAuthenticatedInfo();
+        iamService.verifyAuthorization(userReq, IamResourceType.DATASET, id, IamAction.INGEST_DATA);
+        String jobId = datasetService.bulkIngestDataset(id, bulkIngest, userReq);
+        return jobToResponse(jobService.retrieveJob(jobId, userReq));
+    }
+
     @Override
     public ResponseEntity<JobModel> addDatasetAssetSpecifications(@PathVariable("id") String id,
                                                   @Valid @RequestBody AssetModel asset) {
@@ -0,0 +1,70 @@
+package bio.terra.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies in milliseconds. Latencies are counted in fixed buckets, so recording is
+ * cheap and memory does not grow; percentiles are reported as the upper bound of the bucket they fall in.
+ */
+public class LatencyHistogram {
+    // Upper bounds of the buckets in milliseconds. The last bucket holds everything slower.
+    private static final long[] BUCKET_MILLIS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, Long.MAX_VALUE
+    };
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_MILLIS.length);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long millis) {
+        int bucket = 0;
+        while (millis > BUCKET_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalCount.incrementAndGet();
+        totalMillis.addAndGet(millis);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getMeanMillis() {
+        long count = getCount();
+        return (count == 0) ? 0 : totalMillis.get() / count;
+    }
+
+    /**
+     * @param percent percentile to get, from 0 to 100
+     * @return upper bound in milliseconds of the bucket holding the percentile; -1 if nothing is recorded or the
+     * percentile is in the slowest bucket
+     */
+    public long getPercentileMillis(double percent) {
+        long count = getCount();
+        if (count == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(count * percent / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_MILLIS.length; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return (BUCKET_MILLIS[bucket] == Long.MAX_VALUE) ? -1 : BUCKET_MILLIS[bucket];
+            }
+        }
+        return -1;
+    }
+
+    public String getStatistics() {
+        return String.format("%s latency: count=%d meanMs=%d p50Ms<=%d p90Ms<=%d p99Ms<=%d",
+            name, getCount(), getMeanMillis(),
+            getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99));
+    }
+}
@@ -0,0 +1,213 @@
+package bio.terra.common;
+
+import org.apache.commons.collections4.map.LRUMap;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe, size-bounded cache that evicts the least recently used entry when it is full.
+ * Entries can also be given a time to live; an expired entry is treated as a miss and dropped.
+ * Hits and misses are counted so callers can report how well the cache is working.
+ *
+ * Loaders run outside of the cache lock. Loads are single-flight: when several threads miss on the
+ * same key at the same time, one of them runs the loader and the others wait for its result or its
+ * exception. Null values are never cached.
+ */
+public class LruCache<K, V> {
+    private final String name;
+    private final LRUMap<K, Entry<V>> map;
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param name name of the cache, used in the statistics string
+     * @param maxSize maximum number of entries held
+     * @param ttl time an entry stays valid after it is put; null or zero means entries do not expire
+     */
+    public LruCache(String name, int maxSize, Duration ttl) {
+        this.name = name;
+        this.map = new LRUMap<>(Math.max(maxSize, 1));
+        this.ttlMillis = (ttl == null) ? 0L : ttl.toMillis();
+    }
+
+    public LruCache(String name, int maxSize) {
+        this(name, maxSize, null);
+    }
+
+    /**
+     * @return the cached value or null if the key is not cached or has expired
+     */
+    public V get(K key) {
+        V value = lookup(key);
+        countLookup(value);
+        return value;
+    }
+
+    /**
+     * Return the cached value, or load it, cache it, and return it.
+     * If the loader returns null, nothing is cached. Exceptions from the loader are passed through.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        return get(key, loader, value -> true);
+    }
+
+    /**
+     * Like {@link #get(Object, Function)}, but a cached value is only returned if it is still valid.
+     * An invalid value is dropped and loaded again. The check runs on every hit, so it should be
+     * much cheaper than the loader.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader, Predicate<? super V> isValid) {
+        V value = lookup(key);
+        if (value != null && !isValid.test(value)) {
+            remove(key);
+            value = null;
+        }
+        countLookup(value);
+        if (value == null) {
+            value = load(key, loader);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, (ttlMillis == 0L) ? Long.MAX_VALUE : now() + ttlMillis);
+        synchronized (map) {
+            map.put(key, entry);
+        }
+    }
+
+    public void remove(K key) {
+        synchronized (map) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * Remove every entry whose key matches the predicate.
+     * @return number of entries removed
+     */
+    public int removeIf(Predicate<? super K> predicate) {
+        int count = 0;
+        synchronized (map) {
+            Iterator<Map.Entry<K, Entry<V>>> iter = map.entrySet().iterator();
+            while (iter.hasNext()) {
+                if (predicate.test(iter.next().getKey())) {
+                    iter.remove();
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public String getStatistics() {
+        long hits = getHitCount();
+        long misses = getMissCount();
+        long lookups = hits + misses;
+        long hitPercent = (lookups == 0) ? 0 : (hits * 100) / lookups;
+        return String.format("%s cache: size=%d hits=%d misses=%d hitRate=%d%%",
+            name, size(), hits, misses, hitPercent);
+    }
+
+    private V lookup(K key) {
+        synchronized (map) {
+            Entry<V> entry = map.get(key);
+            if (entry != null && isExpired(entry)) {
+                map.remove(key);
+                entry = null;
+            }
+            return (entry == null) ? null : entry.value;
+        }
+    }
+
+    private void countLookup(V value) {
+        if (value == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+    }
+
+    // Run the loader unless another thread is already loading the key; in that case wait for its result
+    private V load(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        try {
+            V value = loader.apply(key);
+            put(key, value);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    // Package-private so tests can move the clock
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return entry.expiresAt <= now();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
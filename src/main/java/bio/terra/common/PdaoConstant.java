@@ -9,6 +9,7 @@ public final class PdaoConstant {
     public static final String PDAO_ROW_ID_COLUMN = PDAO_PREFIX + "row_id";
     public static final String PDAO_ROW_ID_TABLE = PDAO_PREFIX + "row_ids";
     public static final String PDAO_TEMP_TABLE = PDAO_PREFIX + "temp";
+    public static final String PDAO_WALK_STAGING_TABLE_PREFIX = PDAO_PREFIX + "walk_";
     public static final String PDAO_TABLE_ID_COLUMN = PDAO_PREFIX + "table_id";
     public static final String PDAO_INGEST_DATE_COLUMN_ALIAS = PDAO_PREFIX + "ingest_date";
     public static final String PDAO_EXTERNAL_TABLE_PREFIX = PDAO_PREFIX + "ext_";
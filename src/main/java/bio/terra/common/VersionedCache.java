@@ -0,0 +1,74 @@
+package bio.terra.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of values that carry a version number kept in the database. The caller reads the current
+ * version, which is a cheap lookup, and the cached value is only used when it was loaded at that same version.
+ * Otherwise the value is loaded again and replaces the old one. Because the version comes from the database on
+ * every lookup, a change made by another pod is seen on the next lookup; no entry needs to expire.
+ *
+ * Versions must only ever increase. A value loaded after the version was read may be newer than that version;
+ * that is safe, because the next lookup at a newer version loads it again.
+ */
+public class VersionedCache<K, V> {
+    private final LruCache<K, Versioned<V>> cache;
+    private final AtomicLong staleCount = new AtomicLong();
+
+    public VersionedCache(String name, int maxSize) {
+        this.cache = new LruCache<>(name, maxSize);
+    }
+
+    /**
+     * Return the value cached at this version, or load it, cache it, and return it.
+     * If the loader returns null, nothing is cached. Exceptions from the loader are passed through.
+     */
+    public V get(K key, long version, Function<? super K, ? extends V> loader) {
+        Versioned<V> entry = cache.get(key);
+        if (entry != null) {
+            if (entry.version == version) {
+                return entry.value;
+            }
+            staleCount.incrementAndGet();
+        }
+        V value = loader.apply(key);
+        if (value != null) {
+            cache.put(key, new Versioned<>(version, value));
+        }
+        return value;
+    }
+
+    public void remove(K key) {
+        cache.remove(key);
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return number of lookups that found an entry of an older version
+     */
+    public long getStaleCount() {
+        return staleCount.get();
+    }
+
+    public String getStatistics() {
+        return cache.getStatistics() + " stale=" + getStaleCount();
+    }
+
+    private static class Versioned<V> {
+        private final long version;
+        private final V value;
+
+        Versioned(long version, V value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -19,9 +19,9 @@ public enum ConfigEnum {
     LOAD_CONCURRENT_INGESTS,
     LOAD_DRIVER_WAIT_SECONDS,
     LOAD_HISTORY_COPY_CHUNK_SIZE,
-    LOAD_HISTORY_WAIT_SECONDS,
     FIRESTORE_SNAPSHOT_BATCH_SIZE,
     FIRESTORE_SNAPSHOT_CACHE_SIZE,
+    FIRESTORE_LOAD_CACHE_SIZE,
     FIRESTORE_VALIDATE_BATCH_SIZE,
     FIRESTORE_QUERY_BATCH_SIZE,
 
@@ -55,6 +55,7 @@ public enum ConfigEnum {
 
     TABLE_INGEST_LOCK_CONFLICT_STOP_FAULT,
     TABLE_INGEST_LOCK_CONFLICT_CONTINUE_FAULT,
+    TABLE_BULK_INGEST_INSERT_FAULT,
 
     SOFT_DELETE_LOCK_CONFLICT_STOP_FAULT,
     SOFT_DELETE_LOCK_CONFLICT_CONTINUE_FAULT,
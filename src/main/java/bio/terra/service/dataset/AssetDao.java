@@ -16,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +68,7 @@ public class AssetDao {
 
         createAssetColumns(assetSpecification);
         createAssetRelationships(assetSpecification);
+        bumpMetadataVersion("id = :dataset_id", params);
         return assetSpecId;
     }
 
@@ -104,7 +106,7 @@ public class AssetDao {
         dataset.assetSpecifications(retrieveAssetSpecifications(dataset));
     }
 
-    // also retrieves dependent objects
+    // also retrieves dependent objects; three queries for the whole dataset, however many assets it has
     public List<AssetSpecification> retrieveAssetSpecifications(Dataset dataset) {
         Map<UUID, DatasetTable> allTables = dataset.getTablesById();
         Map<UUID, Column> allColumns = dataset.getAllColumnsById();
@@ -114,37 +116,55 @@ public class AssetDao {
                 ":datasetId";
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("datasetId", dataset.getId());
 
-        return jdbcTemplate.query(sql, params, (rs, rowNum) -> {
+        Map<UUID, UUID> rootTableIds = new HashMap<>();
+        Map<UUID, UUID> rootColumnIds = new HashMap<>();
+        List<AssetSpecification> specs = jdbcTemplate.query(sql, params, (rs, rowNum) -> {
             UUID specId = rs.getObject("id", UUID.class);
-            AssetSpecification spec = new AssetSpecification()
+            rootTableIds.put(specId, rs.getObject("root_table_id", UUID.class));
+            rootColumnIds.put(specId, rs.getObject("root_column_id", UUID.class));
+            return new AssetSpecification()
                     .id(specId)
                     .name(rs.getString("name"));
-            spec.assetTables(new ArrayList(
-                    retrieveAssetTablesAndColumns(
+        });
+
+        Map<UUID, List<Map<String, Object>>> assetColumns = retrieveAssetColumns(dataset.getId());
+        Map<UUID, List<AssetRelationship>> assetRelationships =
+            retrieveAssetRelationships(dataset.getId(), allRelationships);
+        for (AssetSpecification spec : specs) {
+            spec.assetTables(new ArrayList<>(
+                    buildAssetTablesAndColumns(
                             spec,
-                            rs.getObject("root_table_id", UUID.class),
-                            rs.getObject("root_column_id", UUID.class),
+                            rootTableIds.get(spec.getId()),
+                            rootColumnIds.get(spec.getId()),
+                            assetColumns.getOrDefault(spec.getId(), Collections.emptyList()),
                             allTables,
                             allColumns)));
-            spec.assetRelationships(retrieveAssetRelationships(spec.getId(), allRelationships));
-
-            return spec;
-        });
+            spec.assetRelationships(assetRelationships.getOrDefault(spec.getId(), new ArrayList<>()));
+        }
+        return specs;
     }
 
-    // also retrieves columns
-    private Collection<AssetTable> retrieveAssetTablesAndColumns(AssetSpecification spec,
-                                                                 UUID rootTableId,
-                                                                 UUID rootColumnId,
-                                                                 Map<UUID, DatasetTable> allTables,
-                                                                 Map<UUID, Column> allColumns) {
-        Map<UUID, AssetTable> tables = new HashMap<>();
-        String sql = "SELECT asset_column.id, asset_column.dataset_column_id, dataset_column.table_id " +
+    // asset column rows of every asset of the dataset, grouped by asset id
+    private Map<UUID, List<Map<String, Object>>> retrieveAssetColumns(UUID datasetId) {
+        String sql = "SELECT asset_column.id, asset_column.asset_id, asset_column.dataset_column_id, " +
+                "dataset_column.table_id " +
                 "FROM asset_column " +
                 "INNER JOIN dataset_column ON asset_column.dataset_column_id = dataset_column.id " +
-                "WHERE asset_id = :assetId";
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("assetId", spec.getId());
-        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, params);
+                "INNER JOIN asset_specification ON asset_column.asset_id = asset_specification.id " +
+                "WHERE asset_specification.dataset_id = :datasetId";
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("datasetId", datasetId);
+        return jdbcTemplate.queryForList(sql, params)
+                .stream()
+                .collect(Collectors.groupingBy(rs -> (UUID) rs.get("asset_id")));
+    }
+
+    private Collection<AssetTable> buildAssetTablesAndColumns(AssetSpecification spec,
+                                                              UUID rootTableId,
+                                                              UUID rootColumnId,
+                                                              List<Map<String, Object>> results,
+                                                              Map<UUID, DatasetTable> allTables,
+                                                              Map<UUID, Column> allColumns) {
+        Map<UUID, AssetTable> tables = new HashMap<>();
         results.forEach(rs -> {
             UUID tableId = (UUID) rs.get("table_id");
             UUID columnId = (UUID) rs.get("dataset_column_id");
@@ -166,23 +186,39 @@ public class AssetDao {
         return tables.values();
     }
 
-
-    private List<AssetRelationship> retrieveAssetRelationships(
-            UUID specId,
+    // asset relationships of every asset of the dataset, grouped by asset id
+    private Map<UUID, List<AssetRelationship>> retrieveAssetRelationships(
+            UUID datasetId,
             Map<UUID, Relationship> allRelationships) {
-        String sql = "SELECT id, relationship_id FROM asset_relationship WHERE asset_id = :assetId";
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("assetId", specId);
-        return jdbcTemplate.query(sql, params, (rs, rowNum) ->
-                new AssetRelationship()
-                        .id(rs.getObject("id", UUID.class))
-                        .datasetRelationship(allRelationships.get(
-                                rs.getObject("relationship_id", UUID.class))));
+        String sql = "SELECT asset_relationship.id, asset_relationship.asset_id, asset_relationship.relationship_id " +
+                "FROM asset_relationship " +
+                "INNER JOIN asset_specification ON asset_relationship.asset_id = asset_specification.id " +
+                "WHERE asset_specification.dataset_id = :datasetId";
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("datasetId", datasetId);
+        Map<UUID, List<AssetRelationship>> assetRelationships = new HashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            AssetRelationship assetRelationship = new AssetRelationship()
+                    .id(rs.getObject("id", UUID.class))
+                    .datasetRelationship(allRelationships.get(rs.getObject("relationship_id", UUID.class)));
+            assetRelationships
+                    .computeIfAbsent(rs.getObject("asset_id", UUID.class), id -> new ArrayList<>())
+                    .add(assetRelationship);
+        });
+        return assetRelationships;
     }
 
     @Transactional
     public boolean delete(UUID id) {
-        int rowsAffected = jdbcTemplate.update("DELETE FROM asset_specification WHERE id = :id ",
-            new MapSqlParameterSource().addValue("id", id));
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", id);
+        bumpMetadataVersion("id = (SELECT dataset_id FROM asset_specification WHERE id = :id)", params);
+        int rowsAffected = jdbcTemplate.update("DELETE FROM asset_specification WHERE id = :id ", params);
         return rowsAffected > 0;
     }
+
+    // Datasets cached by DatasetDao are hydrated again once their metadata version changes, on every pod.
+    // This is done in the transaction that changes the assets, so no one can see the new assets at the old version.
+    private void bumpMetadataVersion(String datasetWhereClause, MapSqlParameterSource params) {
+        jdbcTemplate.update(
+            "UPDATE dataset SET metadata_version = metadata_version + 1 WHERE " + datasetWhereClause, params);
+    }
 }
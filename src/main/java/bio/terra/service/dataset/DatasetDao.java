@@ -1,8 +1,10 @@
 package bio.terra.service.dataset;
 
+import bio.terra.app.configuration.ApplicationConfiguration;
 import bio.terra.app.configuration.DataRepoJdbcConfiguration;
 import bio.terra.common.DaoKeyHolder;
 import bio.terra.common.DaoUtils;
+import bio.terra.common.VersionedCache;
 import bio.terra.common.exception.RetryQueryException;
 import bio.terra.service.configuration.ConfigEnum;
 import bio.terra.service.configuration.ConfigurationService;
@@ -43,6 +45,8 @@ public class DatasetDao {
     private final DatasetTableDao tableDao;
     private final DatasetRelationshipDao relationshipDao;
     private final AssetDao assetDao;
+    // Hydrated datasets, used for their tables, relationships, and assets while their metadata version is current
+    private final VersionedCache<UUID, Dataset> metadataCache;
 
     private static Logger logger = LoggerFactory.getLogger(DatasetDao.class);
 
@@ -53,12 +57,14 @@ public class DatasetDao {
     public DatasetDao(DataRepoJdbcConfiguration jdbcConfiguration,
                     DatasetTableDao tableDao,
                     DatasetRelationshipDao relationshipDao,
-                    AssetDao assetDao) throws SQLException {
+                    AssetDao assetDao,
+                    ApplicationConfiguration appConfig) throws SQLException {
         jdbcTemplate = new NamedParameterJdbcTemplate(jdbcConfiguration.getDataSource());
         connection = jdbcConfiguration.getDataSource().getConnection();
         this.tableDao = tableDao;
         this.relationshipDao = relationshipDao;
         this.assetDao = assetDao;
+        this.metadataCache = new VersionedCache<>("dataset metadata", appConfig.getMetadataCacheSize());
     }
 
     /**
@@ -353,6 +359,7 @@ public class DatasetDao {
     public boolean delete(UUID id) {
         int rowsAffected = jdbcTemplate.update("DELETE FROM dataset WHERE id = :id",
                 new MapSqlParameterSource().addValue("id", id));
+        metadataCache.remove(id);
         return rowsAffected > 0;
     }
 
@@ -394,10 +401,14 @@ public class DatasetDao {
         Dataset dataset = null;
         try {
             if (summary != null) {
-                dataset = new Dataset(summary);
-                dataset.tables(tableDao.retrieveTables(dataset.getId()));
-                relationshipDao.retrieve(dataset);
-                assetDao.retrieve(dataset);
+                // The summary was just read, so its metadata version is current even if another pod changed
+                // the dataset. The cached tables, relationships, and assets are shared; the lists are unmodifiable.
+                Dataset metadata = metadataCache.get(summary.getId(), summary.getMetadataVersion(),
+                    id -> hydrate(summary));
+                dataset = new Dataset(summary)
+                    .tables(metadata.getTables())
+                    .relationships(metadata.getRelationships())
+                    .assetSpecifications(metadata.getAssetSpecifications());
             }
             return dataset;
         } catch (EmptyResultDataAccessException ex) {
@@ -405,6 +416,14 @@ public class DatasetDao {
         }
     }
 
+    private Dataset hydrate(DatasetSummary summary) {
+        Dataset dataset = new Dataset(summary);
+        dataset.tables(tableDao.retrieveTables(dataset.getId()));
+        relationshipDao.retrieve(dataset);
+        assetDao.retrieve(dataset);
+        return dataset;
+    }
+
     /**
      * This is a convenience wrapper that returns a dataset, regardless of whether it is exclusively locked.
      * Most places in the API code that are retrieving a dataset will call this method.
@@ -424,7 +443,7 @@ public class DatasetDao {
     public DatasetSummary retrieveSummaryById(UUID id, boolean onlyRetrieveAvailable) {
         try {
             String sql = "SELECT " +
-                "id, name, description, default_profile_id, additional_profile_ids, created_date " +
+                "id, name, description, default_profile_id, additional_profile_ids, created_date, metadata_version " +
                 "FROM dataset WHERE id = :id";
             if (onlyRetrieveAvailable) { // exclude datasets that are exclusively locked
                 sql += " AND flightid IS NULL";
@@ -439,7 +458,7 @@ public class DatasetDao {
     public DatasetSummary retrieveSummaryByName(String name) {
         try {
             String sql = "SELECT " +
-                "id, name, description, default_profile_id, additional_profile_ids, created_date " +
+                "id, name, description, default_profile_id, additional_profile_ids, created_date, metadata_version " +
                 "FROM dataset WHERE name = :name";
             MapSqlParameterSource params = new MapSqlParameterSource().addValue("name", name);
             return jdbcTemplate.queryForObject(sql, params, new DatasetSummaryMapper());
@@ -485,7 +504,7 @@ public class DatasetDao {
             whereSql = " WHERE " + StringUtils.join(whereClauses, " AND ");
         }
         String sql = "SELECT " +
-            "id, name, description, default_profile_id, additional_profile_ids, created_date " +
+            "id, name, description, default_profile_id, additional_profile_ids, created_date, metadata_version " +
             "FROM dataset " + whereSql +
             DaoUtils.orderByClause(sort, direction) + " OFFSET :offset LIMIT :limit";
         params.addValue("offset", offset).addValue("limit", limit);
@@ -504,7 +523,8 @@ public class DatasetDao {
                     .description(rs.getString("description"))
                     .defaultProfileId(rs.getObject("default_profile_id", UUID.class))
                     .additionalProfileIds(DaoUtils.getUUIDList(rs, "additional_profile_ids"))
-                    .createdDate(rs.getTimestamp("created_date").toInstant());
+                    .createdDate(rs.getTimestamp("created_date").toInstant())
+                    .metadataVersion(rs.getLong("metadata_version"));
         }
     }
 }
@@ -8,7 +8,6 @@ import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -47,20 +46,19 @@ public class DatasetRelationshipDao {
     }
 
     public void retrieve(Dataset dataset) {
-        List<UUID> columnIds = new ArrayList<>();
-        dataset.getTables().forEach(table ->
-                table.getColumns().forEach(column -> columnIds.add(column.getId())));
         dataset.relationships(
-            retrieveDatasetRelationships(columnIds, dataset.getTablesById(), dataset.getAllColumnsById()));
+            retrieveDatasetRelationships(dataset.getId(), dataset.getTablesById(), dataset.getAllColumnsById()));
     }
 
     private List<Relationship> retrieveDatasetRelationships(
-            List<UUID> columnIds,
+            UUID datasetId,
             Map<UUID, DatasetTable> tables,
             Map<UUID, Column> columns) {
+        // Select by the dataset's tables rather than binding every column id of the dataset as a parameter
         String sql = "SELECT id, name, from_table, from_column, to_table, to_column "
-                + "FROM dataset_relationship WHERE from_column IN (:columns) OR to_column IN (:columns)";
-        MapSqlParameterSource params = new MapSqlParameterSource().addValue("columns", columnIds);
+                + "FROM dataset_relationship WHERE from_table IN "
+                + "(SELECT id FROM dataset_table WHERE dataset_id = :dataset_id)";
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("dataset_id", datasetId);
         return jdbcTemplate.query(sql, params, (rs, rowNum) ->
                 new Relationship()
                         .id(rs.getObject("id", UUID.class))
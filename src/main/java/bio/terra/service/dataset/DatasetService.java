@@ -2,6 +2,7 @@ package bio.terra.service.dataset;
 
 import bio.terra.common.MetadataEnumeration;
 import bio.terra.model.AssetModel;
+import bio.terra.model.BulkIngestRequestModel;
 import bio.terra.model.DataDeletionRequest;
 import bio.terra.model.DatasetModel;
 import bio.terra.model.DatasetRequestModel;
@@ -13,6 +14,7 @@ import bio.terra.service.dataset.flight.create.DatasetCreateFlight;
 import bio.terra.service.dataset.flight.datadelete.DatasetDataDeleteFlight;
 import bio.terra.service.dataset.flight.delete.DatasetDeleteFlight;
 import bio.terra.service.dataset.flight.delete.RemoveAssetSpecFlight;
+import bio.terra.service.dataset.flight.ingest.DatasetBulkIngestFlight;
 import bio.terra.service.dataset.flight.ingest.DatasetIngestFlight;
 import bio.terra.service.iam.AuthenticatedUserRequest;
 import bio.terra.service.job.JobMapKeys;
@@ -139,6 +141,26 @@ public class DatasetService {
             .submit();
     }
 
+    public String bulkIngestDataset(String id,
+                                    BulkIngestRequestModel bulkIngestRequestModel,
+                                    AuthenticatedUserRequest userReq) {
+        // Every ingest without its own load tag gets the load tag of the bulk request, or a default one.
+        String loadTag = loadService.computeLoadTag(bulkIngestRequestModel.getLoadTag());
+        bulkIngestRequestModel.setLoadTag(loadTag);
+        for (IngestRequestModel ingestRequestModel : bulkIngestRequestModel.getIngests()) {
+            if (ingestRequestModel.getLoadTag() == null) {
+                ingestRequestModel.setLoadTag(loadTag);
+            }
+        }
+        String description =
+            "Bulk ingest of " + bulkIngestRequestModel.getIngests().size() +
+                " sources to dataset id " + id;
+        return jobService
+            .newJob(description, DatasetBulkIngestFlight.class, bulkIngestRequestModel, userReq)
+            .addParameter(JobMapKeys.DATASET_ID.getKeyName(), id)
+            .submit();
+    }
+
     public String addDatasetAssetSpecifications(
         String datasetId, AssetModel assetModel, AuthenticatedUserRequest userReq
     ) {
@@ -11,6 +11,7 @@ public class DatasetSummary {
     private UUID defaultProfileId;
     private List<UUID> additionalProfileIds;
     private Instant createdDate;
+    private long metadataVersion;
 
     public UUID getId() {
         return id;
@@ -65,4 +66,16 @@ public class DatasetSummary {
         this.createdDate = createdDate;
         return this;
     }
+
+    /**
+     * @return version of the dataset's tables, relationships, and assets; it goes up each time they change
+     */
+    public long getMetadataVersion() {
+        return metadataVersion;
+    }
+
+    public DatasetSummary metadataVersion(long metadataVersion) {
+        this.metadataVersion = metadataVersion;
+        return this;
+    }
 }
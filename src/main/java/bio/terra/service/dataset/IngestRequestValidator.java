@@ -1,5 +1,6 @@
 package bio.terra.service.dataset;
 
+import bio.terra.model.BulkIngestRequestModel;
 import bio.terra.model.FileLoadModel;
 import bio.terra.model.IngestRequestModel;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
@@ -32,6 +33,19 @@ public class IngestRequestValidator implements Validator {
         if (target instanceof IngestRequestModel) {
             IngestRequestModel ingestRequest = (IngestRequestModel) target;
             validateTableName(ingestRequest.getTable(), errors);
+        } else if (target instanceof BulkIngestRequestModel) {
+            BulkIngestRequestModel bulkIngestRequest = (BulkIngestRequestModel) target;
+            if (bulkIngestRequest.getIngests() == null || bulkIngestRequest.getIngests().isEmpty()) {
+                errors.rejectValue("ingests", "IngestsMissing", "Bulk ingest requires at least one ingest");
+            } else {
+                for (IngestRequestModel ingestRequest : bulkIngestRequest.getIngests()) {
+                    if (ingestRequest.getTable() == null) {
+                        errors.rejectValue("ingests", "TableNameMissing",
+                            "Every ingest of a bulk ingest requires a table name");
+                        break;
+                    }
+                }
+            }
         } else if (target instanceof FileLoadModel) {
             FileLoadModel fileLoadModel = (FileLoadModel) target;
             if (fileLoadModel.getProfileId() == null) {
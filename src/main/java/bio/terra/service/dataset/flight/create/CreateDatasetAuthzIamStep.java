@@ -4,8 +4,8 @@ import bio.terra.common.exception.NotFoundException;
 import bio.terra.common.exception.UnauthorizedException;
 import bio.terra.service.dataset.flight.DatasetWorkingMapKeys;
 import bio.terra.service.iam.AuthenticatedUserRequest;
-import bio.terra.service.iam.IamProviderInterface;
 import bio.terra.service.iam.IamRole;
+import bio.terra.service.iam.IamService;
 import bio.terra.stairway.FlightContext;
 import bio.terra.stairway.FlightMap;
 import bio.terra.stairway.Step;
@@ -19,11 +19,12 @@ import java.util.UUID;
 public class CreateDatasetAuthzIamStep implements Step {
     private static Logger logger = LoggerFactory.getLogger(CreateDatasetAuthzIamStep.class);
 
-    private final IamProviderInterface iamClient;
+    private final IamService iamClient;
     private final AuthenticatedUserRequest userReq;
 
+    // Goes through the IamService, rather than the provider, so cached decisions for the dataset are dropped
     public CreateDatasetAuthzIamStep(
-        IamProviderInterface iamClient,
+        IamService iamClient,
         AuthenticatedUserRequest userReq) {
         this.iamClient = iamClient;
         this.userReq = userReq;
@@ -10,6 +10,7 @@ import bio.terra.service.iam.AuthenticatedUserRequest;
 import bio.terra.service.iam.IamAction;
 import bio.terra.service.iam.IamProviderInterface;
 import bio.terra.service.iam.IamResourceType;
+import bio.terra.service.iam.IamService;
 import bio.terra.service.iam.flight.VerifyAuthorizationStep;
 import bio.terra.service.job.JobMapKeys;
 import bio.terra.service.resourcemanagement.DataLocationService;
@@ -32,6 +33,7 @@ public class DatasetCreateFlight extends Flight {
         DataLocationService dataLocationService = (DataLocationService) appContext.getBean("dataLocationService");
         BigQueryPdao bigQueryPdao = (BigQueryPdao) appContext.getBean("bigQueryPdao");
         IamProviderInterface iamClient = (IamProviderInterface) appContext.getBean("iamProvider");
+        IamService iamService = (IamService) appContext.getBean("iamService");
         ApplicationConfiguration appConfig = (ApplicationConfiguration) appContext.getBean("applicationConfiguration");
         GoogleResourceService resourceService = (GoogleResourceService) appContext.getBean("googleResourceService");
         ConfigurationService configService = (ConfigurationService) appContext.getBean("configurationService");
@@ -53,7 +55,7 @@ public class DatasetCreateFlight extends Flight {
         // The underlying service provides retries so we do not need to retry for IAM step
         AuthenticatedUserRequest userReq = inputParameters.get(
             JobMapKeys.AUTH_USER_INFO.getKeyName(), AuthenticatedUserRequest.class);
-        addStep(new CreateDatasetAuthzIamStep(iamClient, userReq));
+        addStep(new CreateDatasetAuthzIamStep(iamService, userReq));
 
         // Google says that ACL change propagation happens in a few seconds, but can take 5-7 minutes. The max
         // operation timeout is generous.
@@ -0,0 +1,120 @@
+package bio.terra.service.dataset.flight.datadelete;
+
+import bio.terra.common.exception.PdaoException;
+import bio.terra.common.exception.RetryQueryException;
+import bio.terra.model.DataDeletionRequest;
+import bio.terra.model.DataDeletionTableModel;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetDao;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.dataset.DatasetTable;
+import bio.terra.service.dataset.exception.DatasetLockException;
+import bio.terra.service.job.JobMapKeys;
+import bio.terra.service.snapshot.SnapshotDao;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static bio.terra.service.dataset.flight.datadelete.DataDeletionUtils.getDataset;
+import static bio.terra.service.dataset.flight.datadelete.DataDeletionUtils.getRequest;
+
+/**
+ * Every read of a dataset table goes through its live view, which joins the raw table against the soft delete
+ * table. As deletes pile up, the view reads more and more rows only to throw them away. After the deletes of
+ * the request are applied, this step compacts each table whose deleted fraction reached the threshold.
+ *
+ * Snapshot views read the raw tables directly, so datasets used by a snapshot are never compacted. A snapshot
+ * whose row ids were chosen before another flight's soft delete would lose those rows, so the step runs after
+ * the shared lock of the flight is released and compacts only while it holds the exclusive dataset lock. It
+ * looks for snapshots after taking the lock: a snapshot created later chooses its row ids from the live views,
+ * which already hide every row the compaction removes.
+ *
+ * Compaction is an optimization: if the lock is not free or the compaction fails, the deletes have still been
+ * applied and the step succeeds.
+ */
+public class CompactSoftDeletesStep implements Step {
+
+    private static Logger logger = LoggerFactory.getLogger(CompactSoftDeletesStep.class);
+
+    private final BigQueryPdao bigQueryPdao;
+    private final DatasetDao datasetDao;
+    private final DatasetService datasetService;
+    private final SnapshotDao snapshotDao;
+    private final double compactionThreshold;
+
+    public CompactSoftDeletesStep(BigQueryPdao bigQueryPdao,
+                                  DatasetDao datasetDao,
+                                  DatasetService datasetService,
+                                  SnapshotDao snapshotDao,
+                                  double compactionThreshold) {
+        this.bigQueryPdao = bigQueryPdao;
+        this.datasetDao = datasetDao;
+        this.datasetService = datasetService;
+        this.snapshotDao = snapshotDao;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) throws InterruptedException {
+        Dataset dataset = getDataset(context, datasetService);
+        DataDeletionRequest dataDeletionRequest = getRequest(context);
+
+        List<DatasetTable> tablesToCompact = new ArrayList<>();
+        for (DataDeletionTableModel tableModel : dataDeletionRequest.getTables()) {
+            DatasetTable table = dataset.getTableByName(tableModel.getTableName())
+                .orElseThrow(() -> new IllegalStateException("Expected table " + tableModel.getTableName()));
+            try {
+                if (bigQueryPdao.getDeletedFraction(dataset, table) >= compactionThreshold) {
+                    tablesToCompact.add(table);
+                }
+            } catch (PdaoException ex) {
+                logger.warn("Failed to get the deleted fraction of table " + table.getName() +
+                    " in dataset " + dataset.getId(), ex);
+            }
+        }
+        if (tablesToCompact.isEmpty()) {
+            return StepResult.getStepResultSuccess();
+        }
+
+        String flightId = context.getFlightId();
+        try {
+            datasetDao.lockExclusive(dataset.getId(), flightId);
+        } catch (DatasetLockException | RetryQueryException ex) {
+            logger.info("Not compacting dataset {}: other flights hold its lock", dataset.getId());
+            return StepResult.getStepResultSuccess();
+        }
+        try {
+            if (!snapshotDao.retrieveSnapshotsForDataset(dataset.getId()).isEmpty()) {
+                logger.info("Not compacting dataset {}: the dataset is used by snapshots", dataset.getId());
+                return StepResult.getStepResultSuccess();
+            }
+            for (DatasetTable table : tablesToCompact) {
+                try {
+                    bigQueryPdao.compactSoftDeletes(dataset, table);
+                } catch (PdaoException ex) {
+                    logger.warn("Failed to compact soft deletes of table " + table.getName() +
+                        " in dataset " + dataset.getId(), ex);
+                }
+            }
+        } finally {
+            datasetDao.unlockExclusive(dataset.getId(), flightId);
+        }
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        // Compaction does not change the contents of the live views, so there is nothing to undo. Release the
+        // exclusive lock in case the step stopped while holding it; the unlock is a no-op otherwise.
+        String datasetId = context.getInputParameters().get(JobMapKeys.DATASET_ID.getKeyName(), String.class);
+        datasetDao.unlockExclusive(UUID.fromString(datasetId), context.getFlightId());
+        return StepResult.getStepResultSuccess();
+    }
+}
@@ -11,6 +11,7 @@ import bio.terra.service.iam.IamProviderInterface;
 import bio.terra.service.iam.IamResourceType;
 import bio.terra.service.iam.flight.VerifyAuthorizationStep;
 import bio.terra.service.job.JobMapKeys;
+import bio.terra.service.snapshot.SnapshotDao;
 import bio.terra.service.tabulardata.google.BigQueryPdao;
 import bio.terra.stairway.Flight;
 import bio.terra.stairway.FlightMap;
@@ -28,6 +29,7 @@ public class DatasetDataDeleteFlight extends Flight {
         ApplicationContext appContext = (ApplicationContext) applicationContext;
         DatasetDao datasetDao = (DatasetDao) appContext.getBean("datasetDao");
         DatasetService datasetService = (DatasetService) appContext.getBean("datasetService");
+        SnapshotDao snapshotDao = (SnapshotDao) appContext.getBean("snapshotDao");
         BigQueryPdao bigQueryPdao = (BigQueryPdao) appContext.getBean("bigQueryPdao");
         IamProviderInterface iamClient = (IamProviderInterface) appContext.getBean("iamProvider");
         ConfigurationService configService = (ConfigurationService) appContext.getBean("configurationService");
@@ -60,6 +62,10 @@ public class DatasetDataDeleteFlight extends Flight {
         addStep(new UnlockDatasetStep(datasetDao, UUID.fromString(datasetId), true),
             lockDatasetRetry);
 
+        // compact the tables with many soft deleted rows; the step takes the exclusive lock itself
+        addStep(new CompactSoftDeletesStep(bigQueryPdao, datasetDao, datasetService, snapshotDao,
+            appConfig.getSoftDeleteCompactionThreshold()));
+
         // cleanup
         addStep(new DropExternalTablesStep(bigQueryPdao, datasetService));
     }
@@ -0,0 +1,50 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BulkIngestCleanupStep implements Step {
+    private Logger logger = LoggerFactory.getLogger("bio.terra.service.dataset.flight.ingest");
+
+    private final DatasetService datasetService;
+    private final BigQueryPdao bigQueryPdao;
+
+    public BulkIngestCleanupStep(DatasetService datasetService, BigQueryPdao bigQueryPdao) {
+        this.datasetService = datasetService;
+        this.bigQueryPdao = bigQueryPdao;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) {
+        // We do not want to fail the ingest because we fail to cleanup a staging table.
+        // We log the failure and move on.
+        Dataset dataset;
+        try {
+            dataset = IngestUtils.getDataset(context, datasetService);
+        } catch (RuntimeException ex) {
+            logger.error("Failure getting dataset to delete bulk ingest staging tables", ex);
+            return StepResult.getStepResultSuccess();
+        }
+
+        for (String stagingTableName : IngestUtils.getBulkStagingTableNames(context)) {
+            try {
+                bigQueryPdao.deleteDatasetTable(dataset, stagingTableName);
+            } catch (Exception ex) {
+                logger.error("Failure deleting ingest staging table: " + stagingTableName, ex);
+            }
+        }
+
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        return StepResult.getStepResultSuccess();
+    }
+}
@@ -0,0 +1,133 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.common.PdaoLoadStatistics;
+import bio.terra.common.exception.DataRepoException;
+import bio.terra.common.exception.PdaoException;
+import bio.terra.model.BulkIngestFailureModel;
+import bio.terra.model.BulkIngestRequestModel;
+import bio.terra.model.BulkIngestResponseModel;
+import bio.terra.model.ErrorModel;
+import bio.terra.model.IngestRequestModel;
+import bio.terra.model.IngestResponseModel;
+import bio.terra.service.configuration.ConfigEnum;
+import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.job.JobMapKeys;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Insert the staging tables of all of the ingests into their target tables. The inserts run concurrently and each
+ * one is atomic, but the set of them is not, and a committed insert cannot be taken back: the inserted rows get new
+ * row ids, so they cannot be told apart from rows that were already in the table.
+ *
+ * So the step keeps track of which inserts committed. An insert that committed is not run again when the step is
+ * run again. If no insert committed, the step fails and the flight is undone as before, so the request can simply
+ * be retried. If some inserts committed, the step succeeds and the response lists the ingests that failed; failing
+ * the flight would tell the caller to retry the whole request, which would insert the committed rows twice.
+ */
+public class BulkIngestInsertIntoDatasetTablesStep implements Step {
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestInsertIntoDatasetTablesStep.class);
+
+    private final DatasetService datasetService;
+    private final BigQueryPdao bigQueryPdao;
+    private final ConfigurationService configService;
+
+    public BulkIngestInsertIntoDatasetTablesStep(DatasetService datasetService,
+                                                 BigQueryPdao bigQueryPdao,
+                                                 ConfigurationService configService) {
+        this.datasetService = datasetService;
+        this.bigQueryPdao = bigQueryPdao;
+        this.configService = configService;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) throws InterruptedException {
+        Dataset dataset = IngestUtils.getDataset(context, datasetService);
+        BulkIngestRequestModel bulkIngestRequest = IngestUtils.getBulkIngestRequestModel(context);
+        List<IngestRequestModel> ingestRequests = bulkIngestRequest.getIngests();
+        List<String> stagingTableNames = IngestUtils.getBulkStagingTableNames(context);
+
+        // If the flight was restarted in the middle of this step, the completed inserts were not recorded. The
+        // insert jobs have ids derived from their staging tables, so BigQuery refuses to run them again and the
+        // executor waits for the jobs that were already submitted.
+        SortedSet<Integer> completedInserts = IngestUtils.getBulkCompletedInserts(context);
+        List<Integer> pendingInserts = new ArrayList<>();
+        for (int i = 0; i < ingestRequests.size(); i++) {
+            if (!completedInserts.contains(i)) {
+                pendingInserts.add(i);
+            }
+        }
+
+        Map<Integer, RuntimeException> failures = new HashMap<>();
+        if (!pendingInserts.isEmpty() && configService.testInsertFault(ConfigEnum.TABLE_BULK_INGEST_INSERT_FAULT)) {
+            logger.info("TABLE_BULK_INGEST_INSERT_FAULT");
+            Integer faultedInsert = pendingInserts.remove(0);
+            failures.put(faultedInsert, new PdaoException("Bulk ingest insert failed by fault insertion"));
+        }
+        failures.putAll(bigQueryPdao.insertIntoDatasetTables(dataset, ingestRequests, stagingTableNames,
+            pendingInserts));
+        for (Integer index : pendingInserts) {
+            if (!failures.containsKey(index)) {
+                completedInserts.add(index);
+            }
+        }
+        IngestUtils.putBulkCompletedInserts(context, completedInserts);
+
+        if (completedInserts.isEmpty()) {
+            // Nothing was committed, so the whole flight can fail and be undone
+            Integer firstFailure = failures.keySet().stream().min(Integer::compare)
+                .orElseThrow(IllegalStateException::new);
+            throw failures.get(firstFailure);
+        }
+
+        List<PdaoLoadStatistics> ingestStatistics = IngestUtils.getBulkIngestStatistics(context);
+        BulkIngestResponseModel bulkIngestResponse = new BulkIngestResponseModel()
+            .dataset(dataset.getName())
+            .datasetId(dataset.getId().toString())
+            .ingests(new ArrayList<>());
+        for (int i = 0; i < ingestRequests.size(); i++) {
+            IngestRequestModel ingestRequest = ingestRequests.get(i);
+            if (completedInserts.contains(i)) {
+                PdaoLoadStatistics loadStatistics = ingestStatistics.get(i);
+                bulkIngestResponse.addIngestsItem(new IngestResponseModel()
+                    .dataset(dataset.getName())
+                    .datasetId(dataset.getId().toString())
+                    .table(ingestRequest.getTable())
+                    .path(ingestRequest.getPath())
+                    .loadTag(ingestRequest.getLoadTag())
+                    .badRowCount(loadStatistics.getBadRecords())
+                    .rowCount(loadStatistics.getRowCount()));
+            } else {
+                RuntimeException failure = failures.get(i);
+                List<String> errorDetail = (failure instanceof DataRepoException) ?
+                    ((DataRepoException) failure).getErrorDetails() : null;
+                bulkIngestResponse.addFailedIngestsItem(new BulkIngestFailureModel()
+                    .table(ingestRequest.getTable())
+                    .path(ingestRequest.getPath())
+                    .loadTag(ingestRequest.getLoadTag())
+                    .error(new ErrorModel().message(failure.getMessage()).errorDetail(errorDetail)));
+            }
+        }
+        context.getWorkingMap().put(JobMapKeys.RESPONSE.getKeyName(), bulkIngestResponse);
+
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        // The step only fails when no insert was committed, so there is nothing to undo
+        return StepResult.getStepResultSuccess();
+    }
+}
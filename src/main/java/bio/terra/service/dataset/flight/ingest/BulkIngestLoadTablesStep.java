@@ -0,0 +1,47 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.common.PdaoLoadStatistics;
+import bio.terra.model.BulkIngestRequestModel;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+
+import java.util.List;
+
+public class BulkIngestLoadTablesStep implements Step {
+    private final DatasetService datasetService;
+    private final BigQueryPdao bigQueryPdao;
+
+    public BulkIngestLoadTablesStep(DatasetService datasetService, BigQueryPdao bigQueryPdao) {
+        this.datasetService = datasetService;
+        this.bigQueryPdao = bigQueryPdao;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) throws InterruptedException {
+        Dataset dataset = IngestUtils.getDataset(context, datasetService);
+        BulkIngestRequestModel bulkIngestRequest = IngestUtils.getBulkIngestRequestModel(context);
+        List<String> stagingTableNames = IngestUtils.getBulkStagingTableNames(context);
+
+        // The load jobs write their own staging tables, so they all run at once
+        List<PdaoLoadStatistics> ingestStatistics = bigQueryPdao.loadToStagingTables(
+            dataset,
+            bulkIngestRequest.getIngests(),
+            stagingTableNames);
+        IngestUtils.putBulkIngestStatistics(context, ingestStatistics);
+
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) throws InterruptedException {
+        Dataset dataset = IngestUtils.getDataset(context, datasetService);
+        for (String stagingTableName : IngestUtils.getBulkStagingTableNames(context)) {
+            bigQueryPdao.deleteDatasetTable(dataset, stagingTableName);
+        }
+        return StepResult.getStepResultSuccess();
+    }
+}
@@ -0,0 +1,69 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.model.BulkIngestRequestModel;
+import bio.terra.model.IngestRequestModel;
+import bio.terra.service.configuration.ConfigEnum;
+import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.dataset.DatasetTable;
+import bio.terra.service.dataset.DatasetUtils;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk ingest version of the IngestSetupStep. It checks every ingest source URI and target table before
+ * anything is created in BigQuery, and generates a staging table name for each ingest. The names are
+ * written to the working map at the step boundary so a restarted flight finds the same staging tables.
+ */
+public class BulkIngestSetupStep implements Step {
+    private static final Logger logger = LoggerFactory.getLogger(BulkIngestSetupStep.class);
+
+    private final DatasetService datasetService;
+    private final ConfigurationService configService;
+
+    public BulkIngestSetupStep(DatasetService datasetService, ConfigurationService configService) {
+        this.datasetService = datasetService;
+        this.configService = configService;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) throws InterruptedException {
+        if (configService.testInsertFault(ConfigEnum.TABLE_INGEST_LOCK_CONFLICT_STOP_FAULT)) {
+            logger.info("TABLE_INGEST_LOCK_CONFLICT_STOP_FAULT");
+            while (!configService.testInsertFault(ConfigEnum.TABLE_INGEST_LOCK_CONFLICT_CONTINUE_FAULT)) {
+                logger.info("Sleeping for CONTINUE FAULT");
+                TimeUnit.SECONDS.sleep(5);
+            }
+            logger.info("TABLE_INGEST_LOCK_CONFLICT_CONTINUE_FAULT");
+        }
+
+        BulkIngestRequestModel bulkIngestRequest = IngestUtils.getBulkIngestRequestModel(context);
+        Dataset dataset = IngestUtils.getDataset(context, datasetService);
+        IngestUtils.putDatasetName(context, dataset.getName());
+
+        List<String> stagingTableNames = new ArrayList<>();
+        for (IngestRequestModel ingestRequest : bulkIngestRequest.getIngests()) {
+            // As in the single ingest, BQ takes the raw "gs://" string; we only check that it parses.
+            IngestUtils.parseBlobUri(ingestRequest.getPath());
+            DatasetTable targetTable = IngestUtils.getDatasetTable(ingestRequest, dataset);
+            stagingTableNames.add(DatasetUtils.generateAuxTableName(targetTable, "st"));
+        }
+        IngestUtils.putBulkStagingTableNames(context, stagingTableNames);
+
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        // Nothing to undo
+        return StepResult.getStepResultSuccess();
+    }
+}
@@ -0,0 +1,57 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.model.BulkIngestRequestModel;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+
+import java.util.List;
+
+public class BulkIngestValidateRefsStep implements Step {
+    private final DatasetService datasetService;
+    private final BigQueryPdao bigQueryPdao;
+    private final FireStoreDao fileDao;
+    private final int refIdPageSize;
+    private final int validateThreads;
+
+    public BulkIngestValidateRefsStep(DatasetService datasetService,
+                                      BigQueryPdao bigQueryPdao,
+                                      FireStoreDao fileDao,
+                                      int refIdPageSize,
+                                      int validateThreads) {
+        this.datasetService = datasetService;
+        this.bigQueryPdao = bigQueryPdao;
+        this.fileDao = fileDao;
+        this.refIdPageSize = refIdPageSize;
+        this.validateThreads = validateThreads;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) throws InterruptedException {
+        Dataset dataset = IngestUtils.getDataset(context, datasetService);
+        BulkIngestRequestModel bulkIngestRequest = IngestUtils.getBulkIngestRequestModel(context);
+        List<String> stagingTableNames = IngestUtils.getBulkStagingTableNames(context);
+
+        // Check the staging tables until the first few invalid ids are found and return them in one error
+        IngestRefIdValidator validator =
+            new IngestRefIdValidator(bigQueryPdao, fileDao, refIdPageSize, validateThreads);
+        for (int i = 0; i < stagingTableNames.size(); i++) {
+            validator.validate(
+                dataset,
+                IngestUtils.getDatasetTable(bulkIngestRequest.getIngests().get(i), dataset),
+                stagingTableNames.get(i));
+        }
+        validator.check();
+
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        return StepResult.getStepResultSuccess();
+    }
+}
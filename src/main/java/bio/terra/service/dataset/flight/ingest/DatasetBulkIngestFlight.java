@@ -0,0 +1,55 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.app.configuration.ApplicationConfiguration;
+import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.dataset.DatasetDao;
+import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.dataset.flight.LockDatasetStep;
+import bio.terra.service.dataset.flight.UnlockDatasetStep;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
+import bio.terra.service.job.JobMapKeys;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.stairway.Flight;
+import bio.terra.stairway.FlightMap;
+import bio.terra.stairway.RetryRuleRandomBackoff;
+import org.springframework.context.ApplicationContext;
+
+import java.util.UUID;
+
+/**
+ * Ingest many sources into the tables of a dataset in one flight. It runs the same stages as the
+ * DatasetIngestFlight, but each stage works on all of the ingests at once: the staging tables are
+ * loaded by concurrent load jobs and the inserts run as concurrent query jobs. Like a single ingest,
+ * it holds a shared lock on the dataset, so it can run alongside other ingests.
+ */
+public class DatasetBulkIngestFlight extends Flight {
+
+    public DatasetBulkIngestFlight(FlightMap inputParameters, Object applicationContext) {
+        super(inputParameters, applicationContext);
+
+        // get the required daos to pass into the steps
+        ApplicationContext appContext = (ApplicationContext) applicationContext;
+        DatasetDao datasetDao = (DatasetDao) appContext.getBean("datasetDao");
+        DatasetService datasetService = (DatasetService) appContext.getBean("datasetService");
+        BigQueryPdao bigQueryPdao = (BigQueryPdao)appContext.getBean("bigQueryPdao");
+        FireStoreDao fileDao  = (FireStoreDao)appContext.getBean("fireStoreDao");
+        ApplicationConfiguration appConfig =
+            (ApplicationConfiguration)appContext.getBean("applicationConfiguration");
+        ConfigurationService configService = (ConfigurationService)appContext.getBean("configurationService");
+
+        // get data from inputs that steps need
+        UUID datasetId = UUID.fromString(inputParameters.get(JobMapKeys.DATASET_ID.getKeyName(), String.class));
+
+        RetryRuleRandomBackoff lockDatasetRetry =
+            new RetryRuleRandomBackoff(500, appConfig.getMaxStairwayThreads(), 5);
+
+        addStep(new LockDatasetStep(datasetDao, datasetId, true), lockDatasetRetry);
+        addStep(new BulkIngestSetupStep(datasetService, configService));
+        addStep(new BulkIngestLoadTablesStep(datasetService, bigQueryPdao));
+        addStep(new BulkIngestValidateRefsStep(datasetService, bigQueryPdao, fileDao,
+            appConfig.getIngestRefIdPageSize(), appConfig.getIngestRefIdValidateThreads()));
+        addStep(new BulkIngestInsertIntoDatasetTablesStep(datasetService, bigQueryPdao, configService));
+        addStep(new BulkIngestCleanupStep(datasetService, bigQueryPdao));
+        addStep(new UnlockDatasetStep(datasetDao, datasetId, true), lockDatasetRetry);
+    }
+}
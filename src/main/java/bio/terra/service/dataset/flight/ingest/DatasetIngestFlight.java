@@ -40,8 +40,8 @@ public class DatasetIngestFlight extends Flight {
         addStep(new LockDatasetStep(datasetDao, datasetId, true), lockDatasetRetry);
         addStep(new IngestSetupStep(datasetService, configService));
         addStep(new IngestLoadTableStep(datasetService, bigQueryPdao));
-        addStep(new IngestRowIdsStep(datasetService, bigQueryPdao));
-        addStep(new IngestValidateRefsStep(datasetService, bigQueryPdao, fileDao));
+        addStep(new IngestValidateRefsStep(datasetService, bigQueryPdao, fileDao,
+            appConfig.getIngestRefIdPageSize(), appConfig.getIngestRefIdValidateThreads()));
         addStep(new IngestInsertIntoDatasetTableStep(datasetService, bigQueryPdao));
         addStep(new IngestCleanupStep(datasetService, bigQueryPdao));
         addStep(new UnlockDatasetStep(datasetDao, datasetId, true), lockDatasetRetry);
@@ -6,5 +6,8 @@ public final class IngestMapKeys {
     }
     public static final String INGEST_STATISTICS = "ingestStatistics";
     public static final String STAGING_TABLE_NAME = "stagingTableName";
+    public static final String BULK_INGEST_STATISTICS = "bulkIngestStatistics";
+    public static final String BULK_STAGING_TABLE_NAMES = "bulkStagingTableNames";
+    public static final String BULK_COMPLETED_INSERTS = "bulkCompletedInserts";
 
 }
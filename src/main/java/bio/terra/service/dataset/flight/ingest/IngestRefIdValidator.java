@@ -0,0 +1,146 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.common.Column;
+import bio.terra.common.Table;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.exception.InvalidFileRefException;
+import bio.terra.service.filedata.exception.FileSystemExecutionException;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.TableResult;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates the FILEREF columns of ingest staging tables against the file system of the dataset.
+ *
+ * The distinct file ids of each column are read from BigQuery a page at a time. While the next page is read,
+ * up to validateThreads pages are validated against firestore in parallel, so at most that many pages are
+ * held in memory. Validation stops once MAX_ERROR_REF_IDS invalid ids are found; that is all the error reports.
+ *
+ * A validator collects the invalid ids of all the tables it is given. Use a new one for each step run.
+ */
+class IngestRefIdValidator {
+    private static final Logger logger = LoggerFactory.getLogger(IngestRefIdValidator.class);
+
+    static final int MAX_ERROR_REF_IDS = 20;
+
+    private final BigQueryPdao bigQueryPdao;
+    private final FireStoreDao fileDao;
+    private final int pageSize;
+    private final int validateThreads;
+    private final List<String> invalidRefIds = new ArrayList<>();
+    private boolean stoppedEarly;
+
+    IngestRefIdValidator(BigQueryPdao bigQueryPdao, FireStoreDao fileDao, int pageSize, int validateThreads) {
+        this.bigQueryPdao = bigQueryPdao;
+        this.fileDao = fileDao;
+        this.pageSize = pageSize;
+        this.validateThreads = Math.max(validateThreads, 1);
+    }
+
+    /**
+     * Validate the file ids in every FILEREF column of a staging table
+     */
+    void validate(Dataset dataset, Table table, String stagingTableName) throws InterruptedException {
+        for (Column column : table.getColumns()) {
+            if (StringUtils.equalsIgnoreCase(column.getType(), "FILEREF")) {
+                if (isFull()) {
+                    stoppedEarly = true;
+                    return;
+                }
+                validateColumn(dataset, stagingTableName, column);
+            }
+        }
+    }
+
+    /**
+     * @throws InvalidFileRefException if any invalid file ids were found
+     */
+    void check() {
+        if (invalidRefIds.isEmpty()) {
+            return;
+        }
+        StringBuilder errorMessage = new StringBuilder("Invalid file ids found during ingest (")
+            .append(invalidRefIds.size())
+            .append(" returned in details");
+        if (stoppedEarly) {
+            errorMessage.append("; validation stopped after the first ").append(MAX_ERROR_REF_IDS);
+        }
+        errorMessage.append(")");
+        throw new InvalidFileRefException(errorMessage.toString(), new ArrayList<>(invalidRefIds));
+    }
+
+    private void validateColumn(Dataset dataset, String stagingTableName, Column column)
+        throws InterruptedException {
+
+        ExecutorService pool = Executors.newFixedThreadPool(validateThreads);
+        Deque<Future<List<String>>> pending = new ArrayDeque<>();
+        long refIdCount = 0;
+        try {
+            TableResult page = bigQueryPdao.getRefIds(dataset, stagingTableName, column, pageSize);
+            while (page != null && !isFull()) {
+                List<String> refIds = new ArrayList<>();
+                for (FieldValueList row : page.getValues()) {
+                    refIds.add(row.get(0).getStringValue());
+                }
+                refIdCount += refIds.size();
+
+                // Bound the pages in flight: wait for the oldest before starting another
+                if (pending.size() >= validateThreads) {
+                    collect(pending.removeFirst());
+                }
+                if (!refIds.isEmpty()) {
+                    pending.addLast(pool.submit(() -> fileDao.validateRefIds(dataset, refIds)));
+                }
+                page = page.hasNextPage() ? page.getNextPage() : null;
+            }
+            while (!pending.isEmpty() && !isFull()) {
+                collect(pending.removeFirst());
+            }
+            if (isFull() && (page != null || !pending.isEmpty())) {
+                stoppedEarly = true;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        logger.info("Validated {} file ids of column {} in staging table {}: {} invalid so far{}",
+            refIdCount, column.getName(), stagingTableName, invalidRefIds.size(),
+            stoppedEarly ? " (stopped early)" : "");
+    }
+
+    private void collect(Future<List<String>> future) throws InterruptedException {
+        List<String> missingIds;
+        try {
+            missingIds = future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new FileSystemExecutionException("Failed to validate file ids", cause);
+        }
+        for (String missingId : missingIds) {
+            if (isFull()) {
+                stoppedEarly = true;
+                break;
+            }
+            invalidRefIds.add(missingId);
+        }
+    }
+
+    private boolean isFull() {
+        return invalidRefIds.size() >= MAX_ERROR_REF_IDS;
+    }
+}
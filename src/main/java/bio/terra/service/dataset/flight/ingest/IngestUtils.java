@@ -5,6 +5,7 @@ import bio.terra.service.dataset.exception.InvalidUriException;
 import bio.terra.service.dataset.exception.TableNotFoundException;
 import bio.terra.service.dataset.Dataset;
 import bio.terra.service.dataset.DatasetTable;
+import bio.terra.model.BulkIngestRequestModel;
 import bio.terra.model.IngestRequestModel;
 import bio.terra.common.PdaoLoadStatistics;
 import bio.terra.service.job.JobMapKeys;
@@ -13,6 +14,10 @@ import bio.terra.stairway.FlightContext;
 import bio.terra.stairway.FlightMap;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -66,8 +71,16 @@ public final class IngestUtils {
         return inputParameters.get(JobMapKeys.REQUEST.getKeyName(), IngestRequestModel.class);
     }
 
+    public static BulkIngestRequestModel getBulkIngestRequestModel(FlightContext context) {
+        FlightMap inputParameters = context.getInputParameters();
+        return inputParameters.get(JobMapKeys.REQUEST.getKeyName(), BulkIngestRequestModel.class);
+    }
+
     public static DatasetTable getDatasetTable(FlightContext context, Dataset dataset) {
-        IngestRequestModel ingestRequest = getIngestRequestModel(context);
+        return getDatasetTable(getIngestRequestModel(context), dataset);
+    }
+
+    public static DatasetTable getDatasetTable(IngestRequestModel ingestRequest, Dataset dataset) {
         Optional<DatasetTable> optTable = dataset.getTableByName(ingestRequest.getTable());
         if (!optTable.isPresent()) {
             throw new TableNotFoundException("Table not found: " + ingestRequest.getTable());
@@ -114,6 +127,18 @@ public final class IngestUtils {
         return workingMap.get(IngestMapKeys.STAGING_TABLE_NAME, String.class);
     }
 
+    // The bulk ingest lists are stored as arrays so they come back out of the working map with their types
+
+    public static void putBulkStagingTableNames(FlightContext context, List<String> names) {
+        FlightMap workingMap = context.getWorkingMap();
+        workingMap.put(IngestMapKeys.BULK_STAGING_TABLE_NAMES, names.toArray(new String[0]));
+    }
+
+    public static List<String> getBulkStagingTableNames(FlightContext context) {
+        FlightMap workingMap = context.getWorkingMap();
+        return Arrays.asList(workingMap.get(IngestMapKeys.BULK_STAGING_TABLE_NAMES, String[].class));
+    }
+
     public static void putDatasetName(FlightContext context, String name) {
         FlightMap workingMap = context.getWorkingMap();
         workingMap.put(DatasetWorkingMapKeys.DATASET_NAME, name);
@@ -134,4 +159,27 @@ public final class IngestUtils {
         return workingMap.get(IngestMapKeys.INGEST_STATISTICS, PdaoLoadStatistics.class);
     }
 
+    public static void putBulkIngestStatistics(FlightContext context, List<PdaoLoadStatistics> statistics) {
+        FlightMap workingMap = context.getWorkingMap();
+        workingMap.put(IngestMapKeys.BULK_INGEST_STATISTICS, statistics.toArray(new PdaoLoadStatistics[0]));
+    }
+
+    public static List<PdaoLoadStatistics> getBulkIngestStatistics(FlightContext context) {
+        FlightMap workingMap = context.getWorkingMap();
+        return Arrays.asList(workingMap.get(IngestMapKeys.BULK_INGEST_STATISTICS, PdaoLoadStatistics[].class));
+    }
+
+    // Indexes of the bulk ingests whose inserts are committed. Empty until the insert step has run.
+
+    public static void putBulkCompletedInserts(FlightContext context, SortedSet<Integer> indexes) {
+        FlightMap workingMap = context.getWorkingMap();
+        workingMap.put(IngestMapKeys.BULK_COMPLETED_INSERTS, indexes.toArray(new Integer[0]));
+    }
+
+    public static SortedSet<Integer> getBulkCompletedInserts(FlightContext context) {
+        FlightMap workingMap = context.getWorkingMap();
+        Integer[] indexes = workingMap.get(IngestMapKeys.BULK_COMPLETED_INSERTS, Integer[].class);
+        return (indexes == null) ? new TreeSet<>() : new TreeSet<>(Arrays.asList(indexes));
+    }
+
 }
@@ -0,0 +1,111 @@
+package bio.terra.service.filedata;
+
+import bio.terra.app.configuration.ApplicationConfiguration;
+import bio.terra.common.LruCache;
+import bio.terra.service.resourcemanagement.google.GoogleBucketResource;
+import bio.terra.service.snapshot.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory caches for DRS object resolution. Resolving a DRS id needs the snapshot, the file
+ * metadata, and the bucket of the file. Once a snapshot is created none of those change, so they
+ * can be cached until the snapshot is locked or deleted:
+ * <ul>
+ *     <li>snapshots, by snapshot id. Only available (unlocked) snapshots are cached.</li>
+ *     <li>files, by snapshot id and file id. Directories are not cached; their contents depend on
+ *     the requested expansion depth.</li>
+ *     <li>bucket resources, by bucket resource id</li>
+ * </ul>
+ * Every snapshot hit is checked against the database with a cheap lookup of the snapshot row. A
+ * snapshot that another pod locked or deleted is dropped along with its files at once, so a cached
+ * snapshot is never served after it stops being available. Files are only reached through their
+ * snapshot, so they are covered by the same check. Bucket resources are only bounded by the time to
+ * live. The snapshot delete flight also invalidates the snapshot on this pod to free the memory early.
+ * Loads are single-flight, so a burst of lookups of one snapshot reads it from the database once.
+ * Authorization is not cached here.
+ */
+@Component
+public class DrsCache {
+    private final Logger logger = LoggerFactory.getLogger(DrsCache.class);
+
+    // Log the cache statistics every this many snapshot lookups
+    private static final long STATISTICS_INTERVAL = 10000;
+
+    private final LruCache<UUID, Snapshot> snapshotCache;
+    private final LruCache<String, FSFile> fileCache;
+    private final LruCache<String, GoogleBucketResource> bucketCache;
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    @Autowired
+    public DrsCache(ApplicationConfiguration appConfig) {
+        Duration ttl = Duration.ofSeconds(appConfig.getDrsCacheTtlSeconds());
+        this.snapshotCache = new LruCache<>("DRS snapshot", appConfig.getDrsCacheSnapshotSize(), ttl);
+        this.fileCache = new LruCache<>("DRS file", appConfig.getDrsCacheFileSize(), ttl);
+        this.bucketCache = new LruCache<>("DRS bucket", appConfig.getDrsCacheBucketSize(), ttl);
+    }
+
+    /**
+     * @param snapshotId id of the snapshot
+     * @param loader loads the snapshot on a miss; it should throw if the snapshot is not available
+     * @param isAvailable checks on each hit that the snapshot still exists and is not locked
+     */
+    public Snapshot getSnapshot(UUID snapshotId,
+                                Function<UUID, Snapshot> loader,
+                                Predicate<UUID> isAvailable) {
+        if (lookupCount.incrementAndGet() % STATISTICS_INTERVAL == 0) {
+            logStatistics();
+        }
+        return snapshotCache.get(snapshotId, loader, snapshot -> {
+            if (isAvailable.test(snapshotId)) {
+                return true;
+            }
+            invalidateSnapshot(snapshotId);
+            return false;
+        });
+    }
+
+    /**
+     * @return the cached file or null if it is not cached
+     */
+    public FSFile getFile(UUID snapshotId, String fileId) {
+        return fileCache.get(fileKey(snapshotId, fileId));
+    }
+
+    public void putFile(UUID snapshotId, String fileId, FSFile fsFile) {
+        fileCache.put(fileKey(snapshotId, fileId), fsFile);
+    }
+
+    public GoogleBucketResource getBucket(String bucketResourceId,
+                                          Function<String, GoogleBucketResource> loader) {
+        return bucketCache.get(bucketResourceId, loader);
+    }
+
+    /**
+     * Drop the snapshot and all of its files from the cache
+     */
+    public void invalidateSnapshot(UUID snapshotId) {
+        snapshotCache.remove(snapshotId);
+        String prefix = fileKey(snapshotId, "");
+        int fileCount = fileCache.removeIf(key -> key.startsWith(prefix));
+        logger.info("Invalidated DRS cache for snapshot {}: removed {} files", snapshotId, fileCount);
+    }
+
+    public void logStatistics() {
+        logger.info(snapshotCache.getStatistics());
+        logger.info(fileCache.getStatistics());
+        logger.info(bucketCache.getStatistics());
+    }
+
+    private String fileKey(UUID snapshotId, String fileId) {
+        return snapshotId.toString() + ":" + fileId;
+    }
+}
@@ -1,10 +1,14 @@
 package bio.terra.service.filedata;
 
+import bio.terra.app.configuration.ApplicationConfiguration;
 import bio.terra.model.DRSAccessMethod;
 import bio.terra.model.DRSAccessURL;
+import bio.terra.model.DRSBulkObjectResult;
 import bio.terra.model.DRSChecksum;
 import bio.terra.model.DRSContentsObject;
+import bio.terra.model.DRSError;
 import bio.terra.model.DRSObject;
+import bio.terra.service.filedata.exception.DrsBulkMaxExceededException;
 import bio.terra.service.filedata.exception.DrsObjectNotFoundException;
 import bio.terra.service.filedata.exception.FileSystemExecutionException;
 import bio.terra.service.filedata.exception.InvalidDrsIdException;
@@ -21,6 +25,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import java.io.UnsupportedEncodingException;
@@ -29,7 +34,12 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Component
@@ -43,27 +53,35 @@ public class DrsService {
     private final DrsIdService drsIdService;
     private final IamService samService;
     private final DataLocationService locationService;
+    private final DrsCache drsCache;
+    private final ApplicationConfiguration appConfig;
 
     @Autowired
     public DrsService(SnapshotService snapshotService,
                       FileService fileService,
                       DrsIdService drsIdService,
                       IamService samService,
-                      DataLocationService locationService) {
+                      DataLocationService locationService,
+                      DrsCache drsCache,
+                      ApplicationConfiguration appConfig) {
         this.snapshotService = snapshotService;
         this.fileService = fileService;
         this.drsIdService = drsIdService;
         this.samService = samService;
         this.locationService = locationService;
+        this.drsCache = drsCache;
+        this.appConfig = appConfig;
     }
 
     public DRSObject lookupObjectByDrsId(AuthenticatedUserRequest authUser, String drsObjectId, Boolean expand) {
         DrsId drsId = drsIdService.fromObjectId(drsObjectId);
         Snapshot snapshot = null;
+        UUID snapshotId = null;
         try {
-            UUID snapshotId = UUID.fromString(drsId.getSnapshotId());
-            // We only look up DRS ids for unlocked snapshots.
-            snapshot = snapshotService.retrieveAvailable(snapshotId);
+            snapshotId = UUID.fromString(drsId.getSnapshotId());
+            // We only look up DRS ids for unlocked snapshots. Only unlocked snapshots are cached.
+            snapshot = drsCache.getSnapshot(
+                snapshotId, snapshotService::retrieveAvailable, snapshotService::isAvailable);
         } catch (IllegalArgumentException ex) {
             throw new InvalidDrsIdException("Invalid object id format '" + drsObjectId + "'", ex);
         } catch (SnapshotNotFoundException ex) {
@@ -79,14 +97,20 @@ public class DrsService {
 
         int depth = (expand ? -1 : 1);
 
-        FSItem fsObject = null;
-        try {
-            fsObject = fileService.lookupSnapshotFSItem(
-                snapshot,
-                drsId.getFsObjectId(),
-                depth);
-        } catch (InterruptedException ex) {
-            throw new FileSystemExecutionException("Unexpected interruption during file system processing", ex);
+        // Files are immutable once they are in a snapshot, so they are cached. Directories are not.
+        FSItem fsObject = drsCache.getFile(snapshotId, drsId.getFsObjectId());
+        if (fsObject == null) {
+            try {
+                fsObject = fileService.lookupSnapshotFSItem(
+                    snapshot,
+                    drsId.getFsObjectId(),
+                    depth);
+            } catch (InterruptedException ex) {
+                throw new FileSystemExecutionException("Unexpected interruption during file system processing", ex);
+            }
+            if (fsObject instanceof FSFile) {
+                drsCache.putFile(snapshotId, drsId.getFsObjectId(), (FSFile) fsObject);
+            }
         }
 
         if (fsObject instanceof FSFile) {
@@ -98,10 +122,129 @@ public class DrsService {
         throw new IllegalArgumentException("Invalid object type");
     }
 
+    /**
+     * Look up many DRS objects at once. The ids are grouped by snapshot, so each snapshot is retrieved and
+     * authorized once, and the files it is asked for are read with batched firestore gets. An id that cannot be
+     * resolved gets an error in its result instead of failing the request. Directories are not expanded.
+     *
+     * @return one result for each object id, in the same order
+     */
+    public List<DRSBulkObjectResult> lookupObjectsByDrsIds(AuthenticatedUserRequest authUser,
+                                                           List<String> drsObjectIds) {
+        int maxObjects = appConfig.getDrsBulkMaxObjects();
+        if (drsObjectIds.size() > maxObjects) {
+            throw new DrsBulkMaxExceededException("Maximum number of object ids in a bulk lookup is " + maxObjects);
+        }
+
+        List<DRSBulkObjectResult> results = new ArrayList<>(drsObjectIds.size());
+        List<DrsId> drsIds = new ArrayList<>(drsObjectIds.size());
+        Map<String, List<Integer>> positionsBySnapshot = new LinkedHashMap<>();
+        for (int i = 0; i < drsObjectIds.size(); i++) {
+            String drsObjectId = drsObjectIds.get(i);
+            DRSBulkObjectResult result = new DRSBulkObjectResult().objectId(drsObjectId);
+            results.add(result);
+            DrsId drsId = null;
+            try {
+                drsId = drsIdService.fromObjectId(drsObjectId);
+                UUID.fromString(drsId.getFsObjectId());
+                positionsBySnapshot.computeIfAbsent(drsId.getSnapshotId(), k -> new ArrayList<>()).add(i);
+            } catch (InvalidDrsIdException | IllegalArgumentException ex) {
+                setError(result, HttpStatus.BAD_REQUEST, "Invalid object id format '" + drsObjectId + "'");
+            }
+            drsIds.add(drsId);
+        }
+
+        for (Map.Entry<String, List<Integer>> snapshotPositions : positionsBySnapshot.entrySet()) {
+            lookupSnapshotObjects(authUser, snapshotPositions.getKey(), snapshotPositions.getValue(), drsIds, results);
+        }
+        return results;
+    }
+
+    // Fill in the results at the given positions, which all refer to objects of one snapshot
+    private void lookupSnapshotObjects(AuthenticatedUserRequest authUser,
+                                       String snapshotIdString,
+                                       List<Integer> positions,
+                                       List<DrsId> drsIds,
+                                       List<DRSBulkObjectResult> results) {
+        UUID snapshotId;
+        Snapshot snapshot;
+        try {
+            snapshotId = UUID.fromString(snapshotIdString);
+            snapshot = drsCache.getSnapshot(
+                snapshotId, snapshotService::retrieveAvailable, snapshotService::isAvailable);
+        } catch (IllegalArgumentException ex) {
+            setErrors(results, positions, HttpStatus.BAD_REQUEST, "Invalid snapshot id '" + snapshotIdString + "'");
+            return;
+        } catch (SnapshotNotFoundException ex) {
+            setErrors(results, positions, HttpStatus.NOT_FOUND, "No snapshot found with id '" + snapshotIdString + "'");
+            return;
+        }
+
+        if (!samService.isAuthorized(authUser, IamResourceType.DATASNAPSHOT, snapshotIdString, IamAction.READ_DATA)) {
+            setErrors(results, positions, HttpStatus.FORBIDDEN,
+                "User '" + authUser.getEmail() + "' does not have required action: " + IamAction.READ_DATA);
+            return;
+        }
+
+        // Take what we can from the cache and read the rest in one batch
+        Map<String, FSItem> fsItems = new HashMap<>();
+        Set<String> uncachedIds = new LinkedHashSet<>();
+        for (int position : positions) {
+            String fileId = drsIds.get(position).getFsObjectId();
+            FSFile cachedFile = drsCache.getFile(snapshotId, fileId);
+            if (cachedFile != null) {
+                fsItems.put(fileId, cachedFile);
+            } else {
+                uncachedIds.add(fileId);
+            }
+        }
+        if (!uncachedIds.isEmpty()) {
+            List<String> fileIds = new ArrayList<>(uncachedIds);
+            List<FSItem> lookedUp;
+            try {
+                lookedUp = fileService.lookupSnapshotFSItems(snapshot, fileIds, 1);
+            } catch (InterruptedException ex) {
+                throw new FileSystemExecutionException("Unexpected interruption during file system processing", ex);
+            }
+            for (int i = 0; i < fileIds.size(); i++) {
+                FSItem fsItem = lookedUp.get(i);
+                if (fsItem != null) {
+                    fsItems.put(fileIds.get(i), fsItem);
+                }
+                if (fsItem instanceof FSFile) {
+                    drsCache.putFile(snapshotId, fileIds.get(i), (FSFile) fsItem);
+                }
+            }
+        }
+
+        for (int position : positions) {
+            DRSBulkObjectResult result = results.get(position);
+            FSItem fsItem = fsItems.get(drsIds.get(position).getFsObjectId());
+            if (fsItem instanceof FSFile) {
+                result.object(drsObjectFromFSFile((FSFile) fsItem, snapshotIdString, authUser));
+            } else if (fsItem instanceof FSDir) {
+                result.object(drsObjectFromFSDir((FSDir) fsItem, snapshotIdString));
+            } else {
+                setError(result, HttpStatus.NOT_FOUND, "No object found with id '" + result.getObjectId() + "'");
+            }
+        }
+    }
+
+    private void setErrors(List<DRSBulkObjectResult> results, List<Integer> positions, HttpStatus status, String msg) {
+        for (int position : positions) {
+            setError(results.get(position), status, msg);
+        }
+    }
+
+    private void setError(DRSBulkObjectResult result, HttpStatus status, String msg) {
+        result.error(new DRSError().msg(msg).statusCode(status.value()));
+    }
+
     private DRSObject drsObjectFromFSFile(FSFile fsFile, String snapshotId, AuthenticatedUserRequest authUser) {
         DRSObject fileObject = makeCommonDrsObject(fsFile, snapshotId);
 
-        GoogleBucketResource bucketResource = locationService.lookupBucketMetadata(fsFile.getBucketResourceId());
+        GoogleBucketResource bucketResource =
+            drsCache.getBucket(fsFile.getBucketResourceId(), locationService::lookupBucketMetadata);
 
         DRSAccessURL gsAccessURL = new DRSAccessURL()
             .url(fsFile.getGspath());
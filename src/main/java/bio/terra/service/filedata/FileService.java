@@ -98,8 +98,6 @@ public class FileService {
                 configService.getParameterValue(ConfigEnum.LOAD_DRIVER_WAIT_SECONDS))
             .addParameter(LoadMapKeys.LOAD_HISTORY_COPY_CHUNK_SIZE,
                 configService.getParameterValue(ConfigEnum.LOAD_HISTORY_COPY_CHUNK_SIZE))
-            .addParameter(LoadMapKeys.LOAD_HISTORY_WAIT_SECONDS,
-                configService.getParameterValue(ConfigEnum.LOAD_HISTORY_WAIT_SECONDS))
             .submit();
     }
 
@@ -126,8 +124,6 @@ public class FileService {
                 configService.getParameterValue(ConfigEnum.LOAD_DRIVER_WAIT_SECONDS))
             .addParameter(LoadMapKeys.LOAD_HISTORY_COPY_CHUNK_SIZE,
                 configService.getParameterValue(ConfigEnum.LOAD_HISTORY_COPY_CHUNK_SIZE))
-            .addParameter(LoadMapKeys.LOAD_HISTORY_WAIT_SECONDS,
-                configService.getParameterValue(ConfigEnum.LOAD_HISTORY_WAIT_SECONDS))
             .submit();
     }
 
@@ -198,6 +194,14 @@ public class FileService {
         return fileDao.retrieveById(snapshot, fileId, depth, true);
     }
 
+    /**
+     * @return list parallel to fileIds, with a null for each id that is not found
+     */
+    List<FSItem> lookupSnapshotFSItems(Snapshot snapshot, List<String> fileIds, int depth)
+        throws InterruptedException {
+        return fileDao.batchRetrieveItemsById(snapshot, fileIds, depth);
+    }
+
     FSItem lookupSnapshotFSItemByPath(String snapshotId, String path, int depth) throws InterruptedException {
         // note: this method only returns snapshots that are NOT exclusively locked
         Snapshot snapshot = snapshotService.retrieveAvailable(UUID.fromString(snapshotId));
@@ -0,0 +1,17 @@
+package bio.terra.service.filedata.exception;
+
+import bio.terra.common.exception.BadRequestException;
+
+public class DrsBulkMaxExceededException extends BadRequestException {
+    public DrsBulkMaxExceededException(String message) {
+        super(message);
+    }
+
+    public DrsBulkMaxExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public DrsBulkMaxExceededException(Throwable cause) {
+        super(cause);
+    }
+}
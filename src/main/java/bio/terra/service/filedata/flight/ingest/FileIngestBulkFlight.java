@@ -5,6 +5,7 @@ import bio.terra.model.BulkLoadArrayRequestModel;
 import bio.terra.model.BulkLoadRequestModel;
 import bio.terra.service.configuration.ConfigurationService;
 import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
 import bio.terra.service.filedata.google.gcs.GcsPdao;
 import bio.terra.service.iam.IamAction;
 import bio.terra.service.iam.IamProviderInterface;
@@ -51,12 +52,12 @@ public class FileIngestBulkFlight extends Flight {
         ConfigurationService configurationService = (ConfigurationService) appContext.getBean("configurationService");
         KubeService kubeService = (KubeService) appContext.getBean("kubeService");
         GcsPdao gcsPdao = (GcsPdao) appContext.getBean("gcsPdao");
+        FireStoreDao fileDao = (FireStoreDao) appContext.getBean("fireStoreDao");
 
         // Common input parameters
         String datasetId = inputParameters.get(JobMapKeys.DATASET_ID.getKeyName(), String.class);
         String loadTag = inputParameters.get(LoadMapKeys.LOAD_TAG, String.class);
         int driverWaitSeconds = inputParameters.get(LoadMapKeys.DRIVER_WAIT_SECONDS, Integer.class);
-        int loadHistoryWaitSeconds = inputParameters.get(LoadMapKeys.LOAD_HISTORY_WAIT_SECONDS, Integer.class);
         int fileChunkSize = inputParameters.get(LoadMapKeys.LOAD_HISTORY_COPY_CHUNK_SIZE, Integer.class);
         boolean isArray = inputParameters.get(LoadMapKeys.IS_ARRAY, Boolean.class);
         // TODO: for reserving a bulk load slot:
@@ -101,7 +102,7 @@ public class FileIngestBulkFlight extends Flight {
         // 6. Depends on request type:
         //    a. isArray - generate the bulk array response: summary and array of results
         //    b. !isArray - generate the bulk file response - just the summary information
-        // 7. TODO: Copy results into the database BigQuery (DR-694)
+        // 7. Copy the load history into the dataset's load history table in BigQuery
         // 8. Clean load_file table
         // 9. TODO: release the bulk load slot (DR-754) - may not need a step if we use the count of locked tags
         // 10. Unlock the load tag
@@ -121,6 +122,8 @@ public class FileIngestBulkFlight extends Flight {
         addStep(new IngestDriverStep(
             loadService,
             configurationService,
+            datasetService,
+            fileDao,
             kubeService,
             datasetId,
             loadTag,
@@ -140,8 +143,8 @@ public class FileIngestBulkFlight extends Flight {
             loadTag,
             datasetId,
             bigQueryPdao,
-            fileChunkSize,
-            loadHistoryWaitSeconds));
+            gcsPdao,
+            fileChunkSize));
         addStep(new IngestCleanFileStateStep(loadService));
 
         addStep(new LoadUnlockStep(loadService));
@@ -9,6 +9,7 @@ import bio.terra.service.filedata.google.firestore.FireStoreDao;
 import bio.terra.service.filedata.google.firestore.FireStoreUtils;
 import bio.terra.service.filedata.google.gcs.GcsPdao;
 import bio.terra.service.job.JobMapKeys;
+import bio.terra.service.load.LoadService;
 import bio.terra.stairway.Flight;
 import bio.terra.stairway.FlightMap;
 import bio.terra.stairway.RetryRuleRandomBackoff;
@@ -22,6 +23,7 @@ import java.util.UUID;
  * Input parameters expected:
  * - DATASET_ID - dataset into which we load the file
  * - REQUEST - a FileLoadModel describing the file to load
+ * - LOAD_ID - load id of the bulk load; used to notify the driver when this flight completes
 */
 
 public class FileIngestWorkerFlight extends Flight {
@@ -39,6 +41,7 @@ public class FileIngestWorkerFlight extends Flight {
         ApplicationConfiguration appConfig =
             (ApplicationConfiguration)appContext.getBean("applicationConfiguration");
         ConfigurationService configService = (ConfigurationService)appContext.getBean("configurationService");
+        LoadService loadService = (LoadService)appContext.getBean("loadService");
 
         UUID datasetId = UUID.fromString(inputParameters.get(JobMapKeys.DATASET_ID.getKeyName(), String.class));
         Dataset dataset = datasetService.retrieve(datasetId);
@@ -46,6 +49,7 @@ public class FileIngestWorkerFlight extends Flight {
         RetryRuleRandomBackoff fileSystemRetry = new RetryRuleRandomBackoff(500, appConfig.getMaxStairwayThreads(), 5);
 
         // The flight plan:
+        // 0. Notify the bulk load driver on failure. The undo of this step runs last when the flight fails.
         // 1. Generate the new file id and store it in the working map. We need to allocate the file id before any
         //    other operation so that it is persisted in the working map. In particular, IngestFileDirectoryStep undo
         //    needs to know the file id in order to clean up.
@@ -58,10 +62,13 @@ public class FileIngestWorkerFlight extends Flight {
         //    time of the actual file in GCS. That ensures that the file info we return on REST API (and DRS) lookups
         //    matches what users will see when they examine the GCS object. When the file entry is (atomically)
         //    created in the file firestore collection, the file becomes visible for REST API lookups.
+        // 5. Notify the bulk load driver that the file load succeeded.
+        addStep(new IngestFileNotifyDriverStep(loadService, false));
         addStep(new IngestFileIdStep(configService));
         addStep(new IngestFileDirectoryStep(fileDao, fireStoreUtils, dataset), fileSystemRetry);
         addStep(new IngestFilePrimaryDataStep(dataset, gcsPdao, configService));
         addStep(new IngestFileFileStep(fileDao, fileService, dataset), fileSystemRetry);
+        addStep(new IngestFileNotifyDriverStep(loadService, true));
     }
 
 }
@@ -0,0 +1,210 @@
+package bio.terra.service.filedata.flight.ingest;
+
+import bio.terra.model.BulkLoadFileModel;
+import bio.terra.service.filedata.exception.BulkLoadControlFileException;
+import bio.terra.service.load.LoadService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Populates the load_file table from a bulk load control file using a three stage pipeline:
+ * <ol>
+ *     <li>Read: the calling thread reads lines from the control file and groups them into batches.</li>
+ *     <li>Parse: a pool of threads deserializes the batches into BulkLoadFileModels using a shared
+ *     ObjectReader.</li>
+ *     <li>Write: one thread takes the parsed batches in file order and writes them into the load_file table.</li>
+ * </ol>
+ * The number of batches between the read and write stages is bounded, so a slow database pushes back
+ * on the reader rather than letting parsed batches pile up in memory.
+ *
+ * Bad lines are accounted for in line order, exactly as a single-threaded reader would. Once a bad line
+ * is found, we stop writing; once there are more than maxBadLines bad lines, we stop reading.
+ */
+public class IngestControlFilePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(IngestControlFilePipeline.class);
+
+    // ObjectReaders are immutable and thread safe, so all of the parse threads share this one.
+    // Ensure that file ingestion works with extra key-value pairs
+    private static final ObjectReader LOAD_FILE_READER = new ObjectMapper()
+        .registerModule(new Jdk8Module())
+        .registerModule(new JavaTimeModule())
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .readerFor(BulkLoadFileModel.class);
+
+    private static final int PARSE_THREADS = 4;
+    private static final int MAX_PENDING_BATCHES = PARSE_THREADS * 2;
+    private static final int ENQUEUE_WAIT_SECONDS = 1;
+
+    // Marks the end of the batches for the write stage
+    private static final Future<ParsedBatch> END_OF_BATCHES = CompletableFuture.completedFuture(null);
+
+    private final LoadService loadService;
+    private final int maxBadLines;
+    private final int batchSize;
+
+    public IngestControlFilePipeline(LoadService loadService, int maxBadLines, int batchSize) {
+        this.loadService = loadService;
+        this.maxBadLines = maxBadLines;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Read the control file and populate the load_file table for the load.
+     *
+     * @param reader reader positioned at the start of the control file
+     * @param loadId load to populate
+     * @throws BulkLoadControlFileException if there are any bad lines in the control file
+     * @throws IOException if the control file cannot be read
+     */
+    public void populate(BufferedReader reader, UUID loadId) throws IOException, InterruptedException {
+        ExecutorService parsePool = Executors.newFixedThreadPool(PARSE_THREADS);
+        ExecutorService writePool = Executors.newSingleThreadExecutor();
+        BlockingQueue<Future<ParsedBatch>> pending = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+
+        try {
+            Future<List<String>> writer = writePool.submit(() -> writeBatches(pending, loadId));
+
+            long lineCount = 0;
+            long firstLine = 1;
+            List<String> lines = new ArrayList<>(batchSize);
+            boolean writerRunning = true;
+
+            for (String line = reader.readLine(); line != null && writerRunning; line = reader.readLine()) {
+                lineCount++;
+                lines.add(line);
+                if (lines.size() >= batchSize) {
+                    writerRunning = enqueue(pending, parseBatch(parsePool, lines, firstLine), writer);
+                    lines = new ArrayList<>(batchSize);
+                    firstLine = lineCount + 1;
+                }
+            }
+
+            if (writerRunning && !lines.isEmpty()) {
+                writerRunning = enqueue(pending, parseBatch(parsePool, lines, firstLine), writer);
+            }
+            if (writerRunning) {
+                enqueue(pending, END_OF_BATCHES, writer);
+            }
+
+            List<String> errorDetails = waitForWriter(writer);
+            logger.info("Read {} lines from the control file with {} errors", lineCount, errorDetails.size());
+
+            if (errorDetails.size() > maxBadLines) {
+                throw new BulkLoadControlFileException(
+                    "More than " + maxBadLines + " bad lines in the control file",
+                    errorDetails);
+            }
+
+            // If there are errors in the load file, don't do the load
+            if (errorDetails.size() > 0) {
+                throw new BulkLoadControlFileException(
+                    "There were " + errorDetails.size() + " bad lines in the control file",
+                    errorDetails);
+            }
+        } finally {
+            parsePool.shutdownNow();
+            writePool.shutdownNow();
+        }
+    }
+
+    private Future<ParsedBatch> parseBatch(ExecutorService parsePool, List<String> lines, long firstLine) {
+        return parsePool.submit(() -> {
+            ParsedBatch batch = new ParsedBatch(lines.size());
+            long lineNumber = firstLine;
+            for (String line : lines) {
+                try {
+                    batch.files.add(LOAD_FILE_READER.readValue(line));
+                } catch (IOException ex) {
+                    batch.errors.add("Format error at line " + lineNumber + ": " + ex.getMessage());
+                }
+                lineNumber++;
+            }
+            return batch;
+        });
+    }
+
+    // Put the batch on the pending queue, waiting for space. Returns false if the writer has stopped,
+    // in which case the reader should stop too.
+    private boolean enqueue(BlockingQueue<Future<ParsedBatch>> pending,
+                            Future<ParsedBatch> batch,
+                            Future<List<String>> writer) throws InterruptedException {
+        while (!pending.offer(batch, ENQUEUE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            if (writer.isDone()) {
+                return false;
+            }
+        }
+        return !writer.isDone();
+    }
+
+    // The write stage: take the batches in order, account for errors, and populate the load_file table.
+    // Returns the error details; stops early if there are more than maxBadLines errors.
+    private List<String> writeBatches(BlockingQueue<Future<ParsedBatch>> pending, UUID loadId)
+        throws InterruptedException, ExecutionException {
+        List<String> errorDetails = new ArrayList<>();
+        while (true) {
+            Future<ParsedBatch> next = pending.take();
+            if (next == END_OF_BATCHES) {
+                return errorDetails;
+            }
+
+            ParsedBatch batch = next.get();
+            for (String error : batch.errors) {
+                errorDetails.add(error);
+                if (errorDetails.size() > maxBadLines) {
+                    return errorDetails;
+                }
+            }
+
+            // Once we have seen a bad line, the load will not happen, so there is no point in writing more
+            if (errorDetails.isEmpty() && !batch.files.isEmpty()) {
+                loadService.populateFiles(loadId, batch.files);
+            }
+        }
+    }
+
+    private List<String> waitForWriter(Future<List<String>> writer) throws InterruptedException {
+        try {
+            List<String> errorDetails = writer.get();
+            return (errorDetails == null) ? Collections.emptyList() : errorDetails;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ExecutionException) {
+                // Failure in a parse thread
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BulkLoadControlFileException("Failure populating the load file table", cause);
+        }
+    }
+
+    private static final class ParsedBatch {
+        private final List<BulkLoadFileModel> files;
+        private final List<String> errors = new ArrayList<>();
+
+        ParsedBatch(int size) {
+            this.files = new ArrayList<>(size);
+        }
+    }
+}
@@ -3,44 +3,62 @@ package bio.terra.service.filedata.flight.ingest;
 import bio.terra.model.BulkLoadHistoryModel;
 import bio.terra.service.dataset.Dataset;
 import bio.terra.service.dataset.DatasetService;
+import bio.terra.service.filedata.flight.FileMapKeys;
+import bio.terra.service.filedata.google.gcs.GcsPdao;
 import bio.terra.service.load.LoadService;
 import bio.terra.service.load.flight.LoadMapKeys;
+import bio.terra.service.resourcemanagement.google.GoogleBucketResource;
 import bio.terra.service.tabulardata.google.BigQueryPdao;
-import bio.terra.stairway.*;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.FlightMap;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+import com.google.cloud.storage.StorageException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
+import static bio.terra.common.PdaoConstant.PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX;
 
+// Copy the load history of the bulk load into the dataset's load history table in BigQuery:
+// 1. Stream the load_file rows, a page at a time in target path order, into a newline-delimited JSON
+//    file in the dataset's bucket.
+// 2. Load the file into a staging table with one BigQuery load job.
+// 3. Merge the staging table into the load history table.
+// 4. Delete the staging table and the file.
+// Copying the load history is best effort; failures are logged and do not fail the load.
 public class IngestCopyLoadHistoryToBQStep implements Step {
-    private final Logger logger = LoggerFactory.getLogger(IngestBulkFileResponseStep.class);
+    private final Logger logger = LoggerFactory.getLogger(IngestCopyLoadHistoryToBQStep.class);
+
+    private static final String LOAD_HISTORY_CONTENT_TYPE = "application/x-ndjson";
 
     private final LoadService loadService;
     private final DatasetService datasetService;
     private final String loadTag;
     private final String datasetIdString;
     private final BigQueryPdao bigQueryPdao;
+    private final GcsPdao gcsPdao;
     private final int fileChunkSize;
-    private final int waitSeconds;
 
     public IngestCopyLoadHistoryToBQStep(LoadService loadService,
                                          DatasetService datasetService,
                                          String loadTag,
                                          String datasetId,
                                          BigQueryPdao bigQueryPdao,
-                                         int fileChunkSize,
-                                         int waitSeconds) {
+                                         GcsPdao gcsPdao,
+                                         int fileChunkSize) {
         this.loadService = loadService;
         this.loadTag = loadTag;
         this.datasetIdString = datasetId;
         this.bigQueryPdao = bigQueryPdao;
+        this.gcsPdao = gcsPdao;
         this.datasetService = datasetService;
         this.fileChunkSize = fileChunkSize;
-        this.waitSeconds = waitSeconds;
     }
 
     @Override
@@ -48,39 +66,32 @@ public class IngestCopyLoadHistoryToBQStep implements Step {
         FlightMap workingMap = context.getWorkingMap();
         String loadIdString = workingMap.get(LoadMapKeys.LOAD_ID, String.class);
         UUID loadId = UUID.fromString(loadIdString);
+        GoogleBucketResource bucketResource = workingMap.get(FileMapKeys.BUCKET_INFO, GoogleBucketResource.class);
         UUID datasetId = UUID.fromString(datasetIdString);
         Dataset dataset = datasetService.retrieve(datasetId);
 
-        int chunkNum = 0;
-        List<BulkLoadHistoryModel> loadHistoryArray = null;
         String flightId = context.getFlightId();
-        String tableName_FlightId = flightId.replaceAll("[^a-zA-Z0-9]", "_");
+        String tableName_FlightId = stagingName(flightId);
+        String bucketPath = stagingBucketPath(tableName_FlightId);
         try {
             Instant loadTime = context.getStairway().getFlightState(flightId).getSubmitted();
-            bigQueryPdao.createStagingLoadHistoryTable(dataset, tableName_FlightId);
-            TimeUnit.SECONDS.sleep(waitSeconds);
-
-            while (loadHistoryArray == null || loadHistoryArray.size() == fileChunkSize) {
-                loadHistoryArray = loadService.makeLoadHistoryArray(loadId, fileChunkSize, (chunkNum * fileChunkSize));
-                chunkNum++;
-                // send list plus load_tag, load_time to BQ to be put in a staging table
-                if (!loadHistoryArray.isEmpty()) {
-                    bigQueryPdao.loadHistoryToStagingTable(
-                        dataset,
-                        tableName_FlightId,
-                        loadTag,
-                        loadTime,
-                        loadHistoryArray);
-                    // Sleep to avoid BQ rate limit error
-                    // From quick survey of logs, longest time to complete load query: 3 seconds
-                    TimeUnit.SECONDS.sleep(waitSeconds);
-                }
+
+            int rowCount = writeLoadHistory(loadId, loadTime, bucketResource, bucketPath);
+            logger.info("Wrote {} load history rows for flight {}", rowCount, flightId);
+
+            if (rowCount > 0) {
+                bigQueryPdao.loadHistoryToStagingTable(
+                    dataset,
+                    tableName_FlightId,
+                    "gs://" + bucketResource.getName() + "/" + bucketPath);
+                // copy from staging to actual BQ table
+                bigQueryPdao.mergeStagingLoadHistoryTable(dataset, tableName_FlightId);
+                bigQueryPdao.deleteStagingLoadHistoryTable(dataset, tableName_FlightId);
             }
-            // copy from staging to actual BQ table
-            bigQueryPdao.mergeStagingLoadHistoryTable(dataset, tableName_FlightId);
-            bigQueryPdao.deleteStagingLoadHistoryTable(dataset, tableName_FlightId);
         } catch (Exception ex) {
             logger.error("Failed during copy of load history to BQ for flight: " + flightId, ex);
+        } finally {
+            deleteLoadHistoryFile(bucketResource, bucketPath, flightId);
         }
 
         return StepResult.getStepResultSuccess();
@@ -89,14 +100,59 @@ public class IngestCopyLoadHistoryToBQStep implements Step {
     @Override
     public StepResult undoStep(FlightContext context) {
         String flightId = context.getFlightId();
+        String tableName_FlightId = stagingName(flightId);
         try {
             UUID datasetId = UUID.fromString(datasetIdString);
             Dataset dataset = datasetService.retrieve(datasetId);
-            bigQueryPdao.deleteStagingLoadHistoryTable(dataset, flightId);
+            bigQueryPdao.deleteStagingLoadHistoryTable(dataset, tableName_FlightId);
         } catch (Exception ex) {
             logger.error("Failure deleting load history staging table for flight: " + flightId, ex);
         }
+        GoogleBucketResource bucketResource =
+            context.getWorkingMap().get(FileMapKeys.BUCKET_INFO, GoogleBucketResource.class);
+        deleteLoadHistoryFile(bucketResource, stagingBucketPath(tableName_FlightId), flightId);
         return StepResult.getStepResultSuccess();
     }
 
+    // Walk the load_file rows by keyset cursor and stream them into the load history file.
+    // Returns the number of rows written.
+    private int writeLoadHistory(UUID loadId,
+                                 Instant loadTime,
+                                 GoogleBucketResource bucketResource,
+                                 String bucketPath) throws IOException {
+        int rowCount = 0;
+        try (Writer writer = gcsPdao.createObjectWriter(bucketResource, bucketPath, LOAD_HISTORY_CONTENT_TYPE)) {
+            String afterTargetPath = null;
+            List<BulkLoadHistoryModel> loadHistoryArray;
+            do {
+                loadHistoryArray = loadService.makeLoadHistoryArray(loadId, fileChunkSize, afterTargetPath);
+                for (BulkLoadHistoryModel loadHistory : loadHistoryArray) {
+                    writer.write(BigQueryPdao.loadHistoryRow(loadTag, loadTime, loadHistory));
+                    writer.write('\n');
+                    afterTargetPath = loadHistory.getTargetPath();
+                }
+                rowCount += loadHistoryArray.size();
+            } while (loadHistoryArray.size() == fileChunkSize);
+        }
+        return rowCount;
+    }
+
+    private void deleteLoadHistoryFile(GoogleBucketResource bucketResource, String bucketPath, String flightId) {
+        if (bucketResource == null) {
+            return;
+        }
+        try {
+            gcsPdao.deleteFileByGspath("gs://" + bucketResource.getName() + "/" + bucketPath, bucketResource);
+        } catch (StorageException ex) {
+            logger.error("Failure deleting load history file for flight: " + flightId, ex);
+        }
+    }
+
+    private String stagingName(String flightId) {
+        return flightId.replaceAll("[^a-zA-Z0-9]", "_");
+    }
+
+    private String stagingBucketPath(String tableName_FlightId) {
+        return datasetIdString + "/" + PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + tableName_FlightId + ".json";
+    }
 }
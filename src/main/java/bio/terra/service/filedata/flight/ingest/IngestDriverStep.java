@@ -1,15 +1,23 @@
 package bio.terra.service.filedata.flight.ingest;
 
+import bio.terra.model.BulkLoadFileState;
 import bio.terra.model.FileLoadModel;
 import bio.terra.service.configuration.ConfigEnum;
 import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetService;
 import bio.terra.service.filedata.FSFileInfo;
+import bio.terra.service.filedata.exception.FileSystemAbortTransactionException;
 import bio.terra.service.filedata.exception.FileSystemCorruptException;
+import bio.terra.service.filedata.exception.FileSystemExecutionException;
 import bio.terra.service.filedata.flight.FileMapKeys;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
 import bio.terra.service.kubernetes.KubeService;
 import bio.terra.service.load.LoadCandidates;
+import bio.terra.service.load.LoadCompletionListener;
 import bio.terra.service.load.LoadFile;
 import bio.terra.service.load.LoadService;
+import bio.terra.service.load.exception.LoadNotificationException;
 import bio.terra.service.load.flight.LoadMapKeys;
 import bio.terra.service.resourcemanagement.google.GoogleBucketResource;
 import bio.terra.service.snapshot.exception.CorruptMetadataException;
@@ -23,17 +31,37 @@ import bio.terra.stairway.StepStatus;
 import bio.terra.stairway.exception.DatabaseOperationException;
 import bio.terra.stairway.exception.FlightNotFoundException;
 import bio.terra.stairway.exception.StairwayExecutionException;
+import org.apache.commons.collections4.map.LRUMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 // The driver step is the core part of the bulk load meta-flight. It runs a loop that keeps some
 // K flights busy performing file loads.
 //
+// The driver keeps the running loads and the failure count in memory. Worker flights notify the driver
+// when they complete, so each pass through the loop only asks Stairway about the flights that completed,
+// rather than about every running flight. Every RECONCILE_SECONDS we rebuild the in-memory state from the
+// load_file table and Stairway, in case a notification was lost.
+//
+// Before launching a batch of file loads, the driver creates the directories the files need with batched
+// writes. It remembers the directories it knows exist for the life of the step, so each directory is looked
+// up about once per load. That way the file load transactions do not contend on shared parent directories.
+// Since those directories are created outside of the file load transactions, the driver records them in the
+// load_directory table. When the load is done (or undone) and some files did not load, it deletes the ones
+// that were left empty.
+//
 // We get these elements from the inputs
 // - DATASET_ID dataset we are loading into
 // - LOAD_TAG is the load tag for this ingest
@@ -44,9 +72,14 @@ import java.util.concurrent.TimeUnit;
 //
 public class IngestDriverStep implements Step {
     private final Logger logger = LoggerFactory.getLogger(IngestDriverStep.class);
+    private static final int RECONCILE_SECONDS = 60;
+    // Number of created directories to read from the load_directory table at a time when cleaning up
+    private static final int DIRECTORY_PAGE_SIZE = 1000;
 
     private final LoadService loadService;
     private final ConfigurationService configurationService;
+    private final DatasetService datasetService;
+    private final FireStoreDao fileDao;
     private final KubeService kubeService;
     private final String datasetId;
     private final String loadTag;
@@ -56,6 +89,8 @@ public class IngestDriverStep implements Step {
 
     public IngestDriverStep(LoadService loadService,
                             ConfigurationService configurationService,
+                            DatasetService datasetService,
+                            FireStoreDao fileDao,
                             KubeService kubeService,
                             String datasetId,
                             String loadTag,
@@ -64,6 +99,8 @@ public class IngestDriverStep implements Step {
                             String profileId) {
         this.loadService = loadService;
         this.configurationService = configurationService;
+        this.datasetService = datasetService;
+        this.fileDao = fileDao;
         this.kubeService = kubeService;
         this.datasetId = datasetId;
         this.loadTag = loadTag;
@@ -80,96 +117,110 @@ public class IngestDriverStep implements Step {
         UUID loadId = UUID.fromString(loadIdString);
 
         GoogleBucketResource bucketResource = workingMap.get(FileMapKeys.BUCKET_INFO, GoogleBucketResource.class);
+        Dataset dataset = datasetService.retrieve(UUID.fromString(datasetId));
+        int cacheSize = configurationService.getParameterValue(ConfigEnum.FIRESTORE_LOAD_CACHE_SIZE);
+        LRUMap<String, Boolean> existingDirectories = new LRUMap<>(cacheSize);
 
-        try {
+        // Start listening before we look at the database, so we do not miss completions that happen
+        // while we are building the in-memory state.
+        try (LoadCompletionListener listener = loadService.listenForCompletions(loadId)) {
             // Check for launch orphans - these are loads in the RUNNING state that never
             // got recorded by stairway.
             checkForOrphans(context, loadId);
 
+            // In-memory view of the load. It is seeded from the database and then maintained from
+            // completion notifications. We reconcile with the database periodically in case we miss
+            // a notification.
+            Map<String, LoadFile> runningLoads = new HashMap<>();
+            Set<String> completedFlightIds = new HashSet<>();
+            int failedLoads = reconcile(context, loadId, runningLoads);
+            Instant nextReconcile = Instant.now().plusSeconds(RECONCILE_SECONDS);
+
             // Load Loop
             while (true) {
                 int podCount = kubeService.getActivePodCount();
                 int concurrentFiles = configurationService.getParameterValue(ConfigEnum.LOAD_CONCURRENT_FILES);
                 int scaledConcurrentFiles = podCount * concurrentFiles;
-                // Get the state of active and failed loads
-                LoadCandidates candidates = getLoadCandidates(context, loadId, scaledConcurrentFiles);
 
-                int currentRunning = candidates.getRunningLoads().size();
-                int candidateCount = candidates.getCandidateFiles().size();
-                if (currentRunning == 0 && candidateCount == 0) {
+                // Bring the running loads and failure count up to date
+                if (Instant.now().isAfter(nextReconcile)) {
+                    failedLoads = reconcile(context, loadId, runningLoads);
+                    completedFlightIds.clear();
+                    nextReconcile = Instant.now().plusSeconds(RECONCILE_SECONDS);
+                } else {
+                    failedLoads += resolveCompletions(context, loadId, runningLoads, completedFlightIds);
+                }
+
+                int currentRunning = runningLoads.size();
+                List<LoadFile> candidateFiles = Collections.emptyList();
+                if (currentRunning < scaledConcurrentFiles) {
+                    candidateFiles = loadService.findCandidateFiles(loadId, scaledConcurrentFiles - currentRunning);
+                }
+
+                if (currentRunning == 0 && candidateFiles.isEmpty()) {
                     // Nothing doing and nothing to do
                     break;
                 }
 
                 // Test for exceeding max failed loads; if so, wait for all RUNNINGs to finish
-                if (candidates.getFailedLoads() > maxFailedFileLoads) {
-                    waitForAll(context, loadId, scaledConcurrentFiles);
+                if (failedLoads > maxFailedFileLoads) {
+                    waitForAll(context, loadId, listener, runningLoads, completedFlightIds);
                     break;
                 }
 
                 // Launch new loads
-                if (currentRunning < scaledConcurrentFiles) {
-                    // Compute how many loads to launch
-                    int launchCount = scaledConcurrentFiles - currentRunning;
-                    if (candidateCount < launchCount) {
-                        launchCount = candidateCount;
-                    }
-
-                    launchLoads(
-                        context,
-                        launchCount,
-                        candidates.getCandidateFiles(),
-                        profileId,
-                        loadId,
-                        bucketResource);
-
-                    currentRunning += launchCount;
-                }
+                createDirectories(dataset, loadId, candidateFiles, existingDirectories);
+                launchLoads(
+                    context,
+                    candidateFiles,
+                    profileId,
+                    loadId,
+                    bucketResource,
+                    runningLoads);
 
                 // Wait until some loads complete
-                waitForAny(context, loadId, scaledConcurrentFiles, currentRunning);
+                completedFlightIds.addAll(listener.waitForCompletions(driverWaitSeconds));
             }
-        } catch (DatabaseOperationException | StairwayExecutionException ex) {
+        } catch (DatabaseOperationException | StairwayExecutionException | LoadNotificationException ex) {
             return new StepResult(StepStatus.STEP_RESULT_FAILURE_RETRY, ex);
         }
+
+        deleteEmptyDirectories(dataset, loadId);
         return StepResult.getStepResultSuccess();
     }
 
     @Override
-    public StepResult undoStep(FlightContext context) {
+    public StepResult undoStep(FlightContext context) throws InterruptedException {
+        // If the step failed part way through, directories created for files that never loaded may be empty
+        UUID loadId = UUID.fromString(context.getWorkingMap().get(LoadMapKeys.LOAD_ID, String.class));
+        Dataset dataset = datasetService.retrieve(UUID.fromString(datasetId));
+        deleteEmptyDirectories(dataset, loadId);
         return StepResult.getStepResultSuccess();
     }
 
-    private void waitForAny(FlightContext context, UUID loadId, int concurrentLoads, int originallyRunning)
+    private void waitForAll(FlightContext context,
+                            UUID loadId,
+                            LoadCompletionListener listener,
+                            Map<String, LoadFile> runningLoads,
+                            Set<String> completedFlightIds)
         throws DatabaseOperationException, InterruptedException {
+        Instant nextReconcile = Instant.now().plusSeconds(RECONCILE_SECONDS);
         while (true) {
-            // This code used to wait before getting load candidates again. however,
-            // when there are a large number of files being loaded, there is always something completing.
-            // So we recheck right away before waiting and only wait if we did not find any new work to do
-            LoadCandidates candidates = getLoadCandidates(context, loadId, concurrentLoads);
-            if (candidates.getRunningLoads().size() < originallyRunning) {
-                break;
+            if (Instant.now().isAfter(nextReconcile)) {
+                reconcile(context, loadId, runningLoads);
+                completedFlightIds.clear();
+                nextReconcile = Instant.now().plusSeconds(RECONCILE_SECONDS);
+            } else {
+                resolveCompletions(context, loadId, runningLoads, completedFlightIds);
             }
-            waiting();
-        }
-    }
-
-    private void waitForAll(FlightContext context, UUID loadId, int concurrentLoads)
-        throws DatabaseOperationException, InterruptedException {
-        while (true) {
-            waiting();
-            LoadCandidates candidates = getLoadCandidates(context, loadId, concurrentLoads);
-            if (candidates.getRunningLoads().size() == 0) {
+            if (runningLoads.isEmpty()) {
                 break;
             }
+            logger.debug("Waiting for file loads to complete...");
+            completedFlightIds.addAll(listener.waitForCompletions(driverWaitSeconds));
         }
     }
 
-    private void waiting() throws InterruptedException {
-        logger.debug("Waiting for file loads to complete...");
-        TimeUnit.SECONDS.sleep(driverWaitSeconds);
-    }
-
     private void checkForOrphans(FlightContext context, UUID loadId)
         throws DatabaseOperationException, InterruptedException {
         // Check for launch orphans - these are loads in the RUNNING state in the load_files table
@@ -186,86 +237,176 @@ public class IngestDriverStep implements Step {
         }
     }
 
-    private LoadCandidates getLoadCandidates(FlightContext context, UUID loadId, int concurrentLoads)
+    // Rebuild the running loads from the database and return the failure count. This is the original polling
+    // algorithm. We use it to seed the in-memory state and as a periodic safety net for lost notifications.
+    private int reconcile(FlightContext context, UUID loadId, Map<String, LoadFile> runningLoads)
         throws DatabaseOperationException, InterruptedException {
         // We start by getting the database view of the state of loads.
         // For the running loads, we ask Stairway what the actual state is.
         // If they have completed, we mark them as such.
-        // We then update the failure count and runnings loads list in the
-        // LoadCandidates so it correctly reflects the running state
-        // right now (more or less).
-        LoadCandidates candidates = loadService.findCandidates(loadId, concurrentLoads);
-        logger.debug("Candidates from db: failedLoads={}  runningLoads={}  candidateFiles={}",
+        LoadCandidates candidates = loadService.findCandidates(loadId, 0);
+        logger.debug("Reconcile from db: failedLoads={}  runningLoads={}",
             candidates.getFailedLoads(),
-            candidates.getRunningLoads().size(),
-            candidates.getCandidateFiles().size());
+            candidates.getRunningLoads().size());
 
         int failureCount = candidates.getFailedLoads();
-        List<LoadFile> realRunningLoads = new LinkedList<>();
+        runningLoads.clear();
+        List<LoadFile> completedLoads = new ArrayList<>();
 
         for (LoadFile loadFile : candidates.getRunningLoads()) {
             FlightState flightState = context.getStairway().getFlightState(loadFile.getFlightId());
+            BulkLoadFileState state = resolveFlightState(loadFile, flightState);
+            if (state == BulkLoadFileState.RUNNING) {
+                runningLoads.put(loadFile.getFlightId(), loadFile);
+            } else {
+                completedLoads.add(loadFile);
+                if (state == BulkLoadFileState.FAILED) {
+                    failureCount++;
+                }
+            }
+        }
+        loadService.updateLoadFiles(loadId, completedLoads);
 
-            switch (flightState.getFlightStatus()) {
-                case RUNNING:
-                case WAITING:
-                case READY:
-                case QUEUED:
-                    logger.debug("~~running load - flight: " + flightState.getFlightId());
-                    realRunningLoads.add(loadFile);
-                    break;
+        logger.debug("Reconcile resolved: failedLoads={}  runningLoads={}", failureCount, runningLoads.size());
+        return failureCount;
+    }
 
-                case ERROR:
-                case FATAL: {
-                    logger.debug("~~error load - flight: " + flightState.getFlightId());
-                    String error = "unknown error";
-                    if (flightState.getException().isPresent()) {
-                        error = flightState.getException().get().toString();
-                    }
-                    loadService.setLoadFileFailed(loadId, loadFile.getTargetPath(), error);
-                    failureCount++;
-                    break;
+    // Look up the flights that told us they completed. Notifications may arrive before Stairway has
+    // recorded the final state of the flight; those stay in the completed set to be checked next time.
+    // Returns the number of newly failed loads.
+    private int resolveCompletions(FlightContext context,
+                                   UUID loadId,
+                                   Map<String, LoadFile> runningLoads,
+                                   Set<String> completedFlightIds)
+        throws DatabaseOperationException, InterruptedException {
+        int newFailures = 0;
+        List<LoadFile> completedLoads = new ArrayList<>();
+        Iterator<String> iterator = completedFlightIds.iterator();
+        while (iterator.hasNext()) {
+            String flightId = iterator.next();
+            LoadFile loadFile = runningLoads.get(flightId);
+            if (loadFile == null) {
+                // Already resolved by a reconcile
+                iterator.remove();
+                continue;
+            }
+
+            FlightState flightState = context.getStairway().getFlightState(flightId);
+            BulkLoadFileState state = resolveFlightState(loadFile, flightState);
+            if (state != BulkLoadFileState.RUNNING) {
+                runningLoads.remove(flightId);
+                iterator.remove();
+                completedLoads.add(loadFile);
+                if (state == BulkLoadFileState.FAILED) {
+                    newFailures++;
                 }
+            }
+        }
+        loadService.updateLoadFiles(loadId, completedLoads);
+        return newFailures;
+    }
 
-                case SUCCESS: {
-                    logger.debug("~~success load - flight: " + flightState.getFlightId());
-                    FlightMap resultMap = flightState.getResultMap().orElse(null);
-                    if (resultMap == null) {
-                        throw new FileSystemCorruptException("no result map in flight state");
-                    }
-                    String fileId = resultMap.get(FileMapKeys.FILE_ID, String.class);
-                    FSFileInfo fileInfo = resultMap.get(FileMapKeys.FILE_INFO, FSFileInfo.class);
-                    loadService.setLoadFileSucceeded(loadId, loadFile.getTargetPath(), fileId, fileInfo);
-                    break;
+    // Fill in the load file with the result of its flight. The caller writes the completed load files to the
+    // load_file table in one batch. Returns the resulting load state: RUNNING if the flight has not completed,
+    // otherwise FAILED or SUCCEEDED.
+    private BulkLoadFileState resolveFlightState(LoadFile loadFile, FlightState flightState) {
+        switch (flightState.getFlightStatus()) {
+            case RUNNING:
+            case WAITING:
+            case READY:
+            case QUEUED:
+                logger.debug("~~running load - flight: " + flightState.getFlightId());
+                return BulkLoadFileState.RUNNING;
+
+            case ERROR:
+            case FATAL: {
+                logger.debug("~~error load - flight: " + flightState.getFlightId());
+                String error = "unknown error";
+                if (flightState.getException().isPresent()) {
+                    error = flightState.getException().get().toString();
                 }
+                loadFile.state(BulkLoadFileState.FAILED).flightId(null).error(error);
+                return BulkLoadFileState.FAILED;
+            }
 
-                default:
-                    throw new CorruptMetadataException("Invalid flight state: " + flightState.getFlightStatus());
+            case SUCCESS: {
+                logger.debug("~~success load - flight: " + flightState.getFlightId());
+                FlightMap resultMap = flightState.getResultMap().orElse(null);
+                if (resultMap == null) {
+                    throw new FileSystemCorruptException("no result map in flight state");
+                }
+                String fileId = resultMap.get(FileMapKeys.FILE_ID, String.class);
+                FSFileInfo fileInfo = resultMap.get(FileMapKeys.FILE_INFO, FSFileInfo.class);
+                loadFile.state(BulkLoadFileState.SUCCEEDED).flightId(null).fileId(fileId);
+                if (fileInfo != null) {
+                    loadFile.checksumCrc32c(fileInfo.getChecksumCrc32c()).checksumMd5(fileInfo.getChecksumMd5());
+                }
+                return BulkLoadFileState.SUCCEEDED;
             }
+
+            default:
+                throw new CorruptMetadataException("Invalid flight state: " + flightState.getFlightStatus());
         }
+    }
 
-        candidates.failedLoads(failureCount).runningLoads(realRunningLoads);
-        logger.debug("Candidates resolved: failedLoads={}  runningLoads={}  candidateFiles={}",
-            candidates.getFailedLoads(),
-            candidates.getRunningLoads().size(),
-            candidates.getCandidateFiles().size());
+    // Create the directories for a batch of files in bulk, before launching their loads. This is an
+    // optimization, so failures are not fatal: the file loads create any directories that are missing.
+    // The directories we create are recorded for deleteEmptyDirectories.
+    private void createDirectories(Dataset dataset,
+                                   UUID loadId,
+                                   List<LoadFile> loadFiles,
+                                   LRUMap<String, Boolean> existingDirectories) throws InterruptedException {
+        if (loadFiles.isEmpty()) {
+            return;
+        }
+        List<String> targetPaths = loadFiles.stream().map(LoadFile::getTargetPath).collect(Collectors.toList());
+        try {
+            List<String> createdPaths = fileDao.createMissingDirectories(dataset, targetPaths, existingDirectories);
+            loadService.addLoadDirectories(loadId, createdPaths);
+        } catch (FileSystemExecutionException | FileSystemAbortTransactionException ex) {
+            logger.warn("Failed to create directories for file loads; the loads will create them", ex);
+        }
+    }
 
-        return candidates;
+    // The directories created by createDirectories are outside of the file load transactions, so the ones
+    // whose files all failed or were never tried are left empty. Delete them to keep the file system free of
+    // empty directories. If every file loaded, every directory holds a file and there is nothing to do.
+    // Otherwise we check only the directories this load created, a page at a time, deepest first.
+    private void deleteEmptyDirectories(Dataset dataset, UUID loadId) throws InterruptedException {
+        if (!loadService.hasUnloadedFiles(loadId)) {
+            return;
+        }
+        String afterDirPath = null;
+        List<String> page;
+        do {
+            page = loadService.findLoadDirectories(loadId, DIRECTORY_PAGE_SIZE, afterDirPath);
+            if (page.isEmpty()) {
+                break;
+            }
+            fileDao.deleteEmptyDirectories(dataset, page);
+            afterDirPath = page.get(page.size() - 1);
+        } while (page.size() == DIRECTORY_PAGE_SIZE);
     }
 
     private void launchLoads(FlightContext context,
-                             int launchCount,
                              List<LoadFile> loadFiles,
                              String profileId,
                              UUID loadId,
-                             GoogleBucketResource bucketInfo)
+                             GoogleBucketResource bucketInfo,
+                             Map<String, LoadFile> runningLoads)
         throws DatabaseOperationException, StairwayExecutionException, InterruptedException {
 
         Stairway stairway = context.getStairway();
 
-        for (int i = 0; i < launchCount; i++) {
-            LoadFile loadFile = loadFiles.get(i);
-            String flightId = stairway.createFlightId();
+        // Mark all of the files as running in one batch, then launch them
+        for (LoadFile loadFile : loadFiles) {
+            loadFile.flightId(stairway.createFlightId()).state(BulkLoadFileState.RUNNING);
+        }
+        logger.debug("~~set running loads - count: " + loadFiles.size());
+        loadService.updateLoadFiles(loadId, loadFiles);
+
+        for (LoadFile loadFile : loadFiles) {
+            String flightId = loadFile.getFlightId();
 
             FileLoadModel fileLoadModel = new FileLoadModel()
                 .sourcePath(loadFile.getSourcePath())
@@ -279,15 +420,15 @@ public class IngestDriverStep implements Step {
             inputParameters.put(FileMapKeys.DATASET_ID, datasetId);
             inputParameters.put(FileMapKeys.REQUEST, fileLoadModel);
             inputParameters.put(FileMapKeys.BUCKET_INFO, bucketInfo);
+            inputParameters.put(LoadMapKeys.LOAD_ID, loadId.toString());
 
-            logger.debug("~~set running load - flight: " + flightId);
-            loadService.setLoadFileRunning(loadId, loadFile.getTargetPath(), flightId);
             // NOTE: this is the window where we have recorded a flight as RUNNING in the load_file
             // table, but it has not yet been launched. A failure in this window leaves "orphan"
             // loads that are marked running, but not actually started. We handle this
             // with the check for launch orphans at the beginning of the do() method.
             // We use submitToQueue to spread the file loaders across multiple instances of datarepo.
             stairway.submitToQueue(flightId, FileIngestWorkerFlight.class, inputParameters);
+            runningLoads.put(flightId, loadFile);
         }
     }
 
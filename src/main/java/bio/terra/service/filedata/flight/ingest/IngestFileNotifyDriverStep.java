@@ -0,0 +1,61 @@
+package bio.terra.service.filedata.flight.ingest;
+
+import bio.terra.service.load.LoadService;
+import bio.terra.service.load.flight.LoadMapKeys;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.util.UUID;
+
+// Tells the bulk load driver that this worker flight is done, so the driver does not have to poll.
+// The worker flight adds this step twice: as the first step, where the undo announces that the flight
+// failed, and as the last step, where the do announces that the flight succeeded. In both cases, the
+// driver gets the actual outcome from Stairway; the notification only tells it which flight to look at.
+// Failing to notify is not an error. The driver periodically reconciles with the load_file table.
+//
+// It expects the following input parameters:
+// - LOAD_ID - load id of the bulk load that launched this flight
+//
+public class IngestFileNotifyDriverStep implements Step {
+    private static final Logger logger = LoggerFactory.getLogger(IngestFileNotifyDriverStep.class);
+
+    private final LoadService loadService;
+    private final boolean notifyOnDo;
+
+    public IngestFileNotifyDriverStep(LoadService loadService, boolean notifyOnDo) {
+        this.loadService = loadService;
+        this.notifyOnDo = notifyOnDo;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) {
+        if (notifyOnDo) {
+            notifyDriver(context);
+        }
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        if (!notifyOnDo) {
+            notifyDriver(context);
+        }
+        return StepResult.getStepResultSuccess();
+    }
+
+    private void notifyDriver(FlightContext context) {
+        String loadIdString = context.getInputParameters().get(LoadMapKeys.LOAD_ID, String.class);
+        if (loadIdString == null) {
+            return;
+        }
+        try {
+            loadService.notifyLoadFileComplete(UUID.fromString(loadIdString), context.getFlightId());
+        } catch (DataAccessException ex) {
+            logger.warn("Failed to notify load driver of completion of flight " + context.getFlightId(), ex);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package bio.terra.service.filedata.flight.ingest;
 
-import bio.terra.model.BulkLoadFileModel;
 import bio.terra.model.BulkLoadRequestModel;
 import bio.terra.service.filedata.exception.BulkLoadControlFileException;
 import bio.terra.service.filedata.google.gcs.GcsBufferedReader;
@@ -13,20 +12,18 @@ import bio.terra.stairway.FlightContext;
 import bio.terra.stairway.FlightMap;
 import bio.terra.stairway.Step;
 import bio.terra.stairway.StepResult;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.cloud.storage.Storage;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.UUID;
 
-// Populate the files to be loaded from the incoming array
+// Populate the files to be loaded from the control file. See IngestControlFilePipeline for how
+// reading, parsing, and writing are overlapped.
 public class IngestPopulateFileStateFromFileStep implements Step {
+    // Read the control file from GCS in large chunks to cut down on round trips
+    private static final int CONTROL_FILE_CHUNK_SIZE = 8 * 1024 * 1024;
+
     private final LoadService loadService;
     private final int maxBadLines;
     private final int batchSize;
@@ -43,13 +40,7 @@ public class IngestPopulateFileStateFromFileStep implements Step {
     }
 
     @Override
-    public StepResult doStep(FlightContext context) {
-        // Ensure that file ingestion works with extra key-value pairs
-        ObjectMapper objectMapper = new ObjectMapper()
-            .registerModule(new Jdk8Module())
-            .registerModule(new JavaTimeModule())
-            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
-
+    public StepResult doStep(FlightContext context) throws InterruptedException {
         FlightMap inputParameters = context.getInputParameters();
         BulkLoadRequestModel loadRequest =
             inputParameters.get(JobMapKeys.REQUEST.getKeyName(), BulkLoadRequestModel.class);
@@ -59,45 +50,14 @@ public class IngestPopulateFileStateFromFileStep implements Step {
         GoogleBucketResource bucketResource = IngestUtils.getBucketInfo(context);
         Storage storage = gcsPdao.storageForBucket(bucketResource);
         String projectId = bucketResource.projectIdForBucket();
-        List<String> errorDetails = new ArrayList<>();
-
-        try (BufferedReader reader = new GcsBufferedReader(storage, projectId, loadRequest.getLoadControlFile())) {
-            long lineCount = 0;
-            List<BulkLoadFileModel> fileList = new ArrayList<>();
-
-            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                lineCount++;
 
-                try {
-                    BulkLoadFileModel loadFile = objectMapper.readValue(line, BulkLoadFileModel.class);
-                    fileList.add(loadFile);
-                } catch (IOException ex) {
-                    errorDetails.add("Format error at line " + lineCount + ": " + ex.getMessage());
-                    if (errorDetails.size() > maxBadLines) {
-                        throw new BulkLoadControlFileException(
-                            "More than " + maxBadLines + " bad lines in the control file",
-                            errorDetails);
-                    }
-                }
-
-                // Keep this check and load out of the inner try; it should only catch objectMapper failures
-                if (fileList.size() > batchSize) {
-                    loadService.populateFiles(loadId, fileList);
-                    fileList.clear();
-                }
-            }
-
-            // If there are errors in the load file, don't do the load
-            if (errorDetails.size() > 0) {
-                throw new BulkLoadControlFileException(
-                    "There were " + errorDetails.size() + " bad lines in the control file",
-                    errorDetails);
-            }
-
-            if (fileList.size() > 0) {
-                loadService.populateFiles(loadId, fileList);
-            }
+        // On a retry, we may have populated some of the files already; start over
+        loadService.cleanFiles(loadId);
 
+        IngestControlFilePipeline pipeline = new IngestControlFilePipeline(loadService, maxBadLines, batchSize);
+        try (BufferedReader reader = new GcsBufferedReader(
+            storage, projectId, loadRequest.getLoadControlFile(), CONTROL_FILE_CHUNK_SIZE)) {
+            pipeline.populate(reader, loadId);
         } catch (IOException ex) {
             throw new BulkLoadControlFileException("Failure accessing the load control file", ex);
         }
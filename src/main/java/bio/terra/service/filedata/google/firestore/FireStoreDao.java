@@ -13,6 +13,9 @@ import bio.terra.service.resourcemanagement.DataLocationService;
 import bio.terra.service.snapshot.Snapshot;
 import bio.terra.service.snapshot.SnapshotDataProject;
 import com.google.cloud.firestore.Firestore;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.apache.commons.collections4.ListUtils;
+import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,8 +25,13 @@ import org.springframework.stereotype.Component;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static bio.terra.service.configuration.ConfigEnum.FIRESTORE_SNAPSHOT_BATCH_SIZE;
 
@@ -71,6 +79,23 @@ public class FireStoreDao {
         directoryDao.createDirectoryEntry(firestore, datasetId, newEntry);
     }
 
+    public List<String> createMissingDirectories(Dataset dataset,
+                                                 List<String> filePaths,
+                                                 LRUMap<String, Boolean> existingDirectories)
+        throws InterruptedException {
+        DatasetDataProject dataProject = dataLocationService.getProjectOrThrow(dataset);
+        Firestore firestore = FireStoreProject.get(dataProject.getGoogleProjectId()).getFirestore();
+        String datasetId = dataset.getId().toString();
+        return directoryDao.createMissingDirectories(firestore, datasetId, filePaths, existingDirectories);
+    }
+
+    public int deleteEmptyDirectories(Dataset dataset, List<String> dirPaths) throws InterruptedException {
+        DatasetDataProject dataProject = dataLocationService.getProjectOrThrow(dataset);
+        Firestore firestore = FireStoreProject.get(dataProject.getGoogleProjectId()).getFirestore();
+        String datasetId = dataset.getId().toString();
+        return directoryDao.deleteEmptyDirectories(firestore, datasetId, dirPaths);
+    }
+
     public boolean deleteDirectoryEntry(Dataset dataset, String fileId) throws InterruptedException {
         DatasetDataProject dataProject = dataLocationService.getProjectOrThrow(dataset);
         Firestore firestore = FireStoreProject.get(dataProject.getGoogleProjectId()).getFirestore();
@@ -158,17 +183,7 @@ public class FireStoreDao {
         SnapshotDataProject dataProject = dataLocationService.getProjectOrThrow(snapshot);
         Firestore firestore = FireStoreProject.get(dataProject.getGoogleProjectId()).getFirestore();
         String snapshotId = snapshot.getId().toString();
-        FireStoreDirectoryEntry topDir = directoryDao.retrieveByPath(firestore, snapshotId, "/");
-        // If topDir is null, it means no files were added to the snapshot file system in the previous
-        // step. So there is nothing to compute
-        if (topDir != null) {
-            // We batch the updates to firestore by collecting updated entries into this list,
-            // and when we get enough, writing them out.
-            List<FireStoreDirectoryEntry> updateBatch = new ArrayList<>();
-            computeDirectory(firestore, snapshotId, topDir, updateBatch);
-            // Write the last batch out
-            directoryDao.batchStoreDirectoryEntry(firestore, snapshotId, updateBatch);
-        }
+        computeSnapshot(firestore, snapshotId);
     }
 
     /**
@@ -272,6 +287,59 @@ public class FireStoreDao {
         return resultList;
     }
 
+    /**
+     * Retrieve a batch of files and directories by id. Unlike batchRetrieveById, an id that is not found does not
+     * fail the batch. The directory entries and the file metadata are read with batched gets, the metadata from
+     * the dataset of each file. Directories are enumerated one at a time.
+     *
+     * @param container - dataset or snapshot containing the directory entries
+     * @param fileIds   - list of file and directory ids
+     * @return list parallel to fileIds, with a null for each id that is not found or whose file is not done
+     * being created
+     */
+    public List<FSItem> batchRetrieveItemsById(
+        FSContainerInterface container,
+        List<String> fileIds,
+        int enumerateDepth) throws InterruptedException {
+
+        Firestore firestore = FireStoreProject.get(getProjectIdForFSContainer(container)).getFirestore();
+        String containerId = container.getId().toString();
+
+        List<FireStoreDirectoryEntry> directoryEntries =
+            directoryDao.batchLookupById(firestore, containerId, fileIds);
+
+        List<FSItem> resultList = new ArrayList<>(Collections.nCopies(fileIds.size(), null));
+        Map<String, List<Integer>> filePositionsByDataset = new HashMap<>();
+        for (int i = 0; i < directoryEntries.size(); i++) {
+            FireStoreDirectoryEntry entry = directoryEntries.get(i);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.getIsFileRef()) {
+                filePositionsByDataset.computeIfAbsent(entry.getDatasetId(), k -> new ArrayList<>()).add(i);
+            } else {
+                resultList.set(i, makeFSDir(firestore, containerId, enumerateDepth, entry));
+            }
+        }
+
+        for (Map.Entry<String, List<Integer>> datasetPositions : filePositionsByDataset.entrySet()) {
+            List<Integer> positions = datasetPositions.getValue();
+            List<FireStoreDirectoryEntry> fileEntries = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                fileEntries.add(directoryEntries.get(position));
+            }
+            List<FireStoreFile> files =
+                fileDao.batchRetrieveFileMetadata(firestore, datasetPositions.getKey(), fileEntries, false);
+            for (int j = 0; j < positions.size(); j++) {
+                if (files.get(j) != null) {
+                    resultList.set(positions.get(j), makeFSFile(containerId, fileEntries.get(j), files.get(j)));
+                }
+            }
+        }
+
+        return resultList;
+    }
+
     public List<String> validateRefIds(Dataset dataset, List<String> refIdArray) throws InterruptedException {
         DatasetDataProject dataProject = dataLocationService.getProjectOrThrow(dataset);
         Firestore firestore = FireStoreProject.get(dataProject.getGoogleProjectId()).getFirestore();
@@ -279,6 +347,18 @@ public class FireStoreDao {
         return directoryDao.validateRefIds(firestore, datasetId, refIdArray);
     }
 
+    /**
+     * Write the file id index for the directory entries of a dataset or snapshot.
+     *
+     * @param container - dataset or snapshot whose directory collection to index
+     * @return number of index documents written
+     */
+    public int backfillFileIdIndex(FSContainerInterface container) throws InterruptedException {
+        Firestore firestore = FireStoreProject.get(getProjectIdForFSContainer(container)).getFirestore();
+        String containerId = container.getId().toString();
+        return directoryDao.backfillFileIdIndex(firestore, containerId);
+    }
+
 
     // -- private methods --
 
@@ -367,8 +447,6 @@ public class FireStoreDao {
             throw new IllegalStateException("Expected file; got directory!");
         }
 
-        String fullPath =
-            fireStoreUtils.getFullPath(fireStoreDirectoryEntry.getPath(), fireStoreDirectoryEntry.getName());
         String fileId = fireStoreDirectoryEntry.getFileId();
 
         // Lookup the file in its owning dataset, not in the collection. The collection may be a snapshot directory
@@ -379,9 +457,18 @@ public class FireStoreDao {
             return null;
         }
 
+        return makeFSFile(collectionId, fireStoreDirectoryEntry, fireStoreFile);
+    }
+
+    private FSFile makeFSFile(String collectionId,
+                              FireStoreDirectoryEntry fireStoreDirectoryEntry,
+                              FireStoreFile fireStoreFile) {
+        String fullPath =
+            fireStoreUtils.getFullPath(fireStoreDirectoryEntry.getPath(), fireStoreDirectoryEntry.getName());
+
         FSFile fsFile = new FSFile();
         fsFile
-            .fileId(UUID.fromString(fileId))
+            .fileId(UUID.fromString(fireStoreDirectoryEntry.getFileId()))
             .collectionId(UUID.fromString(collectionId))
             .datasetId(UUID.fromString(fireStoreDirectoryEntry.getDatasetId()))
             .createdDate(Instant.parse(fireStoreFile.getFileCreatedDate()))
@@ -398,43 +485,129 @@ public class FireStoreDao {
         return fsFile;
     }
 
-    // Recursively compute the size and checksums of a directory
-    FireStoreDirectoryEntry computeDirectory(
-        Firestore firestore,
-        String snapshotId,
-        FireStoreDirectoryEntry dirEntry,
-        List<FireStoreDirectoryEntry> updateBatch) throws InterruptedException {
-
-        String fullPath = fireStoreUtils.getFullPath(dirEntry.getPath(), dirEntry.getName());
-        List<FireStoreDirectoryEntry> enumDir = directoryDao.enumerateDirectory(firestore, snapshotId, fullPath);
-
-        // Recurse to compute results from underlying directories
-        List<FireStoreDirectoryEntry> enumComputed = new ArrayList<>();
-        for (FireStoreDirectoryEntry dirItem : enumDir) {
-            if (dirItem.getIsFileRef()) {
-                // Read the file metadata to get the size and checksum. We do a bit of a hack and copy
-                // the size and checksums into the in-memory dirItem. That way we only compute on the directory
-                // objects.
-                FireStoreFile file =
-                    fileDao.retrieveFileMetadata(firestore, dirItem.getDatasetId(), dirItem.getFileId());
-
-                dirItem
+    // -- Snapshot compute --
+    //
+    // To compute the size and checksums of the snapshot directories, we:
+    // 1. Stream all of the snapshot directory entries once, a batch at a time. File references carry the size
+    //    and checksums of their files, copied when they were added to the snapshot. For file references made
+    //    before we did that, we read the file metadata with batched gets and copy the size and checksums into
+    //    the in-memory entries. That way we only compute on the directory objects.
+    // 2. Build the directory tree in memory and compute it bottom-up with a fork-join pool: the task for a
+    //    directory forks the tasks for its subdirectories and computes the directory once they have joined,
+    //    so independent subtrees are computed in parallel.
+    // 3. Write the computed directory entries back with batched writes.
+
+    // Compute the size and checksums of all directories in the snapshot directory collection
+    void computeSnapshot(Firestore firestore, String snapshotId) throws InterruptedException {
+        Map<String, List<FireStoreDirectoryEntry>> contentsByPath = new HashMap<>();
+        List<FireStoreDirectoryEntry> directories = new ArrayList<>();
+        AtomicReference<FireStoreDirectoryEntry> rootDirectory = new AtomicReference<>();
+
+        directoryDao.scanDirectoryEntries(firestore, snapshotId, batch -> {
+            retrieveFileSizeAndChecksums(firestore, batch);
+            for (FireStoreDirectoryEntry entry : batch) {
+                if (!entry.getIsFileRef()) {
+                    directories.add(entry);
+                }
+                if (isRootDirectory(entry)) {
+                    rootDirectory.set(entry);
+                } else {
+                    contentsByPath.computeIfAbsent(entry.getPath(), k -> new ArrayList<>()).add(entry);
+                }
+            }
+        });
+
+        // If there is no root directory, it means no files were added to the snapshot file system in the
+        // previous step. So there is nothing to compute
+        if (rootDirectory.get() == null) {
+            return;
+        }
+        logger.info("Snapshot compute on {} directories", directories.size());
+
+        ForkJoinPool computePool = new ForkJoinPool();
+        try {
+            computePool.invoke(new ComputeDirectoryTask(rootDirectory.get(), contentsByPath));
+        } finally {
+            computePool.shutdown();
+        }
+
+        int batchSize = configurationService.getParameterValue(FIRESTORE_SNAPSHOT_BATCH_SIZE);
+        for (List<FireStoreDirectoryEntry> updateBatch : ListUtils.partition(directories, batchSize)) {
+            logger.info("Snapshot compute updating batch of {} directory entries", updateBatch.size());
+            directoryDao.batchUpdateDirectoryEntry(firestore, snapshotId, updateBatch);
+        }
+    }
+
+    // Read the file metadata of the file references that do not have their size, one batched read per dataset,
+    // and copy the size and checksums into the entries.
+    private void retrieveFileSizeAndChecksums(Firestore firestore, List<FireStoreDirectoryEntry> entries)
+        throws InterruptedException {
+        Map<String, List<FireStoreDirectoryEntry>> fileRefsByDataset = new HashMap<>();
+        for (FireStoreDirectoryEntry entry : entries) {
+            if (entry.getIsFileRef() && entry.getSize() == null) {
+                fileRefsByDataset.computeIfAbsent(entry.getDatasetId(), k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        for (Map.Entry<String, List<FireStoreDirectoryEntry>> datasetFileRefs : fileRefsByDataset.entrySet()) {
+            List<FireStoreDirectoryEntry> fileRefs = datasetFileRefs.getValue();
+            List<FireStoreFile> files =
+                fileDao.batchRetrieveFileMetadata(firestore, datasetFileRefs.getKey(), fileRefs);
+            for (int i = 0; i < fileRefs.size(); i++) {
+                FireStoreFile file = files.get(i);
+                fileRefs.get(i)
                     .size(file.getSize())
                     .checksumMd5(file.getChecksumMd5())
                     .checksumCrc32c(file.getChecksumCrc32c());
+            }
+        }
+    }
 
-                enumComputed.add(dirItem);
-            } else {
-                enumComputed.add(computeDirectory(firestore, snapshotId, dirItem, updateBatch));
+    private boolean isRootDirectory(FireStoreDirectoryEntry entry) {
+        return StringUtils.isEmpty(entry.getPath()) && StringUtils.isEmpty(entry.getName());
+    }
+
+    // Computes a directory after computing its subdirectories. The contents map is only read, and each
+    // task only updates its own directory entry, so the tasks need no synchronization.
+    @SuppressFBWarnings(
+        value = {"SE_BAD_FIELD", "SE_BAD_FIELD_INNER_CLASS"},
+        justification = "Fork-join tasks are Serializable, but these are never serialized")
+    private final class ComputeDirectoryTask extends RecursiveAction {
+        private final FireStoreDirectoryEntry dirEntry;
+        private final Map<String, List<FireStoreDirectoryEntry>> contentsByPath;
+
+        ComputeDirectoryTask(FireStoreDirectoryEntry dirEntry,
+                             Map<String, List<FireStoreDirectoryEntry>> contentsByPath) {
+            this.dirEntry = dirEntry;
+            this.contentsByPath = contentsByPath;
+        }
+
+        @Override
+        protected void compute() {
+            String fullPath = fireStoreUtils.getFullPath(dirEntry.getPath(), dirEntry.getName());
+            List<FireStoreDirectoryEntry> contents =
+                contentsByPath.getOrDefault(fullPath, Collections.emptyList());
+
+            List<ComputeDirectoryTask> subdirTasks = new ArrayList<>();
+            for (FireStoreDirectoryEntry dirItem : contents) {
+                if (!dirItem.getIsFileRef()) {
+                    subdirTasks.add(new ComputeDirectoryTask(dirItem, contentsByPath));
+                }
             }
+            invokeAll(subdirTasks);
+
+            computeDirectory(dirEntry, contents);
         }
+    }
 
+    // Compute the size and checksums of a directory from its computed contents
+    private void computeDirectory(FireStoreDirectoryEntry dirEntry, List<FireStoreDirectoryEntry> contents) {
         // Collect the ingredients for computing this directory's checksums and size
         List<String> md5Collection = new ArrayList<>();
         List<String> crc32cCollection = new ArrayList<>();
         Long totalSize = 0L;
 
-        for (FireStoreDirectoryEntry dirItem : enumComputed) {
+        for (FireStoreDirectoryEntry dirItem : contents) {
             totalSize = totalSize + dirItem.getSize();
             crc32cCollection.add(StringUtils.lowerCase(dirItem.getChecksumCrc32c()));
             if (dirItem.getChecksumMd5() != null) {
@@ -462,24 +635,6 @@ public class FireStoreDao {
             .checksumCrc32c(crc32cChecksum)
             .checksumMd5(md5Checksum)
             .size(totalSize);
-        updateEntry(firestore, snapshotId, dirEntry, updateBatch);
-
-        return dirEntry;
-    }
-
-    private void updateEntry(
-        Firestore firestore,
-        String snapshotId,
-        FireStoreDirectoryEntry entry,
-        List<FireStoreDirectoryEntry> updateBatch) throws InterruptedException {
-
-        updateBatch.add(entry);
-        int batchSize = configurationService.getParameterValue(FIRESTORE_SNAPSHOT_BATCH_SIZE);
-        if (updateBatch.size() >= batchSize) {
-            logger.info("Snapshot compute updating batch of {} directory entries", batchSize);
-            directoryDao.batchStoreDirectoryEntry(firestore, snapshotId, updateBatch);
-            updateBatch.clear();
-        }
     }
 
     private String getProjectIdForFSContainer(FSContainerInterface container) {
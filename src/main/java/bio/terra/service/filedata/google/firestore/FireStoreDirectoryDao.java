@@ -15,6 +15,7 @@ import com.google.cloud.firestore.Query;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
 import com.google.cloud.firestore.QuerySnapshot;
 import com.google.cloud.firestore.Transaction;
+import com.google.cloud.firestore.WriteBatch;
 import com.google.cloud.firestore.WriteResult;
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.collections4.map.LRUMap;
@@ -26,7 +27,11 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 
@@ -67,6 +72,19 @@ import static bio.terra.service.configuration.ConfigEnum.FIRESTORE_VALIDATE_BATC
  * <p>It is an invariant that there are no empty directories. When a directory becomes empty on a
  * delete, it is deleted. When a directory is needed, we create it. That is all done within
  * transactions so there is never a time where the externally visible state violates that invariant.
+ * The one exception is bulk load, which creates the directories for a batch of files before loading
+ * them; it deletes the ones left empty by files that did not load when the load is done.
+ *
+ * <p>Since documents are named by path, finding an entry by its file id would take a query on the
+ * fileId field. Instead, we keep a file id index collection alongside each directory collection. Its
+ * documents are named by file id and hold the full path of the entry, so a lookup by id is two
+ * document reads. Index documents are written in the same transaction or batch as their directory
+ * entries. An index document can outlive its entry, for instance when an entry is overwritten, so
+ * readers check the file id of the entry they find. Entries written before the index existed are
+ * found with the fileId query until {@link #backfillFileIdIndex} has been run on their collection.
+ * The query is also how we find entries written by a writer that does not maintain the index, such as
+ * an older version of this code still running during a rolling deploy, so a lookup always falls back
+ * to it when the index misses. When the query finds an entry, we write its missing index document.
  */
 @Component
 public class FireStoreDirectoryDao {
@@ -75,14 +93,17 @@ public class FireStoreDirectoryDao {
     private static final String ROOT_DIR_NAME = "/_dr_";
 
     private final FireStoreUtils fireStoreUtils;
+    private final FireStoreFileDao fileDao;
     private final PerformanceLogger performanceLogger;
     private final ConfigurationService configurationService;
 
     @Autowired
     public FireStoreDirectoryDao(FireStoreUtils fireStoreUtils,
+                                 FireStoreFileDao fileDao,
                                  PerformanceLogger performanceLogger,
                                  ConfigurationService configurationService) {
         this.fireStoreUtils = fireStoreUtils;
+        this.fileDao = fileDao;
         this.performanceLogger = performanceLogger;
         this.configurationService = configurationService;
     }
@@ -121,9 +142,11 @@ public class FireStoreDirectoryDao {
 
                     for (FireStoreDirectoryEntry dirToCreate : createList) {
                         xn.set(getDocRef(firestore, collectionId, dirToCreate), dirToCreate);
+                        xn.set(getIndexDocRef(firestore, collectionId, dirToCreate), makeIndexEntry(dirToCreate));
                     }
 
                     xn.set(getDocRef(firestore, collectionId, createEntry), createEntry);
+                    xn.set(getIndexDocRef(firestore, collectionId, createEntry), makeIndexEntry(createEntry));
                     return null;
                 });
 
@@ -142,11 +165,12 @@ public class FireStoreDirectoryDao {
                     List<DocumentReference> deleteList = new ArrayList<>();
 
                     // Look up the directory entry by id. If it doesn't exist, we're done
-                    QueryDocumentSnapshot leafSnap = lookupByFileId(firestore, collectionId, fileId, xn);
+                    DocumentSnapshot leafSnap = lookupByFileId(firestore, collectionId, fileId, xn, false);
                     if (leafSnap == null) {
                         return false;
                     }
                     deleteList.add(leafSnap.getReference());
+                    deleteList.add(getIndexDocRef(firestore, collectionId, fileId));
 
                     FireStoreDirectoryEntry leafEntry = leafSnap.toObject(FireStoreDirectoryEntry.class);
                     String lookupPath = makeLookupPath(leafEntry.getPath());
@@ -165,6 +189,12 @@ public class FireStoreDirectoryDao {
                         DocumentReference docRef =
                             datasetCollection.document(encodePathAsFirestoreDocumentName(lookupPath));
                         deleteList.add(docRef);
+
+                        // We need the directory's file id to delete its index document
+                        DocumentSnapshot dirSnap = xn.get(docRef).get();
+                        if (dirSnap.exists()) {
+                            deleteList.add(getIndexDocRef(firestore, collectionId, dirSnap.getString("fileId")));
+                        }
                         lookupPath = fireStoreUtils.getDirectoryPath(lookupPath);
                     }
 
@@ -184,6 +214,11 @@ public class FireStoreDirectoryDao {
 
         fireStoreUtils.scanCollectionObjects(
             firestore, collectionId, DELETE_BATCH_SIZE, document -> document.getReference().delete());
+        fireStoreUtils.scanCollectionObjects(
+            firestore,
+            fileIdIndexCollectionId(collectionId),
+            DELETE_BATCH_SIZE,
+            document -> document.getReference().delete());
     }
 
     // Returns null if not found - upper layers do any throwing
@@ -193,7 +228,7 @@ public class FireStoreDirectoryDao {
         ApiFuture<FireStoreDirectoryEntry> transaction =
             firestore.runTransaction(
                 xn -> {
-                    QueryDocumentSnapshot docSnap = lookupByFileId(firestore, collectionId, fileId, xn);
+                    DocumentSnapshot docSnap = lookupByFileId(firestore, collectionId, fileId, xn, true);
                     if (docSnap == null) {
                         return null;
                     }
@@ -284,7 +319,10 @@ public class FireStoreDirectoryDao {
 
     private DocumentReference getDocRef(
         Firestore firestore, String collectionId, String path, String name) {
-        String fullPath = fireStoreUtils.getFullPath(path, name);
+        return getDocRef(firestore, collectionId, fireStoreUtils.getFullPath(path, name));
+    }
+
+    private DocumentReference getDocRef(Firestore firestore, String collectionId, String fullPath) {
         String lookupPath = makeLookupPath(fullPath);
         return firestore
             .collection(collectionId)
@@ -306,11 +344,22 @@ public class FireStoreDirectoryDao {
         }
     }
 
-    // Returns null if not found
-    private QueryDocumentSnapshot lookupByFileId(
-        Firestore firestore, String collectionId, String fileId, Transaction xn)
+    // Returns null if not found. Reads through the file id index; entries that are not in the index
+    // are found by querying on the fileId field. If repairIndex is true, the index document of an entry
+    // found by the query is written in the transaction, so the caller must not do any more reads in it.
+    private DocumentSnapshot lookupByFileId(
+        Firestore firestore, String collectionId, String fileId, Transaction xn, boolean repairIndex)
         throws InterruptedException {
         try {
+            DocumentSnapshot indexSnap = xn.get(getIndexDocRef(firestore, collectionId, fileId)).get();
+            if (indexSnap.exists()) {
+                String fullPath = indexSnap.toObject(FireStoreFileIdEntry.class).getPath();
+                DocumentSnapshot docSnap = xn.get(getDocRef(firestore, collectionId, fullPath)).get();
+                if (isEntryForFileId(docSnap, fileId)) {
+                    return docSnap;
+                }
+            }
+
             CollectionReference datasetCollection = firestore.collection(collectionId);
             Query query = datasetCollection.whereEqualTo("fileId", fileId);
             ApiFuture<QuerySnapshot> querySnapshot = xn.get(query);
@@ -336,7 +385,12 @@ public class FireStoreDirectoryDao {
                 throw new FileSystemAbortTransactionException("lookupByFileId found too many entries");
             }
 
-            return documents.get(0);
+            DocumentSnapshot docSnap = documents.get(0);
+            if (repairIndex) {
+                FireStoreDirectoryEntry entry = docSnap.toObject(FireStoreDirectoryEntry.class);
+                xn.set(getIndexDocRef(firestore, collectionId, entry), makeIndexEntry(entry));
+            }
+            return docSnap;
 
         } catch (AbortedException | ExecutionException ex) {
             throw fireStoreUtils.handleExecutionException(ex, "lookupByFileId");
@@ -377,6 +431,161 @@ public class FireStoreDirectoryDao {
         return StringUtils.removeStart(lookupPath, ROOT_DIR_NAME);
     }
 
+    // Same as makePathFromLookupPath, except that the root directory is "/". That is the path its children
+    // have, so it can be used to query for them.
+    private String makeDirectoryPathFromLookupPath(String lookupPath) {
+        String fullPath = makePathFromLookupPath(lookupPath);
+        return fullPath.isEmpty() ? "/" : fullPath;
+    }
+
+    // -- Bulk load directory methods --
+
+    // Firestore limit on the number of writes in a batch
+    private static final int MAX_BATCH_WRITES = 500;
+
+    /**
+     * Create the directories needed by a batch of files that are about to be loaded. Without this, each file's
+     * createDirectoryEntry transaction reads every missing ancestor and writes the missing directories, so the
+     * file loads of a bulk load contend on their shared parent directories. Once the directories exist, each
+     * file transaction reads only its parent directory and writes only its own entry.
+     *
+     * The caller keeps the existing directories cache for the life of the load, so a directory is looked up
+     * at most once per load, subject to the cache size. The missing directories are created with batched writes,
+     * shallowest first, so a directory is never committed before its parent. Creating the directories here is
+     * only an optimization: if a batch fails, we stop, and the file transactions create whatever is missing.
+     *
+     * These writes are outside of the file transactions, so a directory stays empty if none of its files load.
+     * The caller must keep the directories this returns and pass them to {@link #deleteEmptyDirectories} when
+     * it is done.
+     *
+     * @param filePaths full paths of the files to be loaded
+     * @param existingDirectories lookup paths of the directories known to exist; updated by this method
+     * @return full paths of the directories created
+     */
+    public List<String> createMissingDirectories(Firestore firestore,
+                                                 String collectionId,
+                                                 List<String> filePaths,
+                                                 LRUMap<String, Boolean> existingDirectories)
+        throws InterruptedException {
+
+        // Walk up from each file until we reach a directory that we know exists, or that we have already
+        // collected. In either case, its ancestors are already accounted for.
+        Set<String> pathsToCheck = new HashSet<>();
+        for (String filePath : filePaths) {
+            for (String testPath = makeLookupPath(fireStoreUtils.getDirectoryPath(filePath));
+                 !testPath.isEmpty();
+                 testPath = fireStoreUtils.getDirectoryPath(testPath)) {
+
+                if (existingDirectories.containsKey(testPath) || !pathsToCheck.add(testPath)) {
+                    break;
+                }
+            }
+        }
+        if (pathsToCheck.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // A parent path is always shorter than its children's paths
+        List<String> lookupPaths = new ArrayList<>(pathsToCheck);
+        lookupPaths.sort(Comparator.comparingInt(String::length));
+
+        CollectionReference collection = firestore.collection(collectionId);
+        List<DocumentReference> docRefs = new ArrayList<>(lookupPaths.size());
+        for (String lookupPath : lookupPaths) {
+            docRefs.add(collection.document(encodePathAsFirestoreDocumentName(lookupPath)));
+        }
+        List<DocumentSnapshot> documents = fireStoreUtils.batchGetDocuments(firestore, docRefs);
+
+        List<String> missingPaths = new ArrayList<>();
+        for (int i = 0; i < lookupPaths.size(); i++) {
+            if (documents.get(i).exists()) {
+                existingDirectories.put(lookupPaths.get(i), true);
+            } else {
+                missingPaths.add(lookupPaths.get(i));
+            }
+        }
+
+        // Each directory takes two writes: its entry and its index document
+        List<String> createdPaths = new ArrayList<>();
+        for (List<String> batchPaths : ListUtils.partition(missingPaths, MAX_BATCH_WRITES / 2)) {
+            WriteBatch writeBatch = firestore.batch();
+            for (String lookupPath : batchPaths) {
+                DocumentReference docRef = collection.document(encodePathAsFirestoreDocumentName(lookupPath));
+                FireStoreDirectoryEntry dirToCreate = makeDirectoryEntry(lookupPath);
+                writeBatch.create(docRef, dirToCreate);
+                writeBatch.set(getIndexDocRef(firestore, collectionId, dirToCreate), makeIndexEntry(dirToCreate));
+            }
+            try {
+                writeBatch.commit().get();
+            } catch (AbortedException | ExecutionException ex) {
+                // Most likely a file load created one of these directories after we looked. Leave the rest
+                // to the file load transactions.
+                logger.info("Stopped creating directories for bulk load after " + createdPaths.size() + ": " + ex);
+                break;
+            }
+            for (String lookupPath : batchPaths) {
+                existingDirectories.put(lookupPath, true);
+                createdPaths.add(makeDirectoryPathFromLookupPath(lookupPath));
+            }
+        }
+
+        logger.info("Checked {} directories and created {} for a batch of {} files",
+            lookupPaths.size(), createdPaths.size(), filePaths.size());
+        return createdPaths;
+    }
+
+    /**
+     * Delete the directories in this list that are empty. The directories made by
+     * {@link #createMissingDirectories} are written outside of the file transactions, so if a file is never
+     * loaded, they can be left empty. The bulk load calls this with the directories it created, to restore the
+     * invariant that there are no empty directories. It can call this a page of directories at a time, as long
+     * as it passes the deeper directories first.
+     *
+     * Each directory is checked and deleted in its own transaction, deepest first, so a directory that is only
+     * emptied by deleting its subdirectories is deleted too. A directory that a file load has written into since
+     * is not empty, so it is left alone.
+     *
+     * @param dirPaths full paths of directories created by {@link #createMissingDirectories}
+     * @return number of directories deleted
+     */
+    public int deleteEmptyDirectories(Firestore firestore,
+                                      String collectionId,
+                                      List<String> dirPaths) throws InterruptedException {
+        // A child path is always longer than its parent's path
+        List<String> sortedPaths = new ArrayList<>(dirPaths);
+        sortedPaths.sort(Comparator.comparingInt(String::length).reversed());
+
+        CollectionReference collection = firestore.collection(collectionId);
+        int deletedCount = 0;
+        for (String childPath : sortedPaths) {
+            String lookupPath = makeLookupPath(childPath);
+            DocumentReference docRef = collection.document(encodePathAsFirestoreDocumentName(lookupPath));
+
+            ApiFuture<Boolean> transaction =
+                firestore.runTransaction(
+                    xn -> {
+                        DocumentSnapshot dirSnap = xn.get(docRef).get();
+                        if (!dirSnap.exists()) {
+                            return false;
+                        }
+                        Query query = collection.whereEqualTo("path", childPath).limit(1);
+                        if (!xn.get(query).get().isEmpty()) {
+                            return false;
+                        }
+                        xn.delete(docRef);
+                        xn.delete(getIndexDocRef(firestore, collectionId, dirSnap.getString("fileId")));
+                        return true;
+                    });
+
+            if (fireStoreUtils.transactionGet("deleteEmptyDirectory", transaction)) {
+                deletedCount++;
+            }
+        }
+
+        logger.info("Checked {} directories and deleted {} empty ones", sortedPaths.size(), deletedCount);
+        return deletedCount;
+    }
+
     // -- Snapshot filesystem methods --
 
     // To improve performance of building the snapshot file system, we use three techniques:
@@ -389,6 +598,8 @@ public class FireStoreDirectoryDao {
     // be rare:
     //      a. File references are usually unique in the datasets we know about
     //      b. Directories are cached, so will be overwritten based on the effectiveness of the cache
+    // We also copy the size and checksums of each file onto its snapshot file reference, so that computing
+    // the snapshot directories does not have to go back to the dataset file collection.
 
     public void addEntriesToSnapshot(
         Firestore datasetFirestore,
@@ -427,10 +638,19 @@ public class FireStoreDirectoryDao {
             List<FireStoreDirectoryEntry> datasetDirectoryEntries =
                 batchRetrieveByPath(datasetFirestore, datasetId, newPaths);
 
+            // Find the files of the file references, for their size and checksums
+            List<FireStoreFile> datasetFiles =
+                fileDao.batchRetrieveFileMetadata(datasetFirestore, datasetId, datasetEntries);
+
             // Create snapshot file system entries
             List<FireStoreDirectoryEntry> snapshotEntries = new ArrayList<>();
-            for (FireStoreDirectoryEntry datasetEntry : datasetEntries) {
-                snapshotEntries.add(datasetEntry.copyEntryUnderNewPath(datasetDirName));
+            for (int i = 0; i < datasetEntries.size(); i++) {
+                FireStoreFile datasetFile = datasetFiles.get(i);
+                snapshotEntries.add(datasetEntries.get(i)
+                    .copyEntryUnderNewPath(datasetDirName)
+                    .size(datasetFile.getSize())
+                    .checksumCrc32c(datasetFile.getChecksumCrc32c())
+                    .checksumMd5(datasetFile.getChecksumMd5()));
             }
             for (FireStoreDirectoryEntry datasetEntry : datasetDirectoryEntries) {
                 snapshotEntries.add(datasetEntry.copyEntryUnderNewPath(datasetDirName));
@@ -470,27 +690,31 @@ public class FireStoreDirectoryDao {
         Firestore firestore, String containerId, List<String> batch)
         throws InterruptedException {
 
-        CollectionReference collection = firestore.collection(containerId);
-
-        List<QuerySnapshot> querySnapshotList =
-            fireStoreUtils.batchOperation(batch,
-                fileId -> {
-                    Query query = collection.whereEqualTo("fileId", fileId);
-                    return query.get();
-                });
-
-        List<FireStoreDirectoryEntry> entries = new ArrayList<>();
-        for (QuerySnapshot querySnapshot : querySnapshotList) {
-            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
-            if (documents.size() != 1) {
-                throw new FileSystemExecutionException("FileId not found:");
+        List<FireStoreDirectoryEntry> entries = batchLookupById(firestore, containerId, batch);
+        for (int i = 0; i < batch.size(); i++) {
+            FireStoreDirectoryEntry entry = entries.get(i);
+            if (entry == null) {
+                throw new FileSystemExecutionException("FileId not found: " + batch.get(i));
             }
-            QueryDocumentSnapshot docSnap = documents.get(0);
-            FireStoreDirectoryEntry entry = docSnap.toObject(FireStoreDirectoryEntry.class);
             if (!entry.getIsFileRef()) {
                 throw new FileSystemExecutionException("Directories are not supported as references");
             }
-            entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    // Returns a list parallel to the input with a null for each file id that is not found.
+    // Both files and directories are returned.
+    List<FireStoreDirectoryEntry> batchLookupById(
+        Firestore firestore, String containerId, List<String> batch)
+        throws InterruptedException {
+
+        List<DocumentSnapshot> documents = batchLookupByFileId(firestore, containerId, batch);
+
+        List<FireStoreDirectoryEntry> entries = new ArrayList<>(batch.size());
+        for (DocumentSnapshot docSnap : documents) {
+            entries.add((docSnap == null) ? null : docSnap.toObject(FireStoreDirectoryEntry.class));
         }
 
         return entries;
@@ -524,14 +748,11 @@ public class FireStoreDirectoryDao {
 
         CollectionReference datasetCollection = datasetFirestore.collection(datasetId);
 
-        List<DocumentSnapshot> documents =
-            fireStoreUtils.batchOperation(
-                paths,
-                path -> {
-                    DocumentReference docRef =
-                        datasetCollection.document(encodePathAsFirestoreDocumentName((String) path));
-                    return docRef.get();
-                });
+        List<DocumentReference> docRefs = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            docRefs.add(datasetCollection.document(encodePathAsFirestoreDocumentName(path)));
+        }
+        List<DocumentSnapshot> documents = fireStoreUtils.batchGetDocuments(datasetFirestore, docRefs);
 
         List<FireStoreDirectoryEntry> entries = new ArrayList<>(paths.size());
         for (DocumentSnapshot document : documents) {
@@ -542,44 +763,76 @@ public class FireStoreDirectoryDao {
         return entries;
     }
 
-    // Non-transactional update of a batch of directory entry
+    // Non-transactional store of a batch of directory entries. Each entry is written together with its
+    // file id index document.
     void batchStoreDirectoryEntry(
         Firestore snapshotFirestore, String snapshotId, List<FireStoreDirectoryEntry> entries)
         throws InterruptedException {
 
-        CollectionReference snapshotCollection = snapshotFirestore.collection(snapshotId);
-
         // We ignore the write results - we don't have any use for them
         fireStoreUtils.batchOperation(
             entries,
             entry -> {
-                String fullPath = fireStoreUtils.getFullPath(entry.getPath(), entry.getName());
-                String lookupPath = encodePathAsFirestoreDocumentName(makeLookupPath(fullPath));
-                DocumentReference newRef = snapshotCollection.document(lookupPath);
-                return newRef.set(entry);
+                WriteBatch writeBatch = snapshotFirestore.batch();
+                writeBatch.set(getDocRef(snapshotFirestore, snapshotId, entry), entry);
+                writeBatch.set(getIndexDocRef(snapshotFirestore, snapshotId, entry), makeIndexEntry(entry));
+                return writeBatch.commit();
             });
     }
 
+    // Non-transactional update of a batch of existing directory entries. The file ids and paths of the
+    // entries must not change, so their file id index documents are already correct. The entries are
+    // written with batched writes of up to MAX_BATCH_WRITES entries each.
+    void batchUpdateDirectoryEntry(
+        Firestore snapshotFirestore, String snapshotId, List<FireStoreDirectoryEntry> entries)
+        throws InterruptedException {
+
+        // We ignore the write results - we don't have any use for them
+        fireStoreUtils.batchOperation(
+            ListUtils.partition(entries, MAX_BATCH_WRITES),
+            batchEntries -> {
+                WriteBatch writeBatch = snapshotFirestore.batch();
+                for (FireStoreDirectoryEntry entry : batchEntries) {
+                    writeBatch.set(getDocRef(snapshotFirestore, snapshotId, entry), entry);
+                }
+                return writeBatch.commit();
+            });
+    }
+
+    // Non-transactional scan of all of the entries in a directory collection. The consumer is given the
+    // entries a batch at a time.
+    void scanDirectoryEntries(Firestore firestore,
+                              String collectionId,
+                              InterruptibleConsumer<List<FireStoreDirectoryEntry>> batchConsumer)
+        throws InterruptedException {
+
+        int batchSize = configurationService.getParameterValue(FIRESTORE_QUERY_BATCH_SIZE);
+        FireStoreBatchQueryIterator queryIterator =
+            new FireStoreBatchQueryIterator(firestore.collection(collectionId), batchSize);
+
+        for (List<QueryDocumentSnapshot> batch = queryIterator.getBatch();
+             batch != null;
+             batch = queryIterator.getBatch()) {
+
+            List<FireStoreDirectoryEntry> entries = new ArrayList<>(batch.size());
+            for (QueryDocumentSnapshot docSnap : batch) {
+                entries.add(docSnap.toObject(FireStoreDirectoryEntry.class));
+            }
+            batchConsumer.accept(entries);
+        }
+    }
+
     // We make a special method just for validating id, because when
     // validating we do not need to actually get the data.
     private List<String> batchValidateIds(
         Firestore firestore, String collectionId, List<String> batch)
         throws InterruptedException {
 
-        CollectionReference datasetCollection = firestore.collection(collectionId);
-
-        List<QuerySnapshot> querySnapshotList = fireStoreUtils.batchOperation(
-            batch,
-            fileId -> {
-                Query query = datasetCollection.whereEqualTo("fileId", fileId);
-                return query.get();
-            });
+        List<DocumentSnapshot> documents = batchLookupByFileId(firestore, collectionId, batch);
 
         List<String> missingIds = new ArrayList<>();
         for (int i = 0; i < batch.size(); i++) {
-            QuerySnapshot querySnapshot = querySnapshotList.get(i);
-            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
-            if (documents.size() != 1) {
+            if (documents.get(i) == null) {
                 missingIds.add(batch.get(i));
             }
         }
@@ -616,4 +869,146 @@ public class FireStoreDirectoryDao {
         }
     }
 
+    // -- File id index methods --
+
+    private static final String FILE_ID_INDEX_SUFFIX = "-fileids";
+
+    private String fileIdIndexCollectionId(String collectionId) {
+        return collectionId + FILE_ID_INDEX_SUFFIX;
+    }
+
+    private DocumentReference getIndexDocRef(Firestore firestore, String collectionId, String fileId) {
+        return firestore.collection(fileIdIndexCollectionId(collectionId)).document(fileId);
+    }
+
+    private DocumentReference getIndexDocRef(
+        Firestore firestore, String collectionId, FireStoreDirectoryEntry entry) {
+        return getIndexDocRef(firestore, collectionId, entry.getFileId());
+    }
+
+    private FireStoreFileIdEntry makeIndexEntry(FireStoreDirectoryEntry entry) {
+        return new FireStoreFileIdEntry()
+            .fileId(entry.getFileId())
+            .path(fireStoreUtils.getFullPath(entry.getPath(), entry.getName()));
+    }
+
+    private boolean isEntryForFileId(DocumentSnapshot docSnap, String fileId) {
+        return docSnap.exists() && StringUtils.equals(docSnap.getString("fileId"), fileId);
+    }
+
+    // Non-transactional lookup of a batch of entries by file id. Returns a list parallel to the input with
+    // a null for each file id that is not found. We read the index documents and then the entries they point
+    // to with batched gets; any file ids left over are looked up by querying on the fileId field, and the
+    // index documents of the entries the query finds are written. Those writes are not transactional; if an
+    // entry is deleted meanwhile, its index document is stale, which readers already allow for.
+    private List<DocumentSnapshot> batchLookupByFileId(
+        Firestore firestore, String collectionId, List<String> fileIds) throws InterruptedException {
+
+        List<DocumentReference> indexRefs = new ArrayList<>(fileIds.size());
+        for (String fileId : fileIds) {
+            indexRefs.add(getIndexDocRef(firestore, collectionId, fileId));
+        }
+        List<DocumentSnapshot> indexSnaps = fireStoreUtils.batchGetDocuments(firestore, indexRefs);
+
+        // Follow the index documents we found to their directory entries
+        List<Integer> indexedPositions = new ArrayList<>();
+        List<DocumentReference> entryRefs = new ArrayList<>();
+        for (int i = 0; i < fileIds.size(); i++) {
+            DocumentSnapshot indexSnap = indexSnaps.get(i);
+            if (indexSnap.exists()) {
+                String fullPath = indexSnap.toObject(FireStoreFileIdEntry.class).getPath();
+                indexedPositions.add(i);
+                entryRefs.add(getDocRef(firestore, collectionId, fullPath));
+            }
+        }
+        List<DocumentSnapshot> entrySnaps = fireStoreUtils.batchGetDocuments(firestore, entryRefs);
+
+        List<DocumentSnapshot> documents = new ArrayList<>(Collections.nCopies(fileIds.size(), null));
+        for (int j = 0; j < indexedPositions.size(); j++) {
+            int i = indexedPositions.get(j);
+            DocumentSnapshot entrySnap = entrySnaps.get(j);
+            if (isEntryForFileId(entrySnap, fileIds.get(i))) {
+                documents.set(i, entrySnap);
+            }
+        }
+
+        // Query for the file ids that are not in the index
+        List<Integer> unindexedPositions = new ArrayList<>();
+        for (int i = 0; i < fileIds.size(); i++) {
+            if (documents.get(i) == null) {
+                unindexedPositions.add(i);
+            }
+        }
+        if (!unindexedPositions.isEmpty()) {
+            CollectionReference collection = firestore.collection(collectionId);
+            List<QuerySnapshot> querySnapshotList = fireStoreUtils.batchOperation(
+                unindexedPositions,
+                position -> collection.whereEqualTo("fileId", fileIds.get(position)).get());
+
+            List<FireStoreDirectoryEntry> repairEntries = new ArrayList<>();
+            for (int j = 0; j < unindexedPositions.size(); j++) {
+                List<QueryDocumentSnapshot> queryDocuments = querySnapshotList.get(j).getDocuments();
+                if (queryDocuments.size() == 1) {
+                    documents.set(unindexedPositions.get(j), queryDocuments.get(0));
+                    repairEntries.add(queryDocuments.get(0).toObject(FireStoreDirectoryEntry.class));
+                }
+            }
+            repairFileIdIndex(firestore, collectionId, repairEntries);
+        }
+
+        return documents;
+    }
+
+    // Write the missing index documents of entries that were found by querying on the fileId field
+    private void repairFileIdIndex(
+        Firestore firestore, String collectionId, List<FireStoreDirectoryEntry> entries)
+        throws InterruptedException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+        logger.info("Repairing {} file id index documents for collection {}", entries.size(), collectionId);
+        fireStoreUtils.batchOperation(
+            ListUtils.partition(entries, MAX_BATCH_WRITES),
+            batchEntries -> {
+                WriteBatch writeBatch = firestore.batch();
+                for (FireStoreDirectoryEntry entry : batchEntries) {
+                    writeBatch.set(getIndexDocRef(firestore, collectionId, entry), makeIndexEntry(entry));
+                }
+                return writeBatch.commit();
+            });
+    }
+
+    /**
+     * Write the file id index documents for all of the entries in a directory collection. This is needed for
+     * collections that were written before the index existed; it is safe to run on any collection and to run
+     * more than once, because the index documents are keyed by file id and readers verify what they find.
+     *
+     * @return number of index documents written
+     */
+    public int backfillFileIdIndex(Firestore firestore, String collectionId) throws InterruptedException {
+        FireStoreBatchQueryIterator queryIterator =
+            new FireStoreBatchQueryIterator(firestore.collection(collectionId), MAX_BATCH_WRITES);
+
+        int count = 0;
+        for (List<QueryDocumentSnapshot> batch = queryIterator.getBatch();
+             batch != null;
+             batch = queryIterator.getBatch()) {
+
+            WriteBatch writeBatch = firestore.batch();
+            for (QueryDocumentSnapshot docSnap : batch) {
+                FireStoreDirectoryEntry entry = docSnap.toObject(FireStoreDirectoryEntry.class);
+                writeBatch.set(getIndexDocRef(firestore, collectionId, entry), makeIndexEntry(entry));
+            }
+            try {
+                writeBatch.commit().get();
+            } catch (AbortedException | ExecutionException ex) {
+                throw fireStoreUtils.handleExecutionException(ex, "backfillFileIdIndex");
+            }
+            count += batch.size();
+        }
+
+        logger.info("Backfilled {} file id index documents for collection {}", count, collectionId);
+        return count;
+    }
 }
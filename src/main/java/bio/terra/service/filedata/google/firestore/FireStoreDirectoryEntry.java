@@ -29,8 +29,8 @@ public class FireStoreDirectoryEntry {
     // directory-only fields
     private String fileCreatedDate; // For files, we get the created date from the FireStoreFile object
 
-    // snapshot directory-only fields - computed as part of snapshot filesystem creation;
-    // unused in the dataset directory collection
+    // snapshot-only fields - computed for directories as part of snapshot filesystem creation, and copied
+    // from the file for file references; unused in the dataset directory collection
     private String checksumCrc32c;
     private String checksumMd5;
     private Long size;
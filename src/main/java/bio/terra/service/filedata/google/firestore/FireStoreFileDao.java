@@ -122,22 +122,40 @@ class FireStoreFileDao {
         Firestore firestore,
         String datasetId,
         List<FireStoreDirectoryEntry> directoryEntries) throws InterruptedException {
+        return batchRetrieveFileMetadata(firestore, datasetId, directoryEntries, true);
+    }
+
+    /**
+     * Retrieve the file metadata of a batch of directory entries with batched gets
+     *
+     * @param throwOnNotFound if false, a file that does not exist, for instance because it is not done being
+     *                        created, is returned as null instead of throwing
+     * @return list parallel to directoryEntries
+     */
+    List<FireStoreFile> batchRetrieveFileMetadata(
+        Firestore firestore,
+        String datasetId,
+        List<FireStoreDirectoryEntry> directoryEntries,
+        boolean throwOnNotFound) throws InterruptedException {
 
         CollectionReference collection = firestore.collection(makeCollectionId(datasetId));
 
-        List<DocumentSnapshot> documentSnapshotList = fireStoreUtils.batchOperation(
-            directoryEntries,
-            entry -> {
-                DocumentReference docRef = collection.document(entry.getFileId());
-                return docRef.get();
-            });
+        List<DocumentReference> docRefs = new ArrayList<>(directoryEntries.size());
+        for (FireStoreDirectoryEntry entry : directoryEntries) {
+            docRefs.add(collection.document(entry.getFileId()));
+        }
+        List<DocumentSnapshot> documentSnapshotList = fireStoreUtils.batchGetDocuments(firestore, docRefs);
 
         List<FireStoreFile> files = new ArrayList<>();
         for (DocumentSnapshot documentSnapshot : documentSnapshotList) {
             if (documentSnapshot == null || !documentSnapshot.exists()) {
-                throw new FileSystemCorruptException("Directory entry refers to non-existent file");
+                if (throwOnNotFound) {
+                    throw new FileSystemCorruptException("Directory entry refers to non-existent file");
+                }
+                files.add(null);
+            } else {
+                files.add(documentSnapshot.toObject(FireStoreFile.class));
             }
-            files.add(documentSnapshot.toObject(FireStoreFile.class));
         }
 
         return files;
@@ -0,0 +1,31 @@
+package bio.terra.service.filedata.google.firestore;
+
+// POJO for storing file id index documents in FireStore
+// Each index document is named by the file id of a directory entry and holds the full path of that entry,
+// so that the entry can be read by document name instead of by a query on its fileId field.
+// The index can be stale: readers must check that the entry they find has the file id they asked for.
+public class FireStoreFileIdEntry {
+    private String fileId;
+    private String path; // full path of the directory entry
+
+    public FireStoreFileIdEntry() {
+    }
+
+    public String getFileId() {
+        return fileId;
+    }
+
+    public FireStoreFileIdEntry fileId(String fileId) {
+        this.fileId = fileId;
+        return this;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public FireStoreFileIdEntry path(String path) {
+        this.path = path;
+        return this;
+    }
+}
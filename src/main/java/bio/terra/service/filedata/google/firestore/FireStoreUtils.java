@@ -4,9 +4,13 @@ import bio.terra.service.filedata.exception.FileSystemAbortTransactionException;
 import bio.terra.service.filedata.exception.FileSystemExecutionException;
 import com.google.api.core.ApiFuture;
 import com.google.api.gax.rpc.AbortedException;
+import com.google.api.gax.rpc.ApiException;
 import com.google.api.gax.rpc.DeadlineExceededException;
+import com.google.api.gax.rpc.ResourceExhaustedException;
 import com.google.api.gax.rpc.UnavailableException;
 import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.FirestoreException;
 import com.google.cloud.firestore.QueryDocumentSnapshot;
@@ -20,8 +24,14 @@ import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 @Component
@@ -217,4 +227,113 @@ public class FireStoreUtils {
         return outputs;
     }
 
+    // -- Keyed reads --
+
+    // Documents per getAll request
+    private static final int GET_ALL_CHUNK_SIZE = 100;
+    // Maximum getAll requests in flight at once
+    private static final int GET_ALL_MAX_IN_FLIGHT = 8;
+    // Maximum tries of one getAll request before we give up
+    private static final int GET_ALL_MAX_TRIES = 6;
+    private static final long BACKOFF_BASE_MILLISECONDS = 100;
+    private static final long BACKOFF_MAX_MILLISECONDS = 10000;
+
+    /**
+     * Read a list of documents by reference. The references are split into chunks that are read with
+     * Firestore getAll, so each chunk is one RPC. At most GET_ALL_MAX_IN_FLIGHT chunks are outstanding at a
+     * time. Chunks are collected in the order they complete, so one slow chunk does not hold up launching
+     * the others. A chunk that fails with a retryable error is tried again after a jittered exponential
+     * backoff; the other chunks keep going in the meantime.
+     *
+     * @param firestore firestore to read from
+     * @param docRefs references to the documents to read; may include duplicates
+     * @return document snapshots in the same order as the references. A document that does not exist is
+     * returned as a snapshot for which exists() is false.
+     */
+    List<DocumentSnapshot> batchGetDocuments(Firestore firestore, List<DocumentReference> docRefs)
+        throws InterruptedException {
+
+        int inputSize = docRefs.size();
+        List<DocumentSnapshot> outputs = new ArrayList<>(Collections.nCopies(inputSize, null));
+
+        // Chunks waiting to be launched, in order of the time they may be launched
+        PriorityQueue<GetAllChunk> waiting = new PriorityQueue<>(Comparator.comparingLong(c -> c.launchAfter));
+        for (int start = 0; start < inputSize; start += GET_ALL_CHUNK_SIZE) {
+            waiting.add(new GetAllChunk(start, Math.min(start + GET_ALL_CHUNK_SIZE, inputSize)));
+        }
+        // Chunks whose reads are complete, in order of completion
+        BlockingQueue<GetAllChunk> completed = new LinkedBlockingQueue<>();
+
+        int inFlight = 0;
+        while (!waiting.isEmpty() || inFlight > 0) {
+            // Launch whatever we can
+            long now = System.currentTimeMillis();
+            while (inFlight < GET_ALL_MAX_IN_FLIGHT && !waiting.isEmpty() && waiting.peek().launchAfter <= now) {
+                GetAllChunk launch = waiting.poll();
+                List<DocumentReference> chunkRefs = docRefs.subList(launch.start, launch.end);
+                launch.tries++;
+                launch.future = firestore.getAll(chunkRefs.toArray(new DocumentReference[0]));
+                launch.future.addListener(() -> completed.add(launch), Runnable::run);
+                inFlight++;
+            }
+
+            // Wait for a chunk to complete, or until the next backed off chunk may be launched
+            long waitMilliseconds = BACKOFF_MAX_MILLISECONDS;
+            if (inFlight < GET_ALL_MAX_IN_FLIGHT && !waiting.isEmpty()) {
+                waitMilliseconds = Math.max(1, waiting.peek().launchAfter - now);
+            }
+            GetAllChunk chunk = completed.poll(waitMilliseconds, TimeUnit.MILLISECONDS);
+            if (chunk == null) {
+                continue;
+            }
+            inFlight--;
+
+            try {
+                List<DocumentSnapshot> snapshots = chunk.future.get();
+                for (int i = 0; i < snapshots.size(); i++) {
+                    outputs.set(chunk.start + i, snapshots.get(i));
+                }
+            } catch (ExecutionException ex) {
+                if (!isRetryable(ex.getCause()) || chunk.tries >= GET_ALL_MAX_TRIES) {
+                    throw new FileSystemExecutionException("batch get failed after " + chunk.tries + " tries", ex);
+                }
+                long backoff = backoffMilliseconds(chunk.tries);
+                logger.warn("Retry-able error in firestore getAll - retrying in " + backoff +
+                    " ms; message: " + ex.getMessage());
+                chunk.launchAfter = System.currentTimeMillis() + backoff;
+                waiting.add(chunk);
+            }
+        }
+
+        return outputs;
+    }
+
+    // Full jitter: a random delay up to an exponentially growing, capped limit
+    private long backoffMilliseconds(int tries) {
+        long limit = Math.min(BACKOFF_MAX_MILLISECONDS, BACKOFF_BASE_MILLISECONDS << Math.min(tries, 16));
+        return ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+
+    private boolean isRetryable(Throwable throwable) {
+        if (throwable instanceof DeadlineExceededException ||
+            throwable instanceof UnavailableException ||
+            throwable instanceof ResourceExhaustedException ||
+            throwable instanceof AbortedException) {
+            return true;
+        }
+        return (throwable instanceof ApiException) && ((ApiException) throwable).isRetryable();
+    }
+
+    private static final class GetAllChunk {
+        private final int start;
+        private final int end;
+        private int tries;
+        private long launchAfter;
+        private ApiFuture<List<DocumentSnapshot>> future;
+
+        GetAllChunk(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package bio.terra.service.filedata.google.gcs;
 
+import com.google.cloud.ReadChannel;
 import com.google.cloud.storage.Storage;
 
 import java.io.BufferedReader;
@@ -15,4 +16,20 @@ public class GcsBufferedReader extends BufferedReader {
             GcsPdao.getBlobFromGsPath(storage, gspath, projectId).reader(),
             StandardCharsets.UTF_8.name()));
     }
+
+    /**
+     * Read the blob in chunks of chunkSize bytes. Larger chunks mean fewer round trips to GCS when
+     * reading large files sequentially.
+     */
+    public GcsBufferedReader(Storage storage, String projectId, String gspath, int chunkSize) {
+        super(Channels.newReader(
+            chunkedReader(storage, projectId, gspath, chunkSize),
+            StandardCharsets.UTF_8.name()));
+    }
+
+    private static ReadChannel chunkedReader(Storage storage, String projectId, String gspath, int chunkSize) {
+        ReadChannel readChannel = GcsPdao.getBlobFromGsPath(storage, gspath, projectId).reader();
+        readChannel.setChunkSize(chunkSize);
+        return readChannel;
+    }
 }
@@ -14,9 +14,11 @@ import bio.terra.service.filedata.google.firestore.FireStoreFile;
 import bio.terra.service.iam.IamRole;
 import bio.terra.service.resourcemanagement.DataLocationService;
 import bio.terra.service.resourcemanagement.google.GoogleBucketResource;
+import com.google.cloud.WriteChannel;
 import com.google.cloud.storage.Acl;
 import com.google.cloud.storage.Blob;
 import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.CopyWriter;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageException;
@@ -28,8 +30,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -65,6 +70,16 @@ public class GcsPdao {
     public Storage storageForBucket(GoogleBucketResource bucketResource) {
         return gcsProjectFactory.getStorage(bucketResource.projectIdForBucket());
     }
+
+    // Open a writer on an object in the bucket, replacing the object if it exists. The object is written
+    // as it streams and only becomes visible when the writer is closed.
+    public Writer createObjectWriter(GoogleBucketResource bucketResource, String bucketPath, String contentType) {
+        BlobInfo blobInfo = BlobInfo.newBuilder(bucketResource.getName(), bucketPath)
+            .setContentType(contentType)
+            .build();
+        WriteChannel writeChannel = storageForBucket(bucketResource).writer(blobInfo);
+        return Channels.newWriter(writeChannel, StandardCharsets.UTF_8.name());
+    }
     public FSFileInfo copyFile(Dataset dataset,
                                FileLoadModel fileLoadModel,
                                String fileId,
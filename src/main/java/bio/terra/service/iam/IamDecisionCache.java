@@ -0,0 +1,203 @@
+package bio.terra.service.iam;
+
+import bio.terra.app.configuration.ApplicationConfiguration;
+import bio.terra.common.LruCache;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of authorization decisions, keyed by the caller's token, the resource, and the action.
+ * The token is the identity the IAM provider checks, so it is the subject of the key; only its hash is kept.
+ * Requests without a token are never cached.
+ *
+ * Allowed and denied decisions have separate times to live. Decisions are loaded through the allowed cache's
+ * single-flight loader, so concurrent checks of the same key share one call to the IAM provider. A denial is
+ * not cached there; the loader records it in the denied cache and returns null. Changes made through
+ * IamService invalidate the decisions for the resource on this pod. Other pods see a change when their
+ * entries expire.
+ */
+@Component
+public class IamDecisionCache {
+    private final Logger logger = LoggerFactory.getLogger(IamDecisionCache.class);
+
+    // Log the cache statistics every this many lookups
+    private static final long STATISTICS_INTERVAL = 10000;
+
+    /**
+     * Call to the IAM provider that makes an authorization decision
+     */
+    @FunctionalInterface
+    public interface DecisionLoader {
+        boolean load() throws InterruptedException;
+    }
+
+    private final LruCache<DecisionKey, Boolean> allowedCache;
+    private final LruCache<DecisionKey, Boolean> deniedCache;
+    // Bumped by every invalidation, so that a decision loaded across an invalidation is not cached
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    @Autowired
+    public IamDecisionCache(ApplicationConfiguration appConfig) {
+        this(appConfig.getIamCacheSize(),
+            Duration.ofSeconds(appConfig.getIamCacheTtlSeconds()),
+            Duration.ofSeconds(appConfig.getIamCacheDeniedTtlSeconds()));
+    }
+
+    /**
+     * @param maxSize maximum number of decisions of each kind held
+     * @param allowedTtl time an allowed decision is cached; zero or less turns the cache off
+     * @param deniedTtl time a denied decision is cached; zero or less turns off caching of denials
+     */
+    IamDecisionCache(int maxSize, Duration allowedTtl, Duration deniedTtl) {
+        this.allowedCache = isPositive(allowedTtl) ? new LruCache<>("IAM allowed", maxSize, allowedTtl) : null;
+        this.deniedCache = (allowedCache != null && isPositive(deniedTtl))
+            ? new LruCache<>("IAM denied", maxSize, deniedTtl) : null;
+    }
+
+    /**
+     * Return the cached decision, or load it, cache it, and return it. If the same decision is already being
+     * loaded by another thread, wait for that load instead of making another call.
+     */
+    public boolean isAuthorized(AuthenticatedUserRequest userReq,
+                                IamResourceType iamResourceType,
+                                String resourceId,
+                                IamAction action,
+                                DecisionLoader loader) throws InterruptedException {
+        Optional<String> token = userReq.getToken();
+        if (allowedCache == null || token == null || !token.isPresent()) {
+            return loader.load();
+        }
+        if (lookupCount.incrementAndGet() % STATISTICS_INTERVAL == 0) {
+            logStatistics();
+        }
+
+        DecisionKey key = new DecisionKey(DigestUtils.sha256Hex(token.get()), iamResourceType, resourceId, action);
+        long invalidationsBefore = invalidationCount.get();
+        AtomicBoolean loadedHere = new AtomicBoolean();
+        Boolean allowed;
+        try {
+            allowed = allowedCache.get(key, k -> {
+                loadedHere.set(true);
+                return loadDecision(k, loader, invalidationsBefore);
+            });
+        } catch (LoaderInterruptedException ex) {
+            if (loadedHere.get()) {
+                throw ex.getInterruptedException();
+            }
+            // The thread loading this decision was interrupted, not this one, so load it here
+            return loader.load();
+        }
+        if (allowed != null && invalidationCount.get() != invalidationsBefore) {
+            // The decision may have been loaded across an invalidation, so do not keep it
+            allowedCache.remove(key);
+        }
+        return allowed != null;
+    }
+
+    /**
+     * Drop every cached decision about a resource, for all users and actions
+     */
+    public void invalidateResource(IamResourceType iamResourceType, String resourceId) {
+        if (allowedCache == null) {
+            return;
+        }
+        invalidationCount.incrementAndGet();
+        int count = allowedCache.removeIf(key -> key.isFor(iamResourceType, resourceId));
+        if (deniedCache != null) {
+            count += deniedCache.removeIf(key -> key.isFor(iamResourceType, resourceId));
+        }
+        logger.info("Invalidated IAM decision cache for {} {}: removed {} decisions",
+            iamResourceType, resourceId, count);
+    }
+
+    public void logStatistics() {
+        if (allowedCache == null) {
+            return;
+        }
+        logger.info(allowedCache.getStatistics());
+        if (deniedCache != null) {
+            logger.info(deniedCache.getStatistics());
+        }
+    }
+
+    // Loader for the allowed cache: TRUE if allowed, null if denied, so that only allowed decisions are cached
+    // there. A denial is looked up in and recorded in the denied cache.
+    private Boolean loadDecision(DecisionKey key, DecisionLoader loader, long invalidationsBefore) {
+        if (deniedCache != null && deniedCache.get(key) != null) {
+            return null;
+        }
+        boolean decision;
+        try {
+            decision = loader.load();
+        } catch (InterruptedException ex) {
+            throw new LoaderInterruptedException(ex);
+        }
+        if (!decision && deniedCache != null && invalidationCount.get() == invalidationsBefore) {
+            deniedCache.put(key, Boolean.FALSE);
+        }
+        return decision ? Boolean.TRUE : null;
+    }
+
+    private static boolean isPositive(Duration ttl) {
+        return ttl != null && !ttl.isNegative() && !ttl.isZero();
+    }
+
+    // Carries an interruption of the decision loader out through the cache's loader function
+    private static final class LoaderInterruptedException extends RuntimeException {
+        LoaderInterruptedException(InterruptedException cause) {
+            super(cause);
+        }
+
+        InterruptedException getInterruptedException() {
+            return (InterruptedException) getCause();
+        }
+    }
+
+    private static final class DecisionKey {
+        private final String subject;
+        private final IamResourceType iamResourceType;
+        private final String resourceId;
+        private final IamAction action;
+
+        DecisionKey(String subject, IamResourceType iamResourceType, String resourceId, IamAction action) {
+            this.subject = subject;
+            this.iamResourceType = iamResourceType;
+            this.resourceId = resourceId;
+            this.action = action;
+        }
+
+        boolean isFor(IamResourceType iamResourceType, String resourceId) {
+            return this.iamResourceType == iamResourceType && Objects.equals(this.resourceId, resourceId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey that = (DecisionKey) o;
+            return Objects.equals(subject, that.subject) &&
+                iamResourceType == that.iamResourceType &&
+                Objects.equals(resourceId, that.resourceId) &&
+                action == that.action;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(subject, iamResourceType, resourceId, action);
+        }
+    }
+}
@@ -22,15 +22,20 @@ import java.util.UUID;
  * This IamService is a thin layer that calls the IamProviderInterface, but catches InterruptedExceptions and
  * converts them into a RuntimeException: IamUnavailableException. That throw will get processed by the global
  * exception handler and make the right error return to the caller.
+ *
+ * Authorization decisions are cached in the IamDecisionCache. Changes to the policies or resources made through
+ * this service invalidate the cached decisions for the resource.
  */
 
 @Component
 public class IamService {
     private final IamProviderInterface iamProvider;
+    private final IamDecisionCache decisionCache;
 
     @Autowired
-    public IamService(IamProviderInterface iamProvider) {
+    public IamService(IamProviderInterface iamProvider, IamDecisionCache decisionCache) {
         this.iamProvider = iamProvider;
+        this.decisionCache = decisionCache;
     }
 
     /**
@@ -42,7 +47,8 @@ public class IamService {
                          String resourceId,
                          IamAction action) {
         try {
-            return iamProvider.isAuthorized(userReq, iamResourceType, resourceId, action);
+            return decisionCache.isAuthorized(userReq, iamResourceType, resourceId, action,
+                () -> iamProvider.isAuthorized(userReq, iamResourceType, resourceId, action));
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
         }
@@ -88,6 +94,8 @@ public class IamService {
             iamProvider.deleteDatasetResource(userReq, datasetId);
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
+        } finally {
+            decisionCache.invalidateResource(IamResourceType.DATASET, datasetId.toString());
         }
     }
 
@@ -101,6 +109,8 @@ public class IamService {
             iamProvider.deleteSnapshotResource(userReq, snapshotId);
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
+        } finally {
+            decisionCache.invalidateResource(IamResourceType.DATASNAPSHOT, snapshotId.toString());
         }
     }
 
@@ -116,6 +126,8 @@ public class IamService {
             return iamProvider.createDatasetResource(userReq, datasetId);
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
+        } finally {
+            decisionCache.invalidateResource(IamResourceType.DATASET, datasetId.toString());
         }
     }
 
@@ -134,6 +146,8 @@ public class IamService {
             return iamProvider.createSnapshotResource(userReq, snapshotId, readersList);
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
+        } finally {
+            decisionCache.invalidateResource(IamResourceType.DATASNAPSHOT, snapshotId.toString());
         }
     }
 
@@ -158,6 +172,8 @@ public class IamService {
             return iamProvider.addPolicyMember(userReq, iamResourceType, resourceId, policyName, userEmail);
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
+        } finally {
+            decisionCache.invalidateResource(iamResourceType, resourceId.toString());
         }
     }
 
@@ -170,6 +186,8 @@ public class IamService {
             return iamProvider.deletePolicyMember(userReq, iamResourceType, resourceId, policyName, userEmail);
         } catch (InterruptedException ex) {
             throw new IamUnavailableException("service unavailable");
+        } finally {
+            decisionCache.invalidateResource(iamResourceType, resourceId.toString());
         }
     }
 
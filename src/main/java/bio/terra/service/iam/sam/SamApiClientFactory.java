@@ -0,0 +1,118 @@
+package bio.terra.service.iam.sam;
+
+import bio.terra.common.LatencyHistogram;
+import bio.terra.common.LruCache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.broadinstitute.dsde.workbench.client.sam.ApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes the SAM ApiClients used by SamIam. All of them share one OkHttp client, so calls to SAM reuse pooled
+ * connections instead of paying for a new client, TCP connection, and TLS handshake each time. HTTP/2 is used
+ * when SAM offers it, so concurrent calls can share a connection.
+ *
+ * An ApiClient carries the access token of its caller. Building one also builds an OkHttp client that is then
+ * thrown away, so the ApiClient of each token is cached for a few minutes; it is only ever read after it is
+ * built, so it can be used by several threads at once. Only the hash of the token is kept as the key.
+ *
+ * The factory also counts SAM calls in flight, records their latency, and logs the size of the connection pool.
+ */
+@Component
+public class SamApiClientFactory {
+    private static final Logger logger = LoggerFactory.getLogger(SamApiClientFactory.class);
+
+    private static final int API_CLIENT_CACHE_SIZE = 1000;
+    private static final Duration API_CLIENT_CACHE_TTL = Duration.ofMinutes(5);
+    // Log the statistics every this many calls
+    private static final long STATISTICS_INTERVAL = 1000;
+    private static final String USER_AGENT = "OpenAPI-Generator/1.0.0 java";  // only logs an error in sam
+
+    private final String basePath;
+    private final ConnectionPool connectionPool;
+    private final OkHttpClient httpClient;
+    private final LruCache<String, ApiClient> apiClientCache;
+    private final LatencyHistogram latency = new LatencyHistogram("SAM call");
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @Autowired
+    public SamApiClientFactory(SamConfiguration samConfig) {
+        this.basePath = samConfig.getBasePath();
+        this.connectionPool = new ConnectionPool(
+            Math.max(samConfig.getMaxIdleConnections(), 1), samConfig.getKeepAliveSeconds(), TimeUnit.SECONDS);
+        this.httpClient = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .connectTimeout(samConfig.getConnectTimeoutSeconds(), TimeUnit.SECONDS)
+            .readTimeout(samConfig.getReadTimeoutSeconds(), TimeUnit.SECONDS)
+            .writeTimeout(samConfig.getWriteTimeoutSeconds(), TimeUnit.SECONDS)
+            .addInterceptor(chain -> {
+                inFlightCount.incrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    return chain.proceed(chain.request());
+                } catch (IOException | RuntimeException ex) {
+                    failedCount.incrementAndGet();
+                    throw ex;
+                } finally {
+                    inFlightCount.decrementAndGet();
+                    recordCall(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            })
+            .build();
+        this.apiClientCache = new LruCache<>("SAM api client", API_CLIENT_CACHE_SIZE, API_CLIENT_CACHE_TTL);
+    }
+
+    /**
+     * @return an ApiClient that calls SAM as the owner of the access token
+     */
+    public ApiClient getApiClient(String accessToken) {
+        return apiClientCache.get(DigestUtils.sha256Hex(accessToken), key -> {
+            ApiClient apiClient = new ApiClient();
+            apiClient.setHttpClient(httpClient);
+            apiClient.setAccessToken(accessToken);
+            apiClient.setUserAgent(USER_AGENT);
+            return apiClient.setBasePath(basePath);
+        });
+    }
+
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public String getStatistics() {
+        return String.format("SAM client: inFlight=%d failed=%d connections=%d idleConnections=%d; %s",
+            getInFlightCount(), getFailedCount(), connectionPool.connectionCount(),
+            connectionPool.idleConnectionCount(), latency.getStatistics());
+    }
+
+    private void recordCall(long millis) {
+        latency.record(millis);
+        if (latency.getCount() % STATISTICS_INTERVAL == 0) {
+            logger.info(getStatistics());
+            logger.info(apiClientCache.getStatistics());
+        }
+    }
+}
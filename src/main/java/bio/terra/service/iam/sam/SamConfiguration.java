@@ -13,6 +13,11 @@ public class SamConfiguration {
     private int retryInitialWaitSeconds;
     private int retryMaximumWaitSeconds;
     private int operationTimeoutSeconds;
+    private int connectTimeoutSeconds;
+    private int readTimeoutSeconds;
+    private int writeTimeoutSeconds;
+    private int maxIdleConnections;
+    private int keepAliveSeconds;
 
     public String getBasePath() {
         return basePath;
@@ -64,4 +69,49 @@ public class SamConfiguration {
     public void setOperationTimeoutSeconds(int operationTimeoutSeconds) {
         this.operationTimeoutSeconds = operationTimeoutSeconds;
     }
+
+    // HTTP client notes:
+    // All calls to SAM share one HTTP client and its connection pool. Idle connections are kept open for
+    // keepAliveSeconds, and at most maxIdleConnections of them are kept, so most calls skip the TCP and TLS
+    // handshakes. The timeouts apply to each HTTP call; SAM retry wraps them.
+
+    public int getConnectTimeoutSeconds() {
+        return connectTimeoutSeconds;
+    }
+
+    public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+    }
+
+    public int getReadTimeoutSeconds() {
+        return readTimeoutSeconds;
+    }
+
+    public void setReadTimeoutSeconds(int readTimeoutSeconds) {
+        this.readTimeoutSeconds = readTimeoutSeconds;
+    }
+
+    public int getWriteTimeoutSeconds() {
+        return writeTimeoutSeconds;
+    }
+
+    public void setWriteTimeoutSeconds(int writeTimeoutSeconds) {
+        this.writeTimeoutSeconds = writeTimeoutSeconds;
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
 }
@@ -42,20 +42,21 @@ import java.util.stream.Collectors;
 public class SamIam implements IamProviderInterface {
     private final SamConfiguration samConfig;
     private final ConfigurationService configurationService;
+    private final SamApiClientFactory apiClientFactory;
 
     @Autowired
-    public SamIam(SamConfiguration samConfig, ConfigurationService configurationService) {
+    public SamIam(SamConfiguration samConfig,
+                  ConfigurationService configurationService,
+                  SamApiClientFactory apiClientFactory) {
         this.samConfig = samConfig;
         this.configurationService = configurationService;
+        this.apiClientFactory = apiClientFactory;
     }
 
     private static final Logger logger = LoggerFactory.getLogger(SamIam.class);
 
     private ApiClient getApiClient(String accessToken) {
-        ApiClient apiClient = new ApiClient();
-        apiClient.setAccessToken(accessToken);
-        apiClient.setUserAgent("OpenAPI-Generator/1.0.0 java");  // only logs an error in sam
-        return apiClient.setBasePath(samConfig.getBasePath());
+        return apiClientFactory.getApiClient(accessToken);
     }
 
     private ResourcesApi samResourcesApi(String accessToken) {
@@ -126,6 +126,13 @@ public class JobService {
                 }
             }
 
+            // Every pod starts the data backfills. One pod at a time runs each backfill while the others wait,
+            // so a pod that dies part way is taken over. They run in the background, because nothing depends on
+            // them finishing.
+            Thread backfillThread = new Thread(migrate::runBackfills, "migrate-backfill");
+            backfillThread.setDaemon(true);
+            backfillThread.start();
+
             // Order is important here. There are two concerns we need to handle:
             // 1. We need to avoid a window where a running pod could get onto the Stairway list, but not be
             //    on the pod list. That is why we get the recorded list from Stairway *before* we read the Kubernetes
@@ -0,0 +1,86 @@
+package bio.terra.service.load;
+
+import bio.terra.service.load.exception.LoadNotificationException;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The bulk load driver uses this listener to learn about completed file loads without polling the load_file
+ * table and Stairway for every running file. File ingest worker flights publish their flight id on the
+ * load's notification channel when they finish (successfully or not). The listener holds one dedicated
+ * database connection for the life of the driver step; the connection is returned to the pool on close.
+ *
+ * Notifications are hints: they can arrive before Stairway has recorded the final flight state, and they
+ * are lost if the listening connection is broken. The driver periodically reconciles against the database
+ * to cover both cases.
+ */
+public class LoadCompletionListener implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LoadCompletionListener.class);
+
+    private final Connection connection;
+    private final PGConnection pgConnection;
+    private final String channel;
+
+    LoadCompletionListener(Connection connection, String channel) {
+        this.connection = connection;
+        this.channel = channel;
+        try {
+            this.pgConnection = connection.unwrap(PGConnection.class);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN \"" + channel + "\"");
+            }
+        } catch (SQLException ex) {
+            closeConnection();
+            throw new LoadNotificationException("Failed to listen on load channel " + channel, ex);
+        }
+    }
+
+    /**
+     * Wait for completed file loads. Returns as soon as any notifications are available, or after
+     * waitSeconds if there are none.
+     *
+     * @param waitSeconds maximum time to wait for a notification
+     * @return set of the flight ids of worker flights that reported completion; may be empty
+     */
+    public Set<String> waitForCompletions(int waitSeconds) {
+        Set<String> flightIds = new HashSet<>();
+        try {
+            PGNotification[] notifications = pgConnection.getNotifications(Math.max(waitSeconds, 1) * 1000);
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    flightIds.add(notification.getParameter());
+                }
+            }
+        } catch (SQLException ex) {
+            throw new LoadNotificationException("Failed to receive notifications on load channel " + channel, ex);
+        }
+        logger.debug("Received {} completion notifications on channel {}", flightIds.size(), channel);
+        return flightIds;
+    }
+
+    @Override
+    public void close() {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("UNLISTEN *");
+        } catch (SQLException ex) {
+            logger.warn("Failed to unlisten on load channel " + channel, ex);
+        }
+        closeConnection();
+    }
+
+    private void closeConnection() {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            logger.warn("Failed to close listener connection for load channel " + channel, ex);
+        }
+    }
+}
@@ -10,14 +10,18 @@ import bio.terra.model.BulkLoadHistoryModel;
 import bio.terra.service.configuration.ConfigurationService;
 import bio.terra.service.filedata.FSFileInfo;
 import bio.terra.service.load.exception.LoadLockedException;
+import bio.terra.service.load.exception.LoadNotificationException;
 import bio.terra.service.snapshot.exception.CorruptMetadataException;
 import org.apache.commons.codec.binary.StringUtils;
+import org.apache.commons.collections4.ListUtils;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
@@ -25,8 +29,11 @@ import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.PreparedStatement;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,6 +41,10 @@ import java.util.UUID;
 public class LoadDao {
     private final Logger logger = LoggerFactory.getLogger(LoadDao.class);
 
+    // Number of files to update per statement in updateLoadFiles. Each file takes 7 parameters, so this
+    // stays well below the driver limit of 32767 parameters per statement.
+    private static final int UPDATE_CHUNK_SIZE = 1000;
+
     private NamedParameterJdbcTemplate jdbcTemplate;
     private ConfigurationService configService;
 
@@ -150,51 +161,75 @@ public class LoadDao {
 
     // -- load files methods --
 
-    // TODO: REVIEWERS: note that counter to our usual practice, I am using the interface datatype instead of
-    //  insulating the innards from the interface. That seems justified in this case, because I don't want to
-    //  use memory making another big array.
-    //  Also, I am a tiny bit concerned about insert performance. This code is implemented in the obvious
-    //  way using JdbcTemplate. JdbcTemplate documentation says that it uses JDBC batchUpdate if it is supported
-    //  by the underlying database system. However, some posts in StackOverflow claim that it is not using the
-    //  batch, but issuing an insert for each row.
-    //  I created DR-738 to track performance measurement of file load to decide if this method should get
-    //  more clever.
-
-    // Insert one batch of file load instructions into the load_file table
+    // Insert one batch of file load instructions into the load_file table.
+    // We use the PostgreSQL COPY protocol rather than JDBC batch insert (DR-738). COPY streams all of the rows
+    // in one round trip, which matters when populating from a control file with a million lines.
+    // Note that we use the interface datatype directly, so we do not spend memory making another big array.
     @Transactional
     public void populateFiles(UUID loadId, List<BulkLoadFileModel> loadFileModelList) {
-        final String sql = "INSERT INTO load_file " +
-            " (load_id, source_path, target_path, mime_type, description, state)" +
-            " VALUES(?,?,?,?,?,?)";
-
-        JdbcTemplate baseJdbcTemplate = jdbcTemplate.getJdbcTemplate();
-        baseJdbcTemplate.batchUpdate(sql,
-            new BatchPreparedStatementSetter() {
-                public void setValues(PreparedStatement ps, int i) throws SQLException {
-                    ps.setObject(1, loadId);
-                    ps.setString(2, loadFileModelList.get(i).getSourcePath());
-                    ps.setString(3, loadFileModelList.get(i).getTargetPath());
-                    ps.setString(4, loadFileModelList.get(i).getMimeType());
-                    ps.setString(5, loadFileModelList.get(i).getDescription());
-                    ps.setString(6, BulkLoadFileState.NOT_TRIED.toString());
-                }
+        if (loadFileModelList.isEmpty()) {
+            return;
+        }
 
-                public int getBatchSize() {
-                    return loadFileModelList.size();
-                }
-            });
+        final String sql = "COPY load_file (load_id, source_path, target_path, mime_type, description, state)" +
+            " FROM STDIN WITH (FORMAT csv)";
+
+        StringBuilder copyData = new StringBuilder();
+        String loadIdString = loadId.toString();
+        String notTried = BulkLoadFileState.NOT_TRIED.toString();
+        for (BulkLoadFileModel loadFileModel : loadFileModelList) {
+            copyData.append(loadIdString).append(',')
+                .append(csvField(loadFileModel.getSourcePath())).append(',')
+                .append(csvField(loadFileModel.getTargetPath())).append(',')
+                .append(csvField(loadFileModel.getMimeType())).append(',')
+                .append(csvField(loadFileModel.getDescription())).append(',')
+                .append(notTried).append('\n');
+        }
+
+        Long rows = jdbcTemplate.getJdbcTemplate().execute((ConnectionCallback<Long>) connection -> {
+            try {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                return copyManager.copyIn(sql, new StringReader(copyData.toString()));
+            } catch (IOException ex) {
+                throw new SQLException("Failed to copy load files into load_file table", ex);
+            }
+        });
+        logger.debug("Copied {} rows into load_file for load {}", rows, loadId);
     }
 
-    // Remove all file load instructions for a given loadId from the load_file table
+    // Quote every non-null value, so that empty strings are distinguished from nulls. In CSV format, an
+    // unquoted empty field is null.
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // Remove all file load instructions for a given loadId from the load_file table, along with the
+    // directories the load created
+    @Transactional
     public void cleanFiles(UUID loadId) {
-        jdbcTemplate.update("DELETE FROM load_file WHERE load_id = :load_id",
-            new MapSqlParameterSource().addValue("load_id", loadId));
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("load_id", loadId);
+        jdbcTemplate.update("DELETE FROM load_file WHERE load_id = :load_id", params);
+        jdbcTemplate.update("DELETE FROM load_directory WHERE load_id = :load_id", params);
     }
 
     public List<LoadFile> findLoadsByState(UUID loadId, BulkLoadFileState state, Integer limit) {
         return queryByState(loadId, state, limit);
     }
 
+    // True if any file of the load failed or was never tried
+    public boolean hasUnloadedFiles(UUID loadId) {
+        final String sql = "SELECT EXISTS (SELECT 1 FROM load_file" +
+            " WHERE load_id = :load_id AND state IN (:failed, :not_tried))";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("load_id", loadId)
+            .addValue("failed", BulkLoadFileState.FAILED.toString())
+            .addValue("not_tried", BulkLoadFileState.NOT_TRIED.toString());
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, params, Boolean.class));
+    }
+
     @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.SERIALIZABLE)
     public LoadCandidates findCandidates(UUID loadId, int candidatesToFind) {
         final String countFailedSql = "SELECT count(*) AS failed FROM load_file" +
@@ -232,6 +267,119 @@ public class LoadDao {
         updateLoadFile(loadId, targetPath, BulkLoadFileState.FAILED, null, null, error, null);
     }
 
+    /**
+     * Update the state of many files in a load with one statement per chunk of files. Each LoadFile supplies
+     * its target path and the new state, flight id, file id, checksums, and error; the columns are set exactly
+     * as the single-file methods above would set them.
+     *
+     * @param loadId load the files belong to
+     * @param loadFiles files with their new state
+     */
+    @Transactional
+    public void updateLoadFiles(UUID loadId, List<LoadFile> loadFiles) {
+        for (List<LoadFile> chunk : ListUtils.partition(loadFiles, UPDATE_CHUNK_SIZE)) {
+            StringBuilder sql = new StringBuilder("UPDATE load_file" +
+                " SET state = v.state, file_id = v.file_id, flight_id = v.flight_id," +
+                " checksum_crc32c = v.checksum_crc32c, checksum_md5 = v.checksum_md5, error = v.error" +
+                " FROM (VALUES ");
+            List<Object> args = new ArrayList<>(chunk.size() * 7 + 1);
+            String separator = "";
+            for (LoadFile loadFile : chunk) {
+                sql.append(separator).append("(?,?,?,?,?,?,?)");
+                separator = ",";
+                args.add(loadFile.getTargetPath());
+                args.add(loadFile.getState().toString());
+                args.add(loadFile.getFileId());
+                args.add(loadFile.getFlightId());
+                args.add(loadFile.getChecksumCrc32c());
+                args.add(loadFile.getChecksumMd5());
+                args.add(loadFile.getError());
+            }
+            sql.append(") AS v(target_path, state, file_id, flight_id, checksum_crc32c, checksum_md5, error)" +
+                " WHERE load_file.load_id = ? AND load_file.target_path = v.target_path");
+            args.add(loadId);
+            jdbcTemplate.getJdbcTemplate().update(sql.toString(), args.toArray());
+        }
+    }
+
+    // -- load directory methods --
+
+    /**
+     * Record directories that the load created ahead of its file loads. Recording one twice is harmless.
+     *
+     * @param loadId load that created the directories
+     * @param dirPaths full paths of the directories
+     */
+    public void addLoadDirectories(UUID loadId, List<String> dirPaths) {
+        final String sql = "INSERT INTO load_directory (load_id, dir_path) VALUES (?, ?)" +
+            " ON CONFLICT ON CONSTRAINT pk_load_directory DO NOTHING";
+        List<Object[]> args = new ArrayList<>(dirPaths.size());
+        for (String dirPath : dirPaths) {
+            args.add(new Object[]{loadId, dirPath});
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(sql, args);
+    }
+
+    /**
+     * Read one page of the directories a load created, deepest first: longer paths come before shorter ones,
+     * so a directory comes before its parent. Pages are found with a keyset cursor on that order.
+     *
+     * @param loadId load to read
+     * @param chunkSize maximum number of directories to return
+     * @param afterDirPath last directory of the previous page; null for the first page
+     * @return page of directory paths; fewer than chunkSize means this is the last page
+     */
+    public List<String> findLoadDirectories(UUID loadId, int chunkSize, String afterDirPath) {
+        final String sql = "SELECT dir_path FROM load_directory WHERE load_id = :load_id" +
+            ((afterDirPath == null) ? "" :
+                " AND (length(dir_path), dir_path) < (length(:after_dir_path), :after_dir_path)") +
+            " ORDER BY length(dir_path) DESC, dir_path DESC" +
+            " LIMIT :chunk_size";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("load_id", loadId)
+            .addValue("after_dir_path", afterDirPath)
+            .addValue("chunk_size", chunkSize);
+        return jdbcTemplate.queryForList(sql, params, String.class);
+    }
+
+    // -- load completion notification methods --
+
+    /**
+     * Start listening for file load completions for a load. The caller must close the returned listener.
+     *
+     * @param loadId load to listen on
+     * @return listener holding a dedicated connection
+     */
+    public LoadCompletionListener listenForCompletions(UUID loadId) {
+        Connection connection;
+        try {
+            connection = jdbcTemplate.getJdbcTemplate().getDataSource().getConnection();
+        } catch (SQLException ex) {
+            throw new LoadNotificationException("Failed to get a connection to listen for load " + loadId, ex);
+        }
+        return new LoadCompletionListener(connection, completionChannel(loadId));
+    }
+
+    /**
+     * Tell the listening load driver that the file load running in a flight has completed. We only send the
+     * flight id; the driver gets the outcome from Stairway.
+     *
+     * @param loadId load the file belongs to
+     * @param flightId flight id of the worker flight that completed
+     */
+    public void notifyLoadFileComplete(UUID loadId, String flightId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("channel", completionChannel(loadId))
+            .addValue("flight_id", flightId);
+        // pg_notify returns void, so there is nothing to process in the result
+        jdbcTemplate.query("SELECT pg_notify(:channel, :flight_id)", params, (RowCallbackHandler) rs -> { });
+    }
+
+    private String completionChannel(UUID loadId) {
+        // Channel names are identifiers, so keep them short and free of dashes
+        return "load_" + loadId.toString().replace("-", "");
+    }
+
     public BulkLoadResultModel makeBulkLoadResult(UUID loadId) {
         final String bulkLoadResultSql = "SELECT state, count(*) AS statecount FROM load_file" +
             " WHERE load_id = :load_id GROUP BY state";
@@ -295,15 +443,26 @@ public class LoadDao {
             });
     }
 
-    public List<BulkLoadHistoryModel> makeLoadHistoryArray(UUID loadId, int chunkSize, int chunkNum) {
+    /**
+     * Read one page of load history, walking the load_file rows of a load in target path order. Pages are
+     * found with a keyset cursor on the (load_id, target_path) primary key, so each page costs the same
+     * no matter how far into the load it is.
+     *
+     * @param loadId load to read
+     * @param chunkSize maximum number of rows to return
+     * @param afterTargetPath target path of the last row of the previous page; null for the first page
+     * @return page of load history; fewer than chunkSize rows means this is the last page
+     */
+    public List<BulkLoadHistoryModel> makeLoadHistoryArray(UUID loadId, int chunkSize, String afterTargetPath) {
         final String sql = "SELECT source_path, target_path, state, file_id, checksum_crc32c, checksum_md5, error" +
             " FROM load_file WHERE load_id = :load_id" +
-            " ORDER BY file_id" +
-            " LIMIT :chunk_size OFFSET :chunk_num";
+            ((afterTargetPath == null) ? "" : " AND target_path > :after_target_path") +
+            " ORDER BY target_path" +
+            " LIMIT :chunk_size";
         MapSqlParameterSource params = new MapSqlParameterSource();
         params.addValue("load_id", loadId);
+        params.addValue("after_target_path", afterTargetPath);
         params.addValue("chunk_size", chunkSize);
-        params.addValue("chunk_num", chunkNum);
         return jdbcTemplate.query(
             sql,
             params,
@@ -15,6 +15,8 @@ public class LoadFile {
     private BulkLoadFileState state;
     private String flightId;
     private String fileId;
+    private String checksumCrc32c;
+    private String checksumMd5;
     private String error;
 
     public UUID getLoadId() {
@@ -89,6 +91,24 @@ public class LoadFile {
         return this;
     }
 
+    public String getChecksumCrc32c() {
+        return checksumCrc32c;
+    }
+
+    public LoadFile checksumCrc32c(String checksumCrc32c) {
+        this.checksumCrc32c = checksumCrc32c;
+        return this;
+    }
+
+    public String getChecksumMd5() {
+        return checksumMd5;
+    }
+
+    public LoadFile checksumMd5(String checksumMd5) {
+        this.checksumMd5 = checksumMd5;
+        return this;
+    }
+
     public String getError() {
         return error;
     }
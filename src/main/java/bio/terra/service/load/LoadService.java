@@ -50,6 +50,30 @@ public class LoadService {
         return loadDao.findLoadsByState(loadId, BulkLoadFileState.RUNNING, null);
     }
 
+    public List<LoadFile> findCandidateFiles(UUID loadId, int candidatesToFind) {
+        return loadDao.findLoadsByState(loadId, BulkLoadFileState.NOT_TRIED, candidatesToFind);
+    }
+
+    public boolean hasUnloadedFiles(UUID loadId) {
+        return loadDao.hasUnloadedFiles(loadId);
+    }
+
+    public void addLoadDirectories(UUID loadId, List<String> dirPaths) {
+        loadDao.addLoadDirectories(loadId, dirPaths);
+    }
+
+    public List<String> findLoadDirectories(UUID loadId, int chunkSize, String afterDirPath) {
+        return loadDao.findLoadDirectories(loadId, chunkSize, afterDirPath);
+    }
+
+    public LoadCompletionListener listenForCompletions(UUID loadId) {
+        return loadDao.listenForCompletions(loadId);
+    }
+
+    public void notifyLoadFileComplete(UUID loadId, String flightId) {
+        loadDao.notifyLoadFileComplete(loadId, flightId);
+    }
+
     /**
      * @param inputTag may be null or blank
      * @return either valid inputTag or generated date-time tag.
@@ -95,6 +119,12 @@ public class LoadService {
         loadDao.setLoadFileNotTried(loadId, targetPath);
     }
 
+    public void updateLoadFiles(UUID loadId, List<LoadFile> loadFiles) {
+        if (!loadFiles.isEmpty()) {
+            loadDao.updateLoadFiles(loadId, loadFiles);
+        }
+    }
+
     public BulkLoadResultModel makeBulkLoadResult(UUID loadId) {
         return loadDao.makeBulkLoadResult(loadId);
     }
@@ -103,7 +133,7 @@ public class LoadService {
         return loadDao.makeBulkLoadFileArray(loadId);
     }
 
-    public List<BulkLoadHistoryModel> makeLoadHistoryArray(UUID loadId, int chunkSize, int chunkNum) {
-        return loadDao.makeLoadHistoryArray(loadId, chunkSize, chunkNum);
+    public List<BulkLoadHistoryModel> makeLoadHistoryArray(UUID loadId, int chunkSize, String afterTargetPath) {
+        return loadDao.makeLoadHistoryArray(loadId, chunkSize, afterTargetPath);
     }
 }
@@ -0,0 +1,17 @@
+package bio.terra.service.load.exception;
+
+import bio.terra.common.exception.InternalServerErrorException;
+
+public class LoadNotificationException extends InternalServerErrorException {
+    public LoadNotificationException(String message) {
+        super(message);
+    }
+
+    public LoadNotificationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public LoadNotificationException(Throwable cause) {
+        super(cause);
+    }
+}
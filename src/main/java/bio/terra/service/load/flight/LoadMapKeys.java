@@ -6,7 +6,6 @@ public final class LoadMapKeys {
     public static final String DRIVER_WAIT_SECONDS = "driverWaitSeconds";
     public static final String IS_ARRAY = "isArray";
     public static final String LOAD_HISTORY_COPY_CHUNK_SIZE = "loadHistoryCopyChunkSize";
-    public static final String LOAD_HISTORY_WAIT_SECONDS = "loadHistoryWaitSeconds";
 
     private LoadMapKeys() {
 
@@ -23,6 +23,7 @@ public class Snapshot implements FSContainerInterface {
     private List<SnapshotSource> snapshotSources = Collections.emptyList();
     private UUID profileId;
     private List<Relationship> relationships = Collections.emptyList();
+    private boolean materialized; // tables are copied into the snapshot instead of being views
 
     public UUID getId() {
         return id;
@@ -65,7 +66,7 @@ public class Snapshot implements FSContainerInterface {
     }
 
     public Snapshot snapshotTables(List<SnapshotTable> tables) {
-        this.tables = tables;
+        this.tables = Collections.unmodifiableList(tables);
         return this;
     }
 
@@ -74,7 +75,7 @@ public class Snapshot implements FSContainerInterface {
     }
 
     public Snapshot snapshotSources(List<SnapshotSource> snapshotSources) {
-        this.snapshotSources = snapshotSources;
+        this.snapshotSources = Collections.unmodifiableList(snapshotSources);
         return this;
     }
 
@@ -96,12 +97,21 @@ public class Snapshot implements FSContainerInterface {
         return this;
     }
 
+    public boolean isMaterialized() {
+        return materialized;
+    }
+
+    public Snapshot materialized(boolean materialized) {
+        this.materialized = materialized;
+        return this;
+    }
+
     public List<Relationship> getRelationships() {
         return relationships;
     }
 
     public Snapshot relationships(List<Relationship> relationships) {
-        this.relationships = relationships;
+        this.relationships = Collections.unmodifiableList(relationships);
         return this;
     }
 
@@ -1,11 +1,13 @@
 package bio.terra.service.snapshot;
 
+import bio.terra.app.configuration.ApplicationConfiguration;
 import bio.terra.service.dataset.DatasetDao;
 import bio.terra.service.dataset.AssetSpecification;
 import bio.terra.common.MetadataEnumeration;
 import bio.terra.service.dataset.Dataset;
 import bio.terra.common.DaoKeyHolder;
 import bio.terra.common.DaoUtils;
+import bio.terra.common.VersionedCache;
 import bio.terra.service.snapshot.exception.CorruptMetadataException;
 import bio.terra.service.snapshot.exception.InvalidSnapshotException;
 import bio.terra.service.snapshot.exception.MissingRowCountsException;
@@ -29,6 +31,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,23 +41,34 @@ import java.util.UUID;
 public class SnapshotDao {
     private final Logger logger = LoggerFactory.getLogger("bio.terra.service.snapshot.SnapshotDao");
 
+    // The snapshot's own version plus the versions of its source datasets. Each only goes up, so the sum changes
+    // whenever the snapshot or a dataset it references changes.
+    private static final String sqlSelectSnapshot = "SELECT snapshot.*, snapshot.metadata_version + " +
+        "(SELECT COALESCE(SUM(dataset.metadata_version), 0) FROM snapshot_source " +
+        "JOIN dataset ON snapshot_source.dataset_id = dataset.id " +
+        "WHERE snapshot_source.snapshot_id = snapshot.id) AS cache_version FROM snapshot";
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final SnapshotTableDao snapshotTableDao;
     private final SnapshotMapTableDao snapshotMapTableDao;
     private final SnapshotRelationshipDao snapshotRelationshipDao;
     private final DatasetDao datasetDao;
+    // Hydrated snapshots, shared by callers while the metadata versions of the snapshot and its datasets are current
+    private final VersionedCache<UUID, Snapshot> metadataCache;
 
     @Autowired
     public SnapshotDao(NamedParameterJdbcTemplate jdbcTemplate,
                       SnapshotTableDao snapshotTableDao,
                       SnapshotMapTableDao snapshotMapTableDao,
                       SnapshotRelationshipDao snapshotRelationshipDao,
-                      DatasetDao datasetDao) {
+                      DatasetDao datasetDao,
+                      ApplicationConfiguration appConfig) {
         this.jdbcTemplate = jdbcTemplate;
         this.snapshotTableDao = snapshotTableDao;
         this.snapshotMapTableDao = snapshotMapTableDao;
         this.snapshotRelationshipDao = snapshotRelationshipDao;
         this.datasetDao = datasetDao;
+        this.metadataCache = new VersionedCache<>("snapshot metadata", appConfig.getMetadataCacheSize());
     }
 
     /**
@@ -128,13 +142,14 @@ public class SnapshotDao {
     public UUID createAndLock(Snapshot snapshot, String flightId) {
         logger.debug("createAndLock snapshot " + snapshot.getName());
 
-        String sql = "INSERT INTO snapshot (name, description, profile_id, flightid) " +
-            "VALUES (:name, :description, :profile_id, :flightid) ";
+        String sql = "INSERT INTO snapshot (name, description, profile_id, flightid, materialized) " +
+            "VALUES (:name, :description, :profile_id, :flightid, :materialized) ";
         MapSqlParameterSource params = new MapSqlParameterSource()
             .addValue("name", snapshot.getName())
             .addValue("description", snapshot.getDescription())
             .addValue("profile_id", snapshot.getProfileId())
-            .addValue("flightid", flightId);
+            .addValue("flightid", flightId)
+            .addValue("materialized", snapshot.isMaterialized());
         DaoKeyHolder keyHolder = new DaoKeyHolder();
         try {
             jdbcTemplate.update(sql, params, keyHolder);
@@ -195,6 +210,7 @@ public class SnapshotDao {
         logger.debug("delete snapshot by id: " + id);
         int rowsAffected = jdbcTemplate.update("DELETE FROM snapshot WHERE id = :id",
                 new MapSqlParameterSource().addValue("id", id));
+        metadataCache.remove(id);
         return rowsAffected > 0;
     }
 
@@ -215,6 +231,19 @@ public class SnapshotDao {
         return retrieveSnapshot(snapshotId, true);
     }
 
+    /**
+     * Check that a snapshot exists and is NOT exclusively locked, without retrieving it. This is a single
+     * primary key lookup, so callers that cache snapshots can afford to make it on every cache hit.
+     * @param snapshotId the snapshot id
+     * @return true if the snapshot exists and is not exclusively locked
+     */
+    public boolean isAvailable(UUID snapshotId) {
+        String sql = "SELECT COUNT(*) FROM snapshot WHERE id = :id AND flightid IS NULL";
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("id", snapshotId);
+        Integer count = jdbcTemplate.queryForObject(sql, params, Integer.class);
+        return count != null && count > 0;
+    }
+
     /**
      * This is a convenience wrapper that returns a snapshot, regardless of whether it is exclusively locked.
      * Most places in the API code that are retrieving a snapshot will call this method.
@@ -234,7 +263,7 @@ public class SnapshotDao {
      */
     public Snapshot retrieveSnapshot(UUID snapshotId, boolean onlyRetrieveAvailable) {
         logger.debug("retrieve snapshot id: " + snapshotId);
-        String sql = "SELECT * FROM snapshot WHERE id = :id";
+        String sql = sqlSelectSnapshot + " WHERE id = :id";
         if (onlyRetrieveAvailable) { // exclude snapshots that are exclusively locked
             sql += " AND flightid IS NULL";
         }
@@ -247,7 +276,7 @@ public class SnapshotDao {
     }
 
     public Snapshot retrieveSnapshotByName(String name) {
-        String sql = "SELECT * FROM snapshot WHERE name = :name";
+        String sql = sqlSelectSnapshot + " WHERE name = :name";
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("name", name);
         Snapshot snapshot = retrieveWorker(sql, params);
         if (snapshot == null) {
@@ -257,29 +286,63 @@ public class SnapshotDao {
     }
 
     private Snapshot retrieveWorker(String sql, MapSqlParameterSource params) {
+        class SnapshotRow {
+            private Snapshot snapshot;
+            private long cacheVersion;
+        }
+
         try {
-            Snapshot snapshot = jdbcTemplate.queryForObject(sql, params, (rs, rowNum) ->
-                new Snapshot()
+            SnapshotRow row = jdbcTemplate.queryForObject(sql, params, (rs, rowNum) -> {
+                SnapshotRow snapshotRow = new SnapshotRow();
+                snapshotRow.snapshot = new Snapshot()
                     .id(rs.getObject("id", UUID.class))
                     .name(rs.getString("name"))
                     .description(rs.getString("description"))
                     .createdDate(rs.getTimestamp("created_date").toInstant())
-                    .profileId(rs.getObject("profile_id", UUID.class)));
+                    .profileId(rs.getObject("profile_id", UUID.class))
+                    .materialized(rs.getBoolean("materialized"));
+                snapshotRow.cacheVersion = rs.getLong("cache_version");
+                return snapshotRow;
+            });
             // needed for findbugs. but really can't be null
-            if (snapshot != null) {
-                // retrieve the snapshot tables and relationships
-                snapshot.snapshotTables(snapshotTableDao.retrieveTables(snapshot.getId()));
-                snapshotRelationshipDao.retrieve(snapshot);
-
-                // Must be done after we we make the snapshot tables so we can resolve the table and column references
-                snapshot.snapshotSources(retrieveSnapshotSources(snapshot));
+            if (row == null) {
+                return null;
+            }
+            // The snapshot row was just read, so it is current. Only the tables, relationships, and sources
+            // come from the cache; they are shared by every caller, so the lists are unmodifiable. The sources
+            // point back at their snapshot, so each caller gets its own copies of those.
+            Snapshot snapshot = row.snapshot;
+            Snapshot metadata = metadataCache.get(snapshot.getId(), row.cacheVersion,
+                id -> hydrate(new Snapshot().id(id)));
+            List<SnapshotSource> snapshotSources = new ArrayList<>();
+            for (SnapshotSource source : metadata.getSnapshotSources()) {
+                snapshotSources.add(new SnapshotSource()
+                    .id(source.getId())
+                    .snapshot(snapshot)
+                    .dataset(source.getDataset())
+                    .assetSpecification(source.getAssetSpecification())
+                    .snapshotMapTables(source.getSnapshotMapTables()));
             }
-            return snapshot;
+            return snapshot
+                .snapshotTables(metadata.getTables())
+                .relationships(metadata.getRelationships())
+                .snapshotSources(snapshotSources);
         } catch (EmptyResultDataAccessException ex) {
             return null;
         }
     }
 
+    // Load the metadata of a snapshot into a snapshot that only has its id
+    private Snapshot hydrate(Snapshot snapshot) {
+        // retrieve the snapshot tables and relationships
+        snapshot.snapshotTables(snapshotTableDao.retrieveTables(snapshot.getId()));
+        snapshotRelationshipDao.retrieve(snapshot);
+
+        // Must be done after we we make the snapshot tables so we can resolve the table and column references
+        snapshot.snapshotSources(retrieveSnapshotSources(snapshot));
+        return snapshot;
+    }
+
     private List<SnapshotSource> retrieveSnapshotSources(Snapshot snapshot) {
         // We collect all of the source ids first to avoid introducing a recursive query. While the recursive
         // query might work, it makes debugging errors more difficult.
@@ -302,9 +365,11 @@ public class SnapshotDao {
                     return raw;
                 });
 
+        // Sources of the same dataset share one retrieval of it
+        Map<UUID, Dataset> datasets = new HashMap<>();
         List<SnapshotSource> snapshotSources = new ArrayList<>();
         for (RawSourceData raw : rawList) {
-            Dataset dataset = datasetDao.retrieve(raw.datasetId);
+            Dataset dataset = datasets.computeIfAbsent(raw.datasetId, datasetDao::retrieve);
             SnapshotSource snapshotSource = new SnapshotSource()
                 .id(raw.id)
                 .snapshot(snapshot)
@@ -425,6 +490,9 @@ public class SnapshotDao {
                 .addValue("tableName", tableName);
             jdbcTemplate.update(sql, params);
         }
+        // Row counts are part of the cached snapshot, so make every pod hydrate it again
+        jdbcTemplate.update("UPDATE snapshot SET metadata_version = metadata_version + 1 WHERE id = :id",
+            new MapSqlParameterSource().addValue("id", snapshot.getId()));
     }
 
     private static class SnapshotSummaryMapper implements RowMapper<SnapshotSummary> {
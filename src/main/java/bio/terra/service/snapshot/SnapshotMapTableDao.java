@@ -3,7 +3,6 @@ package bio.terra.service.snapshot;
 import bio.terra.common.DaoKeyHolder;
 import bio.terra.common.Column;
 import bio.terra.service.dataset.DatasetTable;
-import bio.terra.common.Table;
 import bio.terra.service.snapshot.exception.CorruptMetadataException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -12,9 +11,13 @@ import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public class SnapshotMapTableDao {
@@ -59,14 +62,18 @@ public class SnapshotMapTableDao {
         }
     }
 
+    /**
+     * Retrieve the map tables of a snapshot source with their map columns. This takes two queries however many
+     * tables are mapped: one for the map tables and one for the map columns of all of them.
+     */
     public List<SnapshotMapTable> retrieveMapTables(Snapshot snapshot, SnapshotSource source) {
         String sql = "SELECT id, source_id, from_table_id, to_table_id" +
                 " FROM snapshot_map_table WHERE source_id = :source_id";
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("source_id", source.getId());
         List<SnapshotMapTable> mapTableList = jdbcTemplate.query(
             sql,
-            new MapSqlParameterSource().addValue("source_id", source.getId()),
+            params,
             (rs, rowNum) -> {
-                List<SnapshotMapTable> mapTables = new ArrayList<>();
                 UUID fromTableId = rs.getObject("from_table_id", UUID.class);
                 Optional<DatasetTable> datasetTable = source.getDataset().getTableById(fromTableId);
                 if (!datasetTable.isPresent()) {
@@ -81,47 +88,62 @@ public class SnapshotMapTableDao {
                             "Snapshot table referenced by snapshot source map table was not found!");
                 }
 
-                UUID id = rs.getObject("id", UUID.class);
-                List<SnapshotMapColumn> mapColumns = retrieveMapColumns(id, datasetTable.get(), snapshotTable.get());
-
                 return new SnapshotMapTable()
-                        .id(id)
+                        .id(rs.getObject("id", UUID.class))
                         .fromTable(datasetTable.get())
-                        .toTable(snapshotTable.get())
-                        .snapshotMapColumns(mapColumns);
+                        .toTable(snapshotTable.get());
             });
 
+        Map<UUID, SnapshotMapTable> mapTablesById = mapTableList
+            .stream()
+            .collect(Collectors.toMap(SnapshotMapTable::getId, Function.identity()));
+        Map<UUID, List<SnapshotMapColumn>> mapColumns = retrieveMapColumns(params, mapTablesById);
+        for (SnapshotMapTable mapTable : mapTableList) {
+            mapTable.snapshotMapColumns(mapColumns.getOrDefault(mapTable.getId(), new ArrayList<>()));
+        }
         return mapTableList;
     }
 
-    public List<SnapshotMapColumn> retrieveMapColumns(UUID mapTableId, Table fromTable, Table toTable) {
-        String sql = "SELECT id, from_column_id, to_column_id" +
-                " FROM snapshot_map_column WHERE map_table_id = :map_table_id";
-
-        List<SnapshotMapColumn> mapColumns = jdbcTemplate.query(
-            sql,
-            new MapSqlParameterSource().addValue("map_table_id", mapTableId),
-            (rs, rowNum) -> {
-                UUID fromId = rs.getObject("from_column_id", UUID.class);
-                Optional<Column> datasetColumn = fromTable.getColumnById(fromId);
-                if (!datasetColumn.isPresent()) {
-                    throw new CorruptMetadataException(
-                            "Dataset column referenced by snapshot source map column was not found");
-                }
-
-                UUID toId = rs.getObject("to_column_id", UUID.class);
-                Optional<Column> snapshotColumn = toTable.getColumnById(toId);
-                if (!snapshotColumn.isPresent()) {
-                    throw new CorruptMetadataException(
-                            "Snapshot column referenced by snapshot source map column was not found");
-                }
-
-                return new SnapshotMapColumn()
-                        .id(rs.getObject("from_column_id", UUID.class))
-                        .fromColumn(datasetColumn.get())
-                        .toColumn(snapshotColumn.get());
-            });
+    // Returns the map columns of all of the map tables of the source, grouped by map table id
+    private Map<UUID, List<SnapshotMapColumn>> retrieveMapColumns(MapSqlParameterSource sourceParams,
+                                                                  Map<UUID, SnapshotMapTable> mapTablesById) {
+        String sql = "SELECT snapshot_map_column.id, snapshot_map_column.map_table_id," +
+                " snapshot_map_column.from_column_id, snapshot_map_column.to_column_id" +
+                " FROM snapshot_map_column" +
+                " INNER JOIN snapshot_map_table ON snapshot_map_column.map_table_id = snapshot_map_table.id" +
+                " WHERE snapshot_map_table.source_id = :source_id";
+
+        // Look columns up by id in maps rather than searching the column lists for each map column
+        Map<UUID, Column> fromColumns = new HashMap<>();
+        Map<UUID, Column> toColumns = new HashMap<>();
+        for (SnapshotMapTable mapTable : mapTablesById.values()) {
+            mapTable.getFromTable().getColumns().forEach(column -> fromColumns.put(column.getId(), column));
+            mapTable.getToTable().getColumns().forEach(column -> toColumns.put(column.getId(), column));
+        }
 
+        Map<UUID, List<SnapshotMapColumn>> mapColumns = new HashMap<>();
+        jdbcTemplate.query(sql, sourceParams, rs -> {
+            UUID fromId = rs.getObject("from_column_id", UUID.class);
+            Column datasetColumn = fromColumns.get(fromId);
+            if (datasetColumn == null) {
+                throw new CorruptMetadataException(
+                        "Dataset column referenced by snapshot source map column was not found");
+            }
+
+            UUID toId = rs.getObject("to_column_id", UUID.class);
+            Column snapshotColumn = toColumns.get(toId);
+            if (snapshotColumn == null) {
+                throw new CorruptMetadataException(
+                        "Snapshot column referenced by snapshot source map column was not found");
+            }
+
+            SnapshotMapColumn mapColumn = new SnapshotMapColumn()
+                    .id(fromId)
+                    .fromColumn(datasetColumn)
+                    .toColumn(snapshotColumn);
+            mapColumns.computeIfAbsent(rs.getObject("map_table_id", UUID.class), id -> new ArrayList<>())
+                .add(mapColumn);
+        });
         return mapColumns;
     }
 
@@ -187,6 +187,14 @@ public class SnapshotService {
         return snapshotDao.retrieveAvailableSnapshot(id);
     }
 
+    /** Check that a Snapshot exists and is NOT exclusively locked, without fetching it.
+     * @param id in UUID format
+     * @return true if the snapshot is available
+     */
+    public boolean isAvailable(UUID id) {
+        return snapshotDao.isAvailable(id);
+    }
+
     /** Fetch existing Snapshot object using the name.
      * @param name
      * @return a Snapshot object
@@ -257,6 +265,7 @@ public class SnapshotService {
 
         return snapshot.name(snapshotRequestModel.getName())
             .description(snapshotRequestModel.getDescription())
+            .materialized(Boolean.TRUE.equals(snapshotRequestModel.isMaterialized()))
             .snapshotSources(Collections.singletonList(snapshotSource))
             .profileId(UUID.fromString(snapshotRequestModel.getProfileId()))
             .relationships(createSnapshotRelationships(dataset.getRelationships(), snapshotSource));
@@ -478,6 +487,7 @@ public class SnapshotService {
                 .description(snapshot.getDescription())
                 .createdDate(snapshot.getCreatedDate().toString())
                 .profileId(snapshot.getProfileId().toString())
+                .materialized(snapshot.isMaterialized())
                 .source(snapshot.getSnapshotSources()
                         .stream()
                         .map(this::makeSourceModelFromSource)
@@ -48,7 +48,7 @@ public class SnapshotSource {
     }
 
     public SnapshotSource snapshotMapTables(List<SnapshotMapTable> snapshotMapTables) {
-        this.snapshotMapTables = snapshotMapTables;
+        this.snapshotMapTables = Collections.unmodifiableList(snapshotMapTables);
         return this;
     }
 
@@ -2,15 +2,19 @@ package bio.terra.service.snapshot;
 
 import bio.terra.common.DaoKeyHolder;
 import bio.terra.common.Column;
-import bio.terra.common.Table;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
 public class SnapshotTableDao {
@@ -21,8 +25,15 @@ public class SnapshotTableDao {
         "(table_id, name, type, array_of) VALUES (:table_id, :name, :type, :array_of)";
     private static final String sqlSelectTable = "SELECT id, name, row_count FROM snapshot_table " +
         "WHERE parent_id = :parent_id";
-    private static final String sqlSelectColumn = "SELECT id, name, type, array_of FROM snapshot_column " +
-        "WHERE table_id = :table_id";
+    // Columns of every table of the snapshot in one query, rather than one query per table, in the order they
+    // were created so each table keeps its column order. Columns created before column_order existed are
+    // ordered by name instead, because their creation order was not recorded.
+    private static final String sqlSelectColumn =
+        "SELECT snapshot_column.id, snapshot_column.table_id, snapshot_column.name, snapshot_column.type, " +
+        "snapshot_column.array_of FROM snapshot_column " +
+        "INNER JOIN snapshot_table ON snapshot_column.table_id = snapshot_table.id " +
+        "WHERE snapshot_table.parent_id = :parent_id " +
+        "ORDER BY snapshot_column.table_id, snapshot_column.column_order";
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
@@ -61,25 +72,30 @@ public class SnapshotTableDao {
 
     public List<SnapshotTable> retrieveTables(UUID parentId) {
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("parent_id", parentId);
-        return jdbcTemplate.query(sqlSelectTable, params, (rs, rowNum) -> {
-            SnapshotTable table = new SnapshotTable()
+        List<SnapshotTable> tables = jdbcTemplate.query(sqlSelectTable, params, (rs, rowNum) ->
+            new SnapshotTable()
                 .id(rs.getObject("id", UUID.class))
                 .name(rs.getString("name"))
-                .rowCount(rs.getLong("row_count"));
-            List<Column> columns = retrieveColumns(table);
-            return table.columns(columns);
+                .rowCount(rs.getLong("row_count")));
+
+        Map<UUID, SnapshotTable> tablesById = tables
+            .stream()
+            .collect(Collectors.toMap(SnapshotTable::getId, Function.identity()));
+        Map<UUID, List<Column>> tableColumns = new HashMap<>();
+        jdbcTemplate.query(sqlSelectColumn, params, rs -> {
+            UUID tableId = rs.getObject("table_id", UUID.class);
+            Column column = new Column()
+                .id(rs.getObject("id", UUID.class))
+                .table(tablesById.get(tableId))
+                .name(rs.getString("name"))
+                .type(rs.getString("type"))
+                .arrayOf(rs.getBoolean("array_of"));
+            tableColumns.computeIfAbsent(tableId, id -> new ArrayList<>()).add(column);
         });
-    }
 
-    private List<Column> retrieveColumns(Table table) {
-        return jdbcTemplate.query(
-            sqlSelectColumn,
-            new MapSqlParameterSource().addValue("table_id", table.getId()), (rs, rowNum) ->
-                new Column()
-                    .id(rs.getObject("id", UUID.class))
-                    .table(table)
-                    .name(rs.getString("name"))
-                    .type(rs.getString("type"))
-                    .arrayOf(rs.getBoolean("array_of")));
+        for (SnapshotTable table : tables) {
+            table.columns(tableColumns.getOrDefault(table.getId(), new ArrayList<>()));
+        }
+        return tables;
     }
 }
@@ -3,13 +3,10 @@ package bio.terra.service.snapshot.flight.create;
 import bio.terra.common.FlightUtils;
 import bio.terra.model.SnapshotRequestContentsModel;
 import bio.terra.model.SnapshotRequestModel;
-import bio.terra.model.SnapshotRequestRowIdModel;
-import bio.terra.model.SnapshotRequestRowIdTableModel;
 import bio.terra.service.snapshot.RowIdMatch;
 import bio.terra.service.snapshot.Snapshot;
 import bio.terra.service.snapshot.SnapshotDao;
 import bio.terra.service.snapshot.SnapshotService;
-import bio.terra.service.snapshot.SnapshotSource;
 import bio.terra.service.snapshot.exception.MismatchedValueException;
 import bio.terra.service.tabulardata.google.BigQueryPdao;
 import bio.terra.stairway.FlightContext;
@@ -18,8 +15,6 @@ import bio.terra.stairway.StepResult;
 import bio.terra.stairway.StepStatus;
 import org.springframework.http.HttpStatus;
 
-import java.util.List;
-
 public class CreateSnapshotPrimaryDataRowIdsStep implements Step {
 
     private BigQueryPdao bigQueryPdao;
@@ -42,23 +37,16 @@ public class CreateSnapshotPrimaryDataRowIdsStep implements Step {
         // TODO: this assumes single-dataset snapshots, will need to add a loop for multiple
         SnapshotRequestContentsModel contentsModel = snapshotReq.getContents().get(0);
         Snapshot snapshot = snapshotDao.retrieveSnapshotByName(snapshotReq.getName());
-        SnapshotSource source = snapshot.getSnapshotSources().get(0);
-        SnapshotRequestRowIdModel rowIdModel = contentsModel.getRowIdSpec();
 
-        // for each table, make sure all of the row ids match
-        for (SnapshotRequestRowIdTableModel table : rowIdModel.getTables()) {
-            List<String> rowIds = table.getRowIds();
-            if (!rowIds.isEmpty()) {
-                RowIdMatch rowIdMatch = bigQueryPdao.matchRowIds(snapshot, source, table.getTableName(), rowIds);
-                if (!rowIdMatch.getUnmatchedInputValues().isEmpty()) {
-                    String unmatchedValues = String.join("', '", rowIdMatch.getUnmatchedInputValues());
-                    String message = String.format("Mismatched row ids: '%s'", unmatchedValues);
-                    FlightUtils.setErrorResponse(context, message, HttpStatus.BAD_REQUEST);
-                    return new StepResult(StepStatus.STEP_RESULT_FAILURE_FATAL, new MismatchedValueException(message));
-                }
-            }
+        // load the row ids of all tables and make sure all of them match a row in their table
+        RowIdMatch rowIdMatch = bigQueryPdao.loadProvidedRowIds(snapshot, contentsModel);
+        if (!rowIdMatch.getUnmatchedInputValues().isEmpty()) {
+            String unmatchedValues = String.join("', '", rowIdMatch.getUnmatchedInputValues());
+            String message = String.format("Mismatched row ids: '%s'", unmatchedValues);
+            FlightUtils.setErrorResponse(context, message, HttpStatus.BAD_REQUEST);
+            return new StepResult(StepStatus.STEP_RESULT_FAILURE_FATAL, new MismatchedValueException(message));
         }
-        bigQueryPdao.createSnapshotWithProvidedIds(snapshot, contentsModel);
+        bigQueryPdao.createSnapshotWithProvidedIds(snapshot);
 
         return StepResult.getStepResultSuccess();
     }
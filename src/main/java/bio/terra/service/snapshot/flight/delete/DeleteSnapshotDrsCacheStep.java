@@ -0,0 +1,33 @@
+package bio.terra.service.snapshot.flight.delete;
+
+import bio.terra.service.filedata.DrsCache;
+import bio.terra.stairway.FlightContext;
+import bio.terra.stairway.Step;
+import bio.terra.stairway.StepResult;
+
+import java.util.UUID;
+
+// Drop the snapshot and its files from the DRS cache. This runs after the snapshot is locked, so
+// DRS lookups that miss the cache from here on fail on the lock and do not cache it again.
+public class DeleteSnapshotDrsCacheStep implements Step {
+
+    private final DrsCache drsCache;
+    private final UUID snapshotId;
+
+    public DeleteSnapshotDrsCacheStep(DrsCache drsCache, UUID snapshotId) {
+        this.drsCache = drsCache;
+        this.snapshotId = snapshotId;
+    }
+
+    @Override
+    public StepResult doStep(FlightContext context) {
+        drsCache.invalidateSnapshot(snapshotId);
+        return StepResult.getStepResultSuccess();
+    }
+
+    @Override
+    public StepResult undoStep(FlightContext context) {
+        // Nothing to undo; the cache fills again on the next lookup once the snapshot is unlocked
+        return StepResult.getStepResultSuccess();
+    }
+}
@@ -1,6 +1,7 @@
 package bio.terra.service.snapshot.flight.delete;
 
 import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.filedata.DrsCache;
 import bio.terra.service.iam.AuthenticatedUserRequest;
 import bio.terra.service.iam.IamService;
 import bio.terra.service.snapshot.SnapshotDao;
@@ -33,6 +34,7 @@ public class SnapshotDeleteFlight extends Flight {
         IamService iamClient = (IamService)appContext.getBean("iamService");
         DatasetService datasetService = (DatasetService)appContext.getBean("datasetService");
         ConfigurationService configService = (ConfigurationService)appContext.getBean("configurationService");
+        DrsCache drsCache = (DrsCache)appContext.getBean("drsCache");
 
         UUID snapshotId = UUID.fromString(inputParameters.get(
             JobMapKeys.SNAPSHOT_ID.getKeyName(), String.class));
@@ -40,6 +42,8 @@ public class SnapshotDeleteFlight extends Flight {
             JobMapKeys.AUTH_USER_INFO.getKeyName(), AuthenticatedUserRequest.class);
 
         addStep(new LockSnapshotStep(snapshotDao, snapshotId, true));
+        // Stop serving DRS lookups for the snapshot from the cache
+        addStep(new DeleteSnapshotDrsCacheStep(drsCache, snapshotId));
         // Delete access control first so Readers and Discoverers can no longer see snapshot
         // Google auto-magically removes the ACLs from files and BQ objects when SAM
         // deletes the snapshot group, so no ACL cleanup is needed beyond that.
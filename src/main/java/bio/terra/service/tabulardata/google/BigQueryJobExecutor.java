@@ -0,0 +1,334 @@
+package bio.terra.service.tabulardata.google;
+
+import bio.terra.common.exception.PdaoException;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.JobStatistics;
+import com.google.cloud.bigquery.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Submits BigQuery jobs for one project and tracks them to completion without holding the caller's thread.
+ *
+ * Submitting a job returns a future that completes when the job is done, whether it succeeded or failed.
+ * The status of running jobs is polled by a small shared pool of threads. Each job is polled quickly at
+ * first and then less often, so short queries finish fast and long jobs cost few status calls. A job that
+ * runs past its timeout is canceled and its future fails. A status call that fails is retried on the same
+ * backoff; the job only fails after several status calls in a row have failed.
+ *
+ * The executor limits how many jobs of the project can run at once and how fast jobs are submitted.
+ * When the limit is reached, submit blocks until a running job finishes. It also keeps totals of the bytes
+ * processed and slot milliseconds used by the jobs it ran.
+ */
+public class BigQueryJobExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(BigQueryJobExecutor.class);
+
+    private static final long MIN_POLL_MILLIS = 250;
+    private static final long MAX_POLL_MILLIS = 10000;
+    private static final double POLL_BACKOFF = 1.5;
+    private static final int POLLER_THREADS = 2;
+    // Log the job statistics every this many completed jobs
+    private static final long STATISTICS_INTERVAL = 100;
+    private static final int HTTP_CONFLICT = 409;
+    // Fail a job after this many status calls in a row fail
+    private static final int MAX_POLL_FAILURES = 5;
+
+    private static final AtomicInteger pollerThreadCount = new AtomicInteger();
+    private static final ScheduledExecutorService poller = Executors.newScheduledThreadPool(POLLER_THREADS, r -> {
+        Thread thread = new Thread(r, "bq-job-poller-" + pollerThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BigQuery bigQuery;
+    private final String projectId;
+    private final Semaphore jobSlots;
+    private final long minSubmitIntervalNanos;
+    private final Duration defaultTimeout;
+    private long nextSubmitNanos;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong succeededCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong bytesProcessed = new AtomicLong();
+    private final AtomicLong slotMillis = new AtomicLong();
+
+    /**
+     * @param bigQuery BigQuery client of the project
+     * @param projectId project id, used in log messages
+     * @param maxConcurrentJobs maximum number of jobs running at once
+     * @param jobsPerSecond maximum rate of job submission; zero or less means no limit
+     * @param defaultTimeout time a job may run before it is canceled, when the caller does not give one
+     */
+    BigQueryJobExecutor(BigQuery bigQuery,
+                        String projectId,
+                        int maxConcurrentJobs,
+                        double jobsPerSecond,
+                        Duration defaultTimeout) {
+        this.bigQuery = bigQuery;
+        this.projectId = projectId;
+        this.jobSlots = new Semaphore(Math.max(maxConcurrentJobs, 1), true);
+        this.minSubmitIntervalNanos = (jobsPerSecond > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) / jobsPerSecond) : 0;
+        this.defaultTimeout = defaultTimeout;
+        this.nextSubmitNanos = System.nanoTime();
+    }
+
+    public CompletableFuture<Job> submit(JobInfo jobInfo) throws InterruptedException {
+        return submit(jobInfo, defaultTimeout);
+    }
+
+    /**
+     * Submit a job. Blocks while the project is at its limit of running jobs.
+     *
+     * If the job has an id and a job with that id already exists, the existing job is tracked instead. Give a
+     * job an id when it must not run twice, for example when a flight step may be run again after a restart.
+     *
+     * @param jobInfo job to run
+     * @param timeout time the job may run before it is canceled
+     * @return future completed with the done job. It fails with a PdaoException if the job disappears,
+     * times out, or its status cannot be read.
+     */
+    public CompletableFuture<Job> submit(JobInfo jobInfo, Duration timeout) throws InterruptedException {
+        jobSlots.acquire();
+        Job job;
+        try {
+            throttle();
+            job = createOrGetJob(jobInfo);
+        } catch (BigQueryException | InterruptedException ex) {
+            jobSlots.release();
+            if (ex instanceof InterruptedException) {
+                throw (InterruptedException) ex;
+            }
+            throw new PdaoException("Failed to submit BigQuery job in project " + projectId, ex);
+        }
+        submittedCount.incrementAndGet();
+
+        PendingJob pending = new PendingJob(job.getJobId(), Instant.now().plus(timeout));
+        if (isDone(job)) {
+            complete(pending, job);
+        } else {
+            schedulePoll(pending, MIN_POLL_MILLIS);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Wait for a job submitted to this executor to be done. The job may have failed; the caller checks its
+     * status.
+     *
+     * @return the done job
+     * @throws PdaoException if the job could not be tracked to completion
+     */
+    public static Job waitForCompletion(CompletableFuture<Job> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PdaoException) {
+                throw (PdaoException) cause;
+            }
+            throw new PdaoException("BigQuery job failed", cause);
+        }
+    }
+
+    /**
+     * Wait for a job submitted to this executor to succeed.
+     *
+     * @return the done job
+     * @throws PdaoException if the job failed
+     */
+    public static Job waitFor(CompletableFuture<Job> future) throws InterruptedException {
+        Job job = waitForCompletion(future);
+        BigQueryError jobError = job.getStatus().getError();
+        if (jobError != null) {
+            StringBuilder message = new StringBuilder()
+                .append("BigQuery job ").append(job.getJobId().getJob()).append(" failed: ").append(jobError);
+            List<BigQueryError> executionErrors = job.getStatus().getExecutionErrors();
+            if (executionErrors != null) {
+                for (BigQueryError error : executionErrors) {
+                    message.append("\n  reason=").append(error.getReason())
+                        .append(" message=").append(error.getMessage());
+                }
+            }
+            throw new PdaoException(message.toString());
+        }
+        return job;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getSucceededCount() {
+        return succeededCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed.get();
+    }
+
+    public long getSlotMillis() {
+        return slotMillis.get();
+    }
+
+    public int getRunningCount() {
+        return (int) (submittedCount.get() - succeededCount.get() - failedCount.get());
+    }
+
+    public String getStatistics() {
+        return String.format("BigQuery jobs in project %s: submitted=%d succeeded=%d failed=%d running=%d " +
+                "bytesProcessed=%d slotMs=%d",
+            projectId, getSubmittedCount(), getSucceededCount(), getFailedCount(), getRunningCount(),
+            getBytesProcessed(), getSlotMillis());
+    }
+
+    private Job createOrGetJob(JobInfo jobInfo) {
+        try {
+            return bigQuery.create(jobInfo);
+        } catch (BigQueryException ex) {
+            JobId jobId = jobInfo.getJobId();
+            if (jobId == null || ex.getCode() != HTTP_CONFLICT) {
+                throw ex;
+            }
+            Job job = bigQuery.getJob(jobId);
+            if (job == null) {
+                throw ex;
+            }
+            logger.info("BigQuery job {} already exists; waiting for it", jobId.getJob());
+            return job;
+        }
+    }
+
+    // Space out job submissions to stay under the submission rate
+    private void throttle() throws InterruptedException {
+        if (minSubmitIntervalNanos == 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long submitAt = Math.max(now, nextSubmitNanos);
+            nextSubmitNanos = submitAt + minSubmitIntervalNanos;
+            waitNanos = submitAt - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void schedulePoll(PendingJob pending, long pollMillis) {
+        poller.schedule(() -> poll(pending, pollMillis), pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(PendingJob pending, long pollMillis) {
+        try {
+            Job job = bigQuery.getJob(pending.jobId);
+            if (job == null) {
+                fail(pending, new PdaoException("BigQuery job " + pending.jobId.getJob() + " no longer exists"));
+            } else if (isDone(job)) {
+                complete(pending, job);
+            } else if (Instant.now().isAfter(pending.deadline)) {
+                bigQuery.cancel(pending.jobId);
+                fail(pending, new PdaoException("BigQuery job " + pending.jobId.getJob() +
+                    " failed to complete within timeout - canceled"));
+            } else {
+                pending.pollFailures = 0;
+                schedulePoll(pending, nextPollMillis(pollMillis));
+            }
+        } catch (RuntimeException ex) {
+            pending.pollFailures++;
+            if (pending.pollFailures >= MAX_POLL_FAILURES) {
+                fail(pending, new PdaoException("Failed to get status of BigQuery job " + pending.jobId.getJob(), ex));
+            } else {
+                logger.info("Failed to get status of BigQuery job {} ({} of {} tries): {}",
+                    pending.jobId.getJob(), pending.pollFailures, MAX_POLL_FAILURES, ex.getMessage());
+                schedulePoll(pending, nextPollMillis(pollMillis));
+            }
+        }
+    }
+
+    private long nextPollMillis(long pollMillis) {
+        return Math.min((long) (pollMillis * POLL_BACKOFF), MAX_POLL_MILLIS);
+    }
+
+    private boolean isDone(Job job) {
+        JobStatus status = job.getStatus();
+        return status != null && status.getState() == JobStatus.State.DONE;
+    }
+
+    private void complete(PendingJob pending, Job job) {
+        recordStatistics(job);
+        jobSlots.release();
+        long completedCount;
+        if (job.getStatus().getError() == null) {
+            completedCount = succeededCount.incrementAndGet() + failedCount.get();
+        } else {
+            completedCount = failedCount.incrementAndGet() + succeededCount.get();
+        }
+        if (completedCount % STATISTICS_INTERVAL == 0) {
+            logger.info(getStatistics());
+        }
+        pending.future.complete(job);
+    }
+
+    private void fail(PendingJob pending, PdaoException ex) {
+        jobSlots.release();
+        failedCount.incrementAndGet();
+        logger.warn(ex.getMessage());
+        pending.future.completeExceptionally(ex);
+    }
+
+    private void recordStatistics(Job job) {
+        JobStatistics statistics = job.getStatistics();
+        if (statistics instanceof JobStatistics.QueryStatistics) {
+            JobStatistics.QueryStatistics queryStatistics = (JobStatistics.QueryStatistics) statistics;
+            if (queryStatistics.getTotalBytesProcessed() != null) {
+                bytesProcessed.addAndGet(queryStatistics.getTotalBytesProcessed());
+            }
+            if (queryStatistics.getTotalSlotMs() != null) {
+                slotMillis.addAndGet(queryStatistics.getTotalSlotMs());
+            }
+            logger.debug("BigQuery job {} done: bytesProcessed={} slotMs={}",
+                job.getJobId().getJob(), queryStatistics.getTotalBytesProcessed(), queryStatistics.getTotalSlotMs());
+        } else if (statistics instanceof JobStatistics.LoadStatistics) {
+            JobStatistics.LoadStatistics loadStatistics = (JobStatistics.LoadStatistics) statistics;
+            if (loadStatistics.getInputBytes() != null) {
+                bytesProcessed.addAndGet(loadStatistics.getInputBytes());
+            }
+        }
+    }
+
+    private static final class PendingJob {
+        private final JobId jobId;
+        private final Instant deadline;
+        private final CompletableFuture<Job> future = new CompletableFuture<>();
+        // Only touched by the poll of the job, and polls of one job never overlap
+        private int pollFailures;
+
+        PendingJob(JobId jobId, Instant deadline) {
+            this.jobId = jobId;
+            this.deadline = deadline;
+        }
+    }
+}
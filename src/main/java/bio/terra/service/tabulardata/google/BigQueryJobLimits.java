@@ -0,0 +1,37 @@
+package bio.terra.service.tabulardata.google;
+
+import java.time.Duration;
+
+/**
+ * Limits on the BigQuery jobs of one project, enforced by its {@link BigQueryJobExecutor}.
+ */
+public final class BigQueryJobLimits {
+    public static final BigQueryJobLimits DEFAULT = new BigQueryJobLimits(50, 20.0, Duration.ofHours(6));
+
+    private final int maxConcurrentJobs;
+    private final double jobsPerSecond;
+    private final Duration jobTimeout;
+
+    /**
+     * @param maxConcurrentJobs maximum number of jobs running at once in a project
+     * @param jobsPerSecond maximum rate of job submission in a project; zero or less means no limit
+     * @param jobTimeout time a job may run before it is canceled, unless the caller gives another
+     */
+    public BigQueryJobLimits(int maxConcurrentJobs, double jobsPerSecond, Duration jobTimeout) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.jobsPerSecond = jobsPerSecond;
+        this.jobTimeout = jobTimeout;
+    }
+
+    public int getMaxConcurrentJobs() {
+        return maxConcurrentJobs;
+    }
+
+    public double getJobsPerSecond() {
+        return jobsPerSecond;
+    }
+
+    public Duration getJobTimeout() {
+        return jobTimeout;
+    }
+}
@@ -35,9 +35,13 @@ import bio.terra.service.snapshot.exception.CorruptMetadataException;
 import bio.terra.service.snapshot.exception.MismatchedValueException;
 import bio.terra.service.tabulardata.exception.BadExternalFileException;
 import bio.terra.service.tabulardata.exception.MismatchedRowIdException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.cloud.bigquery.Acl;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.Clustering;
 import com.google.cloud.bigquery.CsvOptions;
 import com.google.cloud.bigquery.ExternalTableDefinition;
 import com.google.cloud.bigquery.Field;
@@ -45,6 +49,7 @@ import com.google.cloud.bigquery.FieldValue;
 import com.google.cloud.bigquery.FieldValueList;
 import com.google.cloud.bigquery.FormatOptions;
 import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.JobStatistics;
 import com.google.cloud.bigquery.LegacySQLTypeName;
@@ -52,10 +57,11 @@ import com.google.cloud.bigquery.LoadJobConfiguration;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.TableId;
+import com.google.cloud.bigquery.TableDataWriteChannel;
 import com.google.cloud.bigquery.TableInfo;
 import com.google.cloud.bigquery.TableResult;
 import com.google.cloud.bigquery.ViewDefinition;
-import org.apache.commons.collections4.ListUtils;
+import com.google.cloud.bigquery.WriteChannelConfiguration;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,15 +70,24 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.stringtemplate.v4.ST;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static bio.terra.common.PdaoConstant.PDAO_EXTERNAL_TABLE_PREFIX;
@@ -83,15 +98,27 @@ import static bio.terra.common.PdaoConstant.PDAO_ROW_ID_COLUMN;
 import static bio.terra.common.PdaoConstant.PDAO_ROW_ID_TABLE;
 import static bio.terra.common.PdaoConstant.PDAO_TABLE_ID_COLUMN;
 import static bio.terra.common.PdaoConstant.PDAO_TEMP_TABLE;
+import static bio.terra.common.PdaoConstant.PDAO_WALK_STAGING_TABLE_PREFIX;
 
 @Component
 @Profile("google")
 public class BigQueryPdao implements PrimaryDataAccess {
     private static final Logger logger = LoggerFactory.getLogger(BigQueryPdao.class);
 
+    // Snapshot views read the row id table by table id and join it to the raw tables on row id. Clustering
+    // on those columns keeps each view from scanning the row ids of every other table in the snapshot.
+    private static final Clustering ROW_ID_TABLE_CLUSTERING = Clustering.newBuilder()
+        .setFields(Arrays.asList(PDAO_TABLE_ID_COLUMN, PDAO_ROW_ID_COLUMN))
+        .build();
+    private static final Clustering ROW_ID_CLUSTERING = Clustering.newBuilder()
+        .setFields(Collections.singletonList(PDAO_ROW_ID_COLUMN))
+        .build();
+
     private final String datarepoDnsName;
     private final DataLocationService dataLocationService;
     private final DatasetService datasetService;
+    private final boolean clusterRawTables;
+    private final BigQueryJobLimits jobLimits;
 
     @Autowired
     public BigQueryPdao(
@@ -101,16 +128,21 @@ public class BigQueryPdao implements PrimaryDataAccess {
         this.datarepoDnsName = applicationConfiguration.getDnsName();
         this.dataLocationService = dataLocationService;
         this.datasetService = datasetService;
+        this.clusterRawTables = applicationConfiguration.isBigQueryClusterRawTables();
+        this.jobLimits = new BigQueryJobLimits(
+            applicationConfiguration.getBigQueryMaxConcurrentJobs(),
+            applicationConfiguration.getBigQueryJobsPerSecond(),
+            Duration.ofMinutes(applicationConfiguration.getBigQueryJobTimeoutMinutes()));
     }
 
     public BigQueryProject bigQueryProjectForDataset(Dataset dataset) throws InterruptedException {
         DatasetDataProject projectForDataset = dataLocationService.getOrCreateProject(dataset);
-        return BigQueryProject.get(projectForDataset.getGoogleProjectId());
+        return BigQueryProject.get(projectForDataset.getGoogleProjectId(), jobLimits);
     }
 
     private BigQueryProject bigQueryProjectForSnapshot(Snapshot snapshot) throws InterruptedException {
         SnapshotDataProject projectForSnapshot = dataLocationService.getOrCreateProject(snapshot);
-        return BigQueryProject.get(projectForSnapshot.getGoogleProjectId());
+        return BigQueryProject.get(projectForSnapshot.getGoogleProjectId(), jobLimits);
     }
 
     @Override
@@ -133,9 +165,13 @@ public class BigQueryPdao implements PrimaryDataAccess {
                 datasetName, PDAO_LOAD_HISTORY_TABLE, buildLoadDatasetSchema());
             for (DatasetTable table : dataset.getTables()) {
                 bigQueryProject.createTable(
-                    datasetName, table.getRawTableName(), buildSchema(table, true), table.getBigQueryPartitionConfig());
+                    datasetName,
+                    table.getRawTableName(),
+                    buildSchema(table, true),
+                    table.getBigQueryPartitionConfig(),
+                    clusterRawTables ? ROW_ID_CLUSTERING : null);
                 bigQueryProject.createTable(
-                    datasetName, table.getSoftDeleteTableName(), buildSoftDeletesSchema());
+                    datasetName, table.getSoftDeleteTableName(), buildSoftDeletesSchema(), ROW_ID_CLUSTERING);
                 bigQuery.create(buildLiveView(bigQueryProject.getProjectId(), datasetName, table));
             }
         } catch (Exception ex) {
@@ -165,22 +201,6 @@ public class BigQueryPdao implements PrimaryDataAccess {
         return TableInfo.of(liveViewId, ViewDefinition.of(liveViewSql.render()));
     }
 
-    public void createStagingLoadHistoryTable(Dataset dataset, String tableName_FlightId) throws InterruptedException {
-        BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
-        try {
-            String datasetName = prefixName(dataset.getName());
-
-            if (bigQueryProject.tableExists(datasetName, PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + tableName_FlightId)) {
-                bigQueryProject.deleteTable(datasetName, PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + tableName_FlightId);
-            }
-
-            bigQueryProject.createTable(
-                datasetName, PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + tableName_FlightId, buildLoadDatasetSchema());
-        } catch (Exception ex) {
-            throw new PdaoException("create staging load history table failed for " + dataset.getName(), ex);
-        }
-    }
-
     public void deleteStagingLoadHistoryTable(Dataset dataset, String flightId) {
         try {
             deleteDatasetTable(dataset, PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + flightId);
@@ -222,31 +242,58 @@ public class BigQueryPdao implements PrimaryDataAccess {
         return Schema.of(fieldList);
     }
 
-    public static final String insertLoadHistoryToStagingTableTemplate =
-        "INSERT INTO `<project>.<dataset>.<stagingTable>`" +
-            " (load_tag, load_time, source_name, target_path, state, file_id, checksum_crc32c, checksum_md5, error)" +
-            " VALUES <load_history_array:{v|('<load_tag>', '<load_time>', '<v.sourcePath>', '<v.targetPath>'," +
-            " '<v.state>', '<v.fileId>', '<v.checksumCRC>', '<v.checksumMD5>', \"\"\"<v.error>\"\"\")};" +
-            " separator=\",\">";
+    // Load history rows are written as newline-delimited JSON with one field per column of the load history
+    // schema. Null values are written as empty strings, matching the rows already in the load history tables.
+    private static final ObjectWriter LOAD_HISTORY_ROW_WRITER = new ObjectMapper().writer();
+    // BigQuery's canonical TIMESTAMP format, at its microsecond precision, in UTC
+    private static final DateTimeFormatter BIGQUERY_TIMESTAMP_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS 'UTC'").withZone(ZoneOffset.UTC);
+
+    public static String loadHistoryRow(String loadTag, Instant loadTime, BulkLoadHistoryModel loadHistory)
+        throws JsonProcessingException {
+        Map<String, String> row = new LinkedHashMap<>();
+        row.put("load_tag", loadTag);
+        row.put("load_time", BIGQUERY_TIMESTAMP_FORMAT.format(loadTime));
+        row.put("source_name", StringUtils.defaultString(loadHistory.getSourcePath()));
+        row.put("target_path", StringUtils.defaultString(loadHistory.getTargetPath()));
+        row.put("state", (loadHistory.getState() == null) ? "" : loadHistory.getState().toString());
+        row.put("file_id", StringUtils.defaultString(loadHistory.getFileId()));
+        row.put("checksum_crc32c", StringUtils.defaultString(loadHistory.getChecksumCRC()));
+        row.put("checksum_md5", StringUtils.defaultString(loadHistory.getChecksumMD5()));
+        row.put("error", StringUtils.defaultString(loadHistory.getError()));
+        return LOAD_HISTORY_ROW_WRITER.writeValueAsString(row);
+    }
 
+    /**
+     * Load the load history rows in a newline-delimited JSON file into the staging table with a single
+     * load job. The staging table is created, or replaced if it exists from an earlier attempt.
+     *
+     * @param dataset dataset receiving the load history
+     * @param tableName_FlightId staging table suffix
+     * @param gspath gs path of a file of rows made by loadHistoryRow
+     */
     public void loadHistoryToStagingTable(
         Dataset dataset,
         String tableName_FlightId,
-        String loadTag,
-        Instant loadTime,
-        List<BulkLoadHistoryModel> loadHistoryArray) throws InterruptedException {
+        String gspath) throws InterruptedException {
         BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
+        TableId tableId = TableId.of(
+            prefixName(dataset.getName()), PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + tableName_FlightId);
+
+        LoadJobConfiguration configuration = LoadJobConfiguration.builder(tableId, gspath)
+            .setFormatOptions(FormatOptions.json())
+            .setSchema(buildLoadDatasetSchema())
+            .setCreateDisposition(JobInfo.CreateDisposition.CREATE_IF_NEEDED)
+            .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+            .build();
 
-        ST sqlTemplate = new ST(insertLoadHistoryToStagingTableTemplate);
-        sqlTemplate.add("project", bigQueryProject.getProjectId());
-        sqlTemplate.add("dataset", prefixName(dataset.getName()));
-        sqlTemplate.add("stagingTable", PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + tableName_FlightId);
-
-        sqlTemplate.add("load_history_array", loadHistoryArray);
-        sqlTemplate.add("load_tag", loadTag);
-        sqlTemplate.add("load_time", loadTime);
-
-        bigQueryProject.query(sqlTemplate.render());
+        Job loadJob = BigQueryJobExecutor.waitForCompletion(bigQueryProject.submitJob(JobInfo.of(configuration)));
+        BigQueryError loadJobError = loadJob.getStatus().getError();
+        if (loadJobError != null) {
+            throw new PdaoException("Load history staging table load job " + loadJob.getJobId().getJob() +
+                " failed: " + loadJobError);
+        }
+        logger.info("Load history staging table load job " + loadJob.getJobId().getJob() + " succeeded");
     }
 
     private static final String mergeLoadHistoryStagingTableTemplate =
@@ -365,7 +412,13 @@ public class BigQueryPdao implements PrimaryDataAccess {
         Snapshot snapshot,
         String projectId,
         BigQuery bigQuery,
-        BigQueryProject bigQueryProject) {
+        BigQueryProject bigQueryProject) throws InterruptedException {
+        if (snapshot.isMaterialized()) {
+            // materialized tables hold their own copy of the data, so they need no access to the dataset
+            createMaterializedTables(datasetBqDatasetName, snapshot, bigQueryProject);
+            return;
+        }
+
         // create the views
         List<String> bqTableNames = createViews(datasetBqDatasetName, snapshot, projectId, bigQuery);
 
@@ -398,7 +451,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
         snapshotCreateBQDataset(bigQueryProject, snapshot);
 
         // create the row id table
-        bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema());
+        bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema(), ROW_ID_TABLE_CLUSTERING);
 
         // populate root row ids. Must happen before the relationship walk.
         // NOTE: when we have multiple sources, we can put this into a loop
@@ -439,7 +492,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
 
         // walk and populate relationship table row ids
         List<WalkRelationship> walkRelationships = WalkRelationship.ofAssetSpecification(asset);
-        walkRelationships(datasetBqDatasetName, snapshotName, walkRelationships, rootTableId, projectId, bigQuery);
+        walkRelationships(datasetBqDatasetName, snapshotName, walkRelationships, rootTableId, bigQueryProject);
 
         snapshotViewCreation(datasetBqDatasetName, snapshot, projectId, bigQuery, bigQueryProject);
     }
@@ -499,7 +552,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
         snapshotCreateBQDataset(bigQueryProject, snapshot);
 
         // create the row id table (row id col and table id col)
-        bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema());
+        bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema(), ROW_ID_TABLE_CLUSTERING);
 
         // get source dataset table live views
         List<DatasetTable> tables = dataset.getTables();
@@ -532,72 +585,135 @@ public class BigQueryPdao implements PrimaryDataAccess {
     }
 
 
-    public void createSnapshotWithProvidedIds(
-        Snapshot snapshot,
-        SnapshotRequestContentsModel contentsModel) throws InterruptedException {
+    // Row ids are written as newline-delimited JSON rows of the row id table
+    private static final ObjectWriter ROW_ID_ROW_WRITER = new ObjectMapper().writer();
 
+    // Finds the loaded row ids that do not have a row in their source table
+    private static final String unmatchedRowIdsTemplate =
+        "SELECT R." + PDAO_ROW_ID_COLUMN + " FROM `<project>.<snapshot>." + PDAO_ROW_ID_TABLE + "` AS R " +
+            "LEFT JOIN (" +
+            "<tables:{t|SELECT '<t.id>' AS " + PDAO_TABLE_ID_COLUMN + ", " + PDAO_ROW_ID_COLUMN +
+            " FROM `<project>.<dataset>.<t.name>`}; separator=\" UNION ALL \">" +
+            ") AS T ON R." + PDAO_TABLE_ID_COLUMN + " = T." + PDAO_TABLE_ID_COLUMN +
+            " AND R." + PDAO_ROW_ID_COLUMN + " = T." + PDAO_ROW_ID_COLUMN +
+            " WHERE T." + PDAO_ROW_ID_COLUMN + " IS NULL";
+
+    /**
+     * Create the snapshot BigQuery dataset and fill its row id table with the row ids supplied in the request.
+     * The row ids of all tables are streamed to BigQuery as newline-delimited JSON and loaded with a single
+     * load job. They are then checked against the source tables with a single join.
+     *
+     * @param snapshot snapshot being created
+     * @param contentsModel request contents holding the row ids for each table
+     * @return row id match holding the row ids that have no row in their source table
+     */
+    public RowIdMatch loadProvidedRowIds(Snapshot snapshot,
+                                         SnapshotRequestContentsModel contentsModel) throws InterruptedException {
         BigQueryProject bigQueryProject = bigQueryProjectForSnapshot(snapshot);
         String projectId = bigQueryProject.getProjectId();
         String snapshotName = snapshot.getName();
-        BigQuery bigQuery = bigQueryProject.getBigQuery();
         SnapshotRequestRowIdModel rowIdModel = contentsModel.getRowIdSpec();
 
         // create snapshot BQ dataset
         snapshotCreateBQDataset(bigQueryProject, snapshot);
 
         // create the row id table
-        bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema());
+        bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema(), ROW_ID_TABLE_CLUSTERING);
 
-        // populate root row ids. Must happen before the relationship walk.
         // NOTE: when we have multiple sources, we can put this into a loop
         SnapshotSource source = snapshot.getSnapshotSources().get(0);
         String datasetBqDatasetName = prefixName(source.getDataset().getName());
 
+        // Resolve the source table of each request table before loading anything
+        Map<SnapshotRequestRowIdTableModel, Table> sourceTables = new LinkedHashMap<>();
+        Map<UUID, Table> distinctTables = new LinkedHashMap<>();
+        long rowIdCount = 0;
         for (SnapshotRequestRowIdTableModel table : rowIdModel.getTables()) {
             String tableName = table.getTableName();
             Table sourceTable = source
                 .reverseTableLookup(tableName)
                 .orElseThrow(() -> new CorruptMetadataException("cannot find destination table: " + tableName));
+            sourceTables.put(table, sourceTable);
+            distinctTables.put(sourceTable.getId(), sourceTable);
+            rowIdCount += table.getRowIds().size();
+        }
 
-            List<String> rowIds = table.getRowIds();
-
-            if (rowIds.size() > 0) {
-                // we break apart the list of rowIds for better scaleability
-                List<List<String>> rowIdChunks = ListUtils.partition(rowIds, 10000);
-                // partition returns consecutive sublists of a list, each of the same size (final list may be smaller)
-                // partitioning a list containing [a, b, c, d, e] with a partition size of 3 yields [[a, b, c], [d, e]]
-                // -- an outer list containing two inner lists of three and two elements, all in the original order.
-
-                for (List<String> rowIdChunk : rowIdChunks) { // each loop will load a chunk of rowIds as an INSERT
-                    ST sqlTemplate = new ST(loadRootRowIdsTemplate);
-                    sqlTemplate.add("project", projectId);
-                    sqlTemplate.add("snapshot", snapshotName);
-                    sqlTemplate.add("dataset", datasetBqDatasetName);
-                    sqlTemplate.add("tableId", sourceTable.getId().toString());
-                    sqlTemplate.add("rowIds", rowIdChunk);
-                    bigQueryProject.query(sqlTemplate.render());
-                }
-            }
-            ST sqlTemplate = new ST(validateRowIdsForRootTemplate);
-            sqlTemplate.add("project", projectId);
-            sqlTemplate.add("snapshot", snapshotName);
-            sqlTemplate.add("dataset", datasetBqDatasetName);
-            sqlTemplate.add("table", sourceTable.getName());
+        RowIdMatch rowIdMatch = new RowIdMatch();
+        if (rowIdCount == 0) {
+            return rowIdMatch;
+        }
 
-            TableResult result = bigQueryProject.query(sqlTemplate.render());
-            FieldValueList row = result.iterateAll().iterator().next();
-            FieldValue countValue = row.get(0);
-            if (countValue.getLongValue() != rowIds.size()) {
-                logger.error("Invalid row ids supplied: rowIds=" + rowIds.size() +
-                    " count=" + countValue.getLongValue());
-                for (String rowId : rowIds) {
-                    logger.error(" rowIdIn: " + rowId);
+        loadRowIds(bigQueryProject, snapshotName, sourceTables);
+        logger.info("Loaded " + rowIdCount + " row ids into snapshot " + snapshotName);
+
+        ST sqlTemplate = new ST(unmatchedRowIdsTemplate);
+        sqlTemplate.add("project", projectId);
+        sqlTemplate.add("snapshot", snapshotName);
+        sqlTemplate.add("dataset", datasetBqDatasetName);
+        sqlTemplate.add("tables", distinctTables.values());
+
+        TableResult result = bigQueryProject.query(sqlTemplate.render());
+        for (FieldValueList row : result.iterateAll()) {
+            rowIdMatch.addMismatch(row.get(0).getStringValue());
+        }
+        return rowIdMatch;
+    }
+
+    // Stream the row ids to the row id table with one load job
+    private void loadRowIds(BigQueryProject bigQueryProject,
+                            String snapshotName,
+                            Map<SnapshotRequestRowIdTableModel, Table> sourceTables) throws InterruptedException {
+        WriteChannelConfiguration configuration =
+            WriteChannelConfiguration.newBuilder(TableId.of(snapshotName, PDAO_ROW_ID_TABLE))
+                .setFormatOptions(FormatOptions.json())
+                .setSchema(rowIdTableSchema())
+                .setClustering(ROW_ID_TABLE_CLUSTERING)
+                .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+                .build();
+
+        TableDataWriteChannel channel = bigQueryProject.getBigQuery().writer(configuration);
+        try (Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.name())) {
+            for (Map.Entry<SnapshotRequestRowIdTableModel, Table> entry : sourceTables.entrySet()) {
+                String tableId = entry.getValue().getId().toString();
+                for (String rowId : entry.getKey().getRowIds()) {
+                    writer.write(rowIdRow(tableId, rowId));
+                    writer.write('\n');
                 }
-                throw new PdaoException("Invalid row ids supplied");
             }
+        } catch (IOException ex) {
+            throw new PdaoException("Failed to write row ids for snapshot " + snapshotName, ex);
         }
 
-        snapshotViewCreation(datasetBqDatasetName, snapshot, projectId, bigQuery, bigQueryProject);
+        Job loadJob = channel.getJob().waitFor();
+        if (loadJob == null) {
+            throw new PdaoException("Row id load job no longer exists");
+        }
+        BigQueryError loadJobError = loadJob.getStatus().getError();
+        if (loadJobError != null) {
+            throw new PdaoException("Row id load job " + loadJob.getJobId().getJob() + " failed: " + loadJobError);
+        }
+    }
+
+    private static String rowIdRow(String tableId, String rowId) throws JsonProcessingException {
+        Map<String, String> row = new LinkedHashMap<>();
+        row.put(PDAO_TABLE_ID_COLUMN, tableId);
+        row.put(PDAO_ROW_ID_COLUMN, rowId);
+        return ROW_ID_ROW_WRITER.writeValueAsString(row);
+    }
+
+    /**
+     * Create the views of a snapshot whose row id table was filled by loadProvidedRowIds
+     */
+    public void createSnapshotWithProvidedIds(Snapshot snapshot) throws InterruptedException {
+        BigQueryProject bigQueryProject = bigQueryProjectForSnapshot(snapshot);
+        SnapshotSource source = snapshot.getSnapshotSources().get(0);
+        String datasetBqDatasetName = prefixName(source.getDataset().getName());
+        snapshotViewCreation(
+            datasetBqDatasetName,
+            snapshot,
+            bigQueryProject.getProjectId(),
+            bigQueryProject.getBigQuery(),
+            bigQueryProject);
     }
 
     public void grantReadAccessToSnapshot(Snapshot snapshot, Collection<String> policies) throws InterruptedException {
@@ -650,7 +766,9 @@ public class BigQueryPdao implements PrimaryDataAccess {
         BigQueryProject bigQueryProject = bigQueryProjectForSnapshot(snapshot);
         String projectId = bigQueryProject.getProjectId();
         List<SnapshotSource> sources = snapshot.getSnapshotSources();
-        if (sources.size() > 0) {
+        if (snapshot.isMaterialized()) {
+            logger.info("Snapshot {} is materialized; it has no view ACLs to remove", snapshot.getName());
+        } else if (sources.size() > 0) {
             String datasetName = sources.get(0).getDataset().getName();
             String datasetBqDatasetName = prefixName(datasetName);
             deleteViewAcls(datasetBqDatasetName, snapshot, projectId);
@@ -668,6 +786,8 @@ public class BigQueryPdao implements PrimaryDataAccess {
             .collect(Collectors.toList());
     }
 
+    private static final Duration STAGING_TABLE_LOAD_TIMEOUT = Duration.ofMinutes(20);
+
     // Load data
     public PdaoLoadStatistics loadToStagingTable(Dataset dataset,
                                                  DatasetTable targetTable,
@@ -675,7 +795,54 @@ public class BigQueryPdao implements PrimaryDataAccess {
                                                  IngestRequestModel ingestRequest) throws InterruptedException {
 
         BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
-        BigQuery bigQuery = bigQueryProject.getBigQuery();
+        LoadJobConfiguration configuration =
+            buildStagingLoadConfiguration(dataset, targetTable, stagingTableName, ingestRequest);
+        Job loadJob = BigQueryJobExecutor.waitForCompletion(
+            bigQueryProject.submitJob(JobInfo.of(configuration), STAGING_TABLE_LOAD_TIMEOUT));
+        return stagingLoadStatistics(loadJob, ingestRequest);
+    }
+
+    /**
+     * Load the sources of several ingest requests into their staging tables. The load jobs run concurrently,
+     * within the job limits of the project. All of the jobs are waited for before any failure is reported, so
+     * that no load is still writing a staging table when the caller cleans them up.
+     *
+     * @param ingestRequests requests to load; the target table of each must exist in the dataset
+     * @param stagingTableNames staging table for each request, in the same order
+     * @return load statistics for each request, in the same order
+     */
+    public List<PdaoLoadStatistics> loadToStagingTables(Dataset dataset,
+                                                        List<IngestRequestModel> ingestRequests,
+                                                        List<String> stagingTableNames) throws InterruptedException {
+        BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
+        List<CompletableFuture<Job>> jobs = new ArrayList<>();
+        for (int i = 0; i < ingestRequests.size(); i++) {
+            IngestRequestModel ingestRequest = ingestRequests.get(i);
+            LoadJobConfiguration configuration = buildStagingLoadConfiguration(
+                dataset, getTargetTable(dataset, ingestRequest), stagingTableNames.get(i), ingestRequest);
+            jobs.add(bigQueryProject.submitJob(JobInfo.of(configuration), STAGING_TABLE_LOAD_TIMEOUT));
+        }
+
+        List<Job> loadJobs = new ArrayList<>();
+        for (CompletableFuture<Job> job : jobs) {
+            loadJobs.add(BigQueryJobExecutor.waitForCompletion(job));
+        }
+        List<PdaoLoadStatistics> statistics = new ArrayList<>();
+        for (int i = 0; i < loadJobs.size(); i++) {
+            statistics.add(stagingLoadStatistics(loadJobs.get(i), ingestRequests.get(i)));
+        }
+        return statistics;
+    }
+
+    private DatasetTable getTargetTable(Dataset dataset, IngestRequestModel ingestRequest) {
+        return dataset.getTableByName(ingestRequest.getTable())
+            .orElseThrow(() -> new PdaoException("Ingest target table not found: " + ingestRequest.getTable()));
+    }
+
+    private LoadJobConfiguration buildStagingLoadConfiguration(Dataset dataset,
+                                                               DatasetTable targetTable,
+                                                               String stagingTableName,
+                                                               IngestRequestModel ingestRequest) {
         TableId tableId = TableId.of(prefixName(dataset.getName()), stagingTableName);
         Schema schema = buildSchema(targetTable, true); // Source does not have row_id
         LoadJobConfiguration.Builder loadBuilder = LoadJobConfiguration.builder(tableId, ingestRequest.getPath())
@@ -698,21 +865,10 @@ public class BigQueryPdao implements PrimaryDataAccess {
                     (ingestRequest.getCsvNullMarker() == null) ? ""
                         : ingestRequest.getCsvNullMarker());
         }
-        LoadJobConfiguration configuration = loadBuilder.build();
-
-        Job loadJob = bigQuery.create(JobInfo.of(configuration));
-        Instant loadJobMaxTime = Instant.now().plusSeconds(TimeUnit.MINUTES.toSeconds(20L));
-        while (!loadJob.isDone()) {
-            logger.info("Waiting for staging table load job " + loadJob.getJobId().getJob() + " to complete");
-            TimeUnit.SECONDS.sleep(5L);
-
-            if (loadJobMaxTime.isBefore(Instant.now())) {
-                loadJob.cancel();
-                throw new PdaoException("Staging table load failed to complete within timeout - canceled");
-            }
-        }
-        loadJob = loadJob.reload();
+        return loadBuilder.build();
+    }
 
+    private PdaoLoadStatistics stagingLoadStatistics(Job loadJob, IngestRequestModel ingestRequest) {
         BigQueryError loadJobError = loadJob.getStatus().getError();
         if (loadJobError == null) {
             logger.info("Staging table load job " + loadJob.getJobId().getJob() + " succeeded");
@@ -744,40 +900,89 @@ public class BigQueryPdao implements PrimaryDataAccess {
         return pdaoLoadStatistics;
     }
 
-    private static final String addRowIdsToStagingTableTemplate =
-        "UPDATE `<project>.<dataset>.<stagingTable>` SET " +
-            PDAO_ROW_ID_COLUMN + " = GENERATE_UUID() WHERE " +
-            PDAO_ROW_ID_COLUMN + " IS NULL";
-
-    public void addRowIdsToStagingTable(Dataset dataset, String stagingTableName) throws InterruptedException {
-        BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
-
-        ST sqlTemplate = new ST(addRowIdsToStagingTableTemplate);
-        sqlTemplate.add("project", bigQueryProject.getProjectId());
-        sqlTemplate.add("dataset", prefixName(dataset.getName()));
-        sqlTemplate.add("stagingTable", stagingTableName);
-
-        bigQueryProject.query(sqlTemplate.render());
-    }
-
+    // Row ids are generated as the staging rows are inserted, so the staging table is read once and never updated
     private static final String insertIntoDatasetTableTemplate =
-        "INSERT INTO `<project>.<dataset>.<targetTable>` (<columns; separator=\",\">) " +
-            "SELECT <columns; separator=\",\"> FROM `<project>.<dataset>.<stagingTable>`";
+        "INSERT INTO `<project>.<dataset>.<targetTable>` (" + PDAO_ROW_ID_COLUMN + ",<columns; separator=\",\">) " +
+            "SELECT GENERATE_UUID(),<columns; separator=\",\"> FROM `<project>.<dataset>.<stagingTable>`";
 
     public void insertIntoDatasetTable(Dataset dataset,
                                      DatasetTable targetTable,
                                      String stagingTableName) throws InterruptedException {
         BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
+        Job job = BigQueryJobExecutor.waitFor(submitInsertIntoDatasetTable(
+            bigQueryProject, dataset, targetTable, stagingTableName));
+        logInsertStatistics(job, targetTable);
+    }
+
+    /**
+     * Insert the staging tables of several ingest requests into their target tables with concurrent insert jobs.
+     * Each insert is atomic, but the set of them is not: if one fails, the others may have been applied. So every
+     * job is waited for and failures are returned rather than thrown, so the caller knows which inserts committed.
+     *
+     * @param ingestRequests requests whose staging tables are inserted
+     * @param stagingTableNames staging table for each request, in the same order
+     * @param indexes indexes of the requests to insert
+     * @return the failure of each request whose insert failed, by index; empty if all of them committed
+     */
+    public Map<Integer, RuntimeException> insertIntoDatasetTables(Dataset dataset,
+                                                                  List<IngestRequestModel> ingestRequests,
+                                                                  List<String> stagingTableNames,
+                                                                  Collection<Integer> indexes)
+        throws InterruptedException {
+        BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
+        Map<Integer, RuntimeException> failures = new HashMap<>();
+        Map<Integer, CompletableFuture<Job>> jobs = new LinkedHashMap<>();
+        for (Integer index : indexes) {
+            try {
+                DatasetTable targetTable = getTargetTable(dataset, ingestRequests.get(index));
+                jobs.put(index,
+                    submitInsertIntoDatasetTable(bigQueryProject, dataset, targetTable, stagingTableNames.get(index)));
+            } catch (RuntimeException ex) {
+                failures.put(index, ex);
+            }
+        }
+        for (Map.Entry<Integer, CompletableFuture<Job>> job : jobs.entrySet()) {
+            DatasetTable targetTable = getTargetTable(dataset, ingestRequests.get(job.getKey()));
+            try {
+                logInsertStatistics(BigQueryJobExecutor.waitFor(job.getValue()), targetTable);
+            } catch (RuntimeException ex) {
+                logger.warn("Ingest insert into " + targetTable.getName() + " failed", ex);
+                failures.put(job.getKey(), ex);
+            }
+        }
+        return failures;
+    }
 
+    /*
+     * Since the row ids are generated by the insert, running it twice would add every row twice with
+     * different row ids. The insert job is given an id derived from the staging table name, which is unique
+     * to the flight. If the step is run again after a restart, BigQuery refuses the duplicate job id and the
+     * executor tracks the job that was already submitted instead.
+     */
+    private CompletableFuture<Job> submitInsertIntoDatasetTable(BigQueryProject bigQueryProject,
+                                                                Dataset dataset,
+                                                                DatasetTable targetTable,
+                                                                String stagingTableName) throws InterruptedException {
         ST sqlTemplate = new ST(insertIntoDatasetTableTemplate);
         sqlTemplate.add("project", bigQueryProject.getProjectId());
         sqlTemplate.add("dataset", prefixName(dataset.getName()));
         sqlTemplate.add("targetTable", targetTable.getRawTableName());
         sqlTemplate.add("stagingTable", stagingTableName);
-        sqlTemplate.add("columns", PDAO_ROW_ID_COLUMN);
         targetTable.getColumns().forEach(column -> sqlTemplate.add("columns", column.getName()));
 
-        bigQueryProject.query(sqlTemplate.render());
+        JobInfo jobInfo = JobInfo.newBuilder(QueryJobConfiguration.of(sqlTemplate.render()))
+            .setJobId(JobId.of(PDAO_PREFIX + "insert_" + stagingTableName))
+            .build();
+        return bigQueryProject.submitJob(jobInfo);
+    }
+
+    private void logInsertStatistics(Job job, DatasetTable targetTable) {
+        JobStatistics.QueryStatistics statistics = job.getStatistics();
+        Long elapsedMillis = (statistics.getEndTime() == null || statistics.getStartTime() == null) ? null :
+            statistics.getEndTime() - statistics.getStartTime();
+        logger.info("Ingest insert into {}: rows={} bytesProcessed={} slotMs={} elapsedMs={}",
+            targetTable.getName(), statistics.getNumDmlAffectedRows(), statistics.getTotalBytesProcessed(),
+            statistics.getTotalSlotMs(), elapsedMillis);
     }
 
     private FormatOptions buildFormatOptions(IngestRequestModel ingestRequest) {
@@ -818,10 +1023,21 @@ public class BigQueryPdao implements PrimaryDataAccess {
     }
 
     private static final String getRefIdsTemplate =
-        "SELECT <refCol> FROM `<project>.<dataset>.<table>`" +
-            "<if(array)> CROSS JOIN UNNEST(<refCol>) AS <refCol><endif>";
+        "SELECT DISTINCT <refCol> FROM `<project>.<dataset>.<table>`" +
+            "<if(array)> CROSS JOIN UNNEST(<refCol>) AS <refCol><endif>" +
+            " WHERE <refCol> IS NOT NULL";
 
-    public List<String> getRefIds(Dataset dataset, String tableName, Column refColumn) throws InterruptedException {
+    /**
+     * Get the distinct file ids of a FILEREF column of a staging table. The ids are not read into memory here;
+     * the caller walks the pages of the result with getNextPage.
+     *
+     * @param pageSize number of ids in each page of the result
+     * @return first page of the result
+     */
+    public TableResult getRefIds(Dataset dataset,
+                                 String tableName,
+                                 Column refColumn,
+                                 long pageSize) throws InterruptedException {
         BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
 
         ST sqlTemplate = new ST(getRefIdsTemplate);
@@ -831,16 +1047,9 @@ public class BigQueryPdao implements PrimaryDataAccess {
         sqlTemplate.add("refCol", refColumn.getName());
         sqlTemplate.add("array", refColumn.isArrayOf());
 
-        TableResult result = bigQueryProject.query(sqlTemplate.render());
-        List<String> refIdArray = new ArrayList<>();
-        for (FieldValueList row : result.iterateAll()) {
-            if (!row.get(0).isNull()) {
-                String refId = row.get(0).getStringValue();
-                refIdArray.add(refId);
-            }
-        }
-
-        return refIdArray;
+        return bigQueryProject.getQueryResults(
+            bigQueryProject.submitQuery(sqlTemplate.render()),
+            BigQuery.QueryResultsOption.pageSize(pageSize));
     }
 
     private static final String getSnapshotRefIdsTemplate =
@@ -1009,7 +1218,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
     }
 
     /**
-     * Recursive walk of the relationships. Note that we only follow what is connected.
+     * Breadth-first walk of the relationships. Note that we only follow what is connected.
      * If there are relationships in the asset that are not connected to the root, they will
      * simply be ignored. See the related comment in dataset validator.
      *
@@ -1018,7 +1227,11 @@ public class BigQueryPdao implements PrimaryDataAccess {
      * the from->to and to->from direction, we have to avoid re-walking a traversed relationship
      * or we infinite loop. Trust me, I know... :)
      *
-     * TODO: REVIEWERS: should this code detect circular references?
+     * The relationships are planned into levels by WalkRelationship.planWalkLevels. The relationships of
+     * a level are started together as BigQuery jobs, each writing the row ids it finds into its own staging
+     * table. When the level is done, the staging tables are appended to the row id table and deleted.
+     * A table reached by more than one relationship may get the same row id more than once, so the row id
+     * table is rewritten with SELECT DISTINCT at the end of the walk.
      *
      * @param datasetBqDatasetName
      * @param snapshotName
@@ -1029,47 +1242,78 @@ public class BigQueryPdao implements PrimaryDataAccess {
                                    String snapshotName,
                                    List<WalkRelationship> walkRelationships,
                                    String startTableId,
-                                   String projectId,
-                                   BigQuery bigQuery) throws InterruptedException {
-        for (WalkRelationship relationship : walkRelationships) {
-            if (relationship.isVisited()) {
-                continue;
+                                   BigQueryProject bigQueryProject) throws InterruptedException {
+        String projectId = bigQueryProject.getProjectId();
+        List<List<WalkRelationship>> levels = WalkRelationship.planWalkLevels(walkRelationships, startTableId);
+        for (int levelIndex = 0; levelIndex < levels.size(); levelIndex++) {
+            List<WalkRelationship> level = levels.get(levelIndex);
+            List<String> stagingTableNames = new ArrayList<>();
+            List<CompletableFuture<Job>> jobs = new ArrayList<>();
+            for (WalkRelationship relationship : level) {
+                logger.info("The relationship is being set from column {} in table {} to column {} in table {}",
+                    relationship.getFromColumnName(),
+                    relationship.getFromTableName(),
+                    relationship.getToColumnName(),
+                    relationship.getToTableName()
+                );
+                String stagingTableName = PDAO_WALK_STAGING_TABLE_PREFIX + levelIndex + "_" + jobs.size();
+                stagingTableNames.add(stagingTableName);
+                jobs.add(storeRowIdsForRelatedTable(
+                    datasetBqDatasetName,
+                    snapshotName,
+                    relationship,
+                    stagingTableName,
+                    bigQueryProject));
             }
-
-            // NOTE: setting the direction tells the WalkRelationship to change its meaning of from and to.
-            // When constructed, it is always in the FROM_TO direction.
-            if (StringUtils.equals(startTableId, relationship.getFromTableId())) {
-                relationship.setDirection(WalkRelationship.WalkDirection.FROM_TO);
-            } else if (StringUtils.equals(startTableId, relationship.getToTableId())) {
-                relationship.setDirection(WalkRelationship.WalkDirection.TO_FROM);
-            } else {
-                // This relationship is not connected to the start table
-                continue;
+            for (CompletableFuture<Job> job : jobs) {
+                BigQueryJobExecutor.waitFor(job);
             }
-            logger.info("The relationship is being set from column {} in table {} to column {} in table {}",
-                relationship.getFromColumnName(),
-                relationship.getFromTableName(),
-                relationship.getToColumnName(),
-                relationship.getToTableName()
-            );
-
-            relationship.setVisited();
-            storeRowIdsForRelatedTable(
-                datasetBqDatasetName,
-                snapshotName,
-                relationship,
-                projectId,
-                bigQuery);
-            walkRelationships(
-                datasetBqDatasetName,
-                snapshotName,
-                walkRelationships,
-                relationship.getToTableId(),
-                projectId,
-                bigQuery);
+            mergeWalkStagingTables(snapshotName, stagingTableNames, bigQueryProject);
+            logger.info("Walked {} relationships in level {} for snapshot {}", level.size(), levelIndex, snapshotName);
+        }
+
+        if (!levels.isEmpty()) {
+            ST sqlTemplate = new ST(distinctRowIdsTemplate);
+            sqlTemplate.add("project", projectId);
+            sqlTemplate.add("snapshot", snapshotName);
+            QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sqlTemplate.render())
+                .setDestinationTable(TableId.of(snapshotName, PDAO_ROW_ID_TABLE))
+                .setClustering(ROW_ID_TABLE_CLUSTERING)
+                .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+                .build();
+            bigQueryProject.query(queryConfig);
+        }
+    }
+
+    private static final String mergeWalkStagingTablesTemplate =
+        "<stagingTables:{t|SELECT " + PDAO_TABLE_ID_COLUMN + ", " + PDAO_ROW_ID_COLUMN +
+            " FROM `<project>.<snapshot>.<t>`}; separator=\" UNION ALL \">";
+
+    private static final String distinctRowIdsTemplate =
+        "SELECT DISTINCT " + PDAO_TABLE_ID_COLUMN + ", " + PDAO_ROW_ID_COLUMN +
+            " FROM `<project>.<snapshot>." + PDAO_ROW_ID_TABLE + "`";
+
+    // Append the row ids found by a level of the walk to the row id table and delete the staging tables
+    private void mergeWalkStagingTables(String snapshotName,
+                                        List<String> stagingTableNames,
+                                        BigQueryProject bigQueryProject) throws InterruptedException {
+        ST sqlTemplate = new ST(mergeWalkStagingTablesTemplate);
+        sqlTemplate.add("project", bigQueryProject.getProjectId());
+        sqlTemplate.add("snapshot", snapshotName);
+        sqlTemplate.add("stagingTables", stagingTableNames);
+        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sqlTemplate.render())
+            .setDestinationTable(TableId.of(snapshotName, PDAO_ROW_ID_TABLE))
+            .setClustering(ROW_ID_TABLE_CLUSTERING)
+            .setWriteDisposition(JobInfo.WriteDisposition.WRITE_APPEND)
+            .build();
+        bigQueryProject.query(queryConfig);
+
+        for (String stagingTableName : stagingTableNames) {
+            bigQueryProject.deleteTable(snapshotName, stagingTableName);
         }
     }
 
+
     // insert the rowIds into the snapshot row ids table and then kick off the rest of the relationship walking
     // once we have the row ids in addition to the asset spec, this should look familiar to wAsset
     public void queryForRowIds(AssetSpecification assetSpecification,
@@ -1097,7 +1341,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
                 .setWriteDisposition(JobInfo.WriteDisposition.WRITE_APPEND)
                 .build();
             try {
-                final TableResult query = bigQuery.query(queryConfig);
+                final TableResult query = bigQueryProject.query(queryConfig);
                 // get results and validate that it got back more than 0 value
                 if (query.getTotalRows() < 1) {
                     // should this be a different error?
@@ -1130,7 +1374,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
             }
 
             // TODO should this be pulled up to the top of queryForRowIds() / added to snapshotCreateBQDataset() helper
-            bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema());
+            bigQueryProject.createTable(snapshotName, PDAO_ROW_ID_TABLE, rowIdTableSchema(), ROW_ID_TABLE_CLUSTERING);
 
             // populate root row ids. Must happen before the relationship walk.
             // NOTE: when we have multiple sources, we can put this into a loop
@@ -1152,7 +1396,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
 
             // walk and populate relationship table row ids
             List<WalkRelationship> walkRelationships = WalkRelationship.ofAssetSpecification(assetSpecification);
-            walkRelationships(datasetBqDatasetName, snapshotName, walkRelationships, rootTableId, projectId, bigQuery);
+            walkRelationships(datasetBqDatasetName, snapshotName, walkRelationships, rootTableId, bigQueryProject);
 
             // populate root row ids. Must happen before the relationship walk.
             // NOTE: when we have multiple sources, we can put this into a loop
@@ -1169,14 +1413,11 @@ public class BigQueryPdao implements PrimaryDataAccess {
     // NOTE: this will have to be re-written when we support relationships that include
     // more than one column.
     private static final String storeRowIdsForRelatedTableTemplate =
-        "WITH merged_table AS (SELECT DISTINCT '<toTableId>' AS " + PDAO_TABLE_ID_COLUMN + ", " +
+        "SELECT DISTINCT '<toTableId>' AS " + PDAO_TABLE_ID_COLUMN + ", " +
             "T." + PDAO_ROW_ID_COLUMN + " FROM `<project>.<dataset>.<toTableName>` T, " +
             "`<project>.<dataset>.<fromTableName>` F, `<project>.<snapshot>." + PDAO_ROW_ID_TABLE + "` R " +
             "WHERE R." + PDAO_TABLE_ID_COLUMN + " = '<fromTableId>' AND " +
-            "R." + PDAO_ROW_ID_COLUMN + " = F." + PDAO_ROW_ID_COLUMN + " AND <joinClause>) " +
-            "SELECT " + PDAO_TABLE_ID_COLUMN + "," + PDAO_ROW_ID_COLUMN + " FROM merged_table WHERE " +
-            PDAO_ROW_ID_COLUMN + " NOT IN " +
-            "(SELECT " + PDAO_ROW_ID_COLUMN + " FROM `<project>.<snapshot>." + PDAO_ROW_ID_TABLE + "`)";
+            "R." + PDAO_ROW_ID_COLUMN + " = F." + PDAO_ROW_ID_COLUMN + " AND <joinClause>";
 
     private static final String matchNonArrayTemplate =
         "T.<toColumn> = F.<fromColumn>";
@@ -1209,19 +1450,22 @@ public class BigQueryPdao implements PrimaryDataAccess {
      * Given a relationship, join from the start table to the target table.
      * This may be walking the relationship from the from table to the to table,
      * or walking the relationship from the to table to the from table.
+     * The row ids found are written to a staging table by a BigQuery job that is started, but not waited for.
      *
      * @param datasetBqDatasetName - name of the dataset BigQuery dataset
      * @param snapshotName - name of the new snapshot's BigQuery dataset
      * @param relationship - relationship we are walking with its direction set. The class returns
      *                       the appropriate from and to based on that direction.
-     * @param projectId - the project id that this bigquery dataset exists in
-     * @param bigQuery - a BigQuery instance
+     * @param stagingTableName - table in the snapshot's BigQuery dataset that receives the row ids
+     * @param bigQueryProject - the project that this bigquery dataset exists in
+     * @return future of the running job
      */
-    private void storeRowIdsForRelatedTable(String datasetBqDatasetName,
-                                            String snapshotName,
-                                            WalkRelationship relationship,
-                                            String projectId,
-                                            BigQuery bigQuery) throws InterruptedException {
+    private CompletableFuture<Job> storeRowIdsForRelatedTable(String datasetBqDatasetName,
+                                                              String snapshotName,
+                                                              WalkRelationship relationship,
+                                                              String stagingTableName,
+                                                              BigQueryProject bigQueryProject)
+        throws InterruptedException {
 
         ST joinClauseTemplate;
         if (relationship.getFromColumnIsArray() && relationship.getToColumnIsArray()) {
@@ -1237,7 +1481,7 @@ public class BigQueryPdao implements PrimaryDataAccess {
         joinClauseTemplate.add("toColumn", relationship.getToColumnName());
 
         ST sqlTemplate = new ST(storeRowIdsForRelatedTableTemplate);
-        sqlTemplate.add("project", projectId);
+        sqlTemplate.add("project", bigQueryProject.getProjectId());
         sqlTemplate.add("dataset", datasetBqDatasetName);
         sqlTemplate.add("snapshot", snapshotName);
         sqlTemplate.add("fromTableId", relationship.getFromTableId());
@@ -1247,11 +1491,12 @@ public class BigQueryPdao implements PrimaryDataAccess {
         sqlTemplate.add("joinClause", joinClauseTemplate.render());
 
         QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sqlTemplate.render())
-            .setDestinationTable(TableId.of(snapshotName, PDAO_ROW_ID_TABLE))
-            .setWriteDisposition(JobInfo.WriteDisposition.WRITE_APPEND)
+            .setDestinationTable(TableId.of(snapshotName, stagingTableName))
+            .setCreateDisposition(JobInfo.CreateDisposition.CREATE_IF_NEEDED)
+            .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
             .build();
 
-        bigQuery.query(queryConfig);
+        return bigQueryProject.submitJob(JobInfo.of(queryConfig));
     }
 
     private static final String createViewsTemplate =
@@ -1267,35 +1512,11 @@ public class BigQueryPdao implements PrimaryDataAccess {
         Snapshot snapshot,
         String projectId,
         BigQuery bigQuery) {
+        String snapshotName = snapshot.getName();
         return snapshot.getTables().stream().map(table -> {
-            // Build the FROM clause from the source
-            // NOTE: we can put this in a loop when we do multiple sources
-            SnapshotSource source = snapshot.getSnapshotSources().get(0);
-            String snapshotName = snapshot.getName();
-
-            // Find the table map for the table. If there is none, we skip it.
-            // NOTE: for now, we know that there will be one, because we generate it directly.
-            // In the future when we have more than one, we can just return.
-            SnapshotMapTable mapTable = lookupMapTable(table, source);
-            if (mapTable == null) {
-                throw new PdaoException("No matching map table for snapshot table " + table.getName());
-            }
-            String snapshotId = snapshot.getId().toString();
-
-            ST sqlTemplate = new ST(createViewsTemplate);
-            sqlTemplate.add("project", projectId);
-            sqlTemplate.add("dataset", datasetBqDatasetName);
-            sqlTemplate.add("snapshot", snapshotName);
-            sqlTemplate.add("mapTable", mapTable.getFromTable().getRawTableName());
-            sqlTemplate.add("tableId", mapTable.getFromTable().getId().toString());
-            table.getColumns().forEach(c -> {
-                sqlTemplate.add("columns", c.getName());
-                sqlTemplate.add("mappedColumns", sourceSelectSql(snapshotId, c, mapTable));
-            });
-
             // create the view
             String tableName = table.getName();
-            String sql = sqlTemplate.render();
+            String sql = snapshotTableSql(datasetBqDatasetName, snapshot, projectId, table);
 
             logger.info("Creating view " + snapshotName + "." + tableName + " as " + sql);
             TableId tableId = TableId.of(snapshotName, tableName);
@@ -1306,6 +1527,67 @@ public class BigQueryPdao implements PrimaryDataAccess {
         }).collect(Collectors.toList());
     }
 
+    /**
+     * Copy the rows of each snapshot table into a table in the snapshot's BigQuery dataset, clustered by
+     * row id. The copies are started together and then waited for.
+     */
+    private void createMaterializedTables(
+        String datasetBqDatasetName,
+        Snapshot snapshot,
+        BigQueryProject bigQueryProject) throws InterruptedException {
+        String projectId = bigQueryProject.getProjectId();
+        String snapshotName = snapshot.getName();
+        List<CompletableFuture<Job>> jobs = new ArrayList<>();
+        for (SnapshotTable table : snapshot.getTables()) {
+            String tableName = table.getName();
+            String sql = snapshotTableSql(datasetBqDatasetName, snapshot, projectId, table);
+
+            logger.info("Creating materialized table " + snapshotName + "." + tableName + " as " + sql);
+            QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sql)
+                .setDestinationTable(TableId.of(snapshotName, tableName))
+                .setCreateDisposition(JobInfo.CreateDisposition.CREATE_IF_NEEDED)
+                .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+                .setClustering(ROW_ID_CLUSTERING)
+                .build();
+            jobs.add(bigQueryProject.submitJob(JobInfo.of(queryConfig)));
+        }
+        for (CompletableFuture<Job> job : jobs) {
+            BigQueryJobExecutor.waitFor(job);
+        }
+    }
+
+    // Build the query selecting the rows and columns of a snapshot table from its dataset table
+    private String snapshotTableSql(
+        String datasetBqDatasetName,
+        Snapshot snapshot,
+        String projectId,
+        SnapshotTable table) {
+        // Build the FROM clause from the source
+        // NOTE: we can put this in a loop when we do multiple sources
+        SnapshotSource source = snapshot.getSnapshotSources().get(0);
+
+        // Find the table map for the table. If there is none, we skip it.
+        // NOTE: for now, we know that there will be one, because we generate it directly.
+        // In the future when we have more than one, we can just return.
+        SnapshotMapTable mapTable = lookupMapTable(table, source);
+        if (mapTable == null) {
+            throw new PdaoException("No matching map table for snapshot table " + table.getName());
+        }
+        String snapshotId = snapshot.getId().toString();
+
+        ST sqlTemplate = new ST(createViewsTemplate);
+        sqlTemplate.add("project", projectId);
+        sqlTemplate.add("dataset", datasetBqDatasetName);
+        sqlTemplate.add("snapshot", snapshot.getName());
+        sqlTemplate.add("mapTable", mapTable.getFromTable().getRawTableName());
+        sqlTemplate.add("tableId", mapTable.getFromTable().getId().toString());
+        table.getColumns().forEach(c -> {
+            sqlTemplate.add("columns", c.getName());
+            sqlTemplate.add("mappedColumns", sourceSelectSql(snapshotId, c, mapTable));
+        });
+        return sqlTemplate.render();
+    }
+
     private void deleteViewAcls(
         String datasetBqDatasetName,
         Snapshot snapshot,
@@ -1372,60 +1654,6 @@ public class BigQueryPdao implements PrimaryDataAccess {
         }
     }
 
-    // for each table in a dataset (source), collect row id matches ON the row id
-    public RowIdMatch matchRowIds(Snapshot snapshot, SnapshotSource source, String tableName, List<String> rowIds)
-        throws InterruptedException {
-
-        // One source: grab it and navigate to the relevant parts
-        BigQueryProject bigQueryProject = bigQueryProjectForSnapshot(snapshot);
-
-        Optional<SnapshotMapTable> optTable = source.getSnapshotMapTables()
-            .stream()
-            .filter(table -> table.getFromTable().getName().equals(tableName))
-            .findFirst();
-        // create a column to point to the row id column in the source table to check that passed row ids exist in it
-        Column rowIdColumn = new Column()
-            .table(optTable.get().getFromTable())
-            .name(PDAO_ROW_ID_COLUMN);
-
-        // Execute the query building the row id match structure that tracks the matching
-        // ids and the mismatched ids
-        RowIdMatch rowIdMatch = new RowIdMatch();
-
-        List<List<String>> rowIdChunks = ListUtils.partition(rowIds, 10000);
-        // partition returns consecutive sublists of a list, each of the same size (final list may be smaller)
-        // partitioning a list containing [a, b, c, d, e] with a partition size of 3 yields [[a, b, c], [d, e]]
-        // -- an outer list containing two inner lists of three and two elements, all in the original order.
-
-        for (List<String> rowIdChunk : rowIdChunks) { // each loop will load a chunk of rowIds as an INSERT
-            // To prevent BQ choking on a huge array, split it up into chunks
-            ST sqlTemplate = new ST(mapValuesToRowsTemplate); // This query fails w >100k rows
-            sqlTemplate.add("project", bigQueryProject.getProjectId());
-            sqlTemplate.add("dataset", prefixName(source.getDataset().getName()));
-            sqlTemplate.add("table", tableName);
-            sqlTemplate.add("column", rowIdColumn.getName());
-            sqlTemplate.add("inputVals", rowIdChunk);
-
-            String sql = sqlTemplate.render();
-            logger.debug("mapValuesToRows sql: " + sql);
-            TableResult result = bigQueryProject.query(sql);
-            for (FieldValueList row : result.iterateAll()) {
-                // Test getting these by name
-                FieldValue rowId = row.get(0);
-                FieldValue inputValue = row.get(1);
-                if (rowId.isNull()) {
-                    rowIdMatch.addMismatch(inputValue.getStringValue());
-                    logger.debug("rowId=<NULL>" + "  inVal=" + inputValue.getStringValue());
-                } else {
-                    rowIdMatch.addMatch(inputValue.getStringValue(), rowId.getStringValue());
-                    logger.debug("rowId=" + rowId.getStringValue() + "  inVal=" + inputValue.getStringValue());
-                }
-            }
-        }
-
-        return rowIdMatch;
-    }
-
     private SnapshotMapTable lookupMapTable(Table toTable, SnapshotSource source) {
         for (SnapshotMapTable tryMapTable : source.getSnapshotMapTables()) {
             if (tryMapTable.getToTable().getId().equals(toTable.getId())) {
@@ -1547,6 +1775,60 @@ public class BigQueryPdao implements PrimaryDataAccess {
         return bigQueryProject.query(String.join(";", sqlStatements));
     }
 
+    /**
+     * Fraction of the rows of a dataset table that have been soft deleted. Every row id in the soft delete table
+     * is in the raw table, so this is the size of the soft delete table over the size of the raw table. The sizes
+     * come from the table metadata, so no query is run.
+     *
+     * @return deleted fraction between 0 and 1; 0 for an empty table
+     */
+    public double getDeletedFraction(Dataset dataset, DatasetTable table) throws InterruptedException {
+        BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
+        String datasetName = prefixName(dataset.getName());
+        long rawRows = getTableNumRows(bigQueryProject, datasetName, table.getRawTableName());
+        long deletedRows = getTableNumRows(bigQueryProject, datasetName, table.getSoftDeleteTableName());
+        double deletedFraction = (rawRows == 0) ? 0.0 : (double) deletedRows / rawRows;
+        logger.info("Soft deletes for table {}.{}: rawRows={} deletedRows={} deletedFraction={}",
+            datasetName, table.getName(), rawRows, deletedRows, String.format("%.3f", deletedFraction));
+        return deletedFraction;
+    }
+
+    private long getTableNumRows(BigQueryProject bigQueryProject, String datasetName, String tableName) {
+        com.google.cloud.bigquery.Table bqTable =
+            bigQueryProject.getBigQuery().getTable(TableId.of(datasetName, tableName));
+        if (bqTable == null) {
+            throw new PdaoException("Table not found: " + datasetName + "." + tableName);
+        }
+        return (bqTable.getNumRows() == null) ? 0L : bqTable.getNumRows().longValue();
+    }
+
+    // The second statement only drops soft delete rows whose raw rows are gone, so row ids soft deleted by a
+    // concurrent data delete flight while the compaction runs stay in the soft delete table.
+    private static final String compactSoftDeletesTemplate =
+        "DELETE FROM `<project>.<dataset>.<rawTable>` " +
+            "WHERE <rowId> IN (SELECT <rowId> FROM `<project>.<dataset>.<softDeleteTable>`);" +
+        "DELETE FROM `<project>.<dataset>.<softDeleteTable>` " +
+            "WHERE <rowId> NOT IN (SELECT <rowId> FROM `<project>.<dataset>.<rawTable>`)";
+
+    /**
+     * Remove the soft deleted rows of a dataset table from its raw table and empty its soft delete table, so the
+     * live view no longer reads and joins the deleted rows. Snapshot views read the raw tables directly and may
+     * include soft deleted rows, so the caller must only compact tables of datasets that no snapshot uses.
+     * Compacting is idempotent: if it fails part way, it can be run again.
+     */
+    public void compactSoftDeletes(Dataset dataset, DatasetTable table) throws InterruptedException {
+        BigQueryProject bigQueryProject = bigQueryProjectForDataset(dataset);
+        String sql = new ST(compactSoftDeletesTemplate)
+            .add("project", bigQueryProject.getProjectId())
+            .add("dataset", prefixName(dataset.getName()))
+            .add("rawTable", table.getRawTableName())
+            .add("softDeleteTable", table.getSoftDeleteTableName())
+            .add("rowId", PDAO_ROW_ID_COLUMN)
+            .render();
+        bigQueryProject.query(sql);
+        logger.info("Compacted soft deletes for table {}.{}", prefixName(dataset.getName()), table.getName());
+    }
+
     private long getSingleLongValue(TableResult result) {
         FieldValueList fieldValues = result.getValues().iterator().next();
         return fieldValues.get(0).getLongValue();
@@ -1597,23 +1879,61 @@ public class BigQueryPdao implements PrimaryDataAccess {
         }
     }
 
-    // we select from the live view here so that the row counts take into account rows that have been hard deleted
-    private static final String rowCountTemplate = "SELECT COUNT(<rowId>) FROM `<project>.<dataset>.<table>`";
+    // Count the rows of every snapshot table in one pass over the row id table. A snapshot view joins each
+    // row id with the raw table of its source table. Every row id was taken from a row of that table, and
+    // soft delete compaction, the only thing that physically removes raw rows, skips datasets that have
+    // snapshots, so each row id yields exactly one view row. Duplicate row ids yield duplicate view rows and
+    // are counted the same way here.
+    private static final String rowCountTemplate =
+        "SELECT " + PDAO_TABLE_ID_COLUMN + ", COUNT(*) FROM `<project>.<snapshot>." + PDAO_ROW_ID_TABLE + "` " +
+            "GROUP BY " + PDAO_TABLE_ID_COLUMN;
 
     public Map<String, Long> getSnapshotTableRowCounts(Snapshot snapshot) throws InterruptedException {
         BigQueryProject bigQueryProject = bigQueryProjectForSnapshot(snapshot);
+        if (snapshot.isMaterialized()) {
+            return getMaterializedTableRowCounts(bigQueryProject, snapshot);
+        }
+        String sql = new ST(rowCountTemplate)
+            .add("project", bigQueryProject.getProjectId())
+            .add("snapshot", snapshot.getName())
+            .render();
+        Map<String, Long> countsBySourceTableId = new HashMap<>();
+        for (FieldValueList row : bigQueryProject.query(sql).iterateAll()) {
+            countsBySourceTableId.put(row.get(0).getStringValue(), row.get(1).getLongValue());
+        }
+
+        // NOTE: this assumes single-source snapshots, like the view creation
+        SnapshotSource source = snapshot.getSnapshotSources().get(0);
+        Map<String, Long> rowCounts = new HashMap<>();
+        for (SnapshotTable snapshotTable : snapshot.getTables()) {
+            SnapshotMapTable mapTable = lookupMapTable(snapshotTable, source);
+            if (mapTable == null) {
+                throw new PdaoException("No matching map table for snapshot table " + snapshotTable.getName());
+            }
+            String sourceTableId = mapTable.getFromTable().getId().toString();
+            rowCounts.put(snapshotTable.getName(), countsBySourceTableId.getOrDefault(sourceTableId, 0L));
+        }
+        return rowCounts;
+    }
+
+    // Materialized tables are physical tables, so their row counts and sizes come from the table metadata
+    private Map<String, Long> getMaterializedTableRowCounts(BigQueryProject bigQueryProject, Snapshot snapshot) {
         Map<String, Long> rowCounts = new HashMap<>();
+        long totalBytes = 0;
         for (SnapshotTable snapshotTable : snapshot.getTables()) {
             String tableName = snapshotTable.getName();
-            String sql = new ST(rowCountTemplate)
-                .add("rowId", PDAO_ROW_ID_COLUMN)
-                .add("project", bigQueryProject.getProjectId())
-                .add("dataset", snapshot.getName())
-                .add("table", tableName)
-                .render();
-            TableResult result = bigQueryProject.query(sql);
-            rowCounts.put(tableName, getSingleLongValue(result));
+            com.google.cloud.bigquery.Table bqTable =
+                bigQueryProject.getBigQuery().getTable(TableId.of(snapshot.getName(), tableName));
+            if (bqTable == null) {
+                throw new PdaoException("Materialized table not found: " + snapshot.getName() + "." + tableName);
+            }
+            long numRows = (bqTable.getNumRows() == null) ? 0L : bqTable.getNumRows().longValue();
+            long numBytes = (bqTable.getNumBytes() == null) ? 0L : bqTable.getNumBytes();
+            logger.info("Materialized table {}.{}: rows={} bytes={}", snapshot.getName(), tableName, numRows, numBytes);
+            rowCounts.put(tableName, numRows);
+            totalBytes += numBytes;
         }
+        logger.info("Materialized snapshot {} holds {} bytes", snapshot.getName(), totalBytes);
         return rowCounts;
     }
 }
@@ -6,9 +6,12 @@ import com.google.cloud.bigquery.Acl;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.Clustering;
 import com.google.cloud.bigquery.Dataset;
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.DatasetInfo;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.StandardTableDefinition;
@@ -21,30 +24,42 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 public final class BigQueryProject {
     private static final Logger logger = LoggerFactory.getLogger(BigQueryProject.class);
     private static final ConcurrentHashMap<String, BigQueryProject> bigQueryProjectCache = new ConcurrentHashMap<>();
+
     private final String projectId;
     private final BigQuery bigQuery;
+    private final BigQueryJobExecutor jobExecutor;
 
-    private BigQueryProject(String projectId) {
+    private BigQueryProject(String projectId, BigQueryJobLimits jobLimits) {
         logger.info("Retrieving Bigquery project for project id: {}", projectId);
         this.projectId = projectId;
         bigQuery = BigQueryOptions.newBuilder()
             .setProjectId(projectId)
             .build()
             .getService();
+        jobExecutor = new BigQueryJobExecutor(bigQuery, projectId, jobLimits.getMaxConcurrentJobs(),
+            jobLimits.getJobsPerSecond(), jobLimits.getJobTimeout());
     }
 
     public static BigQueryProject get(String projectId) {
-        bigQueryProjectCache.computeIfAbsent(projectId, BigQueryProject::new);
-        return bigQueryProjectCache.get(projectId);
+        return get(projectId, BigQueryJobLimits.DEFAULT);
+    }
+
+    /**
+     * The job limits are used when the project is first retrieved; later calls share its job executor.
+     */
+    public static BigQueryProject get(String projectId, BigQueryJobLimits jobLimits) {
+        return bigQueryProjectCache.computeIfAbsent(projectId, id -> new BigQueryProject(id, jobLimits));
     }
 
     public String getProjectId() {
@@ -55,6 +70,10 @@ public final class BigQueryProject {
         return bigQuery;
     }
 
+    public BigQueryJobExecutor getJobExecutor() {
+        return jobExecutor;
+    }
+
     // TODO: REVIEWERS PLEASE CHECK: Should these methods be in here? On the one hand, it is convenient. But it
     // mixes the duties of this class: it is supplying both the cache and the BQ methods. Unfortunately, it
     // doesn't supply all of the BQ methods, so sometimes getBigQuery is needed. Seems like it could be
@@ -105,11 +124,24 @@ public final class BigQueryProject {
 
     public void createTable(String datasetName, String tableName, Schema schema,
                             BigQueryPartitionConfigV1 partitionConfig) {
+        createTable(datasetName, tableName, schema, partitionConfig, null);
+    }
+
+    public void createTable(String datasetName, String tableName, Schema schema, Clustering clustering) {
+        createTable(datasetName, tableName, schema, BigQueryPartitionConfigV1.none(), clustering);
+    }
+
+    /**
+     * @param clustering clustering columns of the table; null for an unclustered table
+     */
+    public void createTable(String datasetName, String tableName, Schema schema,
+                            BigQueryPartitionConfigV1 partitionConfig, Clustering clustering) {
         TableId tableId = TableId.of(datasetName, tableName);
         TableDefinition tableDefinition = StandardTableDefinition.newBuilder()
             .setSchema(schema)
             .setTimePartitioning(partitionConfig.asTimePartitioning())
             .setRangePartitioning(partitionConfig.asRangePartitioning())
+            .setClustering(clustering)
             .build();
         TableInfo tableInfo = TableInfo.newBuilder(tableId, tableDefinition).build();
         bigQuery.create(tableInfo);
@@ -144,12 +176,45 @@ public final class BigQueryProject {
         }
     }
 
-    public TableResult query(String sql) throws InterruptedException {
+    /**
+     * Submit a job without waiting for it. See BigQueryJobExecutor for the limits applied.
+     *
+     * @return future completed with the done job, which may have failed
+     */
+    public CompletableFuture<Job> submitJob(JobInfo jobInfo) throws InterruptedException {
+        return jobExecutor.submit(jobInfo);
+    }
+
+    public CompletableFuture<Job> submitJob(JobInfo jobInfo, Duration timeout) throws InterruptedException {
+        return jobExecutor.submit(jobInfo, timeout);
+    }
+
+    public CompletableFuture<Job> submitQuery(String sql) throws InterruptedException {
+        return submitJob(JobInfo.of(QueryJobConfiguration.newBuilder(sql).build()));
+    }
+
+    /**
+     * Get the results of a query submitted with submitQuery or submitJob, waiting for it if needed
+     */
+    public TableResult getQueryResults(CompletableFuture<Job> future,
+                                       BigQuery.QueryResultsOption... options) throws InterruptedException {
+        Job job = BigQueryJobExecutor.waitFor(future);
         try {
-            QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sql).build();
-            return bigQuery.query(queryConfig);
+            return job.getQueryResults(options);
         } catch (BigQueryException e) {
-            throw new PdaoException("Failure executing query...\n" + sql, e);
+            throw new PdaoException("Failure retrieving results of query job " + job.getJobId().getJob(), e);
+        }
+    }
+
+    public TableResult query(String sql) throws InterruptedException {
+        return query(QueryJobConfiguration.newBuilder(sql).build());
+    }
+
+    public TableResult query(QueryJobConfiguration queryConfig) throws InterruptedException {
+        try {
+            return getQueryResults(submitJob(JobInfo.of(queryConfig)));
+        } catch (PdaoException e) {
+            throw new PdaoException("Failure executing query...\n" + queryConfig.getQuery(), e);
         }
     }
 }
@@ -7,7 +7,10 @@ import bio.terra.common.Table;
 import bio.terra.common.Column;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class WalkRelationship {
     public enum WalkDirection {
@@ -32,6 +35,81 @@ public class WalkRelationship {
         return walklist;
     }
 
+    /**
+     * Plan a walk of the relationships, starting at the start table, as a list of levels. The relationships
+     * of a level are walked at the same time, each using the row ids found by earlier levels.
+     *
+     * First a breadth-first search from the start table sets the direction of each relationship it reaches,
+     * walking away from the table reached first, and marks it as visited. Relationships not connected to the
+     * start table are left out.
+     *
+     * Then a relationship is only put in a level once every relationship that adds rows to its from table is
+     * in an earlier level; otherwise it would miss those rows. For example, with a to b, a to c, b to c, and
+     * c to d, the c to d relationship has to wait for b to c, so there are three levels. If the relationships
+     * form a cycle, no relationship in it can wait for all of the others, so the one reached first is walked
+     * on its own, as the old one-at-a-time walk did.
+     *
+     * @param relationships relationships to walk
+     * @param startTableId id of the table the walk starts from
+     * @return list of levels, each a list of relationships
+     */
+    public static List<List<WalkRelationship>> planWalkLevels(List<WalkRelationship> relationships,
+                                                              String startTableId) {
+        List<WalkRelationship> remaining = orientRelationships(relationships, startTableId);
+        List<List<WalkRelationship>> levels = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            Set<String> pendingToTableIds = new HashSet<>();
+            for (WalkRelationship relationship : remaining) {
+                pendingToTableIds.add(relationship.getToTableId());
+            }
+
+            List<WalkRelationship> level = new ArrayList<>();
+            for (WalkRelationship relationship : remaining) {
+                if (!pendingToTableIds.contains(relationship.getFromTableId())) {
+                    level.add(relationship);
+                }
+            }
+            if (level.isEmpty()) {
+                level.add(remaining.get(0));
+            }
+
+            remaining.removeAll(level);
+            levels.add(level);
+        }
+        return levels;
+    }
+
+    // Breadth-first search from the start table. Returns the relationships it reaches, in the order reached,
+    // with their direction set and marked as visited.
+    private static List<WalkRelationship> orientRelationships(List<WalkRelationship> relationships,
+                                                              String startTableId) {
+        List<WalkRelationship> reached = new ArrayList<>();
+        Set<String> frontier = new LinkedHashSet<>();
+        frontier.add(startTableId);
+        while (!frontier.isEmpty()) {
+            Set<String> nextFrontier = new LinkedHashSet<>();
+            for (WalkRelationship relationship : relationships) {
+                if (relationship.isVisited()) {
+                    continue;
+                }
+                // NOTE: setting the direction tells the WalkRelationship to change its meaning of from and to.
+                // When constructed, it is always in the FROM_TO direction.
+                if (frontier.contains(relationship.tableIds[0])) {
+                    relationship.setDirection(WalkDirection.FROM_TO);
+                } else if (frontier.contains(relationship.tableIds[1])) {
+                    relationship.setDirection(WalkDirection.TO_FROM);
+                } else {
+                    continue;
+                }
+                relationship.setVisited();
+                reached.add(relationship);
+                nextFrontier.add(relationship.getToTableId());
+            }
+            frontier = nextFrontier;
+        }
+        return reached;
+    }
+
     public static WalkRelationship ofAssetRelationship(AssetRelationship assetRelationship) {
         Relationship datasetRelationship = assetRelationship.getDatasetRelationship();
         return new WalkRelationship()
@@ -1,7 +1,11 @@
 package bio.terra.service.upgrade;
 
 import bio.terra.app.configuration.DataRepoJdbcConfiguration;
+import bio.terra.service.dataset.DatasetDao;
+import bio.terra.service.filedata.FSContainerInterface;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
 import bio.terra.service.kubernetes.KubeService;
+import bio.terra.service.snapshot.SnapshotDao;
 import bio.terra.service.upgrade.exception.MigrateException;
 import liquibase.Contexts;
 import liquibase.Liquibase;
@@ -22,7 +26,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Provides methods for upgrading the data repository metadata and stairway databases.
@@ -52,6 +62,10 @@ import java.util.concurrent.TimeUnit;
  * If we decide that is an important case to cover, we can fix it by doing yet another check that the lock holder
  * is on the list of running pods. For now, not gonna do it.
  * <p>
+ * Some upgrades change data outside of the metadata database, for instance in Firestore. Those are done by
+ * backfills. Every pod starts them in the background at startup, but only one pod at a time runs each
+ * backfill; see {@link #runBackfills()}.
+ * <p>
  * NOTE: you might be wondering why this code does not use JdbcTemplate. I wonder why also.
  * I initially coded it with JdbcTemplate and the @Transactional annotation got the error:
  * PSQLException: ERROR: LOCK TABLE can only be used in transaction blocks
@@ -67,6 +81,14 @@ public class Migrate {
     private final MigrateConfiguration migrateConfiguration;
     private final KubeService kubeService;
     private final DataSource dataSource;
+    private final DatasetDao datasetDao;
+    private final SnapshotDao snapshotDao;
+    private final FireStoreDao fireStoreDao;
+
+    // Backfill names recorded in the backfill table
+    private static final String FILE_ID_INDEX_BACKFILL = "firestore_file_id_index";
+    // How long a pod waits between checks on a backfill that another pod is running
+    private static final int BACKFILL_POLL_SECONDS = 60;
 
     private enum MigrateAction {
         NOTHING,
@@ -106,11 +128,17 @@ public class Migrate {
     @Autowired
     public Migrate(DataRepoJdbcConfiguration dataRepoJdbcConfiguration,
                    MigrateConfiguration migrateConfiguration,
-                   KubeService kubeService) {
+                   KubeService kubeService,
+                   DatasetDao datasetDao,
+                   SnapshotDao snapshotDao,
+                   FireStoreDao fireStoreDao) {
         this.dataRepoJdbcConfiguration = dataRepoJdbcConfiguration;
         this.migrateConfiguration = migrateConfiguration;
         this.kubeService = kubeService;
         this.dataSource = dataRepoJdbcConfiguration.getDataSource();
+        this.datasetDao = datasetDao;
+        this.snapshotDao = snapshotDao;
+        this.fireStoreDao = fireStoreDao;
     }
 
     /**
@@ -164,6 +192,194 @@ public class Migrate {
         releaseDeploymentLock();
     }
 
+    /**
+     * Run the backfills that have not completed yet. A backfill is recorded in the backfill table when it
+     * completes, so it runs to completion once per data repository. Each item a backfill finishes, for
+     * instance one dataset, is recorded in the backfill_item table, so a pod can pick up where a pod that
+     * died or failed part way left off.
+     * <p>
+     * A pod runs a backfill only while it holds a Postgres advisory lock on the backfill name. The other
+     * pods poll until the backfill is done or they get the lock. The lock is held by the database session,
+     * so it is released if the pod running the backfill dies, and a waiting pod takes over. Each pod runs a
+     * backfill at most once; failures are logged and leave the backfill to be resumed by a waiting pod or by
+     * the next pod that starts.
+     * <p>
+     * The code that relies on a backfill must work, perhaps more slowly, until the backfill is done. That
+     * lets the backfills run in the background while the pods serve requests.
+     */
+    public void runBackfills() {
+        try {
+            while (!isBackfillDone(FILE_ID_INDEX_BACKFILL)) {
+                try (Connection lockConnection = dataSource.getConnection()) {
+                    lockConnection.setAutoCommit(true);
+                    if (tryBackfillLock(lockConnection, FILE_ID_INDEX_BACKFILL)) {
+                        try {
+                            // Another pod may have finished the backfill before we got the lock
+                            if (!isBackfillDone(FILE_ID_INDEX_BACKFILL)) {
+                                backfillFileIdIndexes();
+                            }
+                        } finally {
+                            releaseBackfillLock(lockConnection, FILE_ID_INDEX_BACKFILL);
+                        }
+                        return;
+                    }
+                } catch (SQLException ex) {
+                    throw new MigrateException("Backfill lock failed", ex);
+                }
+                logger.info("Backfill {} running on another pod - waiting", FILE_ID_INDEX_BACKFILL);
+                TimeUnit.SECONDS.sleep(BACKFILL_POLL_SECONDS);
+            }
+            logger.info("Backfill {} done", FILE_ID_INDEX_BACKFILL);
+        } catch (MigrateException ex) {
+            logger.error("Backfill failed", ex);
+        } catch (InterruptedException ex) {
+            logger.warn("Backfill interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Index the directory collections of all datasets and snapshots
+    private void backfillFileIdIndexes() throws InterruptedException {
+        Set<String> doneIds = selectBackfillItemsDone(FILE_ID_INDEX_BACKFILL);
+        boolean allIndexed = backfillFileIdIndexes("SELECT id FROM dataset", doneIds, datasetDao::retrieve);
+        allIndexed &= backfillFileIdIndexes("SELECT id FROM snapshot", doneIds, snapshotDao::retrieveSnapshot);
+        if (!allIndexed) {
+            logger.warn("Backfill {} incomplete; another pod will resume it", FILE_ID_INDEX_BACKFILL);
+            return;
+        }
+        recordBackfillDone(FILE_ID_INDEX_BACKFILL);
+        logger.info("Backfill {} done", FILE_ID_INDEX_BACKFILL);
+    }
+
+    // Returns true if the file id index was written for all of the containers. Containers in doneIds are skipped.
+    private boolean backfillFileIdIndexes(String idSql,
+                                          Set<String> doneIds,
+                                          Function<UUID, FSContainerInterface> retriever)
+        throws InterruptedException {
+        boolean allIndexed = true;
+        for (UUID id : selectIds(idSql)) {
+            if (doneIds.contains(id.toString())) {
+                continue;
+            }
+            try {
+                int count = fireStoreDao.backfillFileIdIndex(retriever.apply(id));
+                recordBackfillItemDone(FILE_ID_INDEX_BACKFILL, id.toString());
+                logger.info("Backfilled file id index of {} with {} entries", id, count);
+            } catch (RuntimeException ex) {
+                // Keep going; the other containers can still be indexed
+                logger.warn("Failed to backfill file id index of " + id, ex);
+                allIndexed = false;
+            }
+        }
+        return allIndexed;
+    }
+
+    private List<UUID> selectIds(String idSql) {
+        List<UUID> ids = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(idSql);
+             ResultSet rs = statement.executeQuery()) {
+
+            while (rs.next()) {
+                ids.add(UUID.fromString(rs.getString("id")));
+            }
+        } catch (SQLException ex) {
+            throw new MigrateException("Select ids failed", ex);
+        }
+        return ids;
+    }
+
+    // Session level advisory locks are not tied to a transaction; they are held until unlocked or until the
+    // session ends, so the caller holds the connection for as long as it holds the lock.
+    private boolean tryBackfillLock(Connection connection, String name) throws SQLException {
+        final String lockSql = "SELECT pg_try_advisory_lock(hashtext(?))";
+
+        try (PreparedStatement statement = connection.prepareStatement(lockSql)) {
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void releaseBackfillLock(Connection connection, String name) throws SQLException {
+        final String unlockSql = "SELECT pg_advisory_unlock(hashtext(?))";
+
+        try (PreparedStatement statement = connection.prepareStatement(unlockSql)) {
+            statement.setString(1, name);
+            statement.executeQuery().close();
+        }
+    }
+
+    private boolean isBackfillDone(String name) {
+        final String readSql = "SELECT name FROM backfill WHERE name = ?";
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(readSql)) {
+
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException ex) {
+            throw new MigrateException("Select backfill failed", ex);
+        }
+    }
+
+    private void recordBackfillDone(String name) {
+        final String insertSql = "INSERT INTO backfill(name, completed_date) VALUES (?, now())" +
+            " ON CONFLICT ON CONSTRAINT backfill_pkey DO NOTHING";
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(insertSql)) {
+
+            startTransaction(connection);
+            statement.setString(1, name);
+            statement.executeUpdate();
+            commitTransaction(connection);
+
+        } catch (SQLException ex) {
+            throw new MigrateException("Record backfill failed", ex);
+        }
+    }
+
+    private Set<String> selectBackfillItemsDone(String name) {
+        final String readSql = "SELECT item_id FROM backfill_item WHERE name = ?";
+        Set<String> itemIds = new HashSet<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(readSql)) {
+
+            statement.setString(1, name);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    itemIds.add(rs.getString("item_id"));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new MigrateException("Select backfill items failed", ex);
+        }
+        return itemIds;
+    }
+
+    private void recordBackfillItemDone(String name, String itemId) {
+        final String insertSql = "INSERT INTO backfill_item(name, item_id, completed_date)" +
+            " VALUES (?, ?, now()) ON CONFLICT ON CONSTRAINT backfill_item_pkey DO NOTHING";
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(insertSql)) {
+
+            startTransaction(connection);
+            statement.setString(1, name);
+            statement.setString(2, itemId);
+            statement.executeUpdate();
+            commitTransaction(connection);
+
+        } catch (SQLException ex) {
+            throw new MigrateException("Record backfill item failed", ex);
+        }
+    }
+
     /**
      * Wait for another DRmanager to perform the migration.
      *
@@ -4,6 +4,7 @@ import bio.terra.common.TestUtils;
 import bio.terra.common.category.Unit;
 import bio.terra.model.AssetModel;
 import bio.terra.model.AssetTableModel;
+import bio.terra.model.BulkIngestRequestModel;
 import bio.terra.model.ColumnModel;
 import bio.terra.model.DatasetRequestModel;
 import bio.terra.model.DatePartitionOptionsModel;
@@ -31,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import static bio.terra.common.fixtures.DatasetFixtures.buildAsset;
@@ -121,6 +123,19 @@ public class DatasetValidationsTest {
             .andExpect(status().is4xxClientError());
     }
 
+    @Test
+    public void testBulkIngestWithoutIngests() throws Exception {
+        BulkIngestRequestModel bulkIngest = new BulkIngestRequestModel().ingests(Collections.emptyList());
+        MvcResult result = mvc.perform(post("/api/repository/v1/datasets/" + UUID.randomUUID() + "/ingest/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtils.mapToJson(bulkIngest)))
+            .andExpect(status().is4xxClientError())
+            .andReturn();
+
+        ErrorModel errorModel = TestUtils.mapFromJson(result.getResponse().getContentAsString(), ErrorModel.class);
+        checkValidationErrorModel(errorModel, new String[]{"IngestsMissing"});
+    }
+
     @Test
     public void testDuplicateTableNames() throws Exception {
         ColumnModel column = new ColumnModel().name("id").datatype("string");
@@ -0,0 +1,36 @@
+package bio.terra.common;
+
+import bio.terra.common.category.Unit;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@Category(Unit.class)
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyTest() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertThat("no count", histogram.getCount(), equalTo(0L));
+        assertThat("no mean", histogram.getMeanMillis(), equalTo(0L));
+        assertThat("no percentile", histogram.getPercentileMillis(50), equalTo(-1L));
+    }
+
+    @Test
+    public void percentileTest() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 0; i < 98; i++) {
+            histogram.record(3);
+        }
+        histogram.record(150);
+        histogram.record(60000);
+
+        assertThat("count", histogram.getCount(), equalTo(100L));
+        assertThat("p50 in 5ms bucket", histogram.getPercentileMillis(50), equalTo(5L));
+        assertThat("p99 in 200ms bucket", histogram.getPercentileMillis(99), equalTo(200L));
+        assertThat("p100 past the last bound", histogram.getPercentileMillis(100), equalTo(-1L));
+        assertThat("mean", histogram.getMeanMillis(), equalTo((98L * 3 + 150 + 60000) / 100));
+    }
+}
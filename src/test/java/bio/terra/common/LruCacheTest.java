@@ -0,0 +1,148 @@
+package bio.terra.common;
+
+import bio.terra.common.category.Unit;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@Category(Unit.class)
+public class LruCacheTest {
+
+    @Test
+    public void hitMissAndEvictionTest() {
+        LruCache<String, String> cache = new LruCache<>("test", 2);
+        AtomicInteger loadCount = new AtomicInteger();
+
+        assertThat("load on miss", cache.get("a", key -> load(key, loadCount)), equalTo("A"));
+        assertThat("hit does not load", cache.get("a", key -> load(key, loadCount)), equalTo("A"));
+        assertThat("one load", loadCount.get(), equalTo(1));
+
+        cache.put("b", "B");
+        cache.get("a");          // a is now more recently used than b
+        cache.put("c", "C");     // evicts b
+        assertThat("least recently used is evicted", cache.get("b"), nullValue());
+        assertThat("recently used is kept", cache.get("a"), equalTo("A"));
+        assertThat("size is bounded", cache.size(), equalTo(2));
+
+        assertThat("hits counted", cache.getHitCount(), equalTo(3L));
+        assertThat("misses counted", cache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    public void nullNotCachedTest() {
+        LruCache<String, String> cache = new LruCache<>("test", 10);
+        assertThat("null loaded", cache.get("a", key -> null), nullValue());
+        assertThat("null not cached", cache.size(), equalTo(0));
+    }
+
+    @Test
+    public void expireTest() {
+        TestClockCache cache = new TestClockCache(Duration.ofSeconds(10));
+        cache.put("a", "A");
+        cache.clock = 9999;
+        assertThat("not yet expired", cache.get("a"), equalTo("A"));
+        cache.clock = 10000;
+        assertThat("expired", cache.get("a"), nullValue());
+        assertThat("expired entry removed", cache.size(), equalTo(0));
+    }
+
+    @Test
+    public void removeIfTest() {
+        LruCache<String, String> cache = new LruCache<>("test", 10);
+        cache.put("s1:f1", "x");
+        cache.put("s1:f2", "y");
+        cache.put("s2:f1", "z");
+        assertThat("matching keys removed", cache.removeIf(key -> key.startsWith("s1:")), equalTo(2));
+        assertThat("other keys kept", cache.get("s2:f1"), equalTo("z"));
+    }
+
+    @Test
+    public void invalidValueReloadedTest() {
+        LruCache<String, String> cache = new LruCache<>("test", 10);
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.put("a", "stale");
+
+        assertThat("valid value is a hit", cache.get("a", key -> load(key, loadCount), value -> true),
+            equalTo("stale"));
+        assertThat("invalid value is reloaded", cache.get("a", key -> load(key, loadCount), "A"::equals),
+            equalTo("A"));
+        assertThat("reloaded value is cached", cache.get("a"), equalTo("A"));
+        assertThat("one load", loadCount.get(), equalTo(1));
+        assertThat("invalid value is a miss", cache.getMissCount(), equalTo(1L));
+    }
+
+    @Test
+    public void singleFlightTest() throws Exception {
+        LruCache<String, String> cache = new LruCache<>("test", 10);
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        Function<String, String> slowLoader = key -> {
+            loaderStarted.countDown();
+            try {
+                releaseLoader.await();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return load(key, loadCount);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("a", slowLoader));
+            loaderStarted.await();
+            Future<String> second = executor.submit(() -> cache.get("a", slowLoader));
+            // Give the second lookup time to find the load in flight before the loader finishes
+            TimeUnit.MILLISECONDS.sleep(100);
+            releaseLoader.countDown();
+            assertThat("first lookup loads", first.get(), equalTo("A"));
+            assertThat("second lookup gets the same value", second.get(), equalTo("A"));
+            assertThat("loaded once", loadCount.get(), equalTo(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loaderExceptionNotCachedTest() {
+        LruCache<String, String> cache = new LruCache<>("test", 10);
+        try {
+            cache.get("a", key -> {
+                throw new IllegalStateException("load failed");
+            });
+        } catch (IllegalStateException ex) {
+            assertThat("loader exception is passed through", ex.getMessage(), equalTo("load failed"));
+        }
+        assertThat("failed load is not cached", cache.get("a", String::toUpperCase), equalTo("A"));
+    }
+
+    private String load(String key, AtomicInteger loadCount) {
+        loadCount.incrementAndGet();
+        return key.toUpperCase();
+    }
+
+    private static class TestClockCache extends LruCache<String, String> {
+        private long clock;
+
+        TestClockCache(Duration ttl) {
+            super("test", 10, ttl);
+        }
+
+        @Override
+        long now() {
+            return clock;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package bio.terra.common;
+
+import bio.terra.common.category.Unit;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@Category(Unit.class)
+public class VersionedCacheTest {
+
+    @Test
+    public void sameVersionHitsTest() {
+        VersionedCache<String, String> cache = new VersionedCache<>("test", 10);
+        AtomicInteger loadCount = new AtomicInteger();
+
+        assertThat("load on miss", cache.get("a", 1L, key -> load(key, loadCount)), equalTo("a1"));
+        assertThat("same version does not load", cache.get("a", 1L, key -> load(key, loadCount)), equalTo("a1"));
+        assertThat("one load", loadCount.get(), equalTo(1));
+    }
+
+    @Test
+    public void newVersionLoadsTest() {
+        VersionedCache<String, String> cache = new VersionedCache<>("test", 10);
+        AtomicInteger loadCount = new AtomicInteger();
+
+        cache.get("a", 1L, key -> load(key, loadCount));
+        assertThat("new version loads", cache.get("a", 2L, key -> load(key, loadCount)), equalTo("a2"));
+        assertThat("new version is cached", cache.get("a", 2L, key -> load(key, loadCount)), equalTo("a2"));
+        assertThat("two loads", loadCount.get(), equalTo(2));
+        assertThat("stale lookup counted", cache.getStaleCount(), equalTo(1L));
+
+        cache.remove("a");
+        cache.get("a", 2L, key -> load(key, loadCount));
+        assertThat("removed entry loads", loadCount.get(), equalTo(3));
+    }
+
+    private String load(String key, AtomicInteger loadCount) {
+        return key + loadCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,207 @@
+package bio.terra.service.dataset;
+
+import bio.terra.app.configuration.ConnectedTestConfiguration;
+import bio.terra.common.PdaoConstant;
+import bio.terra.common.TestUtils;
+import bio.terra.common.category.Connected;
+import bio.terra.common.fixtures.ConnectedOperations;
+import bio.terra.common.fixtures.JsonLoader;
+import bio.terra.common.fixtures.Names;
+import bio.terra.model.BillingProfileModel;
+import bio.terra.model.BulkIngestFailureModel;
+import bio.terra.model.BulkIngestRequestModel;
+import bio.terra.model.BulkIngestResponseModel;
+import bio.terra.model.DatasetRequestModel;
+import bio.terra.model.DatasetSummaryModel;
+import bio.terra.model.ErrorModel;
+import bio.terra.model.IngestRequestModel;
+import bio.terra.model.IngestResponseModel;
+import bio.terra.service.configuration.ConfigEnum;
+import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.iam.IamProviderInterface;
+import bio.terra.service.resourcemanagement.DataLocationService;
+import bio.terra.service.resourcemanagement.google.GoogleResourceConfiguration;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import bio.terra.service.tabulardata.google.BigQueryProject;
+import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableResult;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"google", "connectedtest"})
+@Category(Connected.class)
+public class DatasetBulkIngestConnectedTest {
+    @Autowired private MockMvc mvc;
+    @Autowired private JsonLoader jsonLoader;
+    @Autowired private GoogleResourceConfiguration googleResourceConfiguration;
+    @Autowired private ConnectedOperations connectedOperations;
+    @Autowired private BigQueryPdao bigQueryPdao;
+    @Autowired private DataLocationService dataLocationService;
+    @Autowired private DatasetDao datasetDao;
+    @Autowired private ConfigurationService configService;
+    @Autowired private ConnectedTestConfiguration testConfig;
+    @MockBean private IamProviderInterface samService;
+
+    private DatasetSummaryModel summaryModel;
+    private String dirInCloud;
+
+    @Before
+    public void setup() throws Exception {
+        connectedOperations.stubOutSamCalls(samService);
+        configService.reset();
+        BillingProfileModel billingProfile =
+            connectedOperations.createProfileForAccount(googleResourceConfiguration.getCoreBillingAccount());
+        DatasetRequestModel datasetRequest =
+            jsonLoader.loadObject("snapshot-test-dataset.json", DatasetRequestModel.class);
+        datasetRequest
+            .name(Names.randomizeName(datasetRequest.getName()))
+            .defaultProfileId(billingProfile.getId());
+        summaryModel = connectedOperations.createDataset(datasetRequest);
+        dirInCloud = "scratch/bulkIngestTest/" + UUID.randomUUID().toString();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        configService.reset();
+        connectedOperations.teardown();
+    }
+
+    @Test
+    public void testBulkIngest() throws Exception {
+        BulkIngestRequestModel bulkIngest = new BulkIngestRequestModel().ingests(Arrays.asList(
+            ingestRequest("thetable", uploadRows("thetable.json", "thecolumn", "A", "B", "C")),
+            ingestRequest("anothertable", uploadRows("anothertable.json", "anothercolumn", "D", "E"))));
+
+        BulkIngestResponseModel response = connectedOperations.handleSuccessCase(
+            connectedOperations.validateJobModelAndWait(bulkIngestRaw(bulkIngest)), BulkIngestResponseModel.class);
+
+        List<IngestResponseModel> ingests = response.getIngests();
+        assertThat("both ingests succeeded", ingests.size(), equalTo(2));
+        assertThat("ingests are in request order", ingests.get(0).getTable(), equalTo("thetable"));
+        assertThat("first ingest row count", ingests.get(0).getRowCount(), equalTo(3L));
+        assertThat("second ingest row count", ingests.get(1).getRowCount(), equalTo(2L));
+        assertThat("no failed ingests", failedIngestCount(response), equalTo(0));
+
+        assertThat("rows are in thetable", countRows("thetable"), equalTo(3));
+        assertThat("rows are in anothertable", countRows("anothertable"), equalTo(2));
+        assertThat("staging tables are cleaned up", countStagingTables(), equalTo(0));
+    }
+
+    @Test
+    public void testBulkIngestLoadFailureUndoes() throws Exception {
+        String missingPath = "gs://" + testConfig.getIngestbucket() + "/" + dirInCloud + "/missing.json";
+        BulkIngestRequestModel bulkIngest = new BulkIngestRequestModel().ingests(Arrays.asList(
+            ingestRequest("thetable", uploadRows("thetable.json", "thecolumn", "A", "B", "C")),
+            ingestRequest("anothertable", missingPath)));
+
+        ErrorModel errorModel = connectedOperations.handleFailureCase(
+            connectedOperations.validateJobModelAndWait(bulkIngestRaw(bulkIngest)));
+        assertThat("bulk ingest failed", errorModel.getMessage() != null, equalTo(true));
+
+        assertThat("no rows are in thetable", countRows("thetable"), equalTo(0));
+        assertThat("undo removed the staging tables", countStagingTables(), equalTo(0));
+    }
+
+    @Test
+    public void testBulkIngestPartialInsertFailure() throws Exception {
+        // The first insert fails; the second commits, so the flight succeeds and reports the failed ingest
+        configService.setFault(ConfigEnum.TABLE_BULK_INGEST_INSERT_FAULT.name(), true);
+
+        BulkIngestRequestModel bulkIngest = new BulkIngestRequestModel().ingests(Arrays.asList(
+            ingestRequest("thetable", uploadRows("thetable.json", "thecolumn", "A", "B", "C")),
+            ingestRequest("anothertable", uploadRows("anothertable.json", "anothercolumn", "D", "E"))));
+
+        BulkIngestResponseModel response = connectedOperations.handleSuccessCase(
+            connectedOperations.validateJobModelAndWait(bulkIngestRaw(bulkIngest)), BulkIngestResponseModel.class);
+
+        assertThat("one ingest succeeded", response.getIngests().size(), equalTo(1));
+        assertThat("the second ingest succeeded", response.getIngests().get(0).getTable(), equalTo("anothertable"));
+        assertThat("one ingest failed", failedIngestCount(response), equalTo(1));
+        BulkIngestFailureModel failure = response.getFailedIngests().get(0);
+        assertThat("the first ingest failed", failure.getTable(), equalTo("thetable"));
+        assertThat("the failure has an error", failure.getError().getMessage() != null, equalTo(true));
+
+        assertThat("no rows are in thetable", countRows("thetable"), equalTo(0));
+        assertThat("rows are in anothertable", countRows("anothertable"), equalTo(2));
+        assertThat("staging tables are cleaned up", countStagingTables(), equalTo(0));
+    }
+
+    private String uploadRows(String fileName, String columnName, String... values) {
+        StringBuilder rows = new StringBuilder();
+        for (String value : values) {
+            rows.append("{\"").append(columnName).append("\":\"").append(value).append("\"}\n");
+        }
+        String path = dirInCloud + "/" + fileName;
+        Storage storage = StorageOptions.getDefaultInstance().getService();
+        storage.create(BlobInfo.newBuilder(testConfig.getIngestbucket(), path).build(),
+            rows.toString().getBytes(StandardCharsets.UTF_8));
+        connectedOperations.addScratchFile(path);
+        return "gs://" + testConfig.getIngestbucket() + "/" + path;
+    }
+
+    private IngestRequestModel ingestRequest(String tableName, String gsPath) {
+        return new IngestRequestModel()
+            .format(IngestRequestModel.FormatEnum.JSON)
+            .table(tableName)
+            .path(gsPath);
+    }
+
+    private MvcResult bulkIngestRaw(BulkIngestRequestModel bulkIngest) throws Exception {
+        return mvc.perform(post("/api/repository/v1/datasets/" + summaryModel.getId() + "/ingest/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(TestUtils.mapToJson(bulkIngest)))
+            .andReturn();
+    }
+
+    private int failedIngestCount(BulkIngestResponseModel response) {
+        return (response.getFailedIngests() == null) ? 0 : response.getFailedIngests().size();
+    }
+
+    private int countRows(String tableName) throws Exception {
+        TableResult result = TestUtils.selectFromBigQueryDataset(bigQueryPdao, datasetDao, dataLocationService,
+            summaryModel.getName(), tableName, PdaoConstant.PDAO_ROW_ID_COLUMN);
+        return (int) result.getTotalRows();
+    }
+
+    private int countStagingTables() throws Exception {
+        BigQueryProject bigQueryProject =
+            TestUtils.bigQueryProjectForDatasetName(datasetDao, dataLocationService, summaryModel.getName());
+        List<String> stagingTables = new ArrayList<>();
+        for (Table table : bigQueryProject.getBigQuery()
+            .listTables(bigQueryPdao.prefixName(summaryModel.getName())).iterateAll()) {
+            String tableName = table.getTableId().getTable();
+            if (tableName.startsWith(PdaoConstant.PDAO_PREFIX + "st_")) {
+                stagingTables.add(tableName);
+            }
+        }
+        return stagingTables.size();
+    }
+}
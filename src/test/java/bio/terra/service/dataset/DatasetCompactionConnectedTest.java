@@ -0,0 +1,174 @@
+package bio.terra.service.dataset;
+
+import bio.terra.app.configuration.ApplicationConfiguration;
+import bio.terra.app.configuration.ConnectedTestConfiguration;
+import bio.terra.common.PdaoConstant;
+import bio.terra.common.TestUtils;
+import bio.terra.common.category.Connected;
+import bio.terra.common.fixtures.ConnectedOperations;
+import bio.terra.common.fixtures.JsonLoader;
+import bio.terra.common.fixtures.Names;
+import bio.terra.model.BillingProfileModel;
+import bio.terra.model.DataDeletionGcsFileModel;
+import bio.terra.model.DataDeletionRequest;
+import bio.terra.model.DataDeletionTableModel;
+import bio.terra.model.DatasetRequestModel;
+import bio.terra.model.DatasetSummaryModel;
+import bio.terra.model.IngestRequestModel;
+import bio.terra.service.iam.IamProviderInterface;
+import bio.terra.service.resourcemanagement.DataLocationService;
+import bio.terra.service.resourcemanagement.google.GoogleResourceConfiguration;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import com.google.cloud.bigquery.TableResult;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import com.google.cloud.storage.StorageOptions;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"google", "connectedtest"})
+@Category(Connected.class)
+public class DatasetCompactionConnectedTest {
+    private static final String TABLE_NAME = "thetable";
+    private static final List<String> DELETED_ROW_IDS = Arrays.asList(
+        "8c52c63e-8d9f-4cfc-82d0-0f916b2404c1",
+        "13ae488a-e33f-4ee6-ba30-c1fca4d96b63");
+
+    @Autowired private JsonLoader jsonLoader;
+    @Autowired private GoogleResourceConfiguration googleResourceConfiguration;
+    @Autowired private ConnectedOperations connectedOperations;
+    @Autowired private BigQueryPdao bigQueryPdao;
+    @Autowired private DataLocationService dataLocationService;
+    @Autowired private DatasetDao datasetDao;
+    @Autowired private ApplicationConfiguration appConfig;
+    @Autowired private ConnectedTestConfiguration testConfig;
+    @MockBean private IamProviderInterface samService;
+
+    private DatasetSummaryModel summaryModel;
+    private DatasetTable datasetTable;
+    private String dirInCloud;
+    private double savedThreshold;
+
+    @Before
+    public void setup() throws Exception {
+        connectedOperations.stubOutSamCalls(samService);
+        savedThreshold = appConfig.getSoftDeleteCompactionThreshold();
+        appConfig.setSoftDeleteCompactionThreshold(0.25);
+
+        BillingProfileModel billingProfile =
+            connectedOperations.createProfileForAccount(googleResourceConfiguration.getCoreBillingAccount());
+        DatasetRequestModel datasetRequest =
+            jsonLoader.loadObject("snapshot-test-dataset.json", DatasetRequestModel.class);
+        datasetRequest
+            .name(Names.randomizeName(datasetRequest.getName()))
+            .defaultProfileId(billingProfile.getId());
+        summaryModel = connectedOperations.createDataset(datasetRequest);
+        datasetTable = datasetDao.retrieve(UUID.fromString(summaryModel.getId())).getTableByName(TABLE_NAME).get();
+        dirInCloud = "scratch/compactionTest/" + UUID.randomUUID().toString();
+
+        String resourceFileName = "snapshot-test-dataset-data.csv";
+        String path = dirInCloud + "/" + resourceFileName;
+        Storage storage = StorageOptions.getDefaultInstance().getService();
+        storage.create(BlobInfo.newBuilder(testConfig.getIngestbucket(), path).build(),
+            IOUtils.toByteArray(getClass().getClassLoader().getResource(resourceFileName)));
+        connectedOperations.addScratchFile(path);
+        IngestRequestModel ingestRequest = new IngestRequestModel()
+            .table(TABLE_NAME)
+            .format(IngestRequestModel.FormatEnum.CSV)
+            .csvSkipLeadingRows(1)
+            .path("gs://" + testConfig.getIngestbucket() + "/" + path);
+        connectedOperations.ingestTableSuccess(summaryModel.getId(), ingestRequest);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        appConfig.setSoftDeleteCompactionThreshold(savedThreshold);
+        connectedOperations.teardown();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        // Half the rows are deleted, which is above the threshold
+        connectedOperations.softDeleteSuccess(summaryModel.getId(), softDeleteRequest());
+
+        assertThat("live view hides the deleted rows", countRows(TABLE_NAME), equalTo(2));
+        assertThat("deleted rows are removed from the raw table",
+            countRows(datasetTable.getRawTableName()), equalTo(2));
+        assertThat("soft delete table is emptied", countRows(datasetTable.getSoftDeleteTableName()), equalTo(0));
+    }
+
+    @Test
+    public void testNoCompactionWhenSnapshotted() throws Exception {
+        connectedOperations.createSnapshot(summaryModel, "snapshot-test-snapshot.json", "_compact_");
+
+        connectedOperations.softDeleteSuccess(summaryModel.getId(), softDeleteRequest());
+
+        assertThat("live view hides the deleted rows", countRows(TABLE_NAME), equalTo(2));
+        assertThat("raw table keeps the rows the snapshot reads",
+            countRows(datasetTable.getRawTableName()), equalTo(4));
+        assertThat("soft delete table keeps the deleted rows",
+            countRows(datasetTable.getSoftDeleteTableName()), equalTo(2));
+    }
+
+    @Test
+    public void testNoCompactionWhenLocked() throws Exception {
+        // Another flight holding a shared lock keeps the delete from taking the exclusive lock
+        UUID datasetId = UUID.fromString(summaryModel.getId());
+        String otherFlightId = "compactionTest-" + UUID.randomUUID().toString();
+        datasetDao.lockShared(datasetId, otherFlightId);
+        try {
+            connectedOperations.softDeleteSuccess(summaryModel.getId(), softDeleteRequest());
+        } finally {
+            datasetDao.unlockShared(datasetId, otherFlightId);
+        }
+
+        assertThat("live view hides the deleted rows", countRows(TABLE_NAME), equalTo(2));
+        assertThat("raw table is not compacted", countRows(datasetTable.getRawTableName()), equalTo(4));
+        assertThat("dataset is not left locked", datasetDao.getExclusiveLock(datasetId) == null, equalTo(true));
+    }
+
+    private DataDeletionRequest softDeleteRequest() {
+        String path = dirInCloud + "/softDelete.csv";
+        Storage storage = StorageOptions.getDefaultInstance().getService();
+        storage.create(BlobInfo.newBuilder(testConfig.getIngestbucket(), path).build(),
+            (String.join("\n", DELETED_ROW_IDS) + "\n").getBytes(StandardCharsets.UTF_8));
+        connectedOperations.addScratchFile(path);
+
+        DataDeletionTableModel tableModel = new DataDeletionTableModel()
+            .tableName(TABLE_NAME)
+            .gcsFileSpec(new DataDeletionGcsFileModel()
+                .fileType(DataDeletionGcsFileModel.FileTypeEnum.CSV)
+                .path("gs://" + testConfig.getIngestbucket() + "/" + path));
+        return new DataDeletionRequest()
+            .deleteType(DataDeletionRequest.DeleteTypeEnum.SOFT)
+            .specType(DataDeletionRequest.SpecTypeEnum.GCSFILE)
+            .tables(Arrays.asList(tableModel));
+    }
+
+    private int countRows(String tableName) throws Exception {
+        TableResult result = TestUtils.selectFromBigQueryDataset(bigQueryPdao, datasetDao, dataLocationService,
+            summaryModel.getName(), tableName, PdaoConstant.PDAO_ROW_ID_COLUMN);
+        return (int) result.getTotalRows();
+    }
+}
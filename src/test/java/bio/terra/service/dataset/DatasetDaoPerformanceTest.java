@@ -0,0 +1,155 @@
+package bio.terra.service.dataset;
+
+import bio.terra.common.category.OnDemand;
+import bio.terra.common.fixtures.JsonLoader;
+import bio.terra.common.fixtures.ProfileFixtures;
+import bio.terra.model.AssetModel;
+import bio.terra.model.AssetTableModel;
+import bio.terra.model.ColumnModel;
+import bio.terra.model.DatasetRequestModel;
+import bio.terra.model.RelationshipModel;
+import bio.terra.model.RelationshipTermModel;
+import bio.terra.model.TableModel;
+import bio.terra.service.resourcemanagement.BillingProfile;
+import bio.terra.service.resourcemanagement.ProfileDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures how long DatasetDao.retrieve takes for a wide dataset in the local Postgres: 200 tables of 20 columns,
+ * a relationship to each table, and 20 assets. It logs the mean and maximum time of a retrieve.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Category(OnDemand.class)
+public class DatasetDaoPerformanceTest {
+    private final Logger logger = LoggerFactory.getLogger(DatasetDaoPerformanceTest.class);
+
+    private static final int TABLE_COUNT = 200;
+    private static final int COLUMN_COUNT = 20;
+    private static final int ASSET_COUNT = 20;
+    private static final int WARM_UP_COUNT = 10;
+    private static final int RETRIEVE_COUNT = 100;
+
+    @Autowired
+    private JsonLoader jsonLoader;
+
+    @Autowired
+    private DatasetDao datasetDao;
+
+    @Autowired
+    private ProfileDao profileDao;
+
+    private BillingProfile billingProfile;
+    private UUID datasetId;
+
+    @Before
+    public void setup() throws Exception {
+        billingProfile = ProfileFixtures.randomBillingProfile();
+        UUID profileId = profileDao.createBillingProfile(billingProfile);
+        billingProfile.id(profileId);
+
+        DatasetRequestModel datasetRequest = jsonLoader.loadObject("dataset-minimal.json", DatasetRequestModel.class);
+        datasetRequest
+            .name(datasetRequest.getName() + UUID.randomUUID().toString().replace('-', '_'))
+            .defaultProfileId(billingProfile.getId().toString());
+        addWideSchema(datasetRequest);
+
+        Dataset dataset = DatasetUtils.convertRequestWithGeneratedNames(datasetRequest);
+        String createFlightId = UUID.randomUUID().toString();
+        datasetId = datasetDao.createAndLock(dataset, createFlightId);
+        datasetDao.unlockExclusive(datasetId, createFlightId);
+    }
+
+    @After
+    public void teardown() {
+        if (datasetId != null) {
+            datasetDao.delete(datasetId);
+        }
+        profileDao.deleteBillingProfileById(billingProfile.getId());
+    }
+
+    @Test
+    public void retrieveWideDatasetTest() {
+        for (int i = 0; i < WARM_UP_COUNT; i++) {
+            datasetDao.retrieve(datasetId);
+        }
+
+        long totalNanos = 0;
+        long maxNanos = 0;
+        Dataset dataset = null;
+        for (int i = 0; i < RETRIEVE_COUNT; i++) {
+            long start = System.nanoTime();
+            dataset = datasetDao.retrieve(datasetId);
+            long elapsed = System.nanoTime() - start;
+            totalNanos += elapsed;
+            maxNanos = Math.max(maxNanos, elapsed);
+        }
+
+        assertThat("all tables are retrieved", dataset.getTables().size(), equalTo(TABLE_COUNT + 2));
+        assertThat("all relationships are retrieved", dataset.getRelationships().size(), equalTo(TABLE_COUNT + 1));
+        assertThat("all assets are retrieved", dataset.getAssetSpecifications().size(), equalTo(ASSET_COUNT + 1));
+        logger.info("Retrieved a dataset of {} tables {} times: meanMs={} maxMs={}",
+            dataset.getTables().size(), RETRIEVE_COUNT,
+            TimeUnit.NANOSECONDS.toMillis(totalNanos / RETRIEVE_COUNT), TimeUnit.NANOSECONDS.toMillis(maxNanos));
+    }
+
+    // Adds wide tables, each related to participant, and assets over some of them to the minimal schema
+    private void addWideSchema(DatasetRequestModel datasetRequest) {
+        List<TableModel> tables = new ArrayList<>(datasetRequest.getSchema().getTables());
+        List<RelationshipModel> relationships = new ArrayList<>(datasetRequest.getSchema().getRelationships());
+        List<AssetModel> assets = new ArrayList<>(datasetRequest.getSchema().getAssets());
+
+        for (int t = 0; t < TABLE_COUNT; t++) {
+            String tableName = "wide" + t;
+            List<ColumnModel> columns = new ArrayList<>();
+            columns.add(new ColumnModel().name("participant_id").datatype("string"));
+            for (int c = 1; c < COLUMN_COUNT; c++) {
+                columns.add(new ColumnModel().name("column" + c).datatype("string"));
+            }
+            tables.add(new TableModel().name(tableName).columns(columns));
+
+            String relationshipName = "participant_" + tableName;
+            relationships.add(new RelationshipModel()
+                .name(relationshipName)
+                .from(new RelationshipTermModel().table("participant").column("id"))
+                .to(new RelationshipTermModel().table(tableName).column("participant_id")));
+
+            if (t < ASSET_COUNT) {
+                assets.add(new AssetModel()
+                    .name("asset_" + tableName)
+                    .rootTable(tableName)
+                    .rootColumn("participant_id")
+                    .tables(Arrays.asList(
+                        new AssetTableModel().name(tableName).columns(Collections.emptyList()),
+                        new AssetTableModel().name("participant").columns(Collections.emptyList())))
+                    .follow(Collections.singletonList(relationshipName)));
+            }
+        }
+
+        datasetRequest.getSchema()
+            .tables(tables)
+            .relationships(relationships)
+            .assets(assets);
+    }
+}
@@ -0,0 +1,109 @@
+package bio.terra.service.dataset.flight.ingest;
+
+import bio.terra.common.Column;
+import bio.terra.common.category.Unit;
+import bio.terra.service.dataset.Dataset;
+import bio.terra.service.dataset.DatasetTable;
+import bio.terra.service.dataset.exception.InvalidFileRefException;
+import bio.terra.service.filedata.google.firestore.FireStoreDao;
+import bio.terra.service.tabulardata.google.BigQueryPdao;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.TableResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(Unit.class)
+public class IngestRefIdValidatorTest {
+    private static final int PAGE_SIZE = 10;
+
+    private BigQueryPdao bigQueryPdao;
+    private FireStoreDao fileDao;
+    private Dataset dataset;
+    private DatasetTable table;
+
+    @Before
+    public void setup() {
+        bigQueryPdao = mock(BigQueryPdao.class);
+        fileDao = mock(FireStoreDao.class);
+        dataset = new Dataset();
+        table = new DatasetTable()
+            .name("table")
+            .columns(Arrays.asList(
+                new Column().name("id").type("STRING"),
+                new Column().name("file").type("FILEREF")));
+    }
+
+    @Test
+    public void allValidTest() throws Exception {
+        TableResult firstPage = makePages(3, 0);
+        when(bigQueryPdao.getRefIds(eq(dataset), eq("staging"), any(Column.class), anyLong())).thenReturn(firstPage);
+        when(fileDao.validateRefIds(eq(dataset), anyList())).thenReturn(Collections.emptyList());
+
+        IngestRefIdValidator validator = new IngestRefIdValidator(bigQueryPdao, fileDao, PAGE_SIZE, 2);
+        validator.validate(dataset, table, "staging");
+        validator.check();
+
+        verify(bigQueryPdao, times(1)).getRefIds(eq(dataset), anyString(), any(Column.class), anyLong());
+        verify(fileDao, times(3)).validateRefIds(eq(dataset), anyList());
+    }
+
+    @Test
+    public void stopsAfterMaxInvalidTest() throws Exception {
+        TableResult firstPage = makePages(100, 0);
+        when(bigQueryPdao.getRefIds(eq(dataset), eq("staging"), any(Column.class), anyLong())).thenReturn(firstPage);
+        // Every id is invalid
+        when(fileDao.validateRefIds(eq(dataset), anyList())).thenAnswer(invocation -> invocation.getArgument(1));
+
+        IngestRefIdValidator validator = new IngestRefIdValidator(bigQueryPdao, fileDao, PAGE_SIZE, 2);
+        validator.validate(dataset, table, "staging");
+        try {
+            validator.check();
+            fail("Expected invalid file refs");
+        } catch (InvalidFileRefException ex) {
+            assertThat("message says ids are invalid", ex.getMessage(), containsString("Invalid file ids found"));
+            assertThat("message says validation stopped", ex.getMessage(), containsString("validation stopped"));
+            assertThat("details are capped", ex.getErrorDetails().size(),
+                equalTo(IngestRefIdValidator.MAX_ERROR_REF_IDS));
+        }
+    }
+
+    // Chain of result pages, each holding PAGE_SIZE file ids
+    private TableResult makePages(int pageCount, int pageIndex) {
+        TableResult page = mock(TableResult.class);
+        List<FieldValueList> rows = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            String fileId = "file" + (pageIndex * PAGE_SIZE + i);
+            rows.add(FieldValueList.of(Collections.singletonList(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, fileId))));
+        }
+        when(page.getValues()).thenReturn(rows);
+        boolean hasNext = pageIndex + 1 < pageCount;
+        when(page.hasNextPage()).thenReturn(hasNext);
+        if (hasNext) {
+            TableResult nextPage = makePages(pageCount, pageIndex + 1);
+            when(page.getNextPage()).thenReturn(nextPage);
+        }
+        return page;
+    }
+}
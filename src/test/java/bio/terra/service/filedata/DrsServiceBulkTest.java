@@ -0,0 +1,156 @@
+package bio.terra.service.filedata;
+
+import bio.terra.app.configuration.ApplicationConfiguration;
+import bio.terra.common.category.Unit;
+import bio.terra.model.DRSBulkObjectResult;
+import bio.terra.service.filedata.exception.DrsBulkMaxExceededException;
+import bio.terra.service.iam.AuthenticatedUserRequest;
+import bio.terra.service.iam.IamAction;
+import bio.terra.service.iam.IamResourceType;
+import bio.terra.service.iam.IamService;
+import bio.terra.service.resourcemanagement.DataLocationService;
+import bio.terra.service.resourcemanagement.google.GoogleBucketResource;
+import bio.terra.service.snapshot.Snapshot;
+import bio.terra.service.snapshot.SnapshotService;
+import bio.terra.service.snapshot.exception.SnapshotNotFoundException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(Unit.class)
+public class DrsServiceBulkTest {
+    private SnapshotService snapshotService;
+    private FileService fileService;
+    private IamService iamService;
+    private DataLocationService locationService;
+    private DrsIdService drsIdService;
+    private DrsService drsService;
+    private AuthenticatedUserRequest userReq;
+
+    private Snapshot snapshot;
+    private UUID fileId;
+    private UUID missingFileId;
+
+    @Before
+    public void setup() {
+        ApplicationConfiguration appConfig = new ApplicationConfiguration();
+        appConfig.setDnsName("datarepo.example.com");
+        appConfig.setDrsCacheSnapshotSize(10);
+        appConfig.setDrsCacheFileSize(10);
+        appConfig.setDrsCacheBucketSize(10);
+        appConfig.setDrsCacheTtlSeconds(60);
+        appConfig.setDrsBulkMaxObjects(5);
+
+        snapshotService = mock(SnapshotService.class);
+        fileService = mock(FileService.class);
+        iamService = mock(IamService.class);
+        locationService = mock(DataLocationService.class);
+        drsIdService = new DrsIdService(appConfig);
+        drsService = new DrsService(snapshotService, fileService, drsIdService, iamService, locationService,
+            new DrsCache(appConfig), appConfig);
+        userReq = new AuthenticatedUserRequest().email("reader@example.com").token(Optional.of("token"));
+
+        snapshot = new Snapshot().id(UUID.randomUUID());
+        fileId = UUID.randomUUID();
+        missingFileId = UUID.randomUUID();
+        when(snapshotService.retrieveAvailable(snapshot.getId())).thenReturn(snapshot);
+        when(snapshotService.isAvailable(snapshot.getId())).thenReturn(true);
+        when(locationService.lookupBucketMetadata("bucket")).thenReturn(new GoogleBucketResource().region("us"));
+    }
+
+    @Test
+    public void bulkLookupTest() throws Exception {
+        FSFile fsFile = new FSFile()
+            .fileId(fileId)
+            .collectionId(snapshot.getId())
+            .createdDate(Instant.now())
+            .path("/dir/file.txt")
+            .size(10L)
+            .gspath("gs://bucket/file.txt")
+            .bucketResourceId("bucket");
+        when(iamService.isAuthorized(any(), eq(IamResourceType.DATASNAPSHOT), eq(snapshot.getId().toString()),
+            eq(IamAction.READ_DATA))).thenReturn(true);
+        when(fileService.lookupSnapshotFSItems(eq(snapshot), anyList(), anyInt()))
+            .thenReturn(Arrays.asList(fsFile, null));
+
+        String objectId = objectId(snapshot.getId(), fileId);
+        String missingObjectId = objectId(snapshot.getId(), missingFileId);
+        List<DRSBulkObjectResult> results = drsService.lookupObjectsByDrsIds(userReq,
+            Arrays.asList(objectId, "not-a-drs-id", missingObjectId, objectId));
+
+        assertThat("one result per id", results.size(), equalTo(4));
+        assertThat("file is resolved", results.get(0).getObject().getId(), equalTo(objectId));
+        assertThat("no error for file", results.get(0).getError(), nullValue());
+        assertThat("bad id is rejected", results.get(1).getError().getStatusCode(), equalTo(400));
+        assertThat("missing file is not found", results.get(2).getError().getStatusCode(), equalTo(404));
+        assertThat("repeated id is resolved", results.get(3).getObject(), notNullValue());
+
+        // One authorization check and one batched read for the snapshot
+        verify(iamService, times(1)).isAuthorized(any(), any(), any(), any());
+        verify(fileService, times(1)).lookupSnapshotFSItems(
+            snapshot, Arrays.asList(fileId.toString(), missingFileId.toString()), 1);
+    }
+
+    @Test
+    public void bulkLookupUnauthorizedTest() throws Exception {
+        when(iamService.isAuthorized(any(), any(), any(), any())).thenReturn(false);
+        UUID otherSnapshotId = UUID.randomUUID();
+        when(snapshotService.retrieveAvailable(otherSnapshotId)).thenThrow(new SnapshotNotFoundException("gone"));
+
+        List<DRSBulkObjectResult> results = drsService.lookupObjectsByDrsIds(userReq, Arrays.asList(
+            objectId(snapshot.getId(), fileId),
+            objectId(otherSnapshotId, fileId)));
+
+        assertThat("unauthorized snapshot is forbidden", results.get(0).getError().getStatusCode(), equalTo(403));
+        assertThat("missing snapshot is not found", results.get(1).getError().getStatusCode(), equalTo(404));
+        verify(fileService, times(0)).lookupSnapshotFSItems(any(), anyList(), anyInt());
+    }
+
+    @Test
+    public void cachedSnapshotLockedElsewhereTest() throws Exception {
+        when(iamService.isAuthorized(any(), any(), any(), any())).thenReturn(true);
+        when(fileService.lookupSnapshotFSItems(eq(snapshot), anyList(), anyInt()))
+            .thenReturn(Collections.singletonList(null));
+        String objectId = objectId(snapshot.getId(), fileId);
+
+        drsService.lookupObjectsByDrsIds(userReq, Collections.singletonList(objectId));
+        drsService.lookupObjectsByDrsIds(userReq, Collections.singletonList(objectId));
+        verify(snapshotService, times(1)).retrieveAvailable(snapshot.getId());
+
+        // Another pod locks the snapshot: the cached snapshot is dropped on the next hit
+        when(snapshotService.isAvailable(snapshot.getId())).thenReturn(false);
+        when(snapshotService.retrieveAvailable(snapshot.getId())).thenThrow(new SnapshotNotFoundException("locked"));
+        List<DRSBulkObjectResult> results =
+            drsService.lookupObjectsByDrsIds(userReq, Collections.singletonList(objectId));
+        assertThat("locked snapshot is not found", results.get(0).getError().getStatusCode(), equalTo(404));
+    }
+
+    @Test(expected = DrsBulkMaxExceededException.class)
+    public void bulkLookupTooManyTest() {
+        drsService.lookupObjectsByDrsIds(userReq, Collections.nCopies(6, objectId(snapshot.getId(), fileId)));
+    }
+
+    private String objectId(UUID snapshotId, UUID fsObjectId) {
+        return drsIdService.toDrsObjectId(snapshotId.toString(), fsObjectId.toString());
+    }
+}
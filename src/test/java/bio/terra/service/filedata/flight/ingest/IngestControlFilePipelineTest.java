@@ -0,0 +1,111 @@
+package bio.terra.service.filedata.flight.ingest;
+
+import bio.terra.common.category.Unit;
+import bio.terra.model.BulkLoadFileModel;
+import bio.terra.service.filedata.exception.BulkLoadControlFileException;
+import bio.terra.service.load.LoadService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@Category(Unit.class)
+public class IngestControlFilePipelineTest {
+    private static final int MAX_BAD_LINES = 3;
+    private static final int BATCH_SIZE = 7;
+
+    private LoadService loadService;
+    private UUID loadId;
+
+    @Before
+    public void setup() {
+        loadService = mock(LoadService.class);
+        loadId = UUID.randomUUID();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void populateInOrderTest() throws Exception {
+        int lineCount = 100;
+        populate(makeControlFile(lineCount, -1));
+
+        ArgumentCaptor<List<BulkLoadFileModel>> captor = ArgumentCaptor.forClass(List.class);
+        verify(loadService, atLeastOnce()).populateFiles(eq(loadId), captor.capture());
+
+        List<BulkLoadFileModel> populated = new ArrayList<>();
+        for (List<BulkLoadFileModel> batch : captor.getAllValues()) {
+            assertThat("batch is not too big", batch.size() <= BATCH_SIZE, equalTo(true));
+            populated.addAll(batch);
+        }
+        assertThat("all lines populated", populated.size(), equalTo(lineCount));
+        for (int i = 0; i < lineCount; i++) {
+            assertThat("file order preserved", populated.get(i).getTargetPath(), equalTo("/target/file" + i));
+        }
+    }
+
+    @Test
+    public void badLineTest() throws Exception {
+        try {
+            populate(makeControlFile(50, 42));
+            fail("Expected bad line exception");
+        } catch (BulkLoadControlFileException ex) {
+            assertThat("one error", ex.getErrorDetails().size(), equalTo(1));
+            assertThat("right line number", ex.getErrorDetails().get(0), containsString("line 43:"));
+        }
+    }
+
+    @Test
+    public void tooManyBadLinesTest() throws Exception {
+        StringBuilder controlFile = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            controlFile.append("not json ").append(i).append('\n');
+        }
+        try {
+            populate(controlFile.toString());
+            fail("Expected bad line exception");
+        } catch (BulkLoadControlFileException ex) {
+            assertThat("errors stop after max bad lines", ex.getErrorDetails().size(), equalTo(MAX_BAD_LINES + 1));
+            assertThat("errors in line order", ex.getErrorDetails().get(0), containsString("line 1:"));
+            assertThat("errors in line order", ex.getErrorDetails().get(MAX_BAD_LINES), containsString("line 4:"));
+        }
+        verify(loadService, never()).populateFiles(any(), any());
+    }
+
+    private void populate(String controlFile) throws Exception {
+        IngestControlFilePipeline pipeline = new IngestControlFilePipeline(loadService, MAX_BAD_LINES, BATCH_SIZE);
+        try (BufferedReader reader = new BufferedReader(new StringReader(controlFile))) {
+            pipeline.populate(reader, loadId);
+        }
+    }
+
+    private String makeControlFile(int lineCount, int badLine) {
+        StringBuilder controlFile = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            if (i == badLine) {
+                controlFile.append("{\"sourcePath\": \"gs://bucket/file").append('\n');
+            } else {
+                controlFile.append("{\"sourcePath\": \"gs://bucket/file").append(i)
+                    .append("\", \"targetPath\": \"/target/file").append(i)
+                    .append("\", \"extraKey\": \"ignored\"}\n");
+            }
+        }
+        return controlFile.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package bio.terra.service.filedata.google.firestore;
+
+import bio.terra.common.category.Unit;
+import bio.terra.service.filedata.exception.FileSystemExecutionException;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.InvalidArgumentException;
+import com.google.api.gax.rpc.UnavailableException;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.grpc.Status.Code.INVALID_ARGUMENT;
+import static io.grpc.Status.Code.UNAVAILABLE;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Category(Unit.class)
+public class BatchGetDocumentsTest {
+    private FireStoreUtils fireStoreUtils;
+    private Firestore firestore;
+    private List<DocumentReference> docRefs;
+    private Map<DocumentReference, DocumentSnapshot> documents;
+    private AtomicInteger getAllCount;
+
+    @Before
+    public void setup() {
+        fireStoreUtils = new FireStoreUtils();
+        firestore = mock(Firestore.class);
+        docRefs = new ArrayList<>();
+        documents = new HashMap<>();
+        getAllCount = new AtomicInteger();
+        for (int i = 0; i < 250; i++) {
+            DocumentReference docRef = mock(DocumentReference.class);
+            docRefs.add(docRef);
+            documents.put(docRef, mock(DocumentSnapshot.class));
+        }
+    }
+
+    @Test
+    public void batchGetSuccessTest() throws Exception {
+        mockGetAll(0, false);
+        List<DocumentSnapshot> outputs = fireStoreUtils.batchGetDocuments(firestore, docRefs);
+        checkOutputs(outputs);
+        assertThat("one getAll per chunk", getAllCount.get(), equalTo(3));
+    }
+
+    @Test
+    public void batchGetRetrySuccessTest() throws Exception {
+        // The first two getAll requests fail with a retryable error and are tried again
+        mockGetAll(2, true);
+        List<DocumentSnapshot> outputs = fireStoreUtils.batchGetDocuments(firestore, docRefs);
+        checkOutputs(outputs);
+        assertThat("failed chunks are retried", getAllCount.get(), equalTo(5));
+    }
+
+    @Test(expected = FileSystemExecutionException.class)
+    public void batchGetFailureTest() throws Exception {
+        // A non-retryable error fails the whole read
+        mockGetAll(1, false);
+        fireStoreUtils.batchGetDocuments(firestore, docRefs);
+    }
+
+    // Answer getAll with the snapshots of the requested references, failing the first failCount requests
+    private void mockGetAll(int failCount, boolean retryable) {
+        when(firestore.getAll(any())).thenAnswer(invocation -> {
+            if (getAllCount.incrementAndGet() <= failCount) {
+                return failedFuture(retryable);
+            }
+            List<DocumentSnapshot> snapshots = new ArrayList<>();
+            for (Object docRef : invocation.getArguments()) {
+                snapshots.add(documents.get(docRef));
+            }
+            return ApiFutures.immediateFuture(snapshots);
+        });
+    }
+
+    private ApiFuture<List<DocumentSnapshot>> failedFuture(boolean retryable) {
+        if (retryable) {
+            return ApiFutures.immediateFailedFuture(
+                new UnavailableException("test", null, GrpcStatusCode.of(UNAVAILABLE), true));
+        }
+        return ApiFutures.immediateFailedFuture(
+            new InvalidArgumentException("test", null, GrpcStatusCode.of(INVALID_ARGUMENT), false));
+    }
+
+    private void checkOutputs(List<DocumentSnapshot> outputs) {
+        assertThat("correct output size", outputs.size(), equalTo(docRefs.size()));
+        for (int i = 0; i < docRefs.size(); i++) {
+            assertThat("output in input order", outputs.get(i), sameInstance(documents.get(docRefs.get(i))));
+        }
+    }
+}
@@ -18,6 +18,8 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -121,6 +123,8 @@ public class FireStoreDaoTest {
             assertNotNull("object found in snapshot", snapObject);
             assertThat("objectId matches", snapObject.getFileId(), equalTo(dsetObject.getFileId()));
             assertThat("path does not match", snapObject.getPath(), not(equalTo(dsetObject.getPath())));
+            assertNotNull("size copied from the file", snapObject.getSize());
+            assertNotNull("checksum copied from the file", snapObject.getChecksumCrc32c());
         }
 
         // Validate we cannot lookup dataset files in the snapshot
@@ -131,15 +135,30 @@ public class FireStoreDaoTest {
         }
 
         // Compute the size and checksums
-        FireStoreDirectoryEntry topDir = directoryDao.retrieveByPath(firestore, snapshotId, "/");
-        List<FireStoreDirectoryEntry> updateBatch = new ArrayList<>();
-        dao.computeDirectory(firestore, snapshotId, topDir, updateBatch);
-        directoryDao.batchStoreDirectoryEntry(firestore, snapshotId, updateBatch);
+        dao.computeSnapshot(firestore, snapshotId);
 
         // Check the accumulated size on the root dir
         FireStoreDirectoryEntry snapObject = directoryDao.retrieveByPath(firestore, snapshotId, "/");
         assertNotNull("root exists", snapObject);
         assertThat("Total size is correct", snapObject.getSize(), equalTo(15L));
+
+        // Check the checksums of a directory that holds only files: the checksum of the sorted,
+        // concatenated checksums of the files
+        FireStoreDirectoryEntry cdirObject =
+            directoryDao.retrieveByPath(firestore, snapshotId, "/dataset/adir/bdir/cdir");
+        assertThat("cdir size is correct", cdirObject.getSize(), equalTo(12L));
+        List<String> fileMd5s = Arrays.asList(
+            fireStoreUtils.computeMd5("/adir/bdir/cdir/C1"),
+            fireStoreUtils.computeMd5("/adir/bdir/cdir/C2"));
+        List<String> fileCrc32cs = Arrays.asList(
+            fireStoreUtils.computeCrc32c("/adir/bdir/cdir/C1"),
+            fireStoreUtils.computeCrc32c("/adir/bdir/cdir/C2"));
+        Collections.sort(fileMd5s);
+        Collections.sort(fileCrc32cs);
+        assertThat("cdir md5 is correct", cdirObject.getChecksumMd5(),
+            equalTo(fireStoreUtils.computeMd5(String.join("", fileMd5s))));
+        assertThat("cdir crc32c is correct", cdirObject.getChecksumCrc32c(),
+            equalTo(fireStoreUtils.computeCrc32c(String.join("", fileCrc32cs))));
     }
 
     private FireStoreDirectoryEntry makeFileObject(String datasetId, String fullPath, long size)
@@ -4,6 +4,7 @@ import bio.terra.common.category.Connected;
 import bio.terra.common.fixtures.StringListCompare;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.FirestoreOptions;
+import org.apache.commons.collections4.map.LRUMap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -18,6 +19,7 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -163,11 +165,156 @@ public class FireStoreDirectoryDaoTest {
         }
     }
 
+    @Test
+    // Tests createMissingDirectories and its interaction with createDirectoryEntry and deleteDirectoryEntry
+    public void createMissingDirectoriesTest() throws Exception {
+        List<FireStoreDirectoryEntry> fileObjects = new ArrayList<>();
+        fileObjects.add(makeFileObject("/bulk/A1"));
+        fileObjects.add(makeFileObject("/bulk/A2"));
+        fileObjects.add(makeFileObject("/bulk/bdir/B1"));
+        fileObjects.add(makeFileObject("/bulk/bdir/cdir/C1"));
+        fileObjects.add(makeFileObject("/bulk/ddir/D1"));
+        List<String> filePaths = fileObjects
+            .stream()
+            .map(entry -> fireStoreUtils.getFullPath(entry.getPath(), entry.getName()))
+            .collect(Collectors.toList());
+
+        // Root, bulk, bdir, cdir, and ddir are all missing
+        LRUMap<String, Boolean> existingDirectories = new LRUMap<>(100);
+        List<String> created =
+            directoryDao.createMissingDirectories(firestore, collectionId, filePaths, existingDirectories);
+        assertThat("All directories created", created.size(), equalTo(5));
+        assertThat("Root directory is returned as /", created.get(0), equalTo("/"));
+        for (String dirPath : Arrays.asList("/bulk", "/bulk/bdir", "/bulk/bdir/cdir", "/bulk/ddir")) {
+            FireStoreDirectoryEntry dirEntry = directoryDao.retrieveByPath(firestore, collectionId, dirPath);
+            assertNotNull("Directory exists: " + dirPath, dirEntry);
+            assertFalse("Is dir object", dirEntry.getIsFileRef());
+        }
+
+        // Nothing to do with the cache, or with an empty cache
+        created = directoryDao.createMissingDirectories(firestore, collectionId, filePaths, existingDirectories);
+        assertThat("Cached directories are not created", created.size(), equalTo(0));
+        created = directoryDao.createMissingDirectories(firestore, collectionId, filePaths, new LRUMap<>(100));
+        assertThat("Existing directories are not created", created.size(), equalTo(0));
+
+        // The file entries go into the directories we made
+        String bulkDirId = retrieveDirectoryObjectId("/bulk");
+        for (FireStoreDirectoryEntry fileObject : fileObjects) {
+            directoryDao.createDirectoryEntry(firestore, collectionId, fileObject);
+        }
+        assertThat("Directory was not replaced", retrieveDirectoryObjectId("/bulk"), equalTo(bulkDirId));
+        List<FireStoreDirectoryEntry> enumList = directoryDao.enumerateDirectory(firestore, collectionId, "/bulk");
+        assertThat("Correct number of objects in bulk", enumList.size(), equalTo(4));
+
+        // Deleting the files removes the directories
+        for (FireStoreDirectoryEntry fileObject : fileObjects) {
+            directoryDao.deleteDirectoryEntry(firestore, collectionId, fileObject.getFileId());
+        }
+        assertNull("Directory was deleted", directoryDao.retrieveById(firestore, collectionId, bulkDirId));
+    }
+
+    @Test
+    // Tests that deleteEmptyDirectories removes the directories left empty by files that did not load
+    public void deleteEmptyDirectoriesTest() throws Exception {
+        FireStoreDirectoryEntry loadedFile = makeFileObject("/sweep/adir/A1");
+        List<String> unloadedPaths = Arrays.asList("/sweep/adir/A2", "/sweep/bdir/cdir/C1", "/sweep/ddir/D1");
+        List<String> filePaths = new ArrayList<>(unloadedPaths);
+        filePaths.add(fireStoreUtils.getFullPath(loadedFile.getPath(), loadedFile.getName()));
+
+        List<String> createdPaths =
+            directoryDao.createMissingDirectories(firestore, collectionId, filePaths, new LRUMap<>(100));
+        directoryDao.createDirectoryEntry(firestore, collectionId, loadedFile);
+        String bdirId = retrieveDirectoryObjectId("/sweep/bdir");
+
+        // bdir is only emptied by deleting cdir; sweep and adir hold the loaded file
+        int deleted = directoryDao.deleteEmptyDirectories(firestore, collectionId, createdPaths);
+        assertThat("Empty directories deleted", deleted, equalTo(3));
+        for (String dirPath : Arrays.asList("/sweep/bdir", "/sweep/bdir/cdir", "/sweep/ddir")) {
+            assertNull("Empty directory is deleted: " + dirPath,
+                directoryDao.retrieveByPath(firestore, collectionId, dirPath));
+        }
+        assertNull("Index document is deleted", directoryDao.retrieveById(firestore, collectionId, bdirId));
+        assertNotNull("Directory with a file is kept",
+            directoryDao.retrieveByPath(firestore, collectionId, "/sweep/adir"));
+
+        deleted = directoryDao.deleteEmptyDirectories(firestore, collectionId, createdPaths);
+        assertThat("Nothing left to delete", deleted, equalTo(0));
+
+        directoryDao.deleteDirectoryEntry(firestore, collectionId, loadedFile.getFileId());
+        assertNull("Last directory was deleted with its file",
+            directoryDao.retrieveByPath(firestore, collectionId, "/sweep"));
+    }
+
+    @Test
+    // Tests lookups by id before and after backfillFileIdIndex, and with a stale index document
+    public void fileIdIndexTest() throws Exception {
+        // Write entries without their index documents, the way they were written before the index existed
+        List<FireStoreDirectoryEntry> fileObjects = new ArrayList<>();
+        fileObjects.add(makeFileObject("/indexdir/A1"));
+        fileObjects.add(makeFileObject("/indexdir/A2"));
+        directoryDao.batchUpdateDirectoryEntry(firestore, collectionId, fileObjects);
+        List<String> fileRefs = fileObjects
+            .stream()
+            .map(fireStoreObject -> fireStoreObject.getFileId())
+            .collect(Collectors.toList());
+
+        // Unindexed entries are still found
+        assertNotNull("Unindexed entry found",
+            directoryDao.retrieveById(firestore, collectionId, fileRefs.get(0)));
+        assertThat("Unindexed entries found in batch",
+            directoryDao.batchRetrieveById(firestore, collectionId, fileRefs).size(), equalTo(2));
+
+        int indexed = directoryDao.backfillFileIdIndex(firestore, collectionId);
+        assertThat("All entries indexed", indexed, equalTo(2));
+        assertThat("Indexed entries found in batch",
+            directoryDao.batchRetrieveById(firestore, collectionId, fileRefs).size(), equalTo(2));
+        assertThat("No invalid file refs",
+            directoryDao.validateRefIds(firestore, collectionId, fileRefs).size(), equalTo(0));
+
+        // Replace A1 with a new file; its old index document is now stale
+        FireStoreDirectoryEntry newA1 = makeFileObject("/indexdir/A1");
+        directoryDao.createDirectoryEntry(firestore, collectionId, newA1);
+        assertNull("Replaced entry is not found by its old id",
+            directoryDao.retrieveById(firestore, collectionId, fileRefs.get(0)));
+        FireStoreDirectoryEntry testA1 = directoryDao.retrieveById(firestore, collectionId, newA1.getFileId());
+        assertThat("New entry is found by its id", testA1.getFileId(), equalTo(newA1.getFileId()));
+        assertThat("Stale index document is not valid",
+            directoryDao.validateRefIds(firestore, collectionId, fileRefs), equalTo(fileRefs.subList(0, 1)));
+
+        directoryDao.deleteDirectoryEntriesFromCollection(firestore, collectionId);
+        assertNull("Entry was deleted", directoryDao.retrieveById(firestore, collectionId, newA1.getFileId()));
+    }
+
+    @Test
+    // Entries missing from the index are found by query, and their index documents are written
+    public void fileIdIndexRepairTest() throws Exception {
+        FireStoreDirectoryEntry single = makeFileObject("/repairdir/B1");
+        FireStoreDirectoryEntry batched = makeFileObject("/repairdir/B2");
+        directoryDao.batchUpdateDirectoryEntry(firestore, collectionId, Arrays.asList(single, batched));
+        assertFalse("Entry starts unindexed", hasIndexDocument(single.getFileId()));
+        assertFalse("Batched entry starts unindexed", hasIndexDocument(batched.getFileId()));
+
+        assertNotNull("Unindexed entry is found",
+            directoryDao.retrieveById(firestore, collectionId, single.getFileId()));
+        assertTrue("Lookup wrote the index document", hasIndexDocument(single.getFileId()));
+
+        List<String> fileRefs = Collections.singletonList(batched.getFileId());
+        assertThat("Unindexed entry is valid in batch",
+            directoryDao.validateRefIds(firestore, collectionId, fileRefs).size(), equalTo(0));
+        assertTrue("Batch lookup wrote the index document", hasIndexDocument(batched.getFileId()));
+
+        directoryDao.deleteDirectoryEntriesFromCollection(firestore, collectionId);
+    }
+
     private String retrieveDirectoryObjectId(String fullPath) throws InterruptedException {
         FireStoreDirectoryEntry entry = directoryDao.retrieveByPath(firestore, collectionId, fullPath);
         return entry.getFileId();
     }
 
+    private boolean hasIndexDocument(String fileId) throws Exception {
+        return firestore.collection(collectionId + "-fileids").document(fileId).get().get().exists();
+    }
+
     private FireStoreDirectoryEntry makeFileObject(String fullPath) {
         return new FireStoreDirectoryEntry()
             .fileId(UUID.randomUUID().toString())
@@ -0,0 +1,114 @@
+package bio.terra.service.iam;
+
+import bio.terra.common.category.Unit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@Category(Unit.class)
+public class IamDecisionCacheTest {
+    private static final String RESOURCE_ID = "resource";
+
+    private IamDecisionCache cache;
+    private AuthenticatedUserRequest userReq;
+    private AtomicInteger loadCount;
+
+    @Before
+    public void setup() {
+        cache = new IamDecisionCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        userReq = new AuthenticatedUserRequest().email("user@example.com").token(Optional.of("token"));
+        loadCount = new AtomicInteger();
+    }
+
+    @Test
+    public void cachesAllowedAndDeniedTest() throws Exception {
+        assertThat("allowed", check(userReq, IamAction.READ_DATA, true), equalTo(true));
+        assertThat("allowed from cache", check(userReq, IamAction.READ_DATA, false), equalTo(true));
+        assertThat("denied", check(userReq, IamAction.DELETE, false), equalTo(false));
+        assertThat("denied from cache", check(userReq, IamAction.DELETE, true), equalTo(false));
+        assertThat("one load per decision", loadCount.get(), equalTo(2));
+
+        AuthenticatedUserRequest otherUser =
+            new AuthenticatedUserRequest().email("other@example.com").token(Optional.of("other-token"));
+        assertThat("other user is checked", check(otherUser, IamAction.READ_DATA, false), equalTo(false));
+        assertThat("other user loaded", loadCount.get(), equalTo(3));
+    }
+
+    @Test
+    public void noTokenNotCachedTest() throws Exception {
+        AuthenticatedUserRequest noToken = new AuthenticatedUserRequest().token(Optional.empty());
+        check(noToken, IamAction.READ_DATA, true);
+        check(noToken, IamAction.READ_DATA, true);
+        assertThat("every check is loaded", loadCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void deniedNotCachedWhenTtlZeroTest() throws Exception {
+        cache = new IamDecisionCache(100, Duration.ofMinutes(1), Duration.ZERO);
+        check(userReq, IamAction.READ_DATA, false);
+        assertThat("denial is loaded again", check(userReq, IamAction.READ_DATA, true), equalTo(true));
+        assertThat("both checks loaded", loadCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void invalidateResourceTest() throws Exception {
+        check(userReq, IamAction.READ_DATA, false);
+        cache.invalidateResource(IamResourceType.DATASNAPSHOT, "other-resource");
+        assertThat("other resource invalidation keeps decision",
+            check(userReq, IamAction.READ_DATA, true), equalTo(false));
+
+        cache.invalidateResource(IamResourceType.DATASNAPSHOT, RESOURCE_ID);
+        assertThat("decision is loaded again after invalidation",
+            check(userReq, IamAction.READ_DATA, true), equalTo(true));
+        assertThat("two loads", loadCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void coalesceConcurrentChecksTest() throws Exception {
+        int threadCount = 8;
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            Future<?>[] futures = new Future<?>[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                futures[i] = pool.submit(() -> cache.isAuthorized(
+                    userReq, IamResourceType.DATASNAPSHOT, RESOURCE_ID, IamAction.READ_DATA, () -> {
+                        loadCount.incrementAndGet();
+                        loadStarted.countDown();
+                        releaseLoad.await();
+                        return true;
+                    }));
+            }
+            // Give the other threads time to queue up behind the first load
+            loadStarted.await();
+            TimeUnit.MILLISECONDS.sleep(100);
+            releaseLoad.countDown();
+            for (Future<?> future : futures) {
+                assertThat("all threads are allowed", future.get(), equalTo(true));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat("one load for all threads", loadCount.get(), equalTo(1));
+    }
+
+    private boolean check(AuthenticatedUserRequest req, IamAction action, boolean decision) throws Exception {
+        return cache.isAuthorized(req, IamResourceType.DATASNAPSHOT, RESOURCE_ID, action, () -> {
+            loadCount.incrementAndGet();
+            return decision;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package bio.terra.service.iam;
+
+import bio.terra.common.category.Unit;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(Unit.class)
+public class IamServiceTest {
+    private IamProviderInterface iamProvider;
+    private IamService iamService;
+    private AuthenticatedUserRequest userReq;
+    private UUID resourceId;
+
+    @Before
+    public void setup() {
+        iamProvider = mock(IamProviderInterface.class);
+        iamService = new IamService(iamProvider,
+            new IamDecisionCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+        userReq = new AuthenticatedUserRequest().email("user@example.com").token(Optional.of("token"));
+        resourceId = UUID.randomUUID();
+    }
+
+    @Test
+    public void datasetResourceChangesInvalidateTest() throws Exception {
+        when(iamProvider.isAuthorized(userReq, IamResourceType.DATASET, resourceId.toString(), IamAction.READ_DATA))
+            .thenReturn(false, true, false);
+
+        assertThat("denied before create", check(IamResourceType.DATASET), equalTo(false));
+        assertThat("denied from cache", check(IamResourceType.DATASET), equalTo(false));
+
+        iamService.createDatasetResource(userReq, resourceId);
+        assertThat("allowed after create", check(IamResourceType.DATASET), equalTo(true));
+
+        iamService.deleteDatasetResource(userReq, resourceId);
+        assertThat("denied after delete", check(IamResourceType.DATASET), equalTo(false));
+        verify(iamProvider, times(3))
+            .isAuthorized(userReq, IamResourceType.DATASET, resourceId.toString(), IamAction.READ_DATA);
+    }
+
+    @Test
+    public void snapshotResourceChangesInvalidateTest() throws Exception {
+        when(iamProvider.isAuthorized(
+            userReq, IamResourceType.DATASNAPSHOT, resourceId.toString(), IamAction.READ_DATA))
+            .thenReturn(false, true, false);
+
+        assertThat("denied before create", check(IamResourceType.DATASNAPSHOT), equalTo(false));
+
+        iamService.createSnapshotResource(userReq, resourceId, Collections.emptyList());
+        assertThat("allowed after create", check(IamResourceType.DATASNAPSHOT), equalTo(true));
+
+        iamService.deleteSnapshotResource(userReq, resourceId);
+        assertThat("denied after delete", check(IamResourceType.DATASNAPSHOT), equalTo(false));
+    }
+
+    private boolean check(IamResourceType resourceType) {
+        return iamService.isAuthorized(userReq, resourceType, resourceId.toString(), IamAction.READ_DATA);
+    }
+}
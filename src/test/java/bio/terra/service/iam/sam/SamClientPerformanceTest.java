@@ -0,0 +1,141 @@
+package bio.terra.service.iam.sam;
+
+import bio.terra.common.category.OnDemand;
+import bio.terra.service.configuration.ConfigEnum;
+import bio.terra.service.configuration.ConfigurationService;
+import bio.terra.service.iam.AuthenticatedUserRequest;
+import bio.terra.service.iam.IamAction;
+import bio.terra.service.iam.IamResourceType;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the latency of SamIam.isAuthorized under 200 concurrent callers against a local stub of SAM, with
+ * one shared HTTP client and with a new HTTP client for each call (how SamIam used to work). It logs p50 and
+ * p99 of each. The stub serves plain HTTP/1.1, so the TLS handshakes that pooling saves against a real SAM are
+ * not part of the numbers.
+ */
+@Category(OnDemand.class)
+public class SamClientPerformanceTest {
+    private final Logger logger = LoggerFactory.getLogger(SamClientPerformanceTest.class);
+
+    private static final int CALLER_COUNT = 200;
+    private static final int CALLS_PER_CALLER = 50;
+
+    private HttpServer stubSam;
+    private SamConfiguration samConfig;
+    private ConfigurationService configService;
+
+    @Before
+    public void setup() throws Exception {
+        stubSam = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), CALLER_COUNT);
+        stubSam.createContext("/api/resources/v1/", exchange -> {
+            byte[] body = "true".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubSam.setExecutor(Executors.newFixedThreadPool(CALLER_COUNT));
+        stubSam.start();
+
+        samConfig = new SamConfiguration();
+        samConfig.setBasePath("http://localhost:" + stubSam.getAddress().getPort());
+        samConfig.setConnectTimeoutSeconds(10);
+        samConfig.setReadTimeoutSeconds(30);
+        samConfig.setWriteTimeoutSeconds(30);
+        samConfig.setMaxIdleConnections(CALLER_COUNT);
+        samConfig.setKeepAliveSeconds(300);
+
+        configService = mock(ConfigurationService.class);
+        when(configService.<Integer>getParameterValue(ConfigEnum.SAM_RETRY_INITIAL_WAIT_SECONDS)).thenReturn(1);
+        when(configService.<Integer>getParameterValue(ConfigEnum.SAM_RETRY_MAXIMUM_WAIT_SECONDS)).thenReturn(1);
+        when(configService.<Integer>getParameterValue(ConfigEnum.SAM_OPERATION_TIMEOUT_SECONDS)).thenReturn(10);
+    }
+
+    @After
+    public void teardown() {
+        stubSam.stop(0);
+    }
+
+    @Test
+    public void isAuthorizedLatencyTest() throws Exception {
+        SamApiClientFactory sharedFactory = new SamApiClientFactory(samConfig);
+        SamIam sharedSamIam = new SamIam(samConfig, configService, sharedFactory);
+        runCallers("warm up", () -> sharedSamIam);
+        runCallers("shared client", () -> sharedSamIam);
+        logger.info(sharedFactory.getStatistics());
+
+        runCallers("client per call", () -> new SamIam(samConfig, configService, new SamApiClientFactory(samConfig)));
+    }
+
+    private interface SamIamSupplier {
+        SamIam get();
+    }
+
+    private void runCallers(String description, SamIamSupplier samIamSupplier) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(CALLER_COUNT);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int caller = 0; caller < CALLER_COUNT; caller++) {
+                AuthenticatedUserRequest userReq = new AuthenticatedUserRequest()
+                    .email("user" + caller + "@example.com")
+                    .token(Optional.of("token" + caller));
+                futures.add(pool.submit(() -> {
+                    List<Long> latencies = new ArrayList<>();
+                    for (int call = 0; call < CALLS_PER_CALLER; call++) {
+                        long callStart = System.nanoTime();
+                        boolean authorized = samIamSupplier.get().isAuthorized(userReq,
+                            IamResourceType.DATASNAPSHOT, UUID.randomUUID().toString(), IamAction.READ_DATA);
+                        latencies.add(System.nanoTime() - callStart);
+                        assertThat("stub allows everything", authorized, equalTo(true));
+                    }
+                    return latencies;
+                }));
+            }
+            List<Long> allLatencies = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                allLatencies.addAll(future.get());
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Collections.sort(allLatencies);
+            logger.info("{}: calls={} elapsedMs={} p50Ms={} p99Ms={} maxMs={}",
+                description, allLatencies.size(), elapsedMillis,
+                percentileMillis(allLatencies, 50), percentileMillis(allLatencies, 99),
+                percentileMillis(allLatencies, 100));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private double percentileMillis(List<Long> sortedNanos, int percent) {
+        int index = Math.max((int) Math.ceil(sortedNanos.size() * percent / 100.0) - 1, 0);
+        return sortedNanos.get(index) / 1_000_000.0;
+    }
+}
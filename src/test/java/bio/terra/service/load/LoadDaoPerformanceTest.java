@@ -0,0 +1,116 @@
+package bio.terra.service.load;
+
+import bio.terra.common.category.OnDemand;
+import bio.terra.model.BulkLoadFileModel;
+import bio.terra.model.BulkLoadFileState;
+import org.apache.commons.collections4.ListUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures load_file throughput against the local Postgres: COPY population and batched state updates,
+ * compared with one UPDATE per file.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@Category(OnDemand.class)
+public class LoadDaoPerformanceTest {
+    private final Logger logger = LoggerFactory.getLogger(LoadDaoPerformanceTest.class);
+
+    private static final String LOAD_TAG = "performanceLoadTag";
+    private static final String FLIGHT_ID = "performanceFlightId";
+    private static final int FILE_COUNT = 100000;
+    private static final int POPULATE_BATCH_SIZE = 10000;
+    private static final int SINGLE_UPDATE_COUNT = 5000;
+
+    @Autowired
+    private LoadDao loadDao;
+
+    private UUID loadId;
+
+    @Before
+    public void setup() throws Exception {
+        loadId = loadDao.lockLoad(LOAD_TAG, FLIGHT_ID).getId();
+        loadDao.cleanFiles(loadId);
+    }
+
+    @After
+    public void teardown() {
+        loadDao.cleanFiles(loadId);
+        loadDao.unlockLoad(LOAD_TAG, FLIGHT_ID);
+    }
+
+    @Test
+    public void loadFileThroughputTest() {
+        List<BulkLoadFileModel> loadList = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            loadList.add(new BulkLoadFileModel()
+                .sourcePath("gs://performance/source/file" + i)
+                .targetPath("/performance/target/file" + i)
+                .mimeType("application/octet-stream")
+                .description("performance test file " + i));
+        }
+
+        long start = System.nanoTime();
+        for (List<BulkLoadFileModel> batch : ListUtils.partition(loadList, POPULATE_BATCH_SIZE)) {
+            loadDao.populateFiles(loadId, batch);
+        }
+        logRate("COPY populate", FILE_COUNT, start);
+
+        List<LoadFile> loadFiles = loadDao.findLoadsByState(loadId, BulkLoadFileState.NOT_TRIED, null);
+        assertThat("all files populated", loadFiles.size(), equalTo(FILE_COUNT));
+
+        // One UPDATE per file - the way the load driver used to mark files running
+        List<LoadFile> singleFiles = loadFiles.subList(0, SINGLE_UPDATE_COUNT);
+        start = System.nanoTime();
+        for (LoadFile loadFile : singleFiles) {
+            loadDao.setLoadFileRunning(loadId, loadFile.getTargetPath(), FLIGHT_ID);
+        }
+        logRate("single-row running update", SINGLE_UPDATE_COUNT, start);
+
+        // Batched running and succeeded transitions for all of the files
+        for (LoadFile loadFile : loadFiles) {
+            loadFile.flightId(FLIGHT_ID).state(BulkLoadFileState.RUNNING);
+        }
+        start = System.nanoTime();
+        loadDao.updateLoadFiles(loadId, loadFiles);
+        logRate("batched running update", FILE_COUNT, start);
+
+        for (LoadFile loadFile : loadFiles) {
+            loadFile.flightId(null)
+                .state(BulkLoadFileState.SUCCEEDED)
+                .fileId(UUID.randomUUID().toString())
+                .checksumCrc32c("crc32c")
+                .checksumMd5("md5");
+        }
+        start = System.nanoTime();
+        loadDao.updateLoadFiles(loadId, loadFiles);
+        logRate("batched succeeded update", FILE_COUNT, start);
+
+        assertThat("all files succeeded",
+            loadDao.makeBulkLoadResult(loadId).getSucceededFiles(), equalTo(FILE_COUNT));
+    }
+
+    private void logRate(String operation, int rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1.0e9;
+        logger.info("{}: {} rows in {} seconds = {} rows/second",
+            operation, rows, String.format("%.3f", seconds), String.format("%.0f", rows / seconds));
+    }
+}
@@ -2,9 +2,13 @@ package bio.terra.service.load;
 
 import bio.terra.common.category.Unit;
 import bio.terra.model.BulkLoadFileModel;
+import bio.terra.model.BulkLoadFileResultModel;
+import bio.terra.model.BulkLoadFileState;
+import bio.terra.model.BulkLoadHistoryModel;
 import bio.terra.service.configuration.ConfigurationService;
 import bio.terra.service.filedata.FSFileInfo;
 import bio.terra.service.load.exception.LoadLockedException;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -18,11 +22,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -162,6 +171,157 @@ public class LoadDaoUnitTest {
         testLoadCandidates(candidates, 0, 0, 0);
     }
 
+    @Test
+    public void bulkUpdateTest() throws Exception {
+        UUID loadId = populateFiles(6);
+
+        List<LoadFile> loadSet = loadDao.findCandidates(loadId, 6).getCandidateFiles();
+        assertThat("all files are candidates", loadSet.size(), equalTo(6));
+
+        // Mark all running in one statement
+        for (int i = 0; i < loadSet.size(); i++) {
+            loadSet.get(i).flightId("bulkFlight" + i).state(BulkLoadFileState.RUNNING);
+        }
+        loadDao.updateLoadFiles(loadId, loadSet);
+        testLoadCandidates(loadDao.findCandidates(loadId, 6), 0, 6, 0);
+
+        // Complete some: two failures, three successes, and one still running
+        loadSet.get(0).state(BulkLoadFileState.FAILED).flightId(null).error("error0");
+        loadSet.get(1).state(BulkLoadFileState.FAILED).flightId(null).error("error1");
+        for (int i = 2; i < 5; i++) {
+            loadSet.get(i).state(BulkLoadFileState.SUCCEEDED).flightId(null).fileId("fileid" + i)
+                .checksumCrc32c("crc" + i).checksumMd5("md5" + i);
+        }
+        loadDao.updateLoadFiles(loadId, loadSet.subList(0, 5));
+        testLoadCandidates(loadDao.findCandidates(loadId, 6), 2, 1, 0);
+
+        List<BulkLoadFileResultModel> results = loadDao.makeBulkLoadFileArray(loadId);
+        for (BulkLoadFileResultModel result : results) {
+            if (StringUtils.equals(result.getTargetPath(), loadSet.get(2).getTargetPath())) {
+                assertThat("file id stored", result.getFileId(), equalTo("fileid2"));
+                assertThat("state stored", result.getState(), equalTo(BulkLoadFileState.SUCCEEDED));
+            } else if (StringUtils.equals(result.getTargetPath(), loadSet.get(1).getTargetPath())) {
+                assertThat("error stored", result.getError(), equalTo("error1"));
+            }
+        }
+    }
+
+    @Test
+    public void loadHistoryPagingTest() throws Exception {
+        int fileCount = 11;
+        int chunkSize = 4;
+        UUID loadId = populateFiles(fileCount);
+
+        // Walk the history a page at a time, the way the load history copy does
+        List<String> targetPaths = new ArrayList<>();
+        String afterTargetPath = null;
+        List<BulkLoadHistoryModel> page;
+        int pageCount = 0;
+        do {
+            page = loadDao.makeLoadHistoryArray(loadId, chunkSize, afterTargetPath);
+            for (BulkLoadHistoryModel loadHistory : page) {
+                targetPaths.add(loadHistory.getTargetPath());
+                afterTargetPath = loadHistory.getTargetPath();
+            }
+            pageCount++;
+        } while (page.size() == chunkSize);
+
+        assertThat("right number of pages", pageCount, equalTo(3));
+        assertThat("every file is returned once", new HashSet<>(targetPaths).size(), equalTo(fileCount));
+        List<String> sortedPaths = new ArrayList<>(targetPaths);
+        Collections.sort(sortedPaths);
+        assertThat("files are returned in target path order", targetPaths, equalTo(sortedPaths));
+    }
+
+    @Test
+    public void loadDirectoriesTest() throws Exception {
+        UUID loadId = populateFiles(2);
+        assertTrue("new files are unloaded", loadDao.hasUnloadedFiles(loadId));
+
+        List<String> dirPaths = Arrays.asList("/", "/a", "/a/b", "/a/c", "/a/b/d", "/e");
+        loadDao.addLoadDirectories(loadId, dirPaths);
+        loadDao.addLoadDirectories(loadId, dirPaths.subList(0, 2));
+
+        // Walk the directories a page at a time, the way the bulk load cleanup does
+        List<String> foundPaths = new ArrayList<>();
+        String afterDirPath = null;
+        List<String> page;
+        do {
+            page = loadDao.findLoadDirectories(loadId, 4, afterDirPath);
+            foundPaths.addAll(page);
+            afterDirPath = page.isEmpty() ? afterDirPath : page.get(page.size() - 1);
+        } while (page.size() == 4);
+
+        assertThat("directories are returned deepest first",
+            foundPaths, equalTo(Arrays.asList("/a/b/d", "/a/c", "/a/b", "/e", "/a", "/")));
+
+        List<LoadFile> loadSet = loadDao.findCandidates(loadId, 2).getCandidateFiles();
+        for (LoadFile loadFile : loadSet) {
+            loadFile.state(BulkLoadFileState.SUCCEEDED).fileId("fileid");
+        }
+        loadDao.updateLoadFiles(loadId, loadSet);
+        assertFalse("loaded files are not unloaded", loadDao.hasUnloadedFiles(loadId));
+
+        loadDao.cleanFiles(loadId);
+        assertTrue("directories are cleaned", loadDao.findLoadDirectories(loadId, 4, null).isEmpty());
+    }
+
+    @Test
+    public void populateSpecialCharactersTest() throws Exception {
+        Load load = loadDao.lockLoad(LoadTagsUsedByTest.LOADTAG_MY.getTag(), FlightIdsUsedByTest.FLIGHT_MY.getId());
+        loadIdsWithFilesUsedByTest.add(load.getId());
+
+        // COPY uses CSV, so make sure quotes, commas, newlines, and empty values come through intact
+        List<BulkLoadFileModel> loadList = new ArrayList<>();
+        loadList.add(new BulkLoadFileModel()
+            .sourcePath("gs://path/with,comma")
+            .targetPath("/target/\"quoted\"")
+            .description("multi\nline, \"described\"")
+            .mimeType(""));
+        loadList.add(new BulkLoadFileModel()
+            .sourcePath("gs://path/plain")
+            .targetPath("/target/plain"));
+        loadDao.populateFiles(load.getId(), loadList);
+
+        List<LoadFile> candidates = loadDao.findCandidates(load.getId(), 10).getCandidateFiles();
+        assertThat("both rows copied", candidates.size(), equalTo(2));
+        for (LoadFile candidate : candidates) {
+            if (StringUtils.equals(candidate.getSourcePath(), "gs://path/with,comma")) {
+                assertThat("quoted target", candidate.getTargetPath(), equalTo("/target/\"quoted\""));
+                assertThat("description", candidate.getDescription(), equalTo("multi\nline, \"described\""));
+                assertThat("empty mime type", candidate.getMimeType(), equalTo(""));
+            } else {
+                assertThat("plain target", candidate.getTargetPath(), equalTo("/target/plain"));
+                assertNull("null description", candidate.getDescription());
+                assertNull("null mime type", candidate.getMimeType());
+            }
+        }
+    }
+
+    @Test
+    public void completionNotificationTest() throws Exception {
+        UUID loadId = UUID.randomUUID();
+        UUID otherLoadId = UUID.randomUUID();
+
+        try (LoadCompletionListener listener = loadDao.listenForCompletions(loadId)) {
+            // Nothing sent yet
+            assertThat("no completions", listener.waitForCompletions(1).size(), equalTo(0));
+
+            loadDao.notifyLoadFileComplete(loadId, FlightIdsUsedByTest.FLIGHT_A.getId());
+            loadDao.notifyLoadFileComplete(otherLoadId, FlightIdsUsedByTest.FLIGHT_B.getId());
+            loadDao.notifyLoadFileComplete(loadId, FlightIdsUsedByTest.FLIGHT_C.getId());
+
+            // Notifications may trickle in, so gather for a few tries
+            Set<String> completions = new HashSet<>();
+            for (int i = 0; i < 5 && completions.size() < 2; i++) {
+                completions.addAll(listener.waitForCompletions(1));
+            }
+            assertThat("only completions for our load", completions.size(), equalTo(2));
+            assertTrue("flight A completed", completions.contains(FlightIdsUsedByTest.FLIGHT_A.getId()));
+            assertTrue("flight C completed", completions.contains(FlightIdsUsedByTest.FLIGHT_C.getId()));
+        }
+    }
+
     @Test
     public void serialLockTest() throws Exception {
         final String loadTag = LoadTagsUsedByTest.LOADTAG_SERIAL.getTag();
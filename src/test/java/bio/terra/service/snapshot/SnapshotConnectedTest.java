@@ -33,10 +33,12 @@ import bio.terra.service.resourcemanagement.ProfileDao;
 import bio.terra.service.resourcemanagement.google.GoogleResourceConfiguration;
 import bio.terra.service.tabulardata.google.BigQueryProject;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.bigquery.Acl;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.FieldValue;
 import com.google.cloud.bigquery.FieldValueList;
 import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.TableDefinition;
 import com.google.cloud.bigquery.TableResult;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
@@ -165,6 +167,50 @@ public class SnapshotConnectedTest {
         snapshotHappyPathTestingHelper("snapshot-fullviews-test-snapshot.json");
     }
 
+    @Test
+    public void testMaterializedSnapshot() throws Exception {
+        // a view snapshot whose ACLs on the dataset must outlive the materialized snapshot
+        SnapshotRequestModel viewRequest = makeSnapshotTestRequest(datasetSummary, "snapshot-test-snapshot.json");
+        SnapshotSummaryModel viewSummary =
+            validateSnapshotCreated(viewRequest, performCreateSnapshot(viewRequest, "_view_"));
+
+        SnapshotRequestModel snapshotRequest =
+            makeSnapshotTestRequest(datasetSummary, "snapshot-test-snapshot.json").materialized(true);
+        SnapshotSummaryModel summaryModel =
+            validateSnapshotCreated(snapshotRequest, performCreateSnapshot(snapshotRequest, "_mat_"));
+        SnapshotModel snapshotModel = getTestSnapshot(summaryModel.getId(), snapshotRequest, datasetSummary);
+        assertThat("snapshot is materialized", snapshotModel.isMaterialized(), equalTo(true));
+
+        Snapshot snapshot = snapshotDao.retrieveSnapshotByName(summaryModel.getName());
+        SnapshotDataProject dataProject = dataLocationService.getOrCreateProject(snapshot);
+        BigQuery bigQuery = BigQueryProject.get(dataProject.getGoogleProjectId()).getBigQuery();
+        TableModel tableModel = snapshotModel.getTables()
+            .stream()
+            .filter(t -> t.getName().equals("thetable"))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("thetable is in the snapshot"));
+        com.google.cloud.bigquery.Table bqTable = bigQuery.getTable(summaryModel.getName(), "thetable");
+        assertThat("snapshot table is a physical table",
+            bqTable.getDefinition().getType(), equalTo(TableDefinition.Type.TABLE));
+        assertThat("row count comes from the table metadata",
+            tableModel.getRowCount().longValue(), equalTo(bqTable.getNumRows().longValue()));
+        assertThat("row count matches the root values", tableModel.getRowCount(), equalTo(3));
+
+        // the materialized snapshot adds no view ACLs to the dataset, and deleting it leaves the others alone
+        String datasetBqName = PDAO_PREFIX + datasetSummary.getName();
+        BigQuery datasetBigQuery = TestUtils.bigQueryProjectForDatasetName(
+            datasetDao, dataLocationService, datasetSummary.getName()).getBigQuery();
+        assertThat("no view ACLs for the materialized snapshot",
+            countViewAcls(datasetBigQuery, datasetBqName, summaryModel.getName()), equalTo(0));
+        int viewAcls = countViewAcls(datasetBigQuery, datasetBqName, viewSummary.getName());
+        assertThat("view snapshot has view ACLs", viewAcls > 0, equalTo(true));
+
+        connectedOperations.deleteTestSnapshot(summaryModel.getId());
+        connectedOperations.getSnapshotExpectError(summaryModel.getId(), HttpStatus.NOT_FOUND);
+        assertThat("view snapshot keeps its view ACLs",
+            countViewAcls(datasetBigQuery, datasetBqName, viewSummary.getName()), equalTo(viewAcls));
+    }
+
     @Test
     public void testMinimal() throws Exception {
         DatasetSummaryModel datasetMinimalSummary = setupMinimalDataset();
@@ -784,6 +830,18 @@ public class SnapshotConnectedTest {
         return snapshotModel;
     }
 
+    // Count the authorized view ACLs that a dataset grants to the views of a snapshot
+    private int countViewAcls(BigQuery bigQuery, String datasetBqName, String snapshotName) {
+        int count = 0;
+        for (Acl acl : bigQuery.getDataset(datasetBqName).getAcl()) {
+            if (acl.getEntity().getType() == Acl.Entity.Type.VIEW &&
+                ((Acl.View) acl.getEntity()).getId().getDataset().equals(snapshotName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private static final String queryForCountTemplate =
         "SELECT COUNT(*) FROM `<project>.<snapshot>.<table>`";
 
@@ -2,6 +2,9 @@ package bio.terra.service.snapshot;
 
 import bio.terra.common.Relationship;
 import bio.terra.common.category.Unit;
+import bio.terra.service.dataset.AssetDao;
+import bio.terra.service.dataset.AssetRelationship;
+import bio.terra.service.dataset.AssetSpecification;
 import bio.terra.service.dataset.DatasetDao;
 import bio.terra.common.fixtures.JsonLoader;
 import bio.terra.common.fixtures.ProfileFixtures;
@@ -26,12 +29,16 @@ import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 @RunWith(SpringRunner.class)
@@ -49,6 +56,9 @@ public class SnapshotDaoTest {
     @Autowired
     private ProfileDao profileDao;
 
+    @Autowired
+    private AssetDao assetDao;
+
     @Autowired
     private SnapshotService snapshotService;
 
@@ -196,6 +206,61 @@ public class SnapshotDaoTest {
             equalTo(snapshotTable.getId()));
     }
 
+    @Test
+    public void metadataVersionTest() throws Exception {
+        snapshotRequest.name(snapshotRequest.getName() + UUID.randomUUID().toString());
+        String flightId = "metadataVersionTest_flightId";
+        Snapshot snapshot = snapshotService.makeSnapshotFromSnapshotRequest(snapshotRequest);
+        snapshotId = snapshotDao.createAndLock(snapshot, flightId);
+        snapshotDao.unlock(snapshotId, flightId);
+
+        // Each retrieve gets its own snapshot; the sources point back at it
+        Snapshot first = snapshotDao.retrieveSnapshot(snapshotId);
+        Snapshot second = snapshotDao.retrieveSnapshot(snapshotId);
+        assertThat("each retrieve builds a new snapshot", first, not(sameInstance(second)));
+        assertThat("source points back to its own snapshot",
+            second.getSnapshotSources().get(0).getSnapshot(), sameInstance(second));
+
+        // Row counts bump the snapshot version
+        Map<String, Long> rowCounts = new HashMap<>();
+        first.getTables().forEach(table -> rowCounts.put(table.getName(), 5L));
+        snapshotDao.updateSnapshotTableRowCounts(first, rowCounts);
+        for (SnapshotTable table : snapshotDao.retrieveSnapshot(snapshotId).getTables()) {
+            assertThat("retrieve sees the new row count", table.getRowCount(), equalTo(5L));
+        }
+
+        // Asset create and delete bump the dataset version, which is part of the snapshot version
+        long datasetVersion = datasetDao.retrieveSummaryById(datasetId).getMetadataVersion();
+        AssetSpecification asset = dataset.getAssetSpecifications().get(0);
+        List<AssetRelationship> assetRelationships = new ArrayList<>();
+        asset.getAssetRelationships().forEach(assetRelationship -> assetRelationships.add(
+            new AssetRelationship().datasetRelationship(assetRelationship.getDatasetRelationship())));
+        AssetSpecification newAsset = new AssetSpecification()
+            .name("newasset")
+            .rootTable(asset.getRootTable())
+            .rootColumn(asset.getRootColumn())
+            .assetTables(asset.getAssetTables())
+            .assetRelationships(assetRelationships);
+        UUID newAssetId = assetDao.create(newAsset, datasetId);
+        assertThat("asset create bumps the dataset version",
+            datasetDao.retrieveSummaryById(datasetId).getMetadataVersion(), greaterThan(datasetVersion));
+        assertThat("dataset retrieve sees the new asset",
+            datasetDao.retrieve(datasetId).getAssetSpecifications().size(), equalTo(2));
+        assertThat("snapshot retrieve sees the new asset",
+            snapshotDao.retrieveSnapshot(snapshotId).getSnapshotSources().get(0).getDataset()
+                .getAssetSpecifications().size(), equalTo(2));
+
+        datasetVersion = datasetDao.retrieveSummaryById(datasetId).getMetadataVersion();
+        assetDao.delete(newAssetId);
+        assertThat("asset delete bumps the dataset version",
+            datasetDao.retrieveSummaryById(datasetId).getMetadataVersion(), greaterThan(datasetVersion));
+        assertThat("dataset retrieve sees the asset is gone",
+            datasetDao.retrieve(datasetId).getAssetSpecifications().size(), equalTo(1));
+        assertThat("snapshot retrieve sees the asset is gone",
+            snapshotDao.retrieveSnapshot(snapshotId).getSnapshotSources().get(0).getDataset()
+                .getAssetSpecifications().size(), equalTo(1));
+    }
+
     @Test
     public void snapshotEnumerateTest() throws Exception {
         List<UUID> snapshotIds = new ArrayList<>();
@@ -0,0 +1,140 @@
+package bio.terra.service.tabulardata.google;
+
+import bio.terra.common.category.Unit;
+import bio.terra.common.exception.PdaoException;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.JobStatistics;
+import com.google.cloud.bigquery.JobStatus;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Category(Unit.class)
+public class BigQueryJobExecutorTest {
+    private BigQuery bigQuery;
+    private JobId jobId;
+    private Job runningJob;
+
+    @Before
+    public void setup() {
+        bigQuery = mock(BigQuery.class);
+        jobId = JobId.of("test-job");
+        runningJob = makeJob(JobStatus.State.RUNNING, null);
+        when(bigQuery.create(any(JobInfo.class))).thenReturn(runningJob);
+    }
+
+    @Test
+    public void completedJobTest() throws Exception {
+        Job doneJob = makeJob(JobStatus.State.DONE, null);
+        JobStatistics.QueryStatistics statistics = mock(JobStatistics.QueryStatistics.class);
+        when(statistics.getTotalBytesProcessed()).thenReturn(1000L);
+        when(statistics.getTotalSlotMs()).thenReturn(20L);
+        when(doneJob.getStatistics()).thenReturn(statistics);
+        when(bigQuery.getJob(jobId)).thenReturn(runningJob, doneJob);
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ofMinutes(1));
+        CompletableFuture<Job> future = executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+        assertThat("done job is returned", BigQueryJobExecutor.waitFor(future), sameInstance(doneJob));
+        assertThat("job succeeded", executor.getSucceededCount(), equalTo(1L));
+        assertThat("no job running", executor.getRunningCount(), equalTo(0));
+        assertThat("bytes processed recorded", executor.getBytesProcessed(), equalTo(1000L));
+        assertThat("slot ms recorded", executor.getSlotMillis(), equalTo(20L));
+    }
+
+    @Test(expected = PdaoException.class)
+    public void failedJobTest() throws Exception {
+        Job failedJob = makeJob(JobStatus.State.DONE, new BigQueryError("invalidQuery", "here", "bad query"));
+        when(bigQuery.getJob(jobId)).thenReturn(failedJob);
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ofMinutes(1));
+        CompletableFuture<Job> future = executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+        assertThat("failed job is returned", BigQueryJobExecutor.waitForCompletion(future), sameInstance(failedJob));
+        assertThat("job failed", executor.getFailedCount(), equalTo(1L));
+        BigQueryJobExecutor.waitFor(future);
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        when(bigQuery.getJob(jobId)).thenReturn(runningJob);
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ZERO);
+        CompletableFuture<Job> future = executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+        try {
+            BigQueryJobExecutor.waitForCompletion(future);
+            throw new AssertionError("expected timeout");
+        } catch (PdaoException ex) {
+            verify(bigQuery).cancel(jobId);
+            assertThat("job counted as failed", executor.getFailedCount(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void transientStatusFailureTest() throws Exception {
+        // A failed status call is retried; the job completes once the status can be read again
+        Job doneJob = makeJob(JobStatus.State.DONE, null);
+        when(bigQuery.getJob(jobId))
+            .thenThrow(new BigQueryException(503, "Service Unavailable"))
+            .thenReturn(runningJob, doneJob);
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ofMinutes(1));
+        CompletableFuture<Job> future = executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+        assertThat("done job is returned", BigQueryJobExecutor.waitFor(future), sameInstance(doneJob));
+        assertThat("job succeeded", executor.getSucceededCount(), equalTo(1L));
+    }
+
+    @Test(expected = PdaoException.class)
+    public void persistentStatusFailureTest() throws Exception {
+        when(bigQuery.getJob(jobId)).thenThrow(new BigQueryException(503, "Service Unavailable"));
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ofMinutes(1));
+        CompletableFuture<Job> future = executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+        BigQueryJobExecutor.waitForCompletion(future);
+    }
+
+    @Test
+    public void duplicateJobIdTest() throws Exception {
+        // A job submitted again with the same id is not run twice; the existing job is tracked
+        Job doneJob = makeJob(JobStatus.State.DONE, null);
+        when(bigQuery.create(any(JobInfo.class))).thenThrow(new BigQueryException(409, "Already Exists"));
+        when(bigQuery.getJob(jobId)).thenReturn(doneJob);
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ofMinutes(1));
+        CompletableFuture<Job> future = executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+        assertThat("existing job is returned", BigQueryJobExecutor.waitFor(future), sameInstance(doneJob));
+    }
+
+    @Test(expected = PdaoException.class)
+    public void submitFailureTest() throws Exception {
+        when(bigQuery.create(any(JobInfo.class))).thenThrow(new BigQueryException(400, "Bad Request"));
+
+        BigQueryJobExecutor executor = new BigQueryJobExecutor(bigQuery, "test", 2, 0, Duration.ofMinutes(1));
+        executor.submit(JobInfo.of(jobId, QueryJobConfiguration.of("SELECT 1")));
+    }
+
+    private Job makeJob(JobStatus.State state, BigQueryError error) {
+        JobStatus status = mock(JobStatus.class);
+        when(status.getState()).thenReturn(state);
+        when(status.getError()).thenReturn(error);
+        Job job = mock(Job.class);
+        when(job.getStatus()).thenReturn(status);
+        when(job.getJobId()).thenReturn(jobId);
+        return job;
+    }
+}
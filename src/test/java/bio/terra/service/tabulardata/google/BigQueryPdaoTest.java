@@ -24,6 +24,8 @@ import bio.terra.service.iam.IamProviderInterface;
 import bio.terra.service.resourcemanagement.DataLocationService;
 import bio.terra.service.resourcemanagement.google.GoogleResourceConfiguration;
 import bio.terra.service.tabulardata.exception.BadExternalFileException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.QueryJobConfiguration;
@@ -53,19 +55,19 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.stringtemplate.v4.ST;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
-import static bio.terra.common.PdaoConstant.PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX;
 import static bio.terra.common.PdaoConstant.PDAO_LOAD_HISTORY_TABLE;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
-import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
 @RunWith(SpringRunner.class)
@@ -162,33 +164,27 @@ public class BigQueryPdaoTest {
     }
 
 
-    private String insertExample = "INSERT INTO `broad-jade-dev.datarepo_hca_ebi.datarepo_load_history_staging_x` " +
-        "(load_tag, load_time, source_name, target_path, state, file_id, checksum_crc32c, checksum_md5, error) " +
-        "VALUES ('ebi_2020_08_15-0', '2020-08-16T01:27:54.733370Z', 'gs://broad-dsp-storage/blahblah.fastq.gz', " +
-        "'/target/path', 'failed', '', '', '', \"\"\"bio.terra.common.exception.PdaoSourceFileNotFoundException: " +
-        "Source file not found: 'gs://broad-dsp-storage/blahblah.fastq.gz'\"\"\")";
-
     @Test
-    public void sanitizeErrorMsgTest() {
-        List<BulkLoadHistoryModel> loadHistoryArray =  new ArrayList<>();
+    public void sanitizeErrorMsgTest() throws Exception {
         BulkLoadHistoryModel loadHistoryModel = new BulkLoadHistoryModel();
         loadHistoryModel.setSourcePath("gs://broad-dsp-storage/blahblah.fastq.gz");
         loadHistoryModel.setTargetPath("/target/path");
         loadHistoryModel.setState(BulkLoadFileState.FAILED);
-        loadHistoryModel.setError("bio.terra.common.exception.PdaoSourceFileNotFoundException: " +
-            "Source file not found: 'gs://broad-dsp-storage/blahblah.fastq.gz'");
-        loadHistoryArray.add(loadHistoryModel);
-
-        ST sqlTemplate = new ST(bigQueryPdao.insertLoadHistoryToStagingTableTemplate);
-        sqlTemplate.add("project", "broad-jade-dev");
-        sqlTemplate.add("dataset", "datarepo_hca_ebi");
-        sqlTemplate.add("stagingTable", PDAO_LOAD_HISTORY_STAGING_TABLE_PREFIX + "x");
-
-        sqlTemplate.add("load_history_array", loadHistoryArray);
-        sqlTemplate.add("load_tag", "ebi_2020_08_15-0");
-        sqlTemplate.add("load_time", "2020-08-16T01:27:54.733370Z");
-
-        assertEquals(insertExample, sqlTemplate.render());
+        String error = "bio.terra.common.exception.PdaoSourceFileNotFoundException: " +
+            "Source file not found: 'gs://broad-dsp-storage/blahblah.fastq.gz' \"quoted\"\nsecond line";
+        loadHistoryModel.setError(error);
+
+        String row = BigQueryPdao.loadHistoryRow(
+            "ebi_2020_08_15-0", Instant.parse("2020-08-16T01:27:54.733370Z"), loadHistoryModel);
+        assertThat("row is one line of newline-delimited JSON", row.contains("\n"), equalTo(false));
+
+        Map<String, String> values = new ObjectMapper().readValue(row, new TypeReference<Map<String, String>>() { });
+        assertThat("load tag", values.get("load_tag"), equalTo("ebi_2020_08_15-0"));
+        assertThat("load time", values.get("load_time"), equalTo("2020-08-16 01:27:54.733370 UTC"));
+        assertThat("source name", values.get("source_name"), equalTo("gs://broad-dsp-storage/blahblah.fastq.gz"));
+        assertThat("state", values.get("state"), equalTo("failed"));
+        assertThat("null file id is empty", values.get("file_id"), equalTo(""));
+        assertThat("error is intact", values.get("error"), equalTo(error));
     }
 
     @Test
@@ -0,0 +1,58 @@
+package bio.terra.service.tabulardata.google;
+
+import com.google.cloud.bigquery.Clustering;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import com.google.cloud.bigquery.TableId;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * A BigQuery dataset with a random name for the on-demand BigQuery performance tests to build their tables
+ * in. Create it in the test setup and delete it in the teardown.
+ */
+public class BigQueryScratchDataset {
+    private final BigQueryProject bigQueryProject;
+    private final String datasetName;
+
+    public BigQueryScratchDataset(String projectId, String namePrefix, String description) {
+        this.bigQueryProject = BigQueryProject.get(projectId);
+        this.datasetName = namePrefix + StringUtils.remove(UUID.randomUUID().toString(), '-');
+        bigQueryProject.createDataset(datasetName, description);
+    }
+
+    public void delete() {
+        bigQueryProject.deleteDataset(datasetName);
+    }
+
+    public BigQueryProject getBigQueryProject() {
+        return bigQueryProject;
+    }
+
+    public String getProjectId() {
+        return bigQueryProject.getProjectId();
+    }
+
+    public String getDatasetName() {
+        return datasetName;
+    }
+
+    // Fully qualified and quoted, for use in SQL
+    public String tableRef(String tableName) {
+        return "`" + getProjectId() + "." + datasetName + "." + tableName + "`";
+    }
+
+    public void createTableFromQuery(String tableName, String sql) throws Exception {
+        createTableFromQuery(tableName, sql, null);
+    }
+
+    // clustering may be null for an unclustered table
+    public void createTableFromQuery(String tableName, String sql, Clustering clustering) throws Exception {
+        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sql)
+            .setDestinationTable(TableId.of(datasetName, tableName))
+            .setClustering(clustering)
+            .build();
+        BigQueryJobExecutor.waitFor(bigQueryProject.submitJob(JobInfo.of(queryConfig)));
+    }
+}
@@ -0,0 +1,118 @@
+package bio.terra.service.tabulardata.google;
+
+import bio.terra.common.category.OnDemand;
+import bio.terra.service.resourcemanagement.google.GoogleResourceConfiguration;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.stringtemplate.v4.ST;
+
+import static bio.terra.common.PdaoConstant.PDAO_ROW_ID_COLUMN;
+
+/**
+ * Compares the cost of the two ways of giving ingested rows their row ids: updating the staging table and
+ * then inserting it, or generating the row ids in the insert. It logs bytes processed, slot milliseconds, and
+ * elapsed time of each. It creates several gigabytes of data in the core project.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"google", "connectedtest"})
+@Category(OnDemand.class)
+public class IngestRowIdPerformanceTest {
+    private final Logger logger = LoggerFactory.getLogger(IngestRowIdPerformanceTest.class);
+
+    private static final long ROW_COUNT = 20000000;
+
+    // A staging table as left by the load job: no row ids yet
+    private static final String stagingTableTemplate =
+        "SELECT CAST(NULL AS STRING) AS " + PDAO_ROW_ID_COLUMN + ", x AS value, REPEAT('x', 200) AS padding " +
+            "FROM UNNEST(GENERATE_ARRAY(1, <rowCount>)) AS x";
+
+    private static final String targetTableTemplate =
+        "SELECT * FROM <stagingTable> LIMIT 0";
+
+    private static final String updateRowIdsTemplate =
+        "UPDATE <stagingTable> SET " + PDAO_ROW_ID_COLUMN + " = GENERATE_UUID() " +
+            "WHERE " + PDAO_ROW_ID_COLUMN + " IS NULL";
+
+    private static final String insertTemplate =
+        "INSERT INTO <targetTable> (" + PDAO_ROW_ID_COLUMN + ", value, padding) " +
+            "SELECT " + PDAO_ROW_ID_COLUMN + ", value, padding FROM <stagingTable>";
+
+    private static final String insertWithRowIdsTemplate =
+        "INSERT INTO <targetTable> (" + PDAO_ROW_ID_COLUMN + ", value, padding) " +
+            "SELECT GENERATE_UUID(), value, padding FROM <stagingTable>";
+
+    @Autowired
+    private GoogleResourceConfiguration googleResourceConfiguration;
+
+    private BigQueryScratchDataset scratchDataset;
+
+    @Before
+    public void setup() {
+        scratchDataset = new BigQueryScratchDataset(
+            googleResourceConfiguration.getProjectId(), "ingestrowids", "ingest row id performance test");
+    }
+
+    @After
+    public void teardown() {
+        scratchDataset.delete();
+    }
+
+    @Test
+    public void rowIdAssignmentCostTest() throws Exception {
+        String stagingSql = new ST(stagingTableTemplate).add("rowCount", ROW_COUNT).render();
+        scratchDataset.createTableFromQuery("staging_update", stagingSql);
+        scratchDataset.createTableFromQuery("staging_insert", stagingSql);
+        scratchDataset.createTableFromQuery("target_update",
+            new ST(targetTableTemplate).add("stagingTable", scratchDataset.tableRef("staging_update")).render());
+        scratchDataset.createTableFromQuery("target_insert",
+            new ST(targetTableTemplate).add("stagingTable", scratchDataset.tableRef("staging_insert")).render());
+
+        JobStatistics.QueryStatistics update = runQuery("update staging row ids", new ST(updateRowIdsTemplate)
+            .add("stagingTable", scratchDataset.tableRef("staging_update"))
+            .render());
+        JobStatistics.QueryStatistics insert = runQuery("insert staged row ids", new ST(insertTemplate)
+            .add("targetTable", scratchDataset.tableRef("target_update"))
+            .add("stagingTable", scratchDataset.tableRef("staging_update"))
+            .render());
+        JobStatistics.QueryStatistics insertWithRowIds = runQuery("insert generating row ids",
+            new ST(insertWithRowIdsTemplate)
+                .add("targetTable", scratchDataset.tableRef("target_insert"))
+                .add("stagingTable", scratchDataset.tableRef("staging_insert"))
+                .render());
+
+        logger.info("Update then insert: bytesProcessed={} slotMs={} elapsedMs={}",
+            update.getTotalBytesProcessed() + insert.getTotalBytesProcessed(),
+            update.getTotalSlotMs() + insert.getTotalSlotMs(),
+            elapsedMillis(update) + elapsedMillis(insert));
+        logger.info("Insert generating row ids: bytesProcessed={} slotMs={} elapsedMs={}",
+            insertWithRowIds.getTotalBytesProcessed(), insertWithRowIds.getTotalSlotMs(),
+            elapsedMillis(insertWithRowIds));
+    }
+
+    private JobStatistics.QueryStatistics runQuery(String description, String sql) throws Exception {
+        Job job = BigQueryJobExecutor.waitFor(scratchDataset.getBigQueryProject().submitQuery(sql));
+        JobStatistics.QueryStatistics statistics = job.getStatistics();
+        logger.info("{}: rows={} bytesProcessed={} slotMs={} elapsedMs={}",
+            description, statistics.getNumDmlAffectedRows(), statistics.getTotalBytesProcessed(),
+            statistics.getTotalSlotMs(), elapsedMillis(statistics));
+        return statistics;
+    }
+
+    private long elapsedMillis(JobStatistics statistics) {
+        return statistics.getEndTime() - statistics.getStartTime();
+    }
+}
@@ -0,0 +1,130 @@
+package bio.terra.service.tabulardata.google;
+
+import bio.terra.common.category.OnDemand;
+import bio.terra.service.resourcemanagement.google.GoogleResourceConfiguration;
+import com.google.cloud.bigquery.Clustering;
+import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobInfo;
+import com.google.cloud.bigquery.JobStatistics;
+import com.google.cloud.bigquery.QueryJobConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.stringtemplate.v4.ST;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static bio.terra.common.PdaoConstant.PDAO_ROW_ID_COLUMN;
+import static bio.terra.common.PdaoConstant.PDAO_TABLE_ID_COLUMN;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the bytes BigQuery scans to read one snapshot view, with and without clustering of the row id
+ * table and the raw table. The view query has the same shape as the snapshot views built by BigQueryPdao.
+ * It creates a few gigabytes of data in the core project.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"google", "connectedtest"})
+@Category(OnDemand.class)
+public class SnapshotViewScanPerformanceTest {
+    private final Logger logger = LoggerFactory.getLogger(SnapshotViewScanPerformanceTest.class);
+
+    private static final long ROW_COUNT = 20000000;
+    private static final int TABLE_COUNT = 20;
+
+    private static final String rawTableTemplate =
+        "SELECT GENERATE_UUID() AS " + PDAO_ROW_ID_COLUMN + ", x AS value, REPEAT('x', 100) AS padding " +
+            "FROM UNNEST(GENERATE_ARRAY(1, <rowCount>)) AS x";
+
+    // Spread the raw rows over the tables of a pretend snapshot
+    private static final String rowIdTableTemplate =
+        "SELECT CONCAT('table', CAST(MOD(value, <tableCount>) AS STRING)) AS " + PDAO_TABLE_ID_COLUMN + ", " +
+            PDAO_ROW_ID_COLUMN + " FROM `<project>.<dataset>.<rawTable>`";
+
+    private static final String viewTemplate =
+        "SELECT S." + PDAO_ROW_ID_COLUMN + ", S.value, S.padding " +
+            "FROM `<project>.<dataset>.<rawTable>` S, `<project>.<dataset>.<rowIdTable>` R " +
+            "WHERE S." + PDAO_ROW_ID_COLUMN + " = R." + PDAO_ROW_ID_COLUMN + " AND " +
+            "R." + PDAO_TABLE_ID_COLUMN + " = 'table0'";
+
+    @Autowired
+    private GoogleResourceConfiguration googleResourceConfiguration;
+
+    private BigQueryScratchDataset scratchDataset;
+
+    @Before
+    public void setup() {
+        scratchDataset = new BigQueryScratchDataset(
+            googleResourceConfiguration.getProjectId(), "viewscan", "snapshot view scan performance test");
+    }
+
+    @After
+    public void teardown() {
+        scratchDataset.delete();
+    }
+
+    @Test
+    public void viewBytesScannedTest() throws Exception {
+        Clustering rowIdClustering = Clustering.newBuilder()
+            .setFields(Collections.singletonList(PDAO_ROW_ID_COLUMN))
+            .build();
+        Clustering rowIdTableClustering = Clustering.newBuilder()
+            .setFields(Arrays.asList(PDAO_TABLE_ID_COLUMN, PDAO_ROW_ID_COLUMN))
+            .build();
+
+        String rawSql = new ST(rawTableTemplate).add("rowCount", ROW_COUNT).render();
+        scratchDataset.createTableFromQuery("raw", rawSql);
+        scratchDataset.createTableFromQuery(
+            "raw_clustered", "SELECT * FROM " + scratchDataset.tableRef("raw"), rowIdClustering);
+        scratchDataset.createTableFromQuery("row_ids", rowIdTableSql("raw"));
+        scratchDataset.createTableFromQuery("row_ids_clustered", rowIdTableSql("raw"), rowIdTableClustering);
+
+        long baseline = viewBytesProcessed("unclustered", "raw", "row_ids");
+        long rowIdsClustered = viewBytesProcessed("clustered row id table", "raw", "row_ids_clustered");
+        long allClustered = viewBytesProcessed("clustered row id and raw tables", "raw_clustered", "row_ids_clustered");
+        logger.info("Bytes scanned relative to unclustered: row id table clustered={}%, both clustered={}%",
+            (rowIdsClustered * 100) / baseline, (allClustered * 100) / baseline);
+    }
+
+    private String rowIdTableSql(String rawTable) {
+        return new ST(rowIdTableTemplate)
+            .add("tableCount", TABLE_COUNT)
+            .add("project", scratchDataset.getProjectId())
+            .add("dataset", scratchDataset.getDatasetName())
+            .add("rawTable", rawTable)
+            .render();
+    }
+
+    private long viewBytesProcessed(String description, String rawTable, String rowIdTable) throws Exception {
+        String sql = new ST(viewTemplate)
+            .add("project", scratchDataset.getProjectId())
+            .add("dataset", scratchDataset.getDatasetName())
+            .add("rawTable", rawTable)
+            .add("rowIdTable", rowIdTable)
+            .render();
+        QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(sql)
+            .setUseQueryCache(false)
+            .build();
+        Job job = BigQueryJobExecutor.waitFor(
+            scratchDataset.getBigQueryProject().submitJob(JobInfo.of(queryConfig)));
+        JobStatistics.QueryStatistics statistics = job.getStatistics();
+        assertThat("view returns one table's rows",
+            job.getQueryResults().getTotalRows(), equalTo(ROW_COUNT / TABLE_COUNT));
+        logger.info("{}: bytesProcessed={} slotMs={}",
+            description, statistics.getTotalBytesProcessed(), statistics.getTotalSlotMs());
+        return statistics.getTotalBytesProcessed();
+    }
+}
@@ -0,0 +1,110 @@
+package bio.terra.service.tabulardata.google;
+
+import bio.terra.common.Column;
+import bio.terra.common.category.Unit;
+import bio.terra.service.dataset.DatasetTable;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+@Category(Unit.class)
+public class WalkRelationshipTest {
+    private final DatasetTable tableA = makeTable("a");
+    private final DatasetTable tableB = makeTable("b");
+    private final DatasetTable tableC = makeTable("c");
+    private final DatasetTable tableD = makeTable("d");
+    private final DatasetTable tableE = makeTable("e");
+
+    @Test
+    public void planWalkLevelsTest() {
+        // a -> b, c -> a, b -> d, c -> d, and e is not connected to a
+        WalkRelationship ab = makeRelationship(tableA, tableB);
+        WalkRelationship ca = makeRelationship(tableC, tableA);
+        WalkRelationship bd = makeRelationship(tableB, tableD);
+        WalkRelationship cd = makeRelationship(tableC, tableD);
+        WalkRelationship eFree = makeRelationship(tableE, tableE);
+
+        List<List<WalkRelationship>> levels = WalkRelationship.planWalkLevels(
+            Arrays.asList(bd, cd, ab, ca, eFree), tableA.getId().toString());
+
+        assertThat("two levels", levels.size(), equalTo(2));
+        assertThat("first level leaves the root", levels.get(0), equalTo(Arrays.asList(ab, ca)));
+        assertThat("reverse direction is walked", ca.getToTableName(), equalTo("c"));
+        assertThat("second level leaves b and c", levels.get(1), equalTo(Arrays.asList(bd, cd)));
+        assertThat("d is reached twice", cd.getToTableName(), equalTo("d"));
+        assertThat("unconnected relationship is not walked", eFree.isVisited(), equalTo(false));
+    }
+
+    @Test
+    public void planWalkLevelsWaitsForSourceRowsTest() {
+        // a -> b, a -> c, b -> c, c -> d: c -> d must see the rows that b -> c adds to c
+        WalkRelationship ab = makeRelationship(tableA, tableB);
+        WalkRelationship ac = makeRelationship(tableA, tableC);
+        WalkRelationship bc = makeRelationship(tableB, tableC);
+        WalkRelationship cd = makeRelationship(tableC, tableD);
+
+        List<List<WalkRelationship>> levels = WalkRelationship.planWalkLevels(
+            Arrays.asList(ab, ac, bc, cd), tableA.getId().toString());
+
+        assertThat("three levels", levels.size(), equalTo(3));
+        assertThat("first level leaves the root", levels.get(0), equalTo(Arrays.asList(ab, ac)));
+        assertThat("second level fills in c", levels.get(1), equalTo(Collections.singletonList(bc)));
+        assertThat("third level leaves c", levels.get(2), equalTo(Collections.singletonList(cd)));
+    }
+
+    @Test
+    public void planWalkLevelsChainTest() {
+        // a -> b, a -> c, a -> d, then b -> c -> d -> e: each relationship waits for the one that fills its table
+        WalkRelationship ab = makeRelationship(tableA, tableB);
+        WalkRelationship ac = makeRelationship(tableA, tableC);
+        WalkRelationship ad = makeRelationship(tableA, tableD);
+        WalkRelationship bc = makeRelationship(tableB, tableC);
+        WalkRelationship cd = makeRelationship(tableC, tableD);
+        WalkRelationship de = makeRelationship(tableD, tableE);
+
+        List<List<WalkRelationship>> levels = WalkRelationship.planWalkLevels(
+            Arrays.asList(de, cd, bc, ad, ac, ab), tableA.getId().toString());
+
+        assertThat("four levels", levels.size(), equalTo(4));
+        assertThat("first level leaves the root", levels.get(0), equalTo(Arrays.asList(ad, ac, ab)));
+        assertThat("second level fills in c", levels.get(1), equalTo(Collections.singletonList(bc)));
+        assertThat("third level fills in d", levels.get(2), equalTo(Collections.singletonList(cd)));
+        assertThat("last level leaves d", levels.get(3), equalTo(Collections.singletonList(de)));
+    }
+
+    @Test
+    public void planWalkLevelsCycleTest() {
+        // a -> b, a -> c, b -> c, c -> b: b and c add rows to each other, so they are walked one at a time
+        WalkRelationship ab = makeRelationship(tableA, tableB);
+        WalkRelationship ac = makeRelationship(tableA, tableC);
+        WalkRelationship bc = makeRelationship(tableB, tableC);
+        WalkRelationship cb = makeRelationship(tableC, tableB);
+
+        List<List<WalkRelationship>> levels = WalkRelationship.planWalkLevels(
+            Arrays.asList(ab, ac, bc, cb), tableA.getId().toString());
+
+        assertThat("three levels", levels.size(), equalTo(3));
+        assertThat("first level leaves the root", levels.get(0), equalTo(Arrays.asList(ab, ac)));
+        assertThat("cycle is walked in the order reached", levels.get(1), equalTo(Collections.singletonList(bc)));
+        assertThat("every relationship is walked", levels.get(2), equalTo(Collections.singletonList(cb)));
+    }
+
+    private DatasetTable makeTable(String name) {
+        return new DatasetTable().id(UUID.randomUUID()).name(name);
+    }
+
+    private WalkRelationship makeRelationship(DatasetTable fromTable, DatasetTable toTable) {
+        return new WalkRelationship()
+            .fromTable(fromTable)
+            .fromColumn(new Column().table(fromTable).name("id"))
+            .toTable(toTable)
+            .toColumn(new Column().table(toTable).name("id"));
+    }
+}